@@ -149,21 +149,41 @@ public class CladeSystem {
         return cladeSystems;
     }
 
+    /**
+     * Annotates every non-root internal node of a tree with the fraction of the clade systems
+     * containing its clade ({@link AttributeNode#CLADE_PROBABILITY}). Like {@link #hasClade},
+     * a clade also matches its complement.
+     *
+     * @param tree The tree to annotate.
+     * @param cladeSystems The clade systems of the sample trees, over the same label order.
+     */
 	public static void calculateCladeProbabilities(Tree tree, CladeSystem[] cladeSystems) {
-	
-		CladeSystem cladeSystem = getClades(cladeSystems[0].getIdGroup(), tree);
-		
-		for (int i =0; i < tree.getInternalNodeCount()-1; i++) {
+		SplitFrequencyTable table = new SplitFrequencyTable(cladeSystems[0].getIdGroup(), false, tree);
+		for (int j = 0; j < cladeSystems.length; j++) {
+			table.add(cladeSystems[j].getCladeArray());
+		}
+		calculateCladeProbabilities(tree, table);
+	}
+
+    /**
+     * Annotates every non-root internal node of a tree with the frequency of its clade in a
+     * table of clades ({@link AttributeNode#CLADE_PROBABILITY}). The table can be built in one
+     * pass over any number of trees, without keeping them or their clade systems in memory.
+     *
+     * @param tree The tree to annotate.
+     * @param table A {@code SplitFrequencyTable} of the sample trees; an unrooted table matches
+     * the clades like {@link #hasClade}.
+     */
+	public static void calculateCladeProbabilities(Tree tree, SplitFrequencyTable table) {
+		int[] cladeCounts = table.getNodeCounts(tree);
+
+		for (int i =0; i < tree.getInternalNodeCount(); i++) {
 			Node node = tree.getInternalNode(i);
-			boolean[] clade = cladeSystem.getClade(i);
-			if (node.isRoot()) throw new RuntimeException("Root node does not have clade probability!");
-				
-			int cladeCount = 0;
-			for (int j = 0; j < cladeSystems.length; j++) {
-				if (cladeSystems[j].hasClade(clade)) cladeCount += 1;
-			}
-			double pr = (double)cladeCount / (double)cladeSystems.length; 
-			tree.setAttribute(node, AttributeNode.CLADE_PROBABILITY, new Double(pr));	
+			// the root does not have a clade probability
+			if (node.isRoot()) continue;
+
+			double pr = (double)cladeCounts[i] / (double)table.getTreeCount();
+			tree.setAttribute(node, AttributeNode.CLADE_PROBABILITY, new Double(pr));
 		}
 	}
 
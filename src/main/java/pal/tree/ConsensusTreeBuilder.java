@@ -0,0 +1,340 @@
+// ConsensusTreeBuilder.java
+//
+// (c) 1999-2001 PAL Development Core Team
+//
+// This package may be distributed under the
+// terms of the Lesser GNU General Public License (LGPL)
+
+package pal.tree;
+
+import pal.misc.*;
+import pal.util.AlgorithmCallback;
+
+import java.util.*;
+
+/**
+ * Builds strict, majority-rule and greedy (extended majority-rule) consensus trees.
+ *
+ * <p>The trees are streamed into a {@link SplitFrequencyTable}, so they do not have to be kept
+ * in memory. The consensus is constructed from the splits sorted by decreasing frequency: each
+ * split is inserted into the tree built so far if it is compatible with it. Splits are handled
+ * as clusters (in the unrooted case the side of a split without the first label), so a
+ * compatibility check and the insertion only visit the paths from the leaves of the cluster
+ * to the root; the whole construction takes O(n k) time for k candidate splits.</p>
+ *
+ * <p>Every internal node of the consensus tree (except the root) has the frequency of its
+ * split as {@link AttributeNode#CLADE_PROBABILITY} attribute and the mean length of the
+ * corresponding branch in the trees containing it as branch length; leaves have their mean
+ * branch length over all trees.</p>
+ */
+public class ConsensusTreeBuilder {
+
+	private final IdGroup idGroup;
+	private final boolean rooted;
+	private final SplitFrequencyTable table;
+	private final double[] leafLengthSums;
+
+	/**
+	 * @param idGroup The labels of the trees.
+	 * @param rooted {@code true} for a consensus of clades, {@code false} for a consensus of splits.
+	 */
+	public ConsensusTreeBuilder(IdGroup idGroup, boolean rooted) {
+		this.idGroup = idGroup;
+		this.rooted = rooted;
+		this.table = new SplitFrequencyTable(idGroup, rooted);
+		this.leafLengthSums = new double[idGroup.getIdCount()];
+	}
+
+	/**
+	 * @return The number of trees added.
+	 */
+	public int getTreeCount() {
+		return table.getTreeCount();
+	}
+
+	/**
+	 * @return The split frequencies of the trees added.
+	 */
+	public SplitFrequencyTable getSplitFrequencyTable() {
+		return table;
+	}
+
+	/**
+	 * Adds a tree over the labels of the {@code IdGroup}.
+	 */
+	public void add(Tree tree) {
+		table.add(tree);
+		for (int i = 0; i < tree.getExternalNodeCount(); i++) {
+			Node leaf = tree.getExternalNode(i);
+			int index = idGroup.whichIdNumber(leaf.getIdentifier().getName());
+			if (index >= 0) {
+				leafLengthSums[index] += leaf.getBranchLength();
+			}
+		}
+	}
+
+	/**
+	 * Adds all remaining trees of an iterator.
+	 */
+	public void addAll(Iterator<? extends Tree> trees) {
+		while (trees.hasNext()) {
+			add(trees.next());
+		}
+	}
+
+	/**
+	 * Adds all remaining trees of a {@code TreeIterator}.
+	 */
+	public void addAll(TreeIterator trees, AlgorithmCallback callback) {
+		while (trees.isMoreTrees() && !callback.isPleaseStop()) {
+			add(trees.getNextTree(callback));
+		}
+	}
+
+	/**
+	 * @return The tree of the splits present in all trees.
+	 */
+	public Tree getStrictConsensus() {
+		return build(table.getTreeCount() - 1);
+	}
+
+	/**
+	 * Builds a majority-rule consensus tree. Splits contained in more than {@code threshold} of
+	 * the trees are used; below 0.5 they are not necessarily compatible, and the splits are then
+	 * added greedily by decreasing frequency.
+	 *
+	 * @param threshold The frequency a split has to exceed, from 0 to 1 (0.5 for the majority-rule
+	 * consensus, 1 for the strict consensus).
+	 */
+	public Tree getMajorityRuleConsensus(double threshold) {
+		int treeCount = table.getTreeCount();
+		// no split exceeds a frequency of 1, which stands for the splits present in all trees
+		return build(Math.min((int) Math.floor(threshold * treeCount), treeCount - 1));
+	}
+
+	/**
+	 * @return The majority-rule consensus tree (splits in more than half of the trees).
+	 */
+	public Tree getMajorityRuleConsensus() {
+		return getMajorityRuleConsensus(0.5);
+	}
+
+	/**
+	 * @return The greedy (extended majority-rule) consensus tree: all splits added by decreasing
+	 * frequency as long as they are compatible with the splits added before.
+	 */
+	public Tree getGreedyConsensus() {
+		return build(0);
+	}
+
+	//
+	// Private stuff
+	//
+
+	/**
+	 * Builds the consensus of the splits present in more than {@code minCount} trees.
+	 */
+	private Tree build(int minCount) {
+		int n = idGroup.getIdCount();
+		int treeCount = table.getTreeCount();
+		List<Integer> candidates = new ArrayList<Integer>();
+		for (int e = 0; e < table.getSplitCount(); e++) {
+			if (table.getCount(e) > minCount) {
+				candidates.add(e);
+			}
+		}
+		// by decreasing count, ties in order of first occurrence
+		Collections.sort(candidates, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				int c = Integer.compare(table.getCount(b), table.getCount(a));
+				return (c != 0) ? c : Integer.compare(a, b);
+			}
+		});
+
+		Hierarchy h = new Hierarchy(n, candidates.size());
+		int[] cluster = new int[n];
+		int resolved = rooted ? n - 2 : n - 3;
+		int inserted = 0;
+		for (int e : candidates) {
+			if (inserted >= resolved) {
+				break;
+			}
+			// unrooted splits contain the first label, their complement is the cluster
+			int size = table.getLabels(e, rooted, cluster);
+			if (size >= 2 && size < (rooted ? n : n - 1) && h.insert(cluster, size, e)) {
+				inserted++;
+			}
+		}
+
+		Node[] nodes = new Node[h.nodeNum];
+		for (int u = 0; u < h.nodeNum; u++) {
+			nodes[u] = new SimpleNode();
+			if (u < n) {
+				nodes[u].setIdentifier(idGroup.getIdentifier(u));
+				nodes[u].setBranchLength((treeCount == 0) ? 0.0 : leafLengthSums[u] / treeCount);
+			} else if (u != h.root) {
+				int e = h.entry[u];
+				nodes[u].setBranchLength(table.getBranchLengthSum(e) / table.getCount(e));
+			}
+		}
+		for (int u = 0; u < h.nodeNum; u++) {
+			for (int c = h.firstChild[u]; c >= 0; c = h.nextSibling[c]) {
+				nodes[u].addChild(nodes[c]);
+			}
+		}
+		SimpleTree tree = new SimpleTree(nodes[h.root]);
+		for (int u = n; u < h.nodeNum; u++) {
+			if (u != h.root) {
+				int e = h.entry[u];
+				tree.setAttribute(nodes[u], AttributeNode.CLADE_PROBABILITY,
+						Double.valueOf(table.getCount(e) / (double) treeCount));
+			}
+		}
+		return tree;
+	}
+
+	/**
+	 * A hierarchy of clusters; nodes 0..n-1 are the leaves, node n is the root.
+	 */
+	private static class Hierarchy {
+
+		final int leafNum;
+		final int root;
+		final int[] parent;
+		final int[] firstChild;
+		final int[] nextSibling;
+		final int[] prevSibling;
+		final int[] size;
+		final int[] entry;
+		int nodeNum;
+
+		// work arrays for one insertion, cleared after use
+		private final int[] count;
+		private final int[] pendingChildren;
+		private final boolean[] visited;
+		private final int[] visitedList;
+		private final int[] queue;
+
+		Hierarchy(int leafNum, int maxClusters) {
+			this.leafNum = leafNum;
+			int capacity = leafNum + 1 + maxClusters;
+			parent = new int[capacity];
+			firstChild = new int[capacity];
+			nextSibling = new int[capacity];
+			prevSibling = new int[capacity];
+			size = new int[capacity];
+			entry = new int[capacity];
+			count = new int[capacity];
+			pendingChildren = new int[capacity];
+			visited = new boolean[capacity];
+			visitedList = new int[capacity];
+			queue = new int[capacity];
+			Arrays.fill(firstChild, -1);
+			Arrays.fill(nextSibling, -1);
+			Arrays.fill(prevSibling, -1);
+			root = leafNum;
+			nodeNum = leafNum + 1;
+			parent[root] = -1;
+			size[root] = leafNum;
+			for (int i = 0; i < leafNum; i++) {
+				size[i] = 1;
+				link(root, i);
+			}
+		}
+
+		private void link(int p, int c) {
+			parent[c] = p;
+			prevSibling[c] = -1;
+			nextSibling[c] = firstChild[p];
+			if (firstChild[p] >= 0) {
+				prevSibling[firstChild[p]] = c;
+			}
+			firstChild[p] = c;
+		}
+
+		private void unlink(int c) {
+			int p = parent[c];
+			if (prevSibling[c] >= 0) {
+				nextSibling[prevSibling[c]] = nextSibling[c];
+			} else {
+				firstChild[p] = nextSibling[c];
+			}
+			if (nextSibling[c] >= 0) {
+				prevSibling[nextSibling[c]] = prevSibling[c];
+			}
+		}
+
+		/**
+		 * Inserts the cluster if it is compatible with the hierarchy and not yet in it.
+		 *
+		 * @return {@code true} if a node was added.
+		 */
+		boolean insert(int[] leaves, int clusterSize, int entryIndex) {
+			// the union of the paths from the leaves to the root, cut where paths meet
+			int visitedNum = 0;
+			for (int i = 0; i < clusterSize; i++) {
+				int u = leaves[i];
+				visited[u] = true;
+				visitedList[visitedNum++] = u;
+				while (u != root) {
+					int p = parent[u];
+					pendingChildren[p]++;
+					if (visited[p]) {
+						break;
+					}
+					visited[p] = true;
+					visitedList[visitedNum++] = p;
+					u = p;
+				}
+			}
+			// counts of cluster leaves below the visited nodes, bottom-up
+			int head = 0, tail = 0;
+			for (int i = 0; i < clusterSize; i++) {
+				count[leaves[i]] = 1;
+				queue[tail++] = leaves[i];
+			}
+			int lca = root;
+			while (head < tail) {
+				int u = queue[head++];
+				if (count[u] == clusterSize && size[u] < size[lca]) {
+					lca = u;
+				}
+				if (u != root) {
+					int p = parent[u];
+					count[p] += count[u];
+					if (--pendingChildren[p] == 0) {
+						queue[tail++] = p;
+					}
+				}
+			}
+			boolean compatible = size[lca] > clusterSize;
+			for (int c = firstChild[lca]; compatible && c >= 0; c = nextSibling[c]) {
+				if (count[c] > 0 && count[c] < size[c]) {
+					compatible = false;
+				}
+			}
+			if (compatible) {
+				int v = nodeNum++;
+				size[v] = clusterSize;
+				entry[v] = entryIndex;
+				int c = firstChild[lca];
+				while (c >= 0) {
+					int next = nextSibling[c];
+					if (count[c] > 0) {
+						unlink(c);
+						link(v, c);
+					}
+					c = next;
+				}
+				link(lca, v);
+			}
+			for (int i = 0; i < visitedNum; i++) {
+				int u = visitedList[i];
+				visited[u] = false;
+				count[u] = 0;
+				pendingChildren[u] = 0;
+			}
+			return compatible;
+		}
+	}
+}
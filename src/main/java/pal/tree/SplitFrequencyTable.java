@@ -0,0 +1,435 @@
+// SplitFrequencyTable.java
+//
+// (c) 1999-2001 PAL Development Core Team
+//
+// This package may be distributed under the
+// terms of the Lesser GNU General Public License (LGPL)
+
+package pal.tree;
+
+import pal.misc.*;
+import pal.util.AlgorithmCallback;
+
+import java.util.*;
+
+/**
+ * Hash-indexed table of split (or clade) frequencies in a set of trees.
+ *
+ * <p>Every split is packed into {@code ceil(n/64)} words over the label order of the
+ * {@code IdGroup} and stored once in a shared word pool. In the unrooted case splits are
+ * standardized like in {@link SplitUtils#getSplit} (the first label is always on the true
+ * side), so a split and its complement are the same entry; in the rooted case the clades are
+ * stored as they are (like in {@link CladeSystem}). Trees are added in one streaming pass,
+ * each distinct split counted once per tree, and every split is found in expected O(n/64)
+ * time instead of a linear scan of a {@link SplitSystem}.</p>
+ *
+ * <p>The table also sums the branch lengths of the edges inducing each split. A table created
+ * for a key tree only counts the splits of that tree, which bounds its size when only the
+ * support of one tree is needed.</p>
+ *
+ * @see TreeUtils#getReplicateCladeSupport
+ * @see CladeSystem#calculateCladeProbabilities
+ */
+public class SplitFrequencyTable {
+
+	private final IdGroup idGroup;
+	private final boolean rooted;
+	private final boolean restricted;
+	private final int labelCount;
+	private final int words;
+	private final long lastMask;
+
+	private long[] pool;
+	private long[] hashes;
+	private int[] counts;
+	private double[] lengthSums;
+	private int[] lastTree;
+	private int size;
+	private int[] slots;
+	private int treeCount;
+
+	/**
+	 * @param idGroup The label order of the splits.
+	 * @param rooted {@code true} for clades (rooted trees), {@code false} for splits.
+	 */
+	public SplitFrequencyTable(IdGroup idGroup, boolean rooted) {
+		this.idGroup = idGroup;
+		this.rooted = rooted;
+		this.restricted = false;
+		this.labelCount = idGroup.getIdCount();
+		this.words = Math.max(1, (labelCount + 63) >>> 6);
+		this.lastMask = (labelCount % 64 == 0) ? -1L : (1L << (labelCount % 64)) - 1;
+		init(16);
+	}
+
+	/**
+	 * Creates a table which counts only the splits of {@code keyTree}; the key tree itself is
+	 * not counted.
+	 *
+	 * @param idGroup The label order of the splits.
+	 * @param rooted {@code true} for clades (rooted trees), {@code false} for splits.
+	 * @param keyTree The tree whose splits are counted.
+	 */
+	public SplitFrequencyTable(IdGroup idGroup, boolean rooted, Tree keyTree) {
+		this.idGroup = idGroup;
+		this.rooted = rooted;
+		this.labelCount = idGroup.getIdCount();
+		this.words = Math.max(1, (labelCount + 63) >>> 6);
+		this.lastMask = (labelCount % 64 == 0) ? -1L : (1L << (labelCount % 64)) - 1;
+		init(2 * keyTree.getInternalNodeCount());
+		long[][] splits = getNodeSplits(keyTree);
+		for (int i = 0; i < splits.length; i++) {
+			if (splits[i] != null) {
+				insert(splits[i]);
+			}
+		}
+		this.restricted = true;
+	}
+
+	private void init(int capacity) {
+		int slotCount = 16;
+		while (slotCount < 2 * capacity) {
+			slotCount <<= 1;
+		}
+		slots = new int[slotCount];
+		pool = new long[capacity * words];
+		hashes = new long[capacity];
+		counts = new int[capacity];
+		lengthSums = new double[capacity];
+		lastTree = new int[capacity];
+		Arrays.fill(lastTree, -1);
+		size = 0;
+		treeCount = 0;
+	}
+
+	/**
+	 * @return The label order of the splits.
+	 */
+	public IdGroup getIdGroup() {
+		return idGroup;
+	}
+
+	/**
+	 * @return {@code true} if the table holds clades, {@code false} if it holds splits.
+	 */
+	public boolean isRooted() {
+		return rooted;
+	}
+
+	/**
+	 * @return The number of trees added.
+	 */
+	public int getTreeCount() {
+		return treeCount;
+	}
+
+	/**
+	 * @return The number of distinct splits in the table.
+	 */
+	public int getSplitCount() {
+		return size;
+	}
+
+	/**
+	 * Adds the splits induced by all edges above the non-root internal nodes of a tree. The leaves
+	 * must be labelled by identifiers of the {@code IdGroup}.
+	 *
+	 * @param tree The tree to add.
+	 * @throws IllegalArgumentException If a leaf label is not in the {@code IdGroup}.
+	 */
+	public void add(Tree tree) {
+		long[][] splits = getNodeSplits(tree);
+		for (int i = 0; i < splits.length; i++) {
+			if (splits[i] != null) {
+				count(splits[i], tree.getInternalNode(i).getBranchLength());
+			}
+		}
+		treeCount++;
+	}
+
+	/**
+	 * Adds a tree given by its splits (e.g. a {@link SplitSystem} or {@link CladeSystem} vector
+	 * over the same label order), without branch lengths.
+	 *
+	 * @param splits The splits of one tree.
+	 */
+	public void add(boolean[][] splits) {
+		for (int i = 0; i < splits.length; i++) {
+			count(pack(splits[i]), 0.0);
+		}
+		treeCount++;
+	}
+
+	/**
+	 * Adds trees until the generator returns {@code null} or {@code maxTrees} trees have been added.
+	 *
+	 * @return The number of trees added.
+	 */
+	public int addAll(TreeGenerator generator, int maxTrees, AlgorithmCallback callback) {
+		int added = 0;
+		while (added < maxTrees) {
+			Tree tree = generator.getNextTree(callback);
+			if (tree == null || callback.isPleaseStop()) {
+				break;
+			}
+			add(tree);
+			added++;
+		}
+		return added;
+	}
+
+	/**
+	 * @return The number of added trees containing the split (0 if it is not in the table).
+	 */
+	public int getCount(boolean[] split) {
+		int e = find(pack(split));
+		return (e < 0) ? 0 : counts[e];
+	}
+
+	/**
+	 * @return The fraction of added trees containing the split.
+	 */
+	public double getFrequency(boolean[] split) {
+		return (treeCount == 0) ? 0.0 : getCount(split) / (double) treeCount;
+	}
+
+	/**
+	 * @return The sum of the branch lengths of the split over all added trees.
+	 */
+	public double getBranchLengthSum(boolean[] split) {
+		int e = find(pack(split));
+		return (e < 0) ? 0.0 : lengthSums[e];
+	}
+
+	/**
+	 * @param i The entry index, from 0 to {@code getSplitCount() - 1} (in order of insertion).
+	 * @return The split of entry {@code i}.
+	 */
+	public boolean[] getSplit(int i) {
+		boolean[] split = new boolean[labelCount];
+		int base = i * words;
+		for (int j = 0; j < labelCount; j++) {
+			split[j] = (pool[base + (j >>> 6)] & (1L << j)) != 0;
+		}
+		return split;
+	}
+
+	/**
+	 * Lists the labels on one side of the split of entry {@code i} in increasing order.
+	 *
+	 * @param i The entry index.
+	 * @param side {@code true} for the labels marked in {@link #getSplit(int)}, {@code false} for
+	 * the other ones.
+	 * @param labels The array receiving the label indexes (of length at least the label count).
+	 * @return The number of labels.
+	 */
+	public int getLabels(int i, boolean side, int[] labels) {
+		int base = i * words;
+		int num = 0;
+		for (int w = 0; w < words; w++) {
+			long bits = side ? pool[base + w] : ~pool[base + w];
+			if (w == words - 1) {
+				bits &= lastMask;
+			}
+			while (bits != 0) {
+				labels[num++] = (w << 6) + Long.numberOfTrailingZeros(bits);
+				bits &= bits - 1;
+			}
+		}
+		return num;
+	}
+
+	/**
+	 * @param i The entry index.
+	 * @return The number of added trees containing the split of entry {@code i}.
+	 */
+	public int getCount(int i) {
+		return counts[i];
+	}
+
+	/**
+	 * @param i The entry index.
+	 * @return The sum of the branch lengths of the split of entry {@code i}.
+	 */
+	public double getBranchLengthSum(int i) {
+		return lengthSums[i];
+	}
+
+	/**
+	 * Looks up the splits of all internal nodes of a tree.
+	 *
+	 * @param tree A tree over the labels of the table.
+	 * @return The counts indexed like {@code tree.getInternalNode(i)}; 0 for the root.
+	 */
+	public int[] getNodeCounts(Tree tree) {
+		long[][] splits = getNodeSplits(tree);
+		int[] result = new int[splits.length];
+		for (int i = 0; i < splits.length; i++) {
+			if (splits[i] != null) {
+				int e = find(splits[i]);
+				result[i] = (e < 0) ? 0 : counts[e];
+			}
+		}
+		return result;
+	}
+
+	//
+	// Private stuff
+	//
+
+	/**
+	 * @return The packed, standardized splits of the internal nodes (null for the root), indexed
+	 * like {@code tree.getInternalNode(i)}.
+	 */
+	private long[][] getNodeSplits(Tree tree) {
+		int internalCount = tree.getInternalNodeCount();
+		IdentityHashMap<Node, long[]> below = new IdentityHashMap<Node, long[]>(2 * internalCount);
+		Node root = tree.getRoot();
+		Node node = root;
+		do {
+			node = NodeUtils.postorderSuccessor(node);
+			if (!node.isLeaf()) {
+				long[] bits = new long[words];
+				for (int c = 0; c < node.getChildCount(); c++) {
+					Node child = node.getChild(c);
+					if (child.isLeaf()) {
+						String name = child.getIdentifier().getName();
+						int index = idGroup.whichIdNumber(name);
+						if (index < 0) {
+							throw new IllegalArgumentException("INCOMPATIBLE IDENTIFIER (" + name + ")");
+						}
+						bits[index >>> 6] |= 1L << index;
+					} else {
+						long[] childBits = below.get(child);
+						for (int w = 0; w < words; w++) {
+							bits[w] |= childBits[w];
+						}
+					}
+				}
+				below.put(node, bits);
+			}
+		} while (node != root);
+
+		long[][] splits = new long[internalCount][];
+		for (int i = 0; i < internalCount; i++) {
+			Node internal = tree.getInternalNode(i);
+			if (!internal.isRoot()) {
+				splits[i] = standardize(below.get(internal));
+			}
+		}
+		return splits;
+	}
+
+	private long[] pack(boolean[] split) {
+		if (split.length != labelCount) {
+			throw new IllegalArgumentException("Splits must be of the same length!");
+		}
+		long[] bits = new long[words];
+		for (int j = 0; j < labelCount; j++) {
+			if (split[j]) {
+				bits[j >>> 6] |= 1L << j;
+			}
+		}
+		return standardize(bits);
+	}
+
+	private long[] standardize(long[] bits) {
+		if (!rooted && (bits[0] & 1L) == 0) {
+			for (int w = 0; w < words; w++) {
+				bits[w] = ~bits[w];
+			}
+			bits[words - 1] &= lastMask;
+		}
+		return bits;
+	}
+
+	private void count(long[] bits, double branchLength) {
+		int e = restricted ? find(bits) : insert(bits);
+		if (e < 0) {
+			return;
+		}
+		if (lastTree[e] != treeCount) {
+			lastTree[e] = treeCount;
+			counts[e]++;
+		}
+		lengthSums[e] += branchLength;
+	}
+
+	private static long hash(long[] bits) {
+		long h = 0x9E3779B97F4A7C15L;
+		for (int w = 0; w < bits.length; w++) {
+			h = (h ^ bits[w]) * 0xBF58476D1CE4E5B9L;
+			h ^= h >>> 31;
+		}
+		return h;
+	}
+
+	private boolean equalsEntry(int e, long[] bits) {
+		int base = e * words;
+		for (int w = 0; w < words; w++) {
+			if (pool[base + w] != bits[w]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private int find(long[] bits) {
+		long h = hash(bits);
+		int mask = slots.length - 1;
+		int s = (int) h & mask;
+		int e;
+		while ((e = slots[s] - 1) >= 0) {
+			if (hashes[e] == h && equalsEntry(e, bits)) {
+				return e;
+			}
+			s = (s + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * @return The entry of the split, created with count 0 if it is new.
+	 */
+	private int insert(long[] bits) {
+		long h = hash(bits);
+		int mask = slots.length - 1;
+		int s = (int) h & mask;
+		int e;
+		while ((e = slots[s] - 1) >= 0) {
+			if (hashes[e] == h && equalsEntry(e, bits)) {
+				return e;
+			}
+			s = (s + 1) & mask;
+		}
+		if (size == hashes.length) {
+			grow();
+			return insert(bits);
+		}
+		e = size++;
+		System.arraycopy(bits, 0, pool, e * words, words);
+		hashes[e] = h;
+		slots[s] = e + 1;
+		return e;
+	}
+
+	private void grow() {
+		int capacity = 2 * hashes.length;
+		pool = Arrays.copyOf(pool, capacity * words);
+		hashes = Arrays.copyOf(hashes, capacity);
+		counts = Arrays.copyOf(counts, capacity);
+		lengthSums = Arrays.copyOf(lengthSums, capacity);
+		int oldLength = lastTree.length;
+		lastTree = Arrays.copyOf(lastTree, capacity);
+		Arrays.fill(lastTree, oldLength, capacity, -1);
+		slots = new int[2 * slots.length];
+		int mask = slots.length - 1;
+		for (int e = 0; e < size; e++) {
+			int s = (int) hashes[e] & mask;
+			while (slots[s] != 0) {
+				s = (s + 1) & mask;
+			}
+			slots[s] = e + 1;
+		}
+	}
+}
@@ -1209,18 +1209,16 @@ public class TreeUtils
     public static final Tree getBootstrapSupportByCladeTree(String attributeName, Tree baseTree, Tree[] alternativeTrees) {
         SimpleTree result = new SimpleTree(baseTree);
         IdGroup ids = TreeUtils.getLeafIdGroup(baseTree);
-        SplitSystem baseSystem = SplitUtils.getSplits(ids,baseTree);
-        boolean[][] baseVector = baseSystem.getSplitVector();
-        int[] supportCount = new int[baseVector.length];
+        SplitFrequencyTable table = new SplitFrequencyTable(ids, false, baseTree);
         for(int i = 0 ; i < alternativeTrees.length ; i++) {
-            SplitSystem alternativeSystem = SplitUtils.getSplits(ids, alternativeTrees[i]);
-            for(int j = 0 ; j < baseVector.length ; j++) {
-                if(alternativeSystem.hasSplit(baseVector[j])) {
-                    supportCount[j]++;
-                }
-            }
+            table.add(alternativeTrees[i]);
         }
+        // counted on the copy, whose node order may differ from baseTree's
+        int[] supportCount = table.getNodeCounts(result);
         for(int i = 0 ; i < supportCount.length ; i++) {
+            if(result.getInternalNode(i).isRoot()) {
+                continue;
+            }
             int support = (int)(supportCount[i]*100/(double)alternativeTrees.length);
             result.setAttribute(
                     result.getInternalNode(i),
@@ -1250,9 +1248,7 @@ public class TreeUtils
     public static final Tree getReplicateCladeSupport(final String attributeName, final Tree baseTree, final TreeGenerator treeGenerator, final int numberOfReplicates, final AlgorithmCallback callback) {
         SimpleTree result = new SimpleTree(baseTree);
         IdGroup ids = TreeUtils.getLeafIdGroup(baseTree);
-        SplitSystem baseSystem = SplitUtils.getSplits(ids,baseTree);
-        boolean[][] baseVector = baseSystem.getSplitVector();
-        int[] supportCount = new int[baseVector.length];
+        SplitFrequencyTable table = new SplitFrequencyTable(ids, false, baseTree);
         for(int i = 0 ; i < numberOfReplicates ; i++) {
             Tree replicateTree = treeGenerator.getNextTree(
                     AlgorithmCallback.Utils.getSubCallback(callback,"Replicate:"+i,i/(double)(numberOfReplicates+1),(i+1)/(double)(numberOfReplicates+1))
@@ -1260,12 +1256,14 @@ public class TreeUtils
             if(callback.isPleaseStop()) {
                 return baseTree;
             }
-            SplitSystem alternativeSystem =    SplitUtils.getSplits(ids,replicateTree);
-            for(int j = 0 ; j < baseVector.length ; j++) {
-                if(alternativeSystem.hasSplit(baseVector[j])) {       supportCount[j]++;       }
-            }
+            table.add(replicateTree);
         }
+        // counted on the copy, whose node order may differ from baseTree's
+        int[] supportCount = table.getNodeCounts(result);
         for(int i = 0 ; i < supportCount.length ; i++) {
+            if(result.getInternalNode(i).isRoot()) {
+                continue;
+            }
             int support = (int)(supportCount[i]*100/(double)numberOfReplicates);
             result.setAttribute(
                     result.getInternalNode(i),
@@ -0,0 +1,243 @@
+/** This file is part of TreeCmp, a tool for comparing phylogenetic trees
+    using the Matching Split distance and other metrics.
+    Copyright (C) 2011,  Damian Bogdanowicz
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>. */
+
+package treecmp.common;
+
+import pal.tree.Node;
+import pal.tree.Tree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Sackin, unrooted Sackin, Colless and cherry-count balance indices of a tree.
+ *
+ * <p>All indices are computed in one O(n) pass without recursion over the nodes in an order
+ * with every node after its children (the reverse breadth-first order of a {@code Node} tree, the
+ * post-order of a {@link CompactTree}); the leaf count L(v) and the sum S(v) of the leaf depths
+ * below every node are accumulated in this order. The unrooted Sackin index, the minimum over the internal nodes v of the sum of the
+ * distances (in edges) from v to all leaves, is then obtained by moving the root along the edges:
+ * from a node to its child c the L(c) leaves below c get one edge closer and the other n - L(c)
+ * leaves one edge further. A bifurcating root is suppressed, i.e. its two edges count as one.</p>
+ */
+public class BalanceIndices {
+
+    private final int leafNum;
+    private final long sackin;
+    private final long unrootedSackin;
+    private final long colless;
+    private final long cherries;
+
+    private BalanceIndices(int leafNum, long sackin, long unrootedSackin, long colless, long cherries) {
+        this.leafNum = leafNum;
+        this.sackin = sackin;
+        this.unrootedSackin = unrootedSackin;
+        this.colless = colless;
+        this.cherries = cherries;
+    }
+
+    public int getLeafNum() {
+        return leafNum;
+    }
+
+    /**
+     * @return The sum of the depths of the leaves.
+     */
+    public long getSackin() {
+        return sackin;
+    }
+
+    /**
+     * @return The minimum of the Sackin index over the roots at internal nodes of the unrooted
+     * tree.
+     */
+    public long getUnrootedSackin() {
+        return unrootedSackin;
+    }
+
+    /**
+     * @return The sum over the internal nodes of |L(a) - L(b)| for all pairs of children a, b
+     * (the Colless index for binary trees).
+     */
+    public long getColless() {
+        return colless;
+    }
+
+    /**
+     * @return The number of pairs of leaves with the same parent (the number of cherries for
+     * binary trees).
+     */
+    public long getCherries() {
+        return cherries;
+    }
+
+    /**
+     * @return The balance indices of the tree.
+     */
+    public static BalanceIndices of(Tree tree) {
+        return of(tree.getRoot());
+    }
+
+    /**
+     * @return The balance indices of all trees.
+     */
+    public static BalanceIndices[] of(Tree[] trees) {
+        BalanceIndices[] indices = new BalanceIndices[trees.length];
+        for (int i = 0; i < trees.length; i++) {
+            indices[i] = of(trees[i]);
+        }
+        return indices;
+    }
+
+    /**
+     * @return The balance indices of all remaining trees of the iterator.
+     */
+    public static List<BalanceIndices> of(Iterator<? extends Tree> trees) {
+        List<BalanceIndices> indices = new ArrayList<BalanceIndices>();
+        while (trees.hasNext()) {
+            indices.add(of(trees.next()));
+        }
+        return indices;
+    }
+
+    /**
+     * @return The balance indices of the subtree of {@code root}.
+     */
+    public static BalanceIndices of(Node root) {
+        Node[] nodes = getBreadthFirstOrder(root);
+        int nodeNum = nodes.length;
+        int[] parent = new int[nodeNum];
+        int[][] children = new int[nodeNum][];
+        int[] bottomUp = new int[nodeNum];
+        parent[0] = -1;
+        for (int u = 0, next = 1; u < nodeNum; u++) {
+            int childCount = nodes[u].getChildCount();
+            if (childCount > 0) {
+                children[u] = new int[childCount];
+                for (int i = 0; i < childCount; i++) {
+                    children[u][i] = next;
+                    parent[next++] = u;
+                }
+            }
+            // the reverse breadth-first order visits the children before their parent
+            bottomUp[nodeNum - 1 - u] = u;
+        }
+        return of(children, parent, bottomUp, 0);
+    }
+
+    /**
+     * @return The balance indices of the array representation of a tree.
+     */
+    public static BalanceIndices of(CompactTree tree) {
+        return of(tree.children, tree.parent, tree.postOrder, tree.root);
+    }
+
+    /**
+     * @param children  The children of every node, {@code null} for the leaves.
+     * @param bottomUp  All nodes, every node after its children.
+     */
+    private static BalanceIndices of(int[][] children, int[] parent, int[] bottomUp, int root) {
+        int nodeNum = bottomUp.length;
+        int[] leafCount = new int[nodeNum];
+        long[] depthSum = new long[nodeNum];
+        int[] weight = new int[nodeNum];
+        int[] counts = null;
+        long sackin = 0, colless = 0, cherries = 0;
+        for (int u : bottomUp) {
+            int[] ch = children[u];
+            if (ch == null) {
+                leafCount[u] = 1;
+            } else {
+                int childCount = ch.length;
+                int leafChildren = 0;
+                for (int c : ch) {
+                    if (children[c] == null) {
+                        leafChildren++;
+                    }
+                }
+                cherries += (long) leafChildren * (leafChildren - 1) / 2;
+                if (childCount == 2) {
+                    colless += Math.abs(leafCount[ch[0]] - leafCount[ch[1]]);
+                } else if (childCount > 2) {
+                    // sum of the pairwise differences of the sorted counts
+                    if (counts == null || counts.length < childCount) {
+                        counts = new int[Math.max(childCount, 8)];
+                    }
+                    for (int j = 0; j < childCount; j++) {
+                        counts[j] = leafCount[ch[j]];
+                    }
+                    Arrays.sort(counts, 0, childCount);
+                    for (int j = 0; j < childCount; j++) {
+                        colless += (long) counts[j] * (2 * j - childCount + 1);
+                    }
+                }
+            }
+            if (u != root) {
+                leafCount[parent[u]] += leafCount[u];
+                sackin += leafCount[u];
+            }
+        }
+        int n = leafCount[root];
+
+        // the second edge of a bifurcating root is merged into the first one
+        boolean suppressRoot = children[root] != null && children[root].length == 2 && n > 2;
+        Arrays.fill(weight, 1);
+        weight[root] = 0;
+        if (suppressRoot) {
+            weight[children[root][1]] = 0;
+        }
+        for (int u : bottomUp) {
+            if (u != root) {
+                depthSum[parent[u]] += depthSum[u] + (long) weight[u] * leafCount[u];
+            }
+        }
+        long unrootedSackin = Long.MAX_VALUE;
+        for (int i = nodeNum - 1; i >= 0; i--) {
+            int u = bottomUp[i];
+            if (u != root) {
+                depthSum[u] = depthSum[parent[u]] + (long) weight[u] * (n - 2L * leafCount[u]);
+            }
+            if (children[u] != null && !(u == root && suppressRoot)) {
+                unrootedSackin = Math.min(unrootedSackin, depthSum[u]);
+            }
+        }
+        if (unrootedSackin == Long.MAX_VALUE) {
+            // a tree with two leaves or one leaf
+            unrootedSackin = sackin;
+        }
+        return new BalanceIndices(n, sackin, unrootedSackin, colless, cherries);
+    }
+
+    private static Node[] getBreadthFirstOrder(Node root) {
+        List<Node> nodes = new ArrayList<Node>();
+        nodes.add(root);
+        for (int u = 0; u < nodes.size(); u++) {
+            Node node = nodes.get(u);
+            for (int i = 0; i < node.getChildCount(); i++) {
+                nodes.add(node.getChild(i));
+            }
+        }
+        return nodes.toArray(new Node[nodes.size()]);
+    }
+
+    public String toString() {
+        return "Sackin: " + sackin + ", unrooted Sackin: " + unrootedSackin
+                + ", Colless: " + colless + ", cherries: " + cherries;
+    }
+}
@@ -0,0 +1,197 @@
+/** This file is part of TreeCmp, a tool for comparing phylogenetic trees
+    using the Matching Split distance and other metrics.
+    Copyright (C) 2011,  Damian Bogdanowicz
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>. */
+
+package treecmp.common;
+
+import pal.tree.Tree;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reduction of two trees on the same taxa to their non-shared parts.
+ *
+ * <p>A common clade is a subtree hanging from a node other than the root whose leaf set and
+ * topology are the same in both trees. Every maximal common clade is collapsed into a meta-leaf
+ * labelled like one of its leaves and weighted by the number of its leaves. The subtrees are
+ * compared by a hash of their (unordered) topology computed in one post-order pass over each
+ * tree, so the reduction takes O(n) time.</p>
+ *
+ * <p>Some maximum agreement subtree contains either all leaves of a common clade or none of them,
+ * so the (rooted or unrooted) MAST of the trees is the maximum weight agreement subtree of the
+ * reduced trees. The clades below nodes of the stored rooting are considered, which covers every
+ * common clade of rooted trees and, for unrooted trees, the pendant subtrees not containing the
+ * root side in either tree.</p>
+ */
+public class CommonCladeReducer {
+
+    private CommonCladeReducer() {
+    }
+
+    /**
+     * @return The reduced trees or null if the trees have different taxa or no common clade with
+     * two or more leaves.
+     */
+    public static Reduction reduce(Tree t1, Tree t2) {
+        TaxonRegistry registry = TaxonRegistry.getShared();
+        TreeRestrictionCache trees = TreeRestrictionCache.getShared();
+        CompactTree c1 = trees.getCompactTree(t1);
+        CompactTree c2 = trees.getCompactTree(t2);
+        int[] ids1 = registry.getTaxonIds(t1);
+        int[] ids2 = registry.getTaxonIds(t2);
+        if (ids1.length != ids2.length) {
+            return null;
+        }
+        int[] sorted1 = ids1.clone();
+        int[] sorted2 = ids2.clone();
+        Arrays.sort(sorted1);
+        Arrays.sort(sorted2);
+        if (!Arrays.equals(sorted1, sorted2)) {
+            return null;
+        }
+
+        long[] hash1 = getSubtreeHashes(c1, ids1);
+        long[] hash2 = getSubtreeHashes(c2, ids2);
+        Map<Long, Integer> clades2 = new HashMap<Long, Integer>();
+        for (int u = c2.leafNum; u < c2.nodeNum; u++) {
+            if (u != c2.root && c2.children[u].length > 1) {
+                clades2.put(hash2[u], u);
+            }
+        }
+
+        // the reverse post-order visits every parent before its children
+        boolean[] collapsed = new boolean[c1.nodeNum];
+        int[] rep = new int[c1.nodeNum];
+        Arrays.fill(rep, -1);
+        boolean[] keep = new boolean[c1.leafNum];
+        Map<String, Integer> weights = new HashMap<String, Integer>();
+        for (int i = c1.nodeNum - 1; i >= 0; i--) {
+            int u = c1.postOrder[i];
+            if (u == c1.root) {
+                continue;
+            }
+            int p = c1.parent[u];
+            if (collapsed[p]) {
+                collapsed[u] = true;
+                rep[u] = rep[p];
+            } else if (!c1.isLeaf(u) && c1.children[u].length > 1) {
+                Integer w = clades2.get(hash1[u]);
+                if (w != null && c2.leafCount[w] == c1.leafCount[u]) {
+                    collapsed[u] = true;
+                    rep[u] = c1.leafOrder[c1.lo[u]];
+                    weights.put(c1.leafNames[rep[u]], c1.leafCount[u]);
+                }
+            }
+            if (c1.isLeaf(u) && (!collapsed[u] || rep[u] == u)) {
+                keep[u] = true;
+            }
+        }
+        if (weights.isEmpty()) {
+            return null;
+        }
+        int[] kept = new int[c1.leafNum];
+        int num = 0;
+        for (int u = 0; u < c1.leafNum; u++) {
+            if (keep[u]) {
+                kept[num++] = ids1[u];
+            }
+        }
+        kept = Arrays.copyOf(kept, num);
+        Arrays.sort(kept);
+        return new Reduction(restrict(c1, ids1, kept), restrict(c2, ids2, kept), weights,
+                t1.getExternalNodeCount());
+    }
+
+    /**
+     * @param taxa Sorted taxon ids of the leaves kept.
+     */
+    private static Tree restrict(CompactTree tree, int[] taxonIds, int[] taxa) {
+        int[] leaves = new int[tree.leafNum];
+        int num = 0;
+        for (int i = 0; i < tree.leafNum; i++) {
+            if (Arrays.binarySearch(taxa, taxonIds[i]) >= 0) {
+                leaves[num++] = i;
+            }
+        }
+        return tree.restrict(Arrays.copyOf(leaves, num)).toTree();
+    }
+
+    /**
+     * @return The hash of the topology and leaf set of the subtree of every node; a unary node
+     * has the hash of its child.
+     */
+    private static long[] getSubtreeHashes(CompactTree tree, int[] taxonIds) {
+        long[] hash = new long[tree.nodeNum];
+        for (int i = 0; i < tree.nodeNum; i++) {
+            int u = tree.postOrder[i];
+            if (tree.isLeaf(u)) {
+                hash[u] = TopologyFingerprint.taxonHash(taxonIds[u]);
+            } else if (tree.children[u].length == 1) {
+                hash[u] = hash[tree.children[u][0]];
+            } else {
+                long sum = 0L;
+                for (int c : tree.children[u]) {
+                    sum += TopologyFingerprint.mix(hash[c] ^ 0x5851F42D4C957F2DL);
+                }
+                hash[u] = TopologyFingerprint.mix(sum + 0x14057B7EF767814FL);
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Two trees with their maximal common clades collapsed into weighted meta-leaves.
+     */
+    public static class Reduction {
+
+        private final Tree t1;
+        private final Tree t2;
+        private final Map<String, Integer> weights;
+        private final int leafNum;
+
+        Reduction(Tree t1, Tree t2, Map<String, Integer> weights, int leafNum) {
+            this.t1 = t1;
+            this.t2 = t2;
+            this.weights = weights;
+            this.leafNum = leafNum;
+        }
+
+        public Tree getT1() {
+            return t1;
+        }
+
+        public Tree getT2() {
+            return t2;
+        }
+
+        /**
+         * @return The number of leaves of every meta-leaf by its label; the other leaves have
+         * weight 1. The map must not be modified.
+         */
+        public Map<String, Integer> getWeights() {
+            return weights;
+        }
+
+        /**
+         * @return The number of leaves of the original trees.
+         */
+        public int getLeafNum() {
+            return leafNum;
+        }
+    }
+}
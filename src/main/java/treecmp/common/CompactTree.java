@@ -0,0 +1,326 @@
+/** This file is part of TreeCmp, a tool for comparing phylogenetic trees
+    using the Matching Split distance and other metrics.
+    Copyright (C) 2011,  Damian Bogdanowicz
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>. */
+
+package treecmp.common;
+
+import pal.misc.IdGroup;
+import pal.misc.Identifier;
+import pal.tree.Node;
+import pal.tree.SimpleNode;
+import pal.tree.SimpleTree;
+import pal.tree.Tree;
+
+import java.util.Arrays;
+
+/**
+ * Array representation of a rooted tree.
+ *
+ * <p>Leaves have indexes {@code 0..leafNum-1} equal to their external node numbers in the source
+ * {@code Tree}, internal nodes follow ({@code leafNum + internal node number}). The children of
+ * every internal node are ordered so that the child with the largest number of leaves is the last
+ * one. The leaves below node u are {@code leafOrder[lo[u]..hi[u]-1]}, the leaves appear in
+ * {@code leafOrder} in post-order.
+ */
+public class CompactTree {
+
+    public final int leafNum;
+    public final int nodeNum;
+    public final int root;
+    public final int[] parent;
+    public final int[][] children;
+    public final double[] branchLength;
+    public final int[] leafCount;
+    public final int[] leafOrder;
+    public final int[] lo;
+    public final int[] hi;
+    public final String[] leafNames;
+    /** all nodes in post-order */
+    public final int[] postOrder;
+
+    public CompactTree(Tree t) {
+        leafNum = t.getExternalNodeCount();
+        nodeNum = leafNum + t.getInternalNodeCount();
+        parent = new int[nodeNum];
+        children = new int[nodeNum][];
+        branchLength = new double[nodeNum];
+        leafCount = new int[nodeNum];
+        leafOrder = new int[leafNum];
+        lo = new int[nodeNum];
+        hi = new int[nodeNum];
+        leafNames = new String[leafNum];
+        postOrder = new int[nodeNum];
+
+        Node[] postOrderNodes = TreeCmpUtils.getNodesInPostOrder(t);
+        Node node;
+        int u, c, heavy, k = 0;
+        int[] ch;
+        for (int i = 0; i < postOrderNodes.length; i++) {
+            node = postOrderNodes[i];
+            u = index(node);
+            postOrder[i] = u;
+            if (node.isRoot()) {
+                parent[u] = -1;
+            } else {
+                parent[u] = index(node.getParent());
+                branchLength[u] = node.getBranchLength();
+            }
+            if (node.isLeaf()) {
+                leafNames[u] = node.getIdentifier().getName();
+                leafOrder[k] = u;
+                lo[u] = k;
+                k++;
+                hi[u] = k;
+                leafCount[u] = 1;
+            } else {
+                ch = new int[node.getChildCount()];
+                heavy = 0;
+                lo[u] = Integer.MAX_VALUE;
+                for (int j = 0; j < ch.length; j++) {
+                    c = index(node.getChild(j));
+                    ch[j] = c;
+                    leafCount[u] += leafCount[c];
+                    lo[u] = Math.min(lo[u], lo[c]);
+                    hi[u] = Math.max(hi[u], hi[c]);
+                    if (leafCount[c] > leafCount[ch[heavy]]) {
+                        heavy = j;
+                    }
+                }
+                c = ch[heavy];
+                ch[heavy] = ch[ch.length - 1];
+                ch[ch.length - 1] = c;
+                children[u] = ch;
+            }
+        }
+        root = postOrder[nodeNum - 1];
+    }
+
+    /**
+     * Builds the derived arrays of a tree given by its parent links and children.
+     */
+    private CompactTree(int leafNum, int root, int[] parent, int[][] children, double[] branchLength, String[] leafNames) {
+        this.leafNum = leafNum;
+        this.nodeNum = parent.length;
+        this.root = root;
+        this.parent = parent;
+        this.children = children;
+        this.branchLength = branchLength;
+        this.leafNames = leafNames;
+        leafCount = new int[nodeNum];
+        leafOrder = new int[leafNum];
+        lo = new int[nodeNum];
+        hi = new int[nodeNum];
+        postOrder = new int[nodeNum];
+
+        // iterative post-order: a node is emitted when its next child index reaches the child count
+        int[] stack = new int[nodeNum];
+        int[] next = new int[nodeNum];
+        int top = 0, u, c, heavy, k = 0, p = 0;
+        int[] ch;
+        stack[0] = root;
+        while (top >= 0) {
+            u = stack[top];
+            if (children[u] != null && next[u] < children[u].length) {
+                stack[++top] = children[u][next[u]++];
+                continue;
+            }
+            top--;
+            postOrder[p++] = u;
+            if (children[u] == null) {
+                leafOrder[k] = u;
+                lo[u] = k;
+                k++;
+                hi[u] = k;
+                leafCount[u] = 1;
+            } else {
+                ch = children[u];
+                heavy = 0;
+                lo[u] = Integer.MAX_VALUE;
+                for (int j = 0; j < ch.length; j++) {
+                    c = ch[j];
+                    leafCount[u] += leafCount[c];
+                    lo[u] = Math.min(lo[u], lo[c]);
+                    hi[u] = Math.max(hi[u], hi[c]);
+                    if (leafCount[c] > leafCount[ch[heavy]]) {
+                        heavy = j;
+                    }
+                }
+                c = ch[heavy];
+                ch[heavy] = ch[ch.length - 1];
+                ch[ch.length - 1] = c;
+            }
+        }
+    }
+
+    private int index(Node node) {
+        return node.isLeaf() ? node.getNumber() : leafNum + node.getNumber();
+    }
+
+    public boolean isLeaf(int u) {
+        return u < leafNum;
+    }
+
+    /**
+     * @param weighted If true the branch lengths are used, otherwise every edge has weight 1.
+     * @return The weights of the edges leading to the nodes (0 for the root).
+     */
+    public double[] getEdgeWeights(boolean weighted) {
+        double[] weight = new double[nodeNum];
+        for (int u = 0; u < nodeNum; u++) {
+            if (u != root) {
+                weight[u] = weighted ? branchLength[u] : 1.0;
+            }
+        }
+        return weight;
+    }
+
+    /**
+     * @param weighted If true the branch lengths are summed, otherwise the edges are counted.
+     * @return The distances of all nodes from the root.
+     */
+    public double[] getDepths(boolean weighted) {
+        double[] weight = getEdgeWeights(weighted);
+        double[] depth = new double[nodeNum];
+        int[] stack = new int[nodeNum];
+        int top = 0, u;
+        stack[0] = root;
+        while (top >= 0) {
+            u = stack[top--];
+            depth[u] = (u == root) ? 0.0 : depth[parent[u]] + weight[u];
+            if (children[u] != null) {
+                for (int c : children[u]) {
+                    stack[++top] = c;
+                }
+            }
+        }
+        return depth;
+    }
+
+    /**
+     * Maps the identifiers of {@code idGroup} to the leaves of this tree.
+     *
+     * @param idGroup The leaf labels.
+     * @return The leaf index of every identifier of {@code idGroup}.
+     * @throws IllegalArgumentException if a leaf label is not present in {@code idGroup}.
+     */
+    public int[] getLeafIndexes(IdGroup idGroup) {
+        int[] leafOfId = new int[idGroup.getIdCount()];
+        int id;
+        for (int i = 0; i < leafNum; i++) {
+            id = idGroup.whichIdNumber(leafNames[i]);
+            if (id < 0) {
+                throw new IllegalArgumentException("IdGroup does not contain leaf " + leafNames[i]);
+            }
+            leafOfId[id] = i;
+        }
+        return leafOfId;
+    }
+
+    /**
+     * Restricts the tree to a subset of its leaves in O(n) time. Nodes left with one child are
+     * suppressed and the lengths of the merged edges are summed; if the root is left with one child,
+     * the edges above the lowest node with two or more children are dropped.
+     *
+     * @param leaves The indexes of the leaves to keep, in increasing order. Leaf i of the
+     *               restricted tree is {@code leaves[i]}.
+     * @return The restricted tree; its internal nodes are numbered in post-order.
+     * @throws IllegalArgumentException if no leaf is kept or an index is out of range.
+     */
+    public CompactTree restrict(int[] leaves) {
+        if (leaves.length == 0) {
+            throw new IllegalArgumentException("No leaves to keep");
+        }
+        int[] rep = new int[nodeNum];
+        double[] len = new double[nodeNum];
+        Arrays.fill(rep, -1);
+        for (int i = 0; i < leaves.length; i++) {
+            if (leaves[i] < 0 || leaves[i] >= leafNum || (i > 0 && leaves[i] <= leaves[i - 1])) {
+                throw new IllegalArgumentException("Invalid leaf index " + leaves[i]);
+            }
+            rep[leaves[i]] = i;
+        }
+
+        int maxNodes = 2 * leaves.length - 1;
+        int[] newParent = new int[maxNodes];
+        int[][] newChildren = new int[maxNodes][];
+        double[] newLength = new double[maxNodes];
+        String[] newNames = new String[leaves.length];
+        for (int i = 0; i < leaves.length; i++) {
+            newNames[i] = leafNames[leaves[i]];
+        }
+        int created = leaves.length;
+        int[] kept = new int[nodeNum];
+        int u, keptNum, v;
+        for (int i = 0; i < nodeNum; i++) {
+            u = postOrder[i];
+            if (children[u] == null) {
+                len[u] = branchLength[u];
+                continue;
+            }
+            keptNum = 0;
+            for (int c : children[u]) {
+                if (rep[c] >= 0) {
+                    kept[keptNum++] = c;
+                }
+            }
+            if (keptNum == 1) {
+                rep[u] = rep[kept[0]];
+                len[u] = len[kept[0]] + branchLength[u];
+            } else if (keptNum > 1) {
+                v = created++;
+                int[] ch = new int[keptNum];
+                for (int j = 0; j < keptNum; j++) {
+                    ch[j] = rep[kept[j]];
+                    newParent[ch[j]] = v;
+                    newLength[ch[j]] = len[kept[j]];
+                }
+                newChildren[v] = ch;
+                rep[u] = v;
+                len[u] = branchLength[u];
+            }
+        }
+        int newRoot = rep[root];
+        newParent[newRoot] = -1;
+        newLength[newRoot] = 0.0;
+        if (created < maxNodes) {
+            newParent = Arrays.copyOf(newParent, created);
+            newChildren = Arrays.copyOf(newChildren, created);
+            newLength = Arrays.copyOf(newLength, created);
+        }
+        return new CompactTree(leaves.length, newRoot, newParent, newChildren, newLength, newNames);
+    }
+
+    /**
+     * @return A {@code Tree} with the topology, branch lengths and leaf labels of this tree.
+     */
+    public Tree toTree() {
+        Node[] nodes = new Node[nodeNum];
+        int u;
+        for (int i = 0; i < nodeNum; i++) {
+            u = postOrder[i];
+            nodes[u] = new SimpleNode();
+            nodes[u].setBranchLength(branchLength[u]);
+            if (isLeaf(u)) {
+                nodes[u].setIdentifier(new Identifier(leafNames[u]));
+            } else {
+                for (int c : children[u]) {
+                    nodes[u].addChild(nodes[c]);
+                }
+            }
+        }
+        return new SimpleTree(nodes[root]);
+    }
+}
@@ -0,0 +1,400 @@
+/** This file is part of TreeCmp, a tool for comparing phylogenetic trees
+    using the Matching Split distance and other metrics.
+    Copyright (C) 2011,  Damian Bogdanowicz
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>. */
+
+package treecmp.common;
+
+import pal.tree.Tree;
+
+/**
+ * L2 cophenetic distance between two rooted trees computed without enumerating leaf pairs.
+ *
+ * <p>The cophenetic vector of a tree consists of the depths of the LCAs of all leaf pairs and of
+ * the depths of all leaves. The squared distance is expanded as
+ * <pre>
+ *     sum (a - b)^2 = sum a^2 + sum b^2 - 2 sum a*b
+ * </pre>
+ * The per-tree sums are obtained in O(n) from the number of leaf pairs whose LCA is a given node.
+ * The cross term over leaf pairs is rewritten as
+ * <pre>
+ *     sum_{u in T1} w1(u) * sum_{x,y below u} depth2(lca2(x,y))
+ * </pre>
+ * and the inner sums for all nodes u of the first tree are maintained by the small-to-large
+ * technique (light subtrees are reinserted, the heavy one is kept). Inserting a leaf requires a
+ * path-to-root query and update in the second tree, done by heavy-path decomposition over a
+ * Fenwick tree, so the whole computation takes O(n log<sup>3</sup> n) time and O(n) memory.
+ *
+ * <p>The topological variant works on exact integer arithmetic. The weighted variant works on
+ * doubles, hence its result is subject to cancellation of order
+ * {@code ulp(sum a^2 + sum b^2)} and is clamped at zero.
+ */
+public class CopheneticDist {
+
+    private CopheneticDist() {
+    }
+
+    /**
+     * Calculates the L2 cophenetic distance between two rooted trees with node depths measured
+     * by the number of edges from the root.
+     *
+     * @param t1 The first tree.
+     * @param t2 The second tree with the same leaf set.
+     * @return The L2 cophenetic distance.
+     */
+    public static double getL2Dist(Tree t1, Tree t2) {
+        CompactTree c1 = new CompactTree(t1);
+        CompactTree c2 = new CompactTree(t2);
+        int[] leafMap = c2.getLeafIndexes(TaxonRegistry.getShared().getLeafIdGroup(t1));
+        double[] depth1 = c1.getDepths(false);
+        double[] depth2 = c2.getDepths(false);
+
+        long sumSq = getPairDepthSqSumLong(c1, depth1) + getPairDepthSqSumLong(c2, depth2);
+        sumSq -= 2 * getCrossTermLong(c1, c2, leafMap);
+
+        long diff;
+        for (int i = 0; i < c1.leafNum; i++) {
+            diff = (long) depth1[i] - (long) depth2[leafMap[i]];
+            sumSq += diff * diff;
+        }
+        return Math.sqrt((double) sumSq);
+    }
+
+    /**
+     * Calculates the L2 cophenetic distance between two rooted trees with node depths measured
+     * by the sum of branch lengths from the root.
+     *
+     * @param t1 The first tree.
+     * @param t2 The second tree with the same leaf set.
+     * @return The L2 cophenetic distance.
+     */
+    public static double getWeightedL2Dist(Tree t1, Tree t2) {
+        CompactTree c1 = new CompactTree(t1);
+        CompactTree c2 = new CompactTree(t2);
+        int[] leafMap = c2.getLeafIndexes(TaxonRegistry.getShared().getLeafIdGroup(t1));
+        double[] depth1 = c1.getDepths(true);
+        double[] depth2 = c2.getDepths(true);
+
+        double sumSq = getPairDepthSqSum(c1, depth1) + getPairDepthSqSum(c2, depth2);
+        sumSq -= 2.0 * getCrossTerm(c1, c2, leafMap);
+
+        double diff;
+        for (int i = 0; i < c1.leafNum; i++) {
+            diff = depth1[i] - depth2[leafMap[i]];
+            sumSq += diff * diff;
+        }
+        return Math.sqrt(Math.max(sumSq, 0.0));
+    }
+
+    /**
+     * Sum over all leaf pairs x,y of the first tree of depth1(lca1(x,y)) * depth2(lca2(x,y)) with
+     * depths measured by the number of edges.
+     *
+     * @param leafMap The leaf of {@code c2} for every leaf of {@code c1}.
+     */
+    static long getCrossTermLong(CompactTree c1, CompactTree c2, int[] leafMap) {
+        LongPathCounter counter = new LongPathCounter(c2, leafMap);
+        traverseSmallToLarge(c1, c1.getEdgeWeights(false), counter);
+        return counter.cross;
+    }
+
+    /**
+     * Sum over all leaf pairs x,y of the first tree of depth1(lca1(x,y)) * depth2(lca2(x,y)) with
+     * depths measured by branch lengths.
+     *
+     * @param leafMap The leaf of {@code c2} for every leaf of {@code c1}.
+     */
+    static double getCrossTerm(CompactTree c1, CompactTree c2, int[] leafMap) {
+        DoublePathCounter counter = new DoublePathCounter(c2, leafMap);
+        traverseSmallToLarge(c1, c1.getEdgeWeights(true), counter);
+        return counter.cross;
+    }
+
+    /** Number of leaf pairs whose LCA is the internal node u. */
+    static long getLcaPairCount(CompactTree c, int u) {
+        long s = c.leafCount[u];
+        long pairs = s * s;
+        for (int ch : c.children[u]) {
+            pairs -= (long) c.leafCount[ch] * c.leafCount[ch];
+        }
+        return pairs / 2;
+    }
+
+    /** Sum over all leaf pairs of the squared depth of their LCA. */
+    static long getPairDepthSqSumLong(CompactTree c, double[] depth) {
+        long sum = 0, d;
+        for (int u = c.leafNum; u < c.nodeNum; u++) {
+            d = (long) depth[u];
+            sum += getLcaPairCount(c, u) * d * d;
+        }
+        return sum;
+    }
+
+    /** Sum over all leaf pairs of the squared depth of their LCA. */
+    static double getPairDepthSqSum(CompactTree c, double[] depth) {
+        double sum = 0.0;
+        for (int u = c.leafNum; u < c.nodeNum; u++) {
+            sum += getLcaPairCount(c, u) * depth[u] * depth[u];
+        }
+        return sum;
+    }
+
+    /**
+     * Visits all nodes of {@code c1} so that, when node u is collected, the counter holds exactly
+     * the leaves below u. Iterative version of the recursive small-to-large scheme.
+     */
+    private static void traverseSmallToLarge(CompactTree c1, double[] weight1, PathCounter counter) {
+        int nodeNum = c1.nodeNum;
+        int[] stackNode = new int[nodeNum];
+        int[] stackNext = new int[nodeNum];
+        boolean[] stackKeep = new boolean[nodeNum];
+        int top = 0;
+        stackNode[0] = c1.root;
+        stackNext[0] = 0;
+        stackKeep[0] = true;
+
+        int u, c, childCount;
+        int[] children;
+        while (top >= 0) {
+            u = stackNode[top];
+            children = c1.children[u];
+            childCount = (children == null) ? 0 : children.length;
+            if (stackNext[top] < childCount) {
+                // light children first, the heavy child is the last one
+                c = children[stackNext[top]];
+                stackNext[top]++;
+                top++;
+                stackNode[top] = c;
+                stackNext[top] = 0;
+                stackKeep[top] = (c == children[childCount - 1]);
+                continue;
+            }
+            if (childCount == 0) {
+                counter.insert(u);
+            } else {
+                for (int j = 0; j < childCount - 1; j++) {
+                    c = children[j];
+                    for (int k = c1.lo[c]; k < c1.hi[c]; k++) {
+                        counter.insert(c1.leafOrder[k]);
+                    }
+                }
+            }
+            counter.collect(weight1[u]);
+            if (!stackKeep[top]) {
+                for (int k = c1.lo[u]; k < c1.hi[u]; k++) {
+                    counter.remove(c1.leafOrder[k]);
+                }
+                counter.clear();
+            }
+            top--;
+        }
+    }
+
+    /**
+     * Maintains, for a set S of leaves of the first tree, the sum of depth2(lca2(x,y)) over all
+     * pairs in S, and accumulates the cross term.
+     */
+    private interface PathCounter {
+
+        void insert(int t1Leaf);
+
+        void remove(int t1Leaf);
+
+        /** Resets the pair sum after all leaves have been removed. */
+        void clear();
+
+        /** Adds {@code w1} times the current pair sum to the cross term. */
+        void collect(double w1);
+    }
+
+    /**
+     * Heavy-path decomposition of the second tree. Every node gets a position such that heavy
+     * paths occupy contiguous ranges, so a path to the root splits into O(log n) ranges.
+     */
+    private static class HeavyPaths {
+
+        final int[] pos;
+        final int[] head;
+        final int[] parent;
+        final int[] t2Leaf;
+        /** prefix sums of the node weights by position (1-based) */
+        final double[] prefixWeight;
+
+        HeavyPaths(CompactTree c2, int[] t1ToT2Leaf, boolean weighted) {
+            int n = c2.nodeNum;
+            double[] weight = c2.getEdgeWeights(weighted);
+            pos = new int[n];
+            head = new int[n];
+            parent = c2.parent;
+            t2Leaf = t1ToT2Leaf;
+            prefixWeight = new double[n + 1];
+
+            int[] stack = new int[n];
+            int top = 0, u, p = 1;
+            int[] ch;
+            stack[0] = c2.root;
+            head[c2.root] = c2.root;
+            while (top >= 0) {
+                u = stack[top--];
+                pos[u] = p;
+                prefixWeight[p] = prefixWeight[p - 1] + weight[u];
+                p++;
+                ch = c2.children[u];
+                if (ch == null) {
+                    continue;
+                }
+                // the heavy child (last) is pushed last so it directly follows u
+                for (int j = 0; j < ch.length; j++) {
+                    head[ch[j]] = (j == ch.length - 1) ? head[u] : ch[j];
+                    stack[++top] = ch[j];
+                }
+            }
+        }
+    }
+
+    private static class LongPathCounter implements PathCounter {
+
+        private final HeavyPaths hp;
+        private final long[] b1;
+        private final long[] b2;
+        private long pairSum = 0;
+        long cross = 0;
+
+        LongPathCounter(CompactTree c2, int[] leafMap) {
+            hp = new HeavyPaths(c2, leafMap, false);
+            b1 = new long[c2.nodeNum + 2];
+            b2 = new long[c2.nodeNum + 2];
+        }
+
+        private long w(int p) {
+            return (long) hp.prefixWeight[p];
+        }
+
+        private void update(long[] b, int p, long val) {
+            for (; p < b.length; p += p & (-p)) {
+                b[p] += val;
+            }
+        }
+
+        private long prefix(int p) {
+            long s1 = 0, s2 = 0;
+            for (int i = p; i > 0; i -= i & (-i)) {
+                s1 += b1[i];
+                s2 += b2[i];
+            }
+            return s1 * w(p) - s2;
+        }
+
+        private void rangeAdd(int l, int r, long c) {
+            update(b1, l, c);
+            update(b2, l, c * w(l - 1));
+            update(b1, r + 1, -c);
+            update(b2, r + 1, -c * w(r));
+        }
+
+        private void addPath(int t1Leaf, long c, boolean query) {
+            int v = hp.t2Leaf[t1Leaf], h;
+            while (v != -1) {
+                h = hp.head[v];
+                if (query) {
+                    pairSum += prefix(hp.pos[v]) - prefix(hp.pos[h] - 1);
+                }
+                rangeAdd(hp.pos[h], hp.pos[v], c);
+                v = hp.parent[h];
+            }
+        }
+
+        public void insert(int t1Leaf) {
+            addPath(t1Leaf, 1, true);
+        }
+
+        public void remove(int t1Leaf) {
+            addPath(t1Leaf, -1, false);
+        }
+
+        public void clear() {
+            pairSum = 0;
+        }
+
+        public void collect(double w1) {
+            cross += (long) w1 * pairSum;
+        }
+    }
+
+    private static class DoublePathCounter implements PathCounter {
+
+        private final HeavyPaths hp;
+        private final double[] b1;
+        private final double[] b2;
+        private double pairSum = 0.0;
+        double cross = 0.0;
+
+        DoublePathCounter(CompactTree c2, int[] leafMap) {
+            hp = new HeavyPaths(c2, leafMap, true);
+            b1 = new double[c2.nodeNum + 2];
+            b2 = new double[c2.nodeNum + 2];
+        }
+
+        private void update(double[] b, int p, double val) {
+            for (; p < b.length; p += p & (-p)) {
+                b[p] += val;
+            }
+        }
+
+        private double prefix(int p) {
+            double s1 = 0.0, s2 = 0.0;
+            for (int i = p; i > 0; i -= i & (-i)) {
+                s1 += b1[i];
+                s2 += b2[i];
+            }
+            return s1 * hp.prefixWeight[p] - s2;
+        }
+
+        private void rangeAdd(int l, int r, double c) {
+            update(b1, l, c);
+            update(b2, l, c * hp.prefixWeight[l - 1]);
+            update(b1, r + 1, -c);
+            update(b2, r + 1, -c * hp.prefixWeight[r]);
+        }
+
+        private void addPath(int t1Leaf, double c, boolean query) {
+            int v = hp.t2Leaf[t1Leaf], h;
+            while (v != -1) {
+                h = hp.head[v];
+                if (query) {
+                    pairSum += prefix(hp.pos[v]) - prefix(hp.pos[h] - 1);
+                }
+                rangeAdd(hp.pos[h], hp.pos[v], c);
+                v = hp.parent[h];
+            }
+        }
+
+        public void insert(int t1Leaf) {
+            addPath(t1Leaf, 1.0, true);
+        }
+
+        public void remove(int t1Leaf) {
+            addPath(t1Leaf, -1.0, false);
+        }
+
+        public void clear() {
+            pairSum = 0.0;
+        }
+
+        public void collect(double w1) {
+            cross += w1 * pairSum;
+        }
+    }
+}
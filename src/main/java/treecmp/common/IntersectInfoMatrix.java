@@ -20,7 +20,6 @@ package treecmp.common;
 import pal.misc.IdGroup;
 import pal.tree.Node;
 import pal.tree.Tree;
-import pal.tree.TreeUtils;
 
 import java.util.ArrayList;
 import java.util.BitSet;
@@ -63,8 +62,8 @@ public class IntersectInfoMatrix {
         intT2Num = t2.getInternalNodeCount();
         extT2Num = t2.getExternalNodeCount();
 
-        alias1 = TreeUtils.mapExternalIdentifiers(idGroup, t1);
-        alias2 = TreeUtils.mapExternalIdentifiers(idGroup, t2);
+        alias1 = TaxonRegistry.getShared().mapExternalIdentifiers(idGroup, t1);
+        alias2 = TaxonRegistry.getShared().mapExternalIdentifiers(idGroup, t2);
 
         intSize = new short[intT1Num][intT2Num];
         intT1toLeafT2 = new BitSet[intT1Num];
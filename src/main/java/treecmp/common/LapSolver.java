@@ -850,4 +850,50 @@ public class LapSolver {
   return lapcost;
 }
 
+    /**
+     * Lower bound of the optimal cost of {@link #lapShort}: the cost of the dual solution obtained by
+     * subtracting the row minima and then the column minima of the reduced matrix. It needs
+     * O(dim<sup>2</sup>) time, so a query only asking whether the cost exceeds a threshold can often
+     * be answered without solving the problem.
+     */
+    public static int lowerBoundShort(int dim, short assigncost[][]) {
+        int[] u = new int[dim];
+        int bound = 0;
+        for (int i = 0; i < dim; i++) {
+            int min = BIG;
+            for (int j = 0; j < dim; j++) {
+                min = Math.min(min, assigncost[i][j]);
+            }
+            u[i] = min;
+            bound += min;
+        }
+        for (int j = 0; j < dim; j++) {
+            int min = BIG;
+            for (int i = 0; i < dim; i++) {
+                min = Math.min(min, assigncost[i][j] - u[i]);
+            }
+            bound += min;
+        }
+        return bound;
+    }
+
+    /**
+     * Upper bound of the optimal cost of {@link #lapShort}: the cost of the assignment which gives
+     * every row, in order, its cheapest free column. It needs O(dim<sup>2</sup>) time.
+     */
+    public static int greedyShort(int dim, short assigncost[][]) {
+        boolean[] used = new boolean[dim];
+        int cost = 0;
+        for (int i = 0; i < dim; i++) {
+            int best = -1;
+            for (int j = 0; j < dim; j++) {
+                if (!used[j] && (best < 0 || assigncost[i][j] < assigncost[i][best])) {
+                    best = j;
+                }
+            }
+            used[best] = true;
+            cost += assigncost[i][best];
+        }
+        return cost;
+    }
 }
@@ -0,0 +1,107 @@
+/** This file is part of TreeCmp, a tool for comparing phylogenetic trees
+    using the Matching Split distance and other metrics.
+    Copyright (C) 2011,  Damian Bogdanowicz
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>. */
+
+package treecmp.common;
+
+/**
+ * Constant time lowest common ancestor queries on a {@link CompactTree}.
+ *
+ * <p>The tree is stored as an Euler tour with a sparse table of range minima over the node levels,
+ * which takes O(n log n) time and memory to build. The structure is read-only after construction,
+ * so one oracle may be queried by many threads.
+ */
+public class LcaOracle {
+
+    private final int[] first;
+    private final int[] level;
+    private final int[][] sparse;
+    private final int[] log2;
+
+    public LcaOracle(CompactTree t) {
+        int n = t.nodeNum;
+        int tourLen = 2 * n - 1;
+        int[] tour = new int[tourLen];
+        first = new int[n];
+        level = new int[n];
+
+        // iterative Euler tour: a node is written when entered and after each of its children
+        int[] stackNode = new int[n];
+        int[] stackNext = new int[n];
+        int top = 0, k = 0, u, c;
+        stackNode[0] = t.root;
+        stackNext[0] = 0;
+        first[t.root] = 0;
+        tour[k++] = t.root;
+        while (top >= 0) {
+            u = stackNode[top];
+            if (t.children[u] != null && stackNext[top] < t.children[u].length) {
+                c = t.children[u][stackNext[top]++];
+                level[c] = level[u] + 1;
+                first[c] = k;
+                tour[k++] = c;
+                top++;
+                stackNode[top] = c;
+                stackNext[top] = 0;
+            } else {
+                top--;
+                if (top >= 0) {
+                    tour[k++] = stackNode[top];
+                }
+            }
+        }
+
+        log2 = new int[tourLen + 1];
+        for (int i = 2; i <= tourLen; i++) {
+            log2[i] = log2[i / 2] + 1;
+        }
+        sparse = new int[log2[tourLen] + 1][];
+        sparse[0] = tour;
+        int len, a, b;
+        for (int j = 1; j < sparse.length; j++) {
+            len = tourLen - (1 << j) + 1;
+            sparse[j] = new int[len];
+            for (int i = 0; i < len; i++) {
+                a = sparse[j - 1][i];
+                b = sparse[j - 1][i + (1 << (j - 1))];
+                sparse[j][i] = (level[a] <= level[b]) ? a : b;
+            }
+        }
+    }
+
+    /**
+     * @return The lowest common ancestor of nodes {@code u} and {@code v}.
+     */
+    public int getLca(int u, int v) {
+        int l = first[u], r = first[v];
+        if (l > r) {
+            int tmp = l;
+            l = r;
+            r = tmp;
+        }
+        int j = log2[r - l + 1];
+        int a = sparse[j][l];
+        int b = sparse[j][r - (1 << j) + 1];
+        return (level[a] <= level[b]) ? a : b;
+    }
+
+    /**
+     * @return The number of edges between node {@code u} and the root.
+     */
+    public int getLevel(int u) {
+        return level[u];
+    }
+}
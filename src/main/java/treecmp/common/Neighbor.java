@@ -0,0 +1,114 @@
+/** This file is part of TreeCmp, a tool for comparing phylogenetic trees
+    using the Matching Split distance and other metrics.
+    Copyright (C) 2011,  Damian Bogdanowicz
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>. */
+
+package treecmp.common;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * An indexed tree found by a search, with its distance from the query.
+ *
+ * <p>Neighbors are ordered by distance and then by index.</p>
+ */
+public class Neighbor implements Comparable<Neighbor> {
+
+    private final int index;
+    private final double distance;
+
+    public Neighbor(int index, double distance) {
+        this.index = index;
+        this.distance = distance;
+    }
+
+    /**
+     * @return The index of the tree in the order of insertion.
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    public double getDistance() {
+        return distance;
+    }
+
+    public int compareTo(Neighbor o) {
+        int c = Double.compare(distance, o.distance);
+        return (c != 0) ? c : Integer.compare(index, o.index);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return (o instanceof Neighbor) && compareTo((Neighbor) o) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * index + Double.hashCode(distance);
+    }
+
+    public String toString() {
+        return index + ": " + distance;
+    }
+
+    /**
+     * The k nearest neighbors seen so far, kept in a bounded max-heap.
+     */
+    public static class Collector {
+
+        private final int k;
+        private final PriorityQueue<Neighbor> heap;
+
+        public Collector(int k) {
+            this.k = k;
+            this.heap = new PriorityQueue<Neighbor>(Math.max(k, 1), Collections.<Neighbor>reverseOrder());
+        }
+
+        public void offer(int index, double distance) {
+            if (k <= 0) {
+                return;
+            }
+            if (heap.size() < k) {
+                heap.add(new Neighbor(index, distance));
+            } else {
+                Neighbor worst = heap.peek();
+                if (distance < worst.distance || (distance == worst.distance && index < worst.index)) {
+                    heap.poll();
+                    heap.add(new Neighbor(index, distance));
+                }
+            }
+        }
+
+        /**
+         * @return The distance of the k-th neighbor or positive infinity if fewer were offered.
+         */
+        public double getBound() {
+            return (heap.size() < k) ? Double.POSITIVE_INFINITY : heap.peek().distance;
+        }
+
+        /**
+         * @return The collected neighbors ordered by distance.
+         */
+        public List<Neighbor> getNeighbors() {
+            List<Neighbor> neighbors = new ArrayList<Neighbor>(heap);
+            Collections.sort(neighbors);
+            return neighbors;
+        }
+    }
+}
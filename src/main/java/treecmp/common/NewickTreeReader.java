@@ -0,0 +1,162 @@
+/** This file is part of TreeCmp, a tool for comparing phylogenetic trees
+    using the Matching Split distance and other metrics.
+    Copyright (C) 2011,  Damian Bogdanowicz
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>. */
+
+package treecmp.common;
+
+import pal.io.InputSource;
+import pal.tree.ReadTree;
+import pal.tree.Tree;
+import pal.tree.TreeParseException;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Lazy reader of a file of Newick trees, each terminated by ';', which can follow a file that is
+ * still being written.
+ *
+ * <p>As an iterator it reads the file in chunks and parses one tree at a time, so e.g.
+ * {@link treecmp.metrics.StreamingComparison} can process files larger than the heap; the
+ * iterator ends at the current end of the file. {@link #readAvailable()} returns the trees
+ * completed since the previous call: the text of a tree whose ';' has not been written yet is kept
+ * until a later call, so a running analysis can be monitored by calling it periodically.
+ * Semicolons in comments ([...]) do not end a tree, and comments before a tree, e.g. the
+ * {@code [&R]} of rooted trees, are skipped.</p>
+ */
+public class NewickTreeReader implements Iterator<Tree>, Closeable {
+
+    private static final int CHUNK_SIZE = 1 << 16;
+
+    private final RandomAccessFile file;
+    private final ArrayDeque<Tree> ready;
+    // text read from the file after the last complete tree
+    private byte[] pending;
+    private int pendingLength;
+    private int scanned;
+    private boolean inComment;
+    private int treeCount;
+
+    public NewickTreeReader(File file) throws IOException {
+        this.file = new RandomAccessFile(file, "r");
+        this.ready = new ArrayDeque<Tree>();
+        this.pending = new byte[CHUNK_SIZE];
+    }
+
+    /**
+     * @return The number of trees returned so far.
+     */
+    public int getTreeCount() {
+        return treeCount;
+    }
+
+    /**
+     * Reads the trees completed in the file since the previous call.
+     *
+     * @throws IOException if the file cannot be read or a tree cannot be parsed.
+     */
+    public List<Tree> readAvailable() throws IOException {
+        while (readChunk() > 0) {
+            // all available text is read
+        }
+        List<Tree> trees = new ArrayList<Tree>(ready);
+        treeCount += ready.size();
+        ready.clear();
+        return trees;
+    }
+
+    /**
+     * @throws UncheckedIOException if the file cannot be read or a tree cannot be parsed.
+     */
+    public boolean hasNext() {
+        try {
+            while (ready.isEmpty()) {
+                if (readChunk() == 0) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public Tree next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        treeCount++;
+        return ready.poll();
+    }
+
+    public void close() throws IOException {
+        file.close();
+    }
+
+    /**
+     * Reads at most {@link #CHUNK_SIZE} bytes and parses the trees completed by them.
+     *
+     * @return The number of bytes read.
+     */
+    private int readChunk() throws IOException {
+        if (pending.length - pendingLength < CHUNK_SIZE) {
+            pending = Arrays.copyOf(pending, Math.max(2 * pending.length, pendingLength + CHUNK_SIZE));
+        }
+        int read = file.read(pending, pendingLength, CHUNK_SIZE);
+        if (read <= 0) {
+            return 0;
+        }
+        pendingLength += read;
+        int start = 0;
+        for (int i = scanned; i < pendingLength; i++) {
+            byte c = pending[i];
+            if (inComment) {
+                inComment = (c != ']');
+            } else if (c == '[') {
+                inComment = true;
+            } else if (c == ';') {
+                ready.add(parse(new String(pending, start, i + 1 - start, StandardCharsets.UTF_8)));
+                start = i + 1;
+            }
+        }
+        System.arraycopy(pending, start, pending, 0, pendingLength - start);
+        pendingLength -= start;
+        scanned = pendingLength;
+        return read;
+    }
+
+    private Tree parse(String newick) throws IOException {
+        try {
+            String text = newick.trim();
+            while (text.startsWith("[") && text.indexOf(']') > 0) {
+                text = text.substring(text.indexOf(']') + 1).trim();
+            }
+            return new ReadTree(InputSource.openString(text));
+        } catch (TreeParseException e) {
+            throw new IOException("Cannot parse tree " + (treeCount + ready.size() + 1) + ": " + e.getMessage());
+        }
+    }
+}
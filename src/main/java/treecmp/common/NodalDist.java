@@ -0,0 +1,234 @@
+/** This file is part of TreeCmp, a tool for comparing phylogenetic trees
+    using the Matching Split distance and other metrics.
+    Copyright (C) 2011,  Damian Bogdanowicz
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>. */
+
+package treecmp.common;
+
+import pal.tree.Tree;
+
+import java.util.stream.IntStream;
+
+/**
+ * Nodal (path-length) distances between trees computed without n&times;n matrices.
+ *
+ * <p>The path length between leaves i and j is {@code d(i) + d(j) - 2 d(lca(i,j))}, where d is the
+ * distance from the root. The streaming methods compute the path-length vectors row by row from two
+ * {@link LcaOracle}s and the depth arrays, in parallel by blocks of rows, so they need O(n log n)
+ * memory and O(n<sup>2</sup>) time.
+ *
+ * <p>The L2 distances are also available exactly in O(n log<sup>3</sup> n) time. With
+ * {@code e(i) = d1(i) - d2(i)} and {@code q(i,j) = d1(lca1(i,j)) - d2(lca2(i,j))} the squared
+ * distance over leaf pairs i &lt; j expands to
+ * <pre>
+ *     (n - 2) sum e^2 + (sum e)^2 - 4 sum (e(i) + e(j)) q(i,j) + 4 sum q(i,j)^2
+ * </pre>
+ * where the last sum is the pair part of the squared cophenetic distance (see {@link CopheneticDist})
+ * and the middle one decomposes into per-tree sums over nodes.
+ */
+public class NodalDist {
+
+    /** Number of consecutive rows processed by one task of the streaming methods. */
+    private static final int ROW_BLOCK = 64;
+
+    private NodalDist() {
+    }
+
+    /**
+     * Exact L2 nodal distance with path lengths measured by the number of edges.
+     *
+     * @param t1 The first tree.
+     * @param t2 The second tree with the same leaf set.
+     * @return The L2 distance between the path-length vectors.
+     */
+    public static double getL2Dist(Tree t1, Tree t2) {
+        PairTerms terms = new PairTerms(t1, t2, false);
+        long n = terms.n;
+        long sumSq = (n - 2) * terms.sumE2Long + terms.sumELong * terms.sumELong
+                - 4 * terms.sumEqLong + 4 * terms.sumQ2Long;
+        return Math.sqrt((double) sumSq);
+    }
+
+    /**
+     * Exact L2 distance between the splitted path-length matrices, i.e. the matrices of the number
+     * of edges between leaf i and the LCA of leaves i and j (over all ordered pairs).
+     *
+     * @param t1 The first tree.
+     * @param t2 The second tree with the same leaf set.
+     * @return The L2 distance between the splitted path-length matrices.
+     */
+    public static double getSplittedL2Dist(Tree t1, Tree t2) {
+        PairTerms terms = new PairTerms(t1, t2, false);
+        long n = terms.n;
+        long sumSq = (n - 1) * terms.sumE2Long - 2 * terms.sumEqLong + 2 * terms.sumQ2Long;
+        return Math.sqrt((double) sumSq);
+    }
+
+    /**
+     * Exact L2 nodal distance with path lengths measured by branch lengths. The result is subject to
+     * floating point cancellation for nearly identical trees, see {@link CopheneticDist}.
+     *
+     * @param t1 The first tree.
+     * @param t2 The second tree with the same leaf set.
+     * @return The L2 distance between the path-length vectors.
+     */
+    public static double getWeightedL2Dist(Tree t1, Tree t2) {
+        PairTerms terms = new PairTerms(t1, t2, true);
+        double n = terms.n;
+        double sumSq = (n - 2) * terms.sumE2 + terms.sumE * terms.sumE
+                - 4.0 * terms.sumEq + 4.0 * terms.sumQ2;
+        return Math.sqrt(Math.max(sumSq, 0.0));
+    }
+
+    /**
+     * L1 nodal distance computed by streaming over leaf pairs.
+     *
+     * @param weighted If true path lengths are sums of branch lengths, otherwise numbers of edges.
+     * @return The sum of absolute path-length differences over all leaf pairs.
+     */
+    public static double getStreamingL1Dist(Tree t1, Tree t2, boolean weighted) {
+        return getStreamingDist(t1, t2, weighted, false);
+    }
+
+    /**
+     * L2 nodal distance computed by streaming over leaf pairs.
+     *
+     * @param weighted If true path lengths are sums of branch lengths, otherwise numbers of edges.
+     * @return The L2 distance between the path-length vectors.
+     */
+    public static double getStreamingL2Dist(Tree t1, Tree t2, boolean weighted) {
+        return Math.sqrt(getStreamingDist(t1, t2, weighted, true));
+    }
+
+    private static double getStreamingDist(Tree t1, Tree t2, boolean weighted, boolean squared) {
+        CompactTree c1 = new CompactTree(t1);
+        CompactTree c2 = new CompactTree(t2);
+        int[] leafMap = c2.getLeafIndexes(TaxonRegistry.getShared().getLeafIdGroup(t1));
+        double[] depth1 = c1.getDepths(weighted);
+        double[] depth2 = c2.getDepths(weighted);
+        LcaOracle lca1 = new LcaOracle(c1);
+        LcaOracle lca2 = new LcaOracle(c2);
+
+        int n = c1.leafNum;
+        int blockNum = (n + ROW_BLOCK - 1) / ROW_BLOCK;
+        double[] partial = new double[blockNum];
+        IntStream.range(0, blockNum).parallel().forEach(b -> {
+            double sum = 0.0, p1, p2, diff;
+            int a, end = Math.min(n, (b + 1) * ROW_BLOCK);
+            for (int i = b * ROW_BLOCK; i < end; i++) {
+                a = leafMap[i];
+                for (int j = i + 1; j < n; j++) {
+                    p1 = depth1[i] + depth1[j] - 2.0 * depth1[lca1.getLca(i, j)];
+                    p2 = depth2[a] + depth2[leafMap[j]] - 2.0 * depth2[lca2.getLca(a, leafMap[j])];
+                    diff = p1 - p2;
+                    sum += squared ? diff * diff : Math.abs(diff);
+                }
+            }
+            partial[b] = sum;
+        });
+        // summed in a fixed order, so the result does not depend on the scheduling
+        double dist = 0.0;
+        for (double s : partial) {
+            dist += s;
+        }
+        return dist;
+    }
+
+    /**
+     * The sums over leaf pairs i &lt; j needed by the exact L2 distances: e(i)^2, e(i),
+     * (e(i) + e(j)) q(i,j) and q(i,j)^2 (the first two summed over leaves).
+     */
+    private static class PairTerms {
+
+        final int n;
+        long sumE2Long, sumELong, sumEqLong, sumQ2Long;
+        double sumE2, sumE, sumEq, sumQ2;
+
+        PairTerms(Tree t1, Tree t2, boolean weighted) {
+            CompactTree c1 = new CompactTree(t1);
+            CompactTree c2 = new CompactTree(t2);
+            int[] leafMap = c2.getLeafIndexes(TaxonRegistry.getShared().getLeafIdGroup(t1));
+            double[] depth1 = c1.getDepths(weighted);
+            double[] depth2 = c2.getDepths(weighted);
+            n = c1.leafNum;
+
+            if (weighted) {
+                double[] e1 = new double[c1.nodeNum];
+                double[] e2 = new double[c2.nodeNum];
+                for (int i = 0; i < n; i++) {
+                    e1[i] = depth1[i] - depth2[leafMap[i]];
+                    e2[leafMap[i]] = e1[i];
+                    sumE += e1[i];
+                    sumE2 += e1[i] * e1[i];
+                }
+                sumEq = getLeafSumDepthSum(c1, e1) - getLeafSumDepthSum(c2, e2);
+                sumQ2 = CopheneticDist.getPairDepthSqSum(c1, depth1) + CopheneticDist.getPairDepthSqSum(c2, depth2)
+                        - 2.0 * CopheneticDist.getCrossTerm(c1, c2, leafMap);
+            } else {
+                long[] e1 = new long[c1.nodeNum];
+                long[] e2 = new long[c2.nodeNum];
+                for (int i = 0; i < n; i++) {
+                    e1[i] = (long) depth1[i] - (long) depth2[leafMap[i]];
+                    e2[leafMap[i]] = e1[i];
+                    sumELong += e1[i];
+                    sumE2Long += e1[i] * e1[i];
+                }
+                sumEqLong = getLeafSumDepthSumLong(c1, e1) - getLeafSumDepthSumLong(c2, e2);
+                sumQ2Long = CopheneticDist.getPairDepthSqSumLong(c1, depth1)
+                        + CopheneticDist.getPairDepthSqSumLong(c2, depth2)
+                        - 2 * CopheneticDist.getCrossTermLong(c1, c2, leafMap);
+            }
+        }
+
+        /**
+         * Sum over leaf pairs i &lt; j of (e(i) + e(j)) d(lca(i,j)), computed as the sum over non-root
+         * nodes u of w(u) (|C(u)| - 1) E(u), where E(u) is the sum of e over the leaves below u.
+         * The array {@code e} is overwritten with E.
+         */
+        private static double getLeafSumDepthSum(CompactTree c, double[] e) {
+            double[] weight = c.getEdgeWeights(true);
+            double sum = 0.0;
+            int u;
+            for (int i = 0; i < c.nodeNum; i++) {
+                u = c.postOrder[i];
+                if (!c.isLeaf(u)) {
+                    for (int ch : c.children[u]) {
+                        e[u] += e[ch];
+                    }
+                }
+                sum += weight[u] * (c.leafCount[u] - 1) * e[u];
+            }
+            return sum;
+        }
+
+        /** Unit edge weight version of {@link #getLeafSumDepthSum(CompactTree, double[])}. */
+        private static long getLeafSumDepthSumLong(CompactTree c, long[] e) {
+            long sum = 0;
+            int u;
+            for (int i = 0; i < c.nodeNum; i++) {
+                u = c.postOrder[i];
+                if (!c.isLeaf(u)) {
+                    for (int ch : c.children[u]) {
+                        e[u] += e[ch];
+                    }
+                }
+                if (u != c.root) {
+                    sum += (c.leafCount[u] - 1) * e[u];
+                }
+            }
+            return sum;
+        }
+    }
+}
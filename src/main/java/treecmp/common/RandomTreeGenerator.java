@@ -0,0 +1,191 @@
+/** This file is part of TreeCmp, a tool for comparing phylogenetic trees
+    using the Matching Split distance and other metrics.
+    Copyright (C) 2011,  Damian Bogdanowicz
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>. */
+
+package treecmp.common;
+
+import pal.math.MersenneTwisterFast;
+import pal.misc.Identifier;
+import pal.tree.Node;
+import pal.tree.SimpleNode;
+import pal.tree.SimpleTree;
+import pal.tree.Tree;
+import pal.tree.TreeGenerator;
+import pal.util.AlgorithmCallback;
+
+/**
+ * Generator of random binary trees under the uniform (PDA) and the Yule model.
+ *
+ * <p>Trees are grown by inserting the leaves one by one: under the uniform model the new leaf is
+ * attached to an edge chosen uniformly among all edges (including the root edge), under the Yule
+ * model to a uniformly chosen pendant edge. Leaf labels are assigned in random order. An unrooted
+ * uniform tree is obtained by attaching the last leaf to the root of a rooted uniform tree, an
+ * unrooted Yule tree by removing the root of a rooted one; both have a trifurcating root node.
+ * Every tree is generated in O(n) time.
+ */
+public class RandomTreeGenerator implements TreeGenerator {
+
+    public enum Model {
+        UNIFORM, YULE
+    }
+
+    private final String[] names;
+    private final Model model;
+    private final boolean rooted;
+    private final MersenneTwisterFast random;
+    private double branchLengthMean;
+
+    /**
+     * @param names  The leaf labels.
+     * @param model  The tree model.
+     * @param rooted Whether rooted (binary) or unrooted trees are generated.
+     * @param random The source of randomness; not shared with other threads.
+     */
+    public RandomTreeGenerator(String[] names, Model model, boolean rooted, MersenneTwisterFast random) {
+        if (names.length < 2 || (!rooted && names.length < 3)) {
+            throw new IllegalArgumentException("Too few leaves: " + names.length);
+        }
+        this.names = names.clone();
+        this.model = model;
+        this.rooted = rooted;
+        this.random = random;
+        this.branchLengthMean = 0.0;
+    }
+
+    /**
+     * Generator for leaves labeled "1".."leafNum".
+     */
+    public RandomTreeGenerator(int leafNum, Model model, boolean rooted, MersenneTwisterFast random) {
+        this(getDefaultNames(leafNum), model, rooted, random);
+    }
+
+    private static String[] getDefaultNames(int leafNum) {
+        String[] names = new String[leafNum];
+        for (int i = 0; i < leafNum; i++) {
+            names[i] = Integer.toString(i + 1);
+        }
+        return names;
+    }
+
+    /**
+     * @param branchLengthMean If positive, branch lengths are drawn from the exponential distribution
+     *                         with this mean, otherwise all branches have length 1 (default).
+     */
+    public void setBranchLengthMean(double branchLengthMean) {
+        this.branchLengthMean = branchLengthMean;
+    }
+
+    public Tree getNextTree(AlgorithmCallback callback) {
+        return nextTree();
+    }
+
+    public Tree nextTree() {
+        int n = names.length;
+        boolean attachToRoot = !rooted && model == Model.UNIFORM;
+        int m = attachToRoot ? n - 1 : n;
+
+        // binary tree on m leaves as arrays; nodes are numbered in the order of creation
+        int nodeNum = 2 * m - 1;
+        int[] parent = new int[nodeNum];
+        int[] left = new int[nodeNum];
+        int[] right = new int[nodeNum];
+        int[] leaves = new int[m];
+        boolean[] isLeaf = new boolean[nodeNum];
+        int root = 0, created = 1, edge, x, y, p;
+        parent[0] = -1;
+        isLeaf[0] = true;
+        leaves[0] = 0;
+        for (int k = 1; k < m; k++) {
+            edge = (model == Model.UNIFORM) ? random.nextInt(created) : leaves[random.nextInt(k)];
+            x = created++;
+            y = created++;
+            isLeaf[y] = true;
+            leaves[k] = y;
+            p = parent[edge];
+            parent[x] = p;
+            if (p == -1) {
+                root = x;
+            } else if (left[p] == edge) {
+                left[p] = x;
+            } else {
+                right[p] = x;
+            }
+            left[x] = edge;
+            right[x] = y;
+            parent[edge] = x;
+            parent[y] = x;
+        }
+
+        // random labels
+        int[] perm = new int[n];
+        for (int i = 0; i < n; i++) {
+            perm[i] = i;
+        }
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = perm[i];
+            perm[i] = perm[j];
+            perm[j] = tmp;
+        }
+
+        Node[] nodes = new Node[nodeNum];
+        int leafIndex = 0;
+        for (int u = 0; u < nodeNum; u++) {
+            nodes[u] = new SimpleNode();
+            if (isLeaf[u]) {
+                nodes[u].setIdentifier(new Identifier(names[perm[leafIndex++]]));
+            }
+            nodes[u].setBranchLength(nextBranchLength());
+        }
+        for (int u = 0; u < nodeNum; u++) {
+            if (!isLeaf[u]) {
+                nodes[u].addChild(nodes[left[u]]);
+                nodes[u].addChild(nodes[right[u]]);
+            }
+        }
+        Node rootNode = nodes[root];
+        if (attachToRoot) {
+            Node extra = new SimpleNode();
+            extra.setIdentifier(new Identifier(names[perm[n - 1]]));
+            extra.setBranchLength(nextBranchLength());
+            rootNode.addChild(extra);
+        } else if (!rooted) {
+            rootNode = unroot(rootNode);
+        }
+        rootNode.setBranchLength(0.0);
+        return new SimpleTree(rootNode);
+    }
+
+    private double nextBranchLength() {
+        if (branchLengthMean > 0.0) {
+            return -branchLengthMean * Math.log(1.0 - random.nextDouble());
+        }
+        return 1.0;
+    }
+
+    /** Replaces a bifurcating root by a trifurcating one. */
+    private Node unroot(Node root) {
+        Node a = root.getChild(0);
+        Node b = root.getChild(1);
+        Node newRoot = b.isLeaf() ? a : b;
+        Node other = b.isLeaf() ? b : a;
+        root.removeChild(0);
+        root.removeChild(0);
+        newRoot.setParent(null);
+        newRoot.addChild(other);
+        return newRoot;
+    }
+}
@@ -0,0 +1,225 @@
+/** This file is part of TreeCmp, a tool for comparing phylogenetic trees
+    using the Matching Split distance and other metrics.
+    Copyright (C) 2011,  Damian Bogdanowicz
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>. */
+
+package treecmp.common;
+
+import pal.tree.Tree;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cheap bounds of the expensive tree distances, computed in O(n) time from the splits and clades
+ * shared by two trees on the same taxa.
+ *
+ * <p>The splits are compared by the hashes of {@link TopologyFingerprint}. The bounds are used
+ * by {@link treecmp.metrics.BoundingMetric}s to skip the exact computation when it cannot change a
+ * decision.</p>
+ */
+public class SplitBounds {
+
+    private SplitBounds() {
+    }
+
+    /**
+     * Every quartet resolved by a split of both trees is resolved the same way in both, so only
+     * the quartets unresolved in the tree of the common splits (which is the first tree with the
+     * other edges contracted) can differ. A quartet is unresolved there if its leaves are in four
+     * different branches of one node; their number is summed over the nodes.
+     *
+     * @return An upper bound of the quartet distance, or -1 if the trees have different taxa.
+     */
+    public static long getQuartetUpperBound(Tree t1, Tree t2) {
+        TaxonRegistry registry = TaxonRegistry.getShared();
+        CompactTree c1 = TreeRestrictionCache.getShared().getCompactTree(t1);
+        int[] ids1 = registry.getTaxonIds(t1);
+        if (!haveSameTaxa(ids1, registry.getTaxonIds(t2))) {
+            return -1;
+        }
+        long[] cluster = getClusterHashes(c1, ids1);
+        long all = cluster[c1.root];
+        long[] splits2 = SplitIndex.getSplitHashes(t2, registry);
+        Arrays.sort(splits2);
+        // the top node of the contracted group of every node; a node below a common split or a
+        // leaf starts a group
+        int[] group = new int[c1.nodeNum];
+        for (int i = c1.nodeNum - 1; i >= 0; i--) {
+            int u = c1.postOrder[i];
+            if (u == c1.root || c1.isLeaf(u)
+                    || Arrays.binarySearch(splits2, Math.min(cluster[u], cluster[u] ^ all)) >= 0) {
+                group[u] = u;
+            } else {
+                group[u] = group[c1.parent[u]];
+            }
+        }
+        // e[g][k]: the sum of the products of k branch sizes of group g, for k = 1..4
+        Map<Integer, long[]> sums = new HashMap<Integer, long[]>();
+        for (int u = c1.leafNum; u < c1.nodeNum; u++) {
+            int g = group[u];
+            long[] e = sums.get(g);
+            if (e == null) {
+                e = new long[5];
+                e[0] = 1;
+                sums.put(g, e);
+                if (g != c1.root) {
+                    addBranch(e, c1.leafNum - c1.leafCount[g]);
+                }
+            }
+            for (int c : c1.children[u]) {
+                if (group[c] == c) {
+                    addBranch(e, c1.leafCount[c]);
+                }
+            }
+        }
+        long unresolved = 0;
+        for (long[] e : sums.values()) {
+            unresolved += e[4];
+        }
+        return unresolved;
+    }
+
+    private static void addBranch(long[] e, long size) {
+        for (int k = 4; k > 0; k--) {
+            e[k] += e[k - 1] * size;
+        }
+    }
+
+    /**
+     * The Euclidean distance of the edge length vectors, with the edges of one tree only as
+     * separate coordinates, is a lower bound of the BHV geodesic distance; the cone path through
+     * the star tree, of length sqrt(C + (|A| + |B|)<sup>2</sup>) with C the squared differences
+     * of the common edges and |A|, |B| the norms of the other edges, is an upper bound. Edges of
+     * the same split are merged as by the geodesic algorithm.
+     *
+     * @param rooted Whether the edges are compared by their clusters or by their splits.
+     * @return The bounds {lower, upper} of the geodesic distance, or {0, infinity} if the trees
+     * have different taxa.
+     */
+    public static double[] getGeodesicBounds(Tree t1, Tree t2, boolean rooted) {
+        TaxonRegistry registry = TaxonRegistry.getShared();
+        int[] ids1 = registry.getTaxonIds(t1);
+        int[] ids2 = registry.getTaxonIds(t2);
+        if (!haveSameTaxa(ids1, ids2)) {
+            return new double[]{0.0, Double.POSITIVE_INFINITY};
+        }
+        Map<Long, Double> edges1 = getEdgeLengths(TreeRestrictionCache.getShared().getCompactTree(t1), ids1, rooted);
+        Map<Long, Double> edges2 = getEdgeLengths(TreeRestrictionCache.getShared().getCompactTree(t2), ids2, rooted);
+        double common = 0.0;
+        double only1 = 0.0;
+        for (Map.Entry<Long, Double> e : edges1.entrySet()) {
+            Double l2 = edges2.get(e.getKey());
+            if (l2 != null) {
+                common += (e.getValue() - l2) * (e.getValue() - l2);
+            } else {
+                only1 += e.getValue() * e.getValue();
+            }
+        }
+        double only2 = 0.0;
+        for (Map.Entry<Long, Double> e : edges2.entrySet()) {
+            if (!edges1.containsKey(e.getKey())) {
+                only2 += e.getValue() * e.getValue();
+            }
+        }
+        double cone = Math.sqrt(only1) + Math.sqrt(only2);
+        return new double[]{Math.sqrt(common + only1 + only2), Math.sqrt(common + cone * cone)};
+    }
+
+    private static Map<Long, Double> getEdgeLengths(CompactTree tree, int[] ids, boolean rooted) {
+        long[] cluster = getClusterHashes(tree, ids);
+        long all = cluster[tree.root];
+        Map<Long, Double> lengths = new HashMap<Long, Double>();
+        for (int u = 0; u < tree.nodeNum; u++) {
+            if (u == tree.root) {
+                continue;
+            }
+            long h = rooted ? cluster[u] : Math.min(cluster[u], cluster[u] ^ all);
+            Double l = lengths.get(h);
+            lengths.put(h, (l == null) ? tree.branchLength[u] : l + tree.branchLength[u]);
+        }
+        return lengths;
+    }
+
+    /**
+     * Any two leaves of the reduced trees of {@link CommonCladeReducer} form a rooted agreement
+     * subtree, and any three an unrooted one, so the heaviest of them bound the MAST from below;
+     * trees of different topologies differ in at least one leaf.
+     *
+     * @param rooted Whether the rooted or the unrooted MAST is bounded.
+     * @return The bounds {lower, upper} of the MAST distance n - |MAST|, or {0, n} if the trees
+     * have different taxa.
+     */
+    public static int[] getMastDistanceBounds(Tree t1, Tree t2, boolean rooted) {
+        int n = Math.max(t1.getExternalNodeCount(), t2.getExternalNodeCount());
+        if (TopologyFingerprint.isSameTopology(t1, t2, rooted)) {
+            return new int[]{0, 0};
+        }
+        TaxonRegistry registry = TaxonRegistry.getShared();
+        if (!haveSameTaxa(registry.getTaxonIds(t1), registry.getTaxonIds(t2))) {
+            return new int[]{0, n};
+        }
+        CommonCladeReducer.Reduction reduction = CommonCladeReducer.reduce(t1, t2);
+        Tree reduced = (reduction != null) ? reduction.getT1() : t1;
+        int[] heaviest = new int[rooted ? 2 : 3];
+        for (int i = 0; i < reduced.getExternalNodeCount(); i++) {
+            Integer w = (reduction != null)
+                    ? reduction.getWeights().get(reduced.getExternalNode(i).getIdentifier().getName()) : null;
+            int weight = (w == null) ? 1 : w;
+            for (int k = 0; k < heaviest.length; k++) {
+                if (weight > heaviest[k]) {
+                    int t = heaviest[k];
+                    heaviest[k] = weight;
+                    weight = t;
+                }
+            }
+        }
+        int agreement = 0;
+        for (int w : heaviest) {
+            agreement += w;
+        }
+        return new int[]{1, Math.max(1, n - agreement)};
+    }
+
+    private static boolean haveSameTaxa(int[] ids1, int[] ids2) {
+        if (ids1.length != ids2.length) {
+            return false;
+        }
+        int[] sorted1 = ids1.clone();
+        int[] sorted2 = ids2.clone();
+        Arrays.sort(sorted1);
+        Arrays.sort(sorted2);
+        return Arrays.equals(sorted1, sorted2);
+    }
+
+    /**
+     * @return The XOR of the taxon hashes of the leaves below every node.
+     */
+    private static long[] getClusterHashes(CompactTree tree, int[] ids) {
+        long[] cluster = new long[tree.nodeNum];
+        for (int i = 0; i < tree.nodeNum; i++) {
+            int u = tree.postOrder[i];
+            if (tree.isLeaf(u)) {
+                cluster[u] = TopologyFingerprint.taxonHash(ids[u]);
+            } else {
+                for (int c : tree.children[u]) {
+                    cluster[u] ^= cluster[c];
+                }
+            }
+        }
+        return cluster;
+    }
+}
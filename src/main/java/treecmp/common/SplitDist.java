@@ -227,6 +227,7 @@ public class SplitDist {
         int internal = t.getInternalNodeCount();
         int size = internal - 1;
         BitSet[] splits = new BitSet[size];
+        int[] alias = TaxonRegistry.getShared().mapExternalIdentifiers(idGroup, t);
 
         Node curNode = t.getExternalNode(0);
 
@@ -245,7 +246,7 @@ public class SplitDist {
                 for (i = 0; i < childCount; i++) {
                     child = curNode.getChild(i);
                     if (child.isLeaf()) {
-                        leafId = idGroup.whichIdNumber(child.getIdentifier().getName());
+                        leafId = alias[child.getNumber()];
                         bs.set(leafId);
                     } else {
                         childInd = child.getNumber();
@@ -0,0 +1,257 @@
+/** This file is part of TreeCmp, a tool for comparing phylogenetic trees
+    using the Matching Split distance and other metrics.
+    Copyright (C) 2011,  Damian Bogdanowicz
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>. */
+
+package treecmp.common;
+
+import pal.tree.Node;
+import pal.tree.Tree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Inverted index from splits to the trees containing them, answering nearest-neighbor and range
+ * queries under the Robinson-Foulds distance.
+ *
+ * <p>A split is stored as a 64-bit hash, the smaller of the XORs of the random taxon hashes of
+ * its two sides (see {@link TopologyFingerprint}). Only the hashes are kept, so trees can be
+ * added from a stream and dropped afterwards. A query counts the splits shared with every indexed tree by scanning the posting lists of its own splits, which gives the
+ * distances {@code RFMetric.getDistance(query, tree)} of all trees without comparing any of them:
+ * (N<sub>q</sub> + N<sub>t</sub>) / 2 minus the number of splits of t contained in the query,
+ * with N the number of non-root internal nodes, as in {@code RFMetric}.</p>
+ *
+ * <p>All trees and queries must have the same taxa. The index is not thread safe.</p>
+ */
+public class SplitIndex {
+
+    private final TaxonRegistry registry;
+    private final Map<Long, Postings> postings;
+    private int[] splitCounts;
+    private int treeCount;
+    private int leafNum;
+    private long leafSetHash;
+
+    public SplitIndex() {
+        this(TaxonRegistry.getShared());
+    }
+
+    /**
+     * @param registry The registry assigning the taxon ids.
+     */
+    public SplitIndex(TaxonRegistry registry) {
+        this.registry = registry;
+        this.postings = new HashMap<Long, Postings>();
+        this.splitCounts = new int[16];
+        this.leafNum = -1;
+    }
+
+    /**
+     * @return The number of indexed trees.
+     */
+    public int size() {
+        return treeCount;
+    }
+
+    /**
+     * @return The number of distinct splits of the indexed trees.
+     */
+    public int getSplitCount() {
+        return postings.size();
+    }
+
+    /**
+     * Adds a tree to the index.
+     *
+     * @return The index of the tree, i.e. the number of trees added before.
+     * @throws IllegalArgumentException if the tree has other taxa than the indexed trees.
+     */
+    public int add(Tree tree) {
+        long[] splits = getSplitHashes(tree, treeCount == 0);
+        if (treeCount == splitCounts.length) {
+            splitCounts = Arrays.copyOf(splitCounts, 2 * treeCount);
+        }
+        int id = treeCount++;
+        splitCounts[id] = splits.length;
+        for (long split : splits) {
+            Postings p = postings.get(split);
+            if (p == null) {
+                p = new Postings();
+                postings.put(split, p);
+            }
+            p.add(id);
+        }
+        return id;
+    }
+
+    /**
+     * Adds all remaining trees of the iterator.
+     */
+    public void addAll(Iterator<? extends Tree> trees) {
+        while (trees.hasNext()) {
+            add(trees.next());
+        }
+    }
+
+    /**
+     * @return The Robinson-Foulds distances from the query to all indexed trees.
+     * @throws IllegalArgumentException if the query has other taxa than the indexed trees.
+     */
+    public double[] getDistances(Tree query) {
+        double[] distances = new double[treeCount];
+        if (treeCount == 0 || leafNum <= 3) {
+            return distances;
+        }
+        long[] splits = getSplitHashes(query, false);
+        Arrays.sort(splits);
+        int[] common = new int[treeCount];
+        for (int i = 0; i < splits.length; i++) {
+            if (i > 0 && splits[i] == splits[i - 1]) {
+                continue;
+            }
+            Postings p = postings.get(splits[i]);
+            if (p != null) {
+                for (int j = 0; j < p.size; j++) {
+                    common[p.ids[j]]++;
+                }
+            }
+        }
+        for (int t = 0; t < treeCount; t++) {
+            distances[t] = ((double) splits.length + (double) splitCounts[t]) * 0.5 - common[t];
+        }
+        return distances;
+    }
+
+    /**
+     * @return The k trees nearest to the query, ordered by distance and index.
+     */
+    public List<Neighbor> nearest(Tree query, int k) {
+        double[] distances = getDistances(query);
+        Neighbor.Collector collector = new Neighbor.Collector(k);
+        for (int t = 0; t < distances.length; t++) {
+            collector.offer(t, distances[t]);
+        }
+        return collector.getNeighbors();
+    }
+
+    /**
+     * @return The trees at distance at most {@code radius} from the query, ordered by distance and
+     * index.
+     */
+    public List<Neighbor> withinDistance(Tree query, double radius) {
+        double[] distances = getDistances(query);
+        List<Neighbor> neighbors = new ArrayList<Neighbor>();
+        for (int t = 0; t < distances.length; t++) {
+            if (distances[t] <= radius) {
+                neighbors.add(new Neighbor(t, distances[t]));
+            }
+        }
+        Collections.sort(neighbors);
+        return neighbors;
+    }
+
+    /**
+     * @return The hashes of the splits of all non-root internal nodes (with repetitions).
+     */
+    private long[] getSplitHashes(Tree tree, boolean first) {
+        long[] leafHash = getLeafHashes(tree, registry);
+        long all = 0L;
+        for (long h : leafHash) {
+            all ^= h;
+        }
+        if (first) {
+            leafNum = leafHash.length;
+            leafSetHash = all;
+        } else if (leafHash.length != leafNum || all != leafSetHash) {
+            throw new IllegalArgumentException("The tree has other taxa than the indexed trees");
+        }
+        return getSplitHashes(tree, leafHash, all);
+    }
+
+    /**
+     * Returns the hashes of the splits of all non-root internal nodes of the tree (with
+     * repetitions, e.g. the split of both children of a binary root). The hashes of equal splits
+     * of trees on the same taxa are equal.
+     */
+    public static long[] getSplitHashes(Tree tree, TaxonRegistry registry) {
+        return getSplitHashes(tree, getLeafHashes(tree, registry));
+    }
+
+    /**
+     * Returns the split hashes as {@link #getSplitHashes(Tree, TaxonRegistry)} for given hashes of
+     * the leaves, indexed by the number of the external node.
+     */
+    static long[] getSplitHashes(Tree tree, long[] leafHash) {
+        long all = 0L;
+        for (long h : leafHash) {
+            all ^= h;
+        }
+        return getSplitHashes(tree, leafHash, all);
+    }
+
+    private static long[] getLeafHashes(Tree tree, TaxonRegistry registry) {
+        tree.createNodeList();
+        int[] ids = registry.getTaxonIds(tree);
+        long[] leafHash = new long[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            leafHash[i] = TopologyFingerprint.taxonHash(ids[i]);
+        }
+        return leafHash;
+    }
+
+    private static long[] getSplitHashes(Tree tree, long[] leafHash, long all) {
+        Node[] postOrder = TreeCmpUtils.getNodesInPostOrder(tree);
+        long[] clusterHash = new long[tree.getInternalNodeCount()];
+        long[] splits = new long[Math.max(tree.getInternalNodeCount() - 1, 0)];
+        int num = 0;
+        for (Node node : postOrder) {
+            if (node.isLeaf()) {
+                continue;
+            }
+            long h = 0L;
+            for (int i = 0; i < node.getChildCount(); i++) {
+                Node child = node.getChild(i);
+                h ^= child.isLeaf() ? leafHash[child.getNumber()] : clusterHash[child.getNumber()];
+            }
+            clusterHash[node.getNumber()] = h;
+            if (!node.isRoot()) {
+                splits[num++] = Math.min(h, h ^ all);
+            }
+        }
+        return (num == splits.length) ? splits : Arrays.copyOf(splits, num);
+    }
+
+    /**
+     * The ids of the trees containing a split, in increasing order.
+     */
+    private static class Postings {
+
+        int[] ids = new int[2];
+        int size;
+
+        void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, 2 * size);
+            }
+            ids[size++] = id;
+        }
+    }
+}
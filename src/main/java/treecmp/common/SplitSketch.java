@@ -0,0 +1,341 @@
+/** This file is part of TreeCmp, a tool for comparing phylogenetic trees
+    using the Matching Split distance and other metrics.
+    Copyright (C) 2011,  Damian Bogdanowicz
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>. */
+
+
+package treecmp.common;
+
+import pal.tree.Tree;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * MinHash sketch of the split set of a tree, estimating the Jaccard similarity of the split sets
+ * and the Robinson-Foulds distance of two trees from a fixed number of values per tree.
+ *
+ * <p>A split is hashed as in {@link SplitIndex}, but the taxon hashes are derived from the taxon
+ * names instead of registry ids, so sketches computed in different runs can be compared and
+ * stored next to the tree file ({@link #writeAll(File, List)}). Value i of the sketch is the
+ * minimum of the i-th hash function over the distinct splits of the tree; two sketches agree in a
+ * value with probability J, the Jaccard similarity of the split sets. A b-bit sketch keeps the
+ * lowest b bits of every value (Li and K&ouml;nig 2010); the chance agreement 2<sup>-b</sup> is
+ * removed from the estimate, at the price of a larger error.</p>
+ *
+ * <p>With D<sub>1</sub> and D<sub>2</sub> distinct splits the number of shared splits is
+ * J (D<sub>1</sub> + D<sub>2</sub>) / (1 + J), and the RF distance is
+ * (D<sub>1</sub> + D<sub>2</sub>) / 2 minus the shared splits, as in {@code RFMetric} for trees
+ * without repeated splits (a binary root gives its two children the same split, which is counted
+ * once here). By Hoeffding's inequality the estimate of J is within
+ * sqrt(ln(2 / delta) / (2 k)) / (1 - 2<sup>-b</sup>) of J with probability at least 1 - delta for
+ * a sketch of size k, which gives the bounds of {@link #getRFBounds(SplitSketch, double)}.</p>
+ *
+ * <p>Sketches are comparable only if they have the same size, number of bits and seed.</p>
+ */
+public class SplitSketch {
+
+    public static final int DEFAULT_SIZE = 128;
+    public static final long DEFAULT_SEED = 0x7265654353706C74L;
+
+    private static final int MAGIC = 0x54435353;
+    private static final int VERSION = 1;
+
+    private final int bits;
+    private final long seed;
+    private final long[] values;
+    private final int splitCount;
+
+    private SplitSketch(int bits, long seed, long[] values, int splitCount) {
+        this.bits = bits;
+        this.seed = seed;
+        this.values = values;
+        this.splitCount = splitCount;
+    }
+
+    /**
+     * @return The 64-bit sketch of {@link #DEFAULT_SIZE} values with the default seed.
+     */
+    public static SplitSketch create(Tree tree) {
+        return create(tree, DEFAULT_SIZE, 64, DEFAULT_SEED);
+    }
+
+    /**
+     * @param size The number of hash functions.
+     * @param bits The number of bits kept of every value, 1 to 64.
+     * @param seed The seed of the hash functions.
+     */
+    public static SplitSketch create(Tree tree, int size, int bits, long seed) {
+        if (size < 1 || bits < 1 || bits > 64) {
+            throw new IllegalArgumentException("Invalid sketch size or number of bits");
+        }
+        tree.createNodeList();
+        long[] leafHash = new long[tree.getExternalNodeCount()];
+        for (int i = 0; i < leafHash.length; i++) {
+            leafHash[i] = getNameHash(tree.getExternalNode(i).getIdentifier().getName());
+        }
+        long[] splits = SplitIndex.getSplitHashes(tree, leafHash);
+        Arrays.sort(splits);
+        long[] functionSeeds = new long[size];
+        for (int i = 0; i < size; i++) {
+            functionSeeds[i] = TopologyFingerprint.mix(seed + 0x9E3779B97F4A7C15L * (i + 1L));
+        }
+        long[] values = new long[size];
+        Arrays.fill(values, Long.MAX_VALUE);
+        int splitNum = 0;
+        for (int s = 0; s < splits.length; s++) {
+            if (s > 0 && splits[s] == splits[s - 1]) {
+                continue;
+            }
+            splitNum++;
+            for (int i = 0; i < size; i++) {
+                long h = TopologyFingerprint.mix(splits[s] ^ functionSeeds[i]);
+                if (h < values[i]) {
+                    values[i] = h;
+                }
+            }
+        }
+        long mask = getMask(bits);
+        for (int i = 0; i < size; i++) {
+            values[i] &= mask;
+        }
+        return new SplitSketch(bits, seed, values, splitNum);
+    }
+
+    /**
+     * @return The sketch keeping only the lowest {@code bits} bits of the values of this one.
+     */
+    public SplitSketch toBits(int bits) {
+        if (bits < 1 || bits > this.bits) {
+            throw new IllegalArgumentException("A sketch can only be reduced to fewer bits");
+        }
+        long mask = getMask(bits);
+        long[] reduced = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            reduced[i] = values[i] & mask;
+        }
+        return new SplitSketch(bits, seed, reduced, splitCount);
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    public int getBits() {
+        return bits;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public long getValue(int i) {
+        return values[i];
+    }
+
+    /**
+     * @return The number of distinct splits of the tree.
+     */
+    public int getSplitCount() {
+        return splitCount;
+    }
+
+    /**
+     * @return True if the sketch can be compared with {@code other}.
+     */
+    public boolean isCompatible(SplitSketch other) {
+        return values.length == other.values.length && bits == other.bits && seed == other.seed;
+    }
+
+    /**
+     * @return The estimate of the Jaccard similarity of the split sets, 1 if both are empty.
+     */
+    public double getJaccard(SplitSketch other) {
+        checkCompatible(other);
+        if (splitCount == 0 || other.splitCount == 0) {
+            return (splitCount == other.splitCount) ? 1.0 : 0.0;
+        }
+        int matches = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == other.values[i]) {
+                matches++;
+            }
+        }
+        double f = (double) matches / values.length;
+        if (bits == 64) {
+            return f;
+        }
+        double chance = Math.scalb(1.0, -bits);
+        return Math.min(1.0, Math.max(0.0, (f - chance) / (1.0 - chance)));
+    }
+
+    /**
+     * @return The maximal error of the Jaccard estimate with probability at least 1 - delta.
+     */
+    public double getJaccardError(double delta) {
+        double error = Math.sqrt(Math.log(2.0 / delta) / (2.0 * values.length));
+        return (bits == 64) ? error : error / (1.0 - Math.scalb(1.0, -bits));
+    }
+
+    /**
+     * @return The estimate of the RF distance of the trees.
+     */
+    public double getRFEstimate(SplitSketch other) {
+        return getRFDistance(getJaccard(other), splitCount, other.splitCount);
+    }
+
+    /**
+     * @return The lower and upper bound of the RF distance of the trees, holding with probability
+     * at least 1 - delta.
+     */
+    public double[] getRFBounds(SplitSketch other, double delta) {
+        double jaccard = getJaccard(other);
+        double error = getJaccardError(delta);
+        return new double[]{
+                getRFDistance(Math.min(1.0, jaccard + error), splitCount, other.splitCount),
+                getRFDistance(Math.max(0.0, jaccard - error), splitCount, other.splitCount)};
+    }
+
+    private static double getRFDistance(double jaccard, int d1, int d2) {
+        double shared = Math.min(jaccard * (d1 + d2) / (1.0 + jaccard), Math.min(d1, d2));
+        return (d1 + d2) / 2.0 - shared;
+    }
+
+    private void checkCompatible(SplitSketch other) {
+        if (!isCompatible(other)) {
+            throw new IllegalArgumentException("The sketches have different sizes, bits or seeds");
+        }
+    }
+
+    /**
+     * Writes the sketch; the values of a b-bit sketch are packed into b bits each.
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(values.length);
+        out.writeByte(bits);
+        out.writeLong(seed);
+        out.writeInt(splitCount);
+        long word = 0L;
+        int used = 0;
+        for (long v : values) {
+            word |= v << used;
+            if (used + bits >= 64) {
+                out.writeLong(word);
+                word = (used == 0) ? 0L : v >>> (64 - used);
+                used = used + bits - 64;
+            } else {
+                used += bits;
+            }
+        }
+        if (used > 0) {
+            out.writeLong(word);
+        }
+    }
+
+    /**
+     * Reads a sketch written by {@link #write(DataOutput)}.
+     */
+    public static SplitSketch read(DataInput in) throws IOException {
+        int size = in.readInt();
+        int bits = in.readByte();
+        long seed = in.readLong();
+        int splitCount = in.readInt();
+        if (size < 1 || bits < 1 || bits > 64) {
+            throw new IOException("Invalid sketch header");
+        }
+        long mask = getMask(bits);
+        long[] values = new long[size];
+        long word = 0L;
+        int available = 0;
+        for (int i = 0; i < size; i++) {
+            if (available == 0) {
+                word = in.readLong();
+                available = 64;
+            }
+            long v = word >>> (64 - available);
+            if (available < bits) {
+                word = in.readLong();
+                v |= word << available;
+                available += 64;
+            }
+            values[i] = v & mask;
+            available -= bits;
+        }
+        return new SplitSketch(bits, seed, values, splitCount);
+    }
+
+    /**
+     * Writes the sketches of a tree collection to a file, in the order of the trees.
+     */
+    public static void writeAll(File file, List<SplitSketch> sketches) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(sketches.size());
+            for (SplitSketch sketch : sketches) {
+                sketch.write(out);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Reads the sketches written by {@link #writeAll(File, List)}.
+     */
+    public static List<SplitSketch> readAll(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a sketch file (version " + VERSION + ")");
+            }
+            int count = in.readInt();
+            List<SplitSketch> sketches = new ArrayList<SplitSketch>(count);
+            for (int i = 0; i < count; i++) {
+                sketches.add(read(in));
+            }
+            return sketches;
+        } finally {
+            in.close();
+        }
+    }
+
+    private static long getMask(int bits) {
+        return (bits == 64) ? -1L : (1L << bits) - 1;
+    }
+
+    /**
+     * FNV-1a hash of the taxon name, finalised as the registry taxon hashes.
+     */
+    private static long getNameHash(String name) {
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < name.length(); i++) {
+            h = (h ^ name.charAt(i)) * 0x100000001B3L;
+        }
+        return TopologyFingerprint.mix(h);
+    }
+}
@@ -0,0 +1,354 @@
+/** This file is part of TreeCmp, a tool for comparing phylogenetic trees
+    using the Matching Split distance and other metrics.
+    Copyright (C) 2011,  Damian Bogdanowicz
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>. */
+
+package treecmp.common;
+
+import pal.misc.IdGroup;
+import pal.misc.Identifier;
+import pal.tree.Node;
+import pal.tree.Tree;
+import pal.tree.TreeUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of taxon labels with dense int ids.
+ *
+ * <p>Every label gets its id once; the ids of the leaves of a tree are cached per {@code Tree}
+ * instance (the cache entry is checked against the current external nodes and their identifiers
+ * by reference, so it is dropped when the leaves change). Leaf id groups obtained by
+ * {@link #getLeafIdGroup(Tree)} know the taxon id of every position, so
+ * {@link #mapExternalIdentifiers(IdGroup, Tree)} and {@link #mergeIdGroups(IdGroup, IdGroup)}
+ * work on int arrays instead of hashing the leaf labels of every compared tree.</p>
+ *
+ * <p>The methods are drop-in replacements of {@code TreeUtils.getLeafIdGroup},
+ * {@code TreeUtils.mapExternalIdentifiers} and {@code TreeCmpUtils.mergeIdGroups}; every call
+ * returns a new id group, which copies the cached arrays when it is modified.</p>
+ */
+public class TaxonRegistry {
+
+    private static final TaxonRegistry shared = new TaxonRegistry();
+
+    private final Map<String, Integer> ids;
+    private final List<String> names;
+    private final Map<Tree, TreeTaxa> treeCache;
+
+    public TaxonRegistry() {
+        this.ids = new ConcurrentHashMap<String, Integer>();
+        this.names = new ArrayList<String>();
+        this.treeCache = new WeakHashMap<Tree, TreeTaxa>();
+    }
+
+    /**
+     * @return The registry shared by all metrics.
+     */
+    public static TaxonRegistry getShared() {
+        return shared;
+    }
+
+    /**
+     * @return The id of the label, assigned if the label is new.
+     */
+    public int getId(String name) {
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        synchronized (names) {
+            id = ids.get(name);
+            if (id == null) {
+                id = names.size();
+                names.add(name);
+                ids.put(name, id);
+            }
+            return id;
+        }
+    }
+
+    /**
+     * @return The id of the label or -1 if it has not been registered.
+     */
+    public int findId(String name) {
+        Integer id = ids.get(name);
+        return (id == null) ? -1 : id;
+    }
+
+    public String getName(int id) {
+        synchronized (names) {
+            return names.get(id);
+        }
+    }
+
+    public int getTaxonCount() {
+        synchronized (names) {
+            return names.size();
+        }
+    }
+
+    /**
+     * Returns the taxon ids of the leaves of a tree, indexed like {@code tree.getExternalNode(i)}.
+     * The array is cached and must not be modified.
+     */
+    public int[] getTaxonIds(Tree tree) {
+        return getTreeTaxa(tree).taxonIds;
+    }
+
+    /**
+     * Returns the labels of the leaves of a tree in the order of its external nodes, like
+     * {@code TreeUtils.getLeafIdGroup} (the node list of the tree is rebuilt as well).
+     *
+     * @return A new id group sharing the cached labels of the tree until it is modified.
+     */
+    public IdGroup getLeafIdGroup(Tree tree) {
+        tree.createNodeList();
+        TreeTaxa taxa = getTreeTaxa(tree);
+        return new TaxonIdGroup(this, taxa.identifiers, taxa.taxonIds, taxa.getIndex(), true);
+    }
+
+    /**
+     * Maps the leaves of a tree to the positions of their labels in an id group, like
+     * {@code TreeUtils.mapExternalIdentifiers}. For id groups of this registry no label is hashed.
+     *
+     * @return The position in {@code idGroup} of the label of every external node of {@code tree}.
+     * @throws IllegalArgumentException if a leaf label is not present in {@code idGroup}.
+     */
+    public int[] mapExternalIdentifiers(IdGroup idGroup, Tree tree) {
+        if (!(idGroup instanceof TaxonIdGroup) || ((TaxonIdGroup) idGroup).registry != this) {
+            return TreeUtils.mapExternalIdentifiers(idGroup, tree);
+        }
+        TaxonIdGroup group = (TaxonIdGroup) idGroup;
+        int[] taxonIds = getTaxonIds(tree);
+        int[] alias = new int[taxonIds.length];
+        for (int i = 0; i < alias.length; i++) {
+            alias[i] = group.indexOf(taxonIds[i]);
+            if (alias[i] == -1) {
+                throw new IllegalArgumentException("Tree label "
+                        + tree.getExternalNode(i).getIdentifier()
+                        + " not present in given set of labels");
+            }
+        }
+        return alias;
+    }
+
+    /**
+     * Returns the union of the labels of two id groups: the labels of {@code g1} followed by the
+     * labels of {@code g2} not in {@code g1}.
+     */
+    public IdGroup mergeIdGroups(IdGroup g1, IdGroup g2) {
+        if (!(g1 instanceof TaxonIdGroup) || !(g2 instanceof TaxonIdGroup)
+                || ((TaxonIdGroup) g1).registry != this || ((TaxonIdGroup) g2).registry != this) {
+            return TreeCmpUtils.mergeIdGroups(g1, g2);
+        }
+        TaxonIdGroup a = (TaxonIdGroup) g1;
+        TaxonIdGroup b = (TaxonIdGroup) g2;
+        int num = a.taxonIds.length;
+        for (int i = 0; i < b.taxonIds.length; i++) {
+            if (a.indexOf(b.taxonIds[i]) < 0) {
+                num++;
+            }
+        }
+        if (num == a.taxonIds.length) {
+            return a.share();
+        }
+        Identifier[] identifiers = Arrays.copyOf(a.identifiers, num);
+        int[] taxonIds = Arrays.copyOf(a.taxonIds, num);
+        num = a.taxonIds.length;
+        for (int i = 0; i < b.taxonIds.length; i++) {
+            if (a.indexOf(b.taxonIds[i]) < 0) {
+                identifiers[num] = b.identifiers[i];
+                taxonIds[num] = b.taxonIds[i];
+                num++;
+            }
+        }
+        return new TaxonIdGroup(this, identifiers, taxonIds, null, false);
+    }
+
+    private TreeTaxa getTreeTaxa(Tree tree) {
+        TreeTaxa taxa;
+        synchronized (treeCache) {
+            taxa = treeCache.get(tree);
+        }
+        if (taxa != null && taxa.isValid(tree)) {
+            return taxa;
+        }
+        taxa = new TreeTaxa(this, tree);
+        synchronized (treeCache) {
+            treeCache.put(tree, taxa);
+        }
+        return taxa;
+    }
+
+    /**
+     * The leaves of a tree with their taxon ids.
+     */
+    private static class TreeTaxa {
+
+        final Node[] leaves;
+        final Identifier[] identifiers;
+        final int[] taxonIds;
+        private volatile TaxonIndex index;
+
+        TreeTaxa(TaxonRegistry registry, Tree tree) {
+            int n = tree.getExternalNodeCount();
+            leaves = new Node[n];
+            identifiers = new Identifier[n];
+            taxonIds = new int[n];
+            for (int i = 0; i < n; i++) {
+                leaves[i] = tree.getExternalNode(i);
+                identifiers[i] = leaves[i].getIdentifier();
+                taxonIds[i] = registry.getId(identifiers[i].getName());
+            }
+        }
+
+        TaxonIndex getIndex() {
+            if (index == null) {
+                index = new TaxonIndex(taxonIds);
+            }
+            return index;
+        }
+
+        boolean isValid(Tree tree) {
+            if (tree.getExternalNodeCount() != leaves.length) {
+                return false;
+            }
+            for (int i = 0; i < leaves.length; i++) {
+                if (tree.getExternalNode(i) != leaves[i] || leaves[i].getIdentifier() != identifiers[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Id group knowing the taxon id of every position. The groups returned for the same tree
+     * share their arrays until {@link #setIdentifier(int, Identifier)} is called, which copies
+     * them, so every caller can modify its own group.
+     */
+    public static class TaxonIdGroup implements IdGroup {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient TaxonRegistry registry;
+        private Identifier[] identifiers;
+        private int[] taxonIds;
+        // positions by taxon id, rebuilt from taxonIds when needed
+        private transient TaxonIndex index;
+        private boolean shared;
+
+        TaxonIdGroup(TaxonRegistry registry, Identifier[] identifiers, int[] taxonIds,
+                TaxonIndex index, boolean shared) {
+            this.registry = registry;
+            this.identifiers = identifiers;
+            this.taxonIds = taxonIds;
+            this.index = index;
+            this.shared = shared;
+        }
+
+        /**
+         * @return A group over the same taxa sharing the arrays of this one.
+         */
+        TaxonIdGroup share() {
+            shared = true;
+            return new TaxonIdGroup(registry, identifiers, taxonIds, getIndex(), true);
+        }
+
+        private TaxonIndex getIndex() {
+            if (index == null) {
+                index = new TaxonIndex(taxonIds);
+            }
+            return index;
+        }
+
+        /**
+         * @return The position of the taxon or -1 if it is not in the group.
+         */
+        public int indexOf(int taxonId) {
+            return getIndex().indexOf(taxonId);
+        }
+
+        public int getTaxonId(int i) {
+            return taxonIds[i];
+        }
+
+        public int getIdCount() {
+            return identifiers.length;
+        }
+
+        public Identifier getIdentifier(int i) {
+            return identifiers[i];
+        }
+
+        public void setIdentifier(int i, Identifier id) {
+            if (shared) {
+                identifiers = identifiers.clone();
+                taxonIds = taxonIds.clone();
+                shared = false;
+            }
+            identifiers[i] = id;
+            taxonIds[i] = (registry == null) ? -1 : registry.getId(id.getName());
+            index = null;
+        }
+
+        public int whichIdNumber(String name) {
+            if (registry == null) {
+                return IdGroup.Utils.whichIdNumber(this, name);
+            }
+            int id = registry.findId(name);
+            return (id < 0) ? -1 : indexOf(id);
+        }
+
+        public String toString() {
+            return Arrays.toString(identifiers);
+        }
+    }
+
+    /**
+     * The positions of the taxa of a group: its taxon ids sorted, searched by bisection, so the
+     * size depends on the group only and not on the number of registered taxa.
+     */
+    static class TaxonIndex {
+
+        private final int[] sortedIds;
+        private final int[] positions;
+
+        TaxonIndex(int[] taxonIds) {
+            int n = taxonIds.length;
+            long[] pairs = new long[n];
+            for (int i = 0; i < n; i++) {
+                pairs[i] = ((long) taxonIds[i] << 32) | i;
+            }
+            Arrays.sort(pairs);
+            sortedIds = new int[n];
+            positions = new int[n];
+            for (int i = 0; i < n; i++) {
+                sortedIds[i] = (int) (pairs[i] >> 32);
+                positions[i] = (int) pairs[i];
+            }
+        }
+
+        int indexOf(int taxonId) {
+            int k = Arrays.binarySearch(sortedIds, taxonId);
+            return (k < 0) ? -1 : positions[k];
+        }
+    }
+}
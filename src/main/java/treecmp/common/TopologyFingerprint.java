@@ -0,0 +1,195 @@
+/** This file is part of TreeCmp, a tool for comparing phylogenetic trees
+    using the Matching Split distance and other metrics.
+    Copyright (C) 2011,  Damian Bogdanowicz
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>. */
+
+package treecmp.common;
+
+import pal.tree.Tree;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Canonical 128-bit fingerprint of the topology and leaf set of a tree.
+ *
+ * <p>Every taxon gets a random 64-bit hash derived from its {@link TaxonRegistry} id and a
+ * cluster is hashed as the XOR of the hashes of its leaves. The rooted fingerprint folds the
+ * sorted, distinct cluster hashes of all nodes; the unrooted one folds the hashes of the splits,
+ * each taken as the smaller of the hashes of its two sides. Trees with the same leaf set and the
+ * same clusters (splits) have equal fingerprints regardless of the order of children, unary nodes
+ * or, for the unrooted fingerprint, the position of the root; different topologies collide with
+ * a negligible probability.</p>
+ *
+ * <p>Fingerprints are cached per tree together with its {@link CompactTree} in the shared
+ * {@link TreeRestrictionCache} and are recomputed when the tree changes.</p>
+ */
+public final class TopologyFingerprint {
+
+    private static final Map<Tree, Entry> cache = new WeakHashMap<Tree, Entry>();
+
+    private final long hi;
+    private final long lo;
+
+    private TopologyFingerprint(long hi, long lo) {
+        this.hi = hi;
+        this.lo = lo;
+    }
+
+    public long getHigh() {
+        return hi;
+    }
+
+    public long getLow() {
+        return lo;
+    }
+
+    /**
+     * @return The fingerprint of the clusters of the tree.
+     */
+    public static TopologyFingerprint getRooted(Tree tree) {
+        Entry entry = getEntry(tree);
+        synchronized (entry) {
+            if (entry.rooted == null) {
+                entry.rooted = compute(entry.compact, TaxonRegistry.getShared().getTaxonIds(tree), true);
+            }
+            return entry.rooted;
+        }
+    }
+
+    /**
+     * @return The fingerprint of the splits of the tree.
+     */
+    public static TopologyFingerprint getUnrooted(Tree tree) {
+        Entry entry = getEntry(tree);
+        synchronized (entry) {
+            if (entry.unrooted == null) {
+                entry.unrooted = compute(entry.compact, TaxonRegistry.getShared().getTaxonIds(tree), false);
+            }
+            return entry.unrooted;
+        }
+    }
+
+    /**
+     * @param rooted Whether the clusters or the splits of the trees are compared.
+     * @return true if the trees have the same leaf set and topology.
+     */
+    public static boolean isSameTopology(Tree t1, Tree t2, boolean rooted) {
+        if (t1.getExternalNodeCount() != t2.getExternalNodeCount()) {
+            return false;
+        }
+        return rooted ? getRooted(t1).equals(getRooted(t2)) : getUnrooted(t1).equals(getUnrooted(t2));
+    }
+
+    /**
+     * @return The random hash of a taxon.
+     */
+    static long taxonHash(int taxonId) {
+        return mix(0x9E3779B97F4A7C15L * (taxonId + 1L));
+    }
+
+    /**
+     * The finaliser of SplitMix64.
+     */
+    static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static TopologyFingerprint compute(CompactTree tree, int[] taxonIds, boolean rooted) {
+        long[] cluster = new long[tree.nodeNum];
+        for (int i = 0; i < tree.nodeNum; i++) {
+            int u = tree.postOrder[i];
+            if (tree.isLeaf(u)) {
+                cluster[u] = taxonHash(taxonIds[u]);
+            } else {
+                for (int c : tree.children[u]) {
+                    cluster[u] ^= cluster[c];
+                }
+            }
+        }
+        long all = cluster[tree.root];
+        long[] hashes = new long[tree.nodeNum];
+        int num = 0;
+        for (int u = 0; u < tree.nodeNum; u++) {
+            long h = cluster[u];
+            if (!rooted) {
+                h = Math.min(h, h ^ all);
+                if (h == 0L) {
+                    // the empty side of the edge above a unary root
+                    continue;
+                }
+            }
+            hashes[num++] = h;
+        }
+        Arrays.sort(hashes, 0, num);
+        long hi = mix(all ^ 0x2545F4914F6CDD1DL);
+        long lo = mix(tree.leafNum + (rooted ? 0x632BE59BD9B4E019L : 0x8CB92BA72F3D8DD7L));
+        for (int i = 0; i < num; i++) {
+            if (i > 0 && hashes[i] == hashes[i - 1]) {
+                continue;
+            }
+            hi = mix(hi ^ hashes[i]);
+            lo = mix(lo + hashes[i] * 0x9E3779B97F4A7C15L);
+        }
+        return new TopologyFingerprint(hi, lo);
+    }
+
+    private static Entry getEntry(Tree tree) {
+        CompactTree compact = TreeRestrictionCache.getShared().getCompactTree(tree);
+        Entry entry;
+        synchronized (cache) {
+            entry = cache.get(tree);
+            // the compact tree is rebuilt by the restriction cache when the tree changes
+            if (entry == null || entry.compact != compact) {
+                entry = new Entry(compact);
+                cache.put(tree, entry);
+            }
+        }
+        return entry;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof TopologyFingerprint)) {
+            return false;
+        }
+        TopologyFingerprint f = (TopologyFingerprint) o;
+        return hi == f.hi && lo == f.lo;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (lo ^ (lo >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%016x%016x", hi, lo);
+    }
+
+    private static class Entry {
+
+        final CompactTree compact;
+        TopologyFingerprint rooted;
+        TopologyFingerprint unrooted;
+
+        Entry(CompactTree compact) {
+            this.compact = compact;
+        }
+    }
+}
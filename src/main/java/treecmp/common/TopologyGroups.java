@@ -0,0 +1,122 @@
+/** This file is part of TreeCmp, a tool for comparing phylogenetic trees
+    using the Matching Split distance and other metrics.
+    Copyright (C) 2011,  Damian Bogdanowicz
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>. */
+
+package treecmp.common;
+
+import pal.tree.Tree;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Trees of a collection grouped by their {@link TopologyFingerprint}.
+ *
+ * <p>The distinct topologies are numbered in the order of their first occurrence; the first tree
+ * of every topology is its representative.</p>
+ */
+public class TopologyGroups {
+
+    private final int[] topologyOf;
+    private final int[] representatives;
+    private final int[] multiplicities;
+
+    private TopologyGroups(int[] topologyOf, int[] representatives, int[] multiplicities) {
+        this.topologyOf = topologyOf;
+        this.representatives = representatives;
+        this.multiplicities = multiplicities;
+    }
+
+    /**
+     * @param rooted Whether the trees are grouped by their clusters or by their splits.
+     */
+    public static TopologyGroups of(List<? extends Tree> trees, boolean rooted) {
+        Map<TopologyFingerprint, Integer> topologies = new HashMap<TopologyFingerprint, Integer>();
+        List<Integer> representatives = new ArrayList<Integer>();
+        int[] topologyOf = new int[trees.size()];
+        for (int i = 0; i < topologyOf.length; i++) {
+            Tree tree = trees.get(i);
+            TopologyFingerprint f = rooted ? TopologyFingerprint.getRooted(tree) : TopologyFingerprint.getUnrooted(tree);
+            Integer k = topologies.get(f);
+            if (k == null) {
+                k = representatives.size();
+                topologies.put(f, k);
+                representatives.add(i);
+            }
+            topologyOf[i] = k;
+        }
+        int[] rep = new int[representatives.size()];
+        int[] multiplicities = new int[rep.length];
+        for (int k = 0; k < rep.length; k++) {
+            rep[k] = representatives.get(k);
+        }
+        for (int k : topologyOf) {
+            multiplicities[k]++;
+        }
+        return new TopologyGroups(topologyOf, rep, multiplicities);
+    }
+
+    /**
+     * @return The number of trees.
+     */
+    public int getTreeCount() {
+        return topologyOf.length;
+    }
+
+    /**
+     * @return The number of distinct topologies.
+     */
+    public int getTopologyCount() {
+        return representatives.length;
+    }
+
+    /**
+     * @return The topology of tree i.
+     */
+    public int getTopology(int i) {
+        return topologyOf[i];
+    }
+
+    /**
+     * @return The index of the first tree of topology k.
+     */
+    public int getRepresentative(int k) {
+        return representatives[k];
+    }
+
+    /**
+     * @return The number of trees of topology k.
+     */
+    public int getMultiplicity(int k) {
+        return multiplicities[k];
+    }
+
+    /**
+     * @return The indexes of the trees of topology k, in increasing order.
+     */
+    public int[] getMembers(int k) {
+        int[] members = new int[multiplicities[k]];
+        int num = 0;
+        for (int i = 0; i < topologyOf.length && num < members.length; i++) {
+            if (topologyOf[i] == k) {
+                members[num++] = i;
+            }
+        }
+        return members;
+    }
+}
@@ -31,9 +31,9 @@ public class TreeCmpUtils {
         int leafNum = tree.getExternalNodeCount();
         int intNum = tree.getInternalNodeCount();
         if (idGroup == null)
-            idGroup = TreeUtils.getLeafIdGroup(tree);
+            idGroup = TaxonRegistry.getShared().getLeafIdGroup(tree);
 
-        int[] alias = TreeUtils.mapExternalIdentifiers(idGroup, tree);
+        int[] alias = TaxonRegistry.getShared().mapExternalIdentifiers(idGroup, tree);
         int[][] lcaMatrix = new int[leafNum][leafNum];
         for (int i=0;i<leafNum;i++)
             lcaMatrix[i][i] = -1;
@@ -91,9 +91,9 @@ public class TreeCmpUtils {
         int leafNum = tree.getExternalNodeCount();
         //int intNum = tree.getInternalNodeCount();
         if (idGroup == null)
-            idGroup = TreeUtils.getLeafIdGroup(tree);
+            idGroup = TaxonRegistry.getShared().getLeafIdGroup(tree);
 
-        int[] alias = TreeUtils.mapExternalIdentifiers(idGroup, tree);
+        int[] alias = TaxonRegistry.getShared().mapExternalIdentifiers(idGroup, tree);
         if (lcaMatrix == null) {
             lcaMatrix = calcLcaMatrix(tree, idGroup);
         }
@@ -142,8 +142,8 @@ public class TreeCmpUtils {
     public static int getNcv(Tree tree, int i, int j, int k, int[][] lcaMatrix, int[] alias) {
 
         if (alias == null || lcaMatrix == null) {
-            IdGroup idGroup = TreeUtils.getLeafIdGroup(tree);
-            alias = TreeUtils.mapExternalIdentifiers(idGroup, tree);
+            IdGroup idGroup = TaxonRegistry.getShared().getLeafIdGroup(tree);
+            alias = TaxonRegistry.getShared().mapExternalIdentifiers(idGroup, tree);
             lcaMatrix = calcLcaMatrix(tree, idGroup);
         }
 
@@ -215,9 +215,9 @@ public class TreeCmpUtils {
         int leafNum = tree.getExternalNodeCount();
         int intNum = tree.getInternalNodeCount();
         if (idGroup == null)
-            idGroup = TreeUtils.getLeafIdGroup(tree);
+            idGroup = TaxonRegistry.getShared().getLeafIdGroup(tree);
 
-        int[] alias = TreeUtils.mapExternalIdentifiers(idGroup, tree);
+        int[] alias = TaxonRegistry.getShared().mapExternalIdentifiers(idGroup, tree);
 
         int[][] nodalSplittedMatrix = new int[leafNum][leafNum];
         /*for (int i=0;i<leafNum;i++)
@@ -978,10 +978,10 @@ public class TreeCmpUtils {
         Node curNode;
         short depth;
         if (idGroup == null) {
-            idGroup = TreeUtils.getLeafIdGroup(t);
+            idGroup = TaxonRegistry.getShared().getLeafIdGroup(t);
         }
 
-        int[] alias = TreeUtils.mapExternalIdentifiers(idGroup, t);
+        int[] alias = TaxonRegistry.getShared().mapExternalIdentifiers(idGroup, t);
         for (int i = 0; i < preOrderNodes.length; i++) {
             curNode = preOrderNodes[i];
             curNodeNum = curNode.getNumber();
@@ -1016,10 +1016,10 @@ public class TreeCmpUtils {
         Node curNode;
         double depth;
         if (idGroup == null) {
-            idGroup = TreeUtils.getLeafIdGroup(t);
+            idGroup = TaxonRegistry.getShared().getLeafIdGroup(t);
         }
 
-        int[] alias = TreeUtils.mapExternalIdentifiers(idGroup, t);
+        int[] alias = TaxonRegistry.getShared().mapExternalIdentifiers(idGroup, t);
         for (int i = 0; i < preOrderNodes.length; i++) {
             curNode = preOrderNodes[i];
             curNodeNum = curNode.getNumber();
@@ -1047,18 +1047,27 @@ public class TreeCmpUtils {
         return currMax;
     }
 
-    static int countSackinIndex(Node node, int depth) {
-        if(node.isLeaf()) {
-            return depth;
-        }
-        else{
-            int sackinIndex = 0;
-            final int numberOfChildren = node.getChildCount();
-            for (int i=0; i<numberOfChildren; i++) {
-                sackinIndex += countSackinIndex(node.getChild(i),depth+1);
+    static long countSackinIndex(Node node, int depth) {
+        // depth-first without recursion, deep (caterpillar) trees would overflow the stack
+        long sackinIndex = 0;
+        ArrayDeque<Node> nodes = new ArrayDeque<Node>();
+        ArrayDeque<Integer> depths = new ArrayDeque<Integer>();
+        nodes.push(node);
+        depths.push(depth);
+        while (!nodes.isEmpty()) {
+            Node curNode = nodes.pop();
+            int curDepth = depths.pop();
+            if (curNode.isLeaf()) {
+                sackinIndex += curDepth;
+            } else {
+                final int numberOfChildren = curNode.getChildCount();
+                for (int i = 0; i < numberOfChildren; i++) {
+                    nodes.push(curNode.getChild(i));
+                    depths.push(curDepth + 1);
+                }
             }
-            return sackinIndex;
         }
+        return sackinIndex;
     }
 
     public static double getSackinIndex(Tree tree) {
@@ -1067,19 +1076,12 @@ public class TreeCmpUtils {
         return (double) countSackinIndex(node, depth);
     }
 
+    /**
+     * Computes the minimum of the Sackin index over all roots at internal nodes of the unrooted
+     * tree in O(n) time, see {@link BalanceIndices}.
+     */
     public static double getSackinUnrootedIndex(Tree tree) {
-        Tree unrootedTree = unrootTreeIfNeeded(tree);
-        final SimpleTree t = new SimpleTree(unrootedTree);
-        int treeInternalNodeCount = t.getInternalNodeCount();
-        double minSackinIndex = Double.MAX_VALUE;
-        for (int i=0; i<treeInternalNodeCount; i++) {
-            t.reroot(t.getInternalNode(i));
-            double tmpSackinIndex = getSackinIndex(t);
-            if (minSackinIndex > tmpSackinIndex) {
-                minSackinIndex = tmpSackinIndex;
-            }
-        }
-        return minSackinIndex;
+        return (double) BalanceIndices.of(tree).getUnrootedSackin();
     }
 
 }
@@ -0,0 +1,179 @@
+/** This file is part of TreeCmp, a tool for comparing phylogenetic trees
+    using the Matching Split distance and other metrics.
+    Copyright (C) 2011,  Damian Bogdanowicz
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>. */
+
+package treecmp.common;
+
+import pal.misc.IdGroup;
+import pal.tree.Node;
+import pal.tree.Tree;
+
+import java.util.BitSet;
+
+/**
+ * The intermediate results shared by metrics comparing the same pair of trees.
+ *
+ * <p>Every intermediate is computed on first use and kept, so metrics evaluated on one context
+ * build the splits, clusters, cluster intersection matrix and LCA matrices of the pair once. The
+ * leaf id groups are taken (and the node lists of both trees rebuilt) when the context is
+ * created; the trees must not be modified while it is used. A context is not thread safe and the
+ * returned arrays must not be modified.</p>
+ */
+public class TreePairContext {
+
+    private final Tree t1;
+    private final Tree t2;
+    private final IdGroup idGroup1;
+    private final IdGroup idGroup2;
+
+    private BitSet[] splits1;
+    private BitSet[] splits2;
+    private BitSet[] clusters1;
+    private BitSet[] clusters2;
+    private ClustIntersectInfoMatrix clustIntersectMatrix;
+    private int[][] lcaMatrix1;
+    private int[][] lcaMatrix2;
+    private Node[] postOrder1;
+    private Node[] postOrder2;
+    private short[] cladeSizes1;
+    private short[] cladeSizes2;
+
+    public TreePairContext(Tree t1, Tree t2) {
+        this.t1 = t1;
+        this.t2 = t2;
+        this.idGroup1 = TaxonRegistry.getShared().getLeafIdGroup(t1);
+        this.idGroup2 = TaxonRegistry.getShared().getLeafIdGroup(t2);
+    }
+
+    public Tree getT1() {
+        return t1;
+    }
+
+    public Tree getT2() {
+        return t2;
+    }
+
+    /**
+     * @return The leaf labels of the first tree, used to index splits and clusters of both trees.
+     */
+    public IdGroup getIdGroup() {
+        return idGroup1;
+    }
+
+    /**
+     * @param rooted Whether the clusters or the splits of the trees are compared.
+     * @return true if the trees have the same leaf set and topology.
+     * @see TopologyFingerprint#isSameTopology(Tree, Tree, boolean)
+     */
+    public boolean isSameTopology(boolean rooted) {
+        return TopologyFingerprint.isSameTopology(t1, t2, rooted);
+    }
+
+    public BitSet[] getSplits1() {
+        if (splits1 == null) {
+            splits1 = SplitDist.getSplits(t1, idGroup1);
+        }
+        return splits1;
+    }
+
+    public BitSet[] getSplits2() {
+        if (splits2 == null) {
+            splits2 = SplitDist.getSplits(t2, idGroup1);
+        }
+        return splits2;
+    }
+
+    public BitSet[] getClusters1() {
+        if (clusters1 == null) {
+            clusters1 = ClusterDist.RootedTree2BitSetArray(t1, idGroup1);
+        }
+        return clusters1;
+    }
+
+    public BitSet[] getClusters2() {
+        if (clusters2 == null) {
+            clusters2 = ClusterDist.RootedTree2BitSetArray(t2, idGroup1);
+        }
+        return clusters2;
+    }
+
+    /**
+     * @return The cluster intersection matrix of the trees over the union of their labels.
+     */
+    public ClustIntersectInfoMatrix getClustIntersectMatrix() {
+        if (clustIntersectMatrix == null) {
+            IdGroup idGroup = TaxonRegistry.getShared().mergeIdGroups(idGroup1, idGroup2);
+            clustIntersectMatrix = TreeCmpUtils.calcClustIntersectMatrix(t1, t2, idGroup);
+        }
+        return clustIntersectMatrix;
+    }
+
+    /**
+     * @see TreeCmpUtils#calcLcaMatrix(Tree, IdGroup)
+     */
+    public int[][] getLcaMatrix1() {
+        if (lcaMatrix1 == null) {
+            lcaMatrix1 = TreeCmpUtils.calcLcaMatrix(t1, idGroup1);
+        }
+        return lcaMatrix1;
+    }
+
+    /**
+     * @return The LCA matrix of the second tree with the leaves indexed like in the first one.
+     */
+    public int[][] getLcaMatrix2() {
+        if (lcaMatrix2 == null) {
+            lcaMatrix2 = TreeCmpUtils.calcLcaMatrix(t2, idGroup1);
+        }
+        return lcaMatrix2;
+    }
+
+    public Node[] getPostOrder1() {
+        if (postOrder1 == null) {
+            postOrder1 = TreeCmpUtils.getNodesInPostOrder(t1);
+        }
+        return postOrder1;
+    }
+
+    public Node[] getPostOrder2() {
+        if (postOrder2 == null) {
+            postOrder2 = TreeCmpUtils.getNodesInPostOrder(t2);
+        }
+        return postOrder2;
+    }
+
+    /**
+     * @return The number of leaves below every internal node of the first tree.
+     */
+    public short[] getCladeSizes1() {
+        if (cladeSizes1 == null) {
+            cladeSizes1 = new short[t1.getInternalNodeCount()];
+            TreeCmpUtils.calcCladeSizes(t1, getPostOrder1(), cladeSizes1);
+        }
+        return cladeSizes1;
+    }
+
+    /**
+     * @return The number of leaves below every internal node of the second tree.
+     */
+    public short[] getCladeSizes2() {
+        if (cladeSizes2 == null) {
+            cladeSizes2 = new short[t2.getInternalNodeCount()];
+            TreeCmpUtils.calcCladeSizes(t2, getPostOrder2(), cladeSizes2);
+        }
+        return cladeSizes2;
+    }
+}
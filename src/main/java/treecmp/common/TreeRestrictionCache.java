@@ -0,0 +1,264 @@
+/** This file is part of TreeCmp, a tool for comparing phylogenetic trees
+    using the Matching Split distance and other metrics.
+    Copyright (C) 2011,  Damian Bogdanowicz
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>. */
+
+package treecmp.common;
+
+import pal.tree.Node;
+import pal.tree.Tree;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Restrictions of trees to subsets of their taxa, cached per tree and taxon subset.
+ *
+ * <p>Taxa are identified by their {@link TaxonRegistry} ids. Every tree is converted to a
+ * {@link CompactTree} once; a restriction is computed by {@link CompactTree#restrict(int[])} in
+ * O(n) time and the last {@code maxSubsets} restrictions of every tree are kept, so comparing a
+ * tree with many trees on partially overlapping taxa does not rebuild it for every pair. A cache
+ * entry is dropped when the root, the number of nodes, the leaves, a parent link or a branch
+ * length of the tree change, so trees may be modified in place between comparisons.</p>
+ */
+public class TreeRestrictionCache {
+
+    private static final TreeRestrictionCache shared = new TreeRestrictionCache(TaxonRegistry.getShared(), 16);
+
+    private final TaxonRegistry registry;
+    private final int maxSubsets;
+    private final Map<Tree, Entry> cache;
+
+    /**
+     * @param registry   The registry assigning the taxon ids.
+     * @param maxSubsets The number of restrictions kept per tree.
+     */
+    public TreeRestrictionCache(TaxonRegistry registry, int maxSubsets) {
+        this.registry = registry;
+        this.maxSubsets = maxSubsets;
+        this.cache = new WeakHashMap<Tree, Entry>();
+    }
+
+    /**
+     * @return The cache of the shared taxon registry.
+     */
+    public static TreeRestrictionCache getShared() {
+        return shared;
+    }
+
+    /**
+     * @return The sorted taxon ids of the leaves of both trees.
+     */
+    public int[] getCommonTaxa(Tree t1, Tree t2) {
+        // merge of the sorted ids, sized by the trees and not by the registry
+        int[] ids1 = registry.getTaxonIds(t1).clone();
+        int[] ids2 = registry.getTaxonIds(t2).clone();
+        Arrays.sort(ids1);
+        Arrays.sort(ids2);
+        int[] common = new int[Math.min(ids1.length, ids2.length)];
+        int num = 0;
+        int i = 0, j = 0;
+        while (i < ids1.length && j < ids2.length) {
+            if (ids1[i] < ids2[j]) {
+                i++;
+            } else if (ids1[i] > ids2[j]) {
+                j++;
+            } else {
+                if (num == 0 || common[num - 1] != ids1[i]) {
+                    common[num++] = ids1[i];
+                }
+                i++;
+                j++;
+            }
+        }
+        common = Arrays.copyOf(common, num);
+        return common;
+    }
+
+    /**
+     * Restricts both trees to their common taxa. A tree whose leaves are all common is returned
+     * itself.
+     *
+     * @return The restricted trees {@code {t1', t2'}}.
+     * @throws IllegalArgumentException if the trees have no common taxa.
+     */
+    public Tree[] restrictToCommonTaxa(Tree t1, Tree t2) {
+        int[] common = getCommonTaxa(t1, t2);
+        return new Tree[]{
+                (common.length == t1.getExternalNodeCount()) ? t1 : getRestrictedTree(t1, common),
+                (common.length == t2.getExternalNodeCount()) ? t2 : getRestrictedTree(t2, common)};
+    }
+
+    /**
+     * @return The array representation of the tree.
+     */
+    public CompactTree getCompactTree(Tree tree) {
+        return getEntry(tree).compact;
+    }
+
+    /**
+     * @param taxa Sorted taxon ids; taxa not in the tree are ignored.
+     * @return The tree restricted to {@code taxa}.
+     * @throws IllegalArgumentException if the tree has none of the taxa.
+     */
+    public CompactTree getRestricted(Tree tree, int[] taxa) {
+        return getRestriction(tree, taxa).compact;
+    }
+
+    /**
+     * @param taxa Sorted taxon ids; taxa not in the tree are ignored.
+     * @return The tree restricted to {@code taxa}, or the tree itself if it has no other taxa.
+     * @throws IllegalArgumentException if the tree has none of the taxa.
+     */
+    public Tree getRestrictedTree(Tree tree, int[] taxa) {
+        Restriction r = getRestriction(tree, taxa);
+        if (r.compact.leafNum == tree.getExternalNodeCount()) {
+            return tree;
+        }
+        synchronized (r) {
+            if (r.tree == null) {
+                r.tree = r.compact.toTree();
+            }
+            return r.tree;
+        }
+    }
+
+    private Restriction getRestriction(Tree tree, int[] taxa) {
+        Entry entry = getEntry(tree);
+        TaxonSet key = new TaxonSet(taxa);
+        Restriction r;
+        synchronized (entry) {
+            r = entry.restrictions.get(key);
+        }
+        if (r != null) {
+            return r;
+        }
+        int[] ids = entry.taxonIds;
+        int[] leaves = new int[ids.length];
+        int num = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (Arrays.binarySearch(taxa, ids[i]) >= 0) {
+                leaves[num++] = i;
+            }
+        }
+        r = new Restriction(entry.compact.restrict(Arrays.copyOf(leaves, num)));
+        synchronized (entry) {
+            entry.restrictions.put(new TaxonSet(taxa.clone()), r);
+        }
+        return r;
+    }
+
+    private Entry getEntry(Tree tree) {
+        int[] ids = registry.getTaxonIds(tree);
+        Entry entry;
+        synchronized (cache) {
+            entry = cache.get(tree);
+        }
+        if (entry != null && entry.isValid(tree, ids)) {
+            return entry;
+        }
+        tree.createNodeList();
+        entry = new Entry(tree, registry.getTaxonIds(tree), maxSubsets);
+        synchronized (cache) {
+            cache.put(tree, entry);
+        }
+        return entry;
+    }
+
+    private static class Entry {
+
+        final Node root;
+        final int nodeNum;
+        final int[] taxonIds;
+        final long linkHash;
+        final CompactTree compact;
+        final Map<TaxonSet, Restriction> restrictions;
+
+        Entry(Tree tree, int[] taxonIds, final int maxSubsets) {
+            this.root = tree.getRoot();
+            this.nodeNum = tree.getExternalNodeCount() + tree.getInternalNodeCount();
+            this.taxonIds = taxonIds;
+            this.linkHash = getLinkHash(tree);
+            this.compact = new CompactTree(tree);
+            this.restrictions = new LinkedHashMap<TaxonSet, Restriction>(16, 0.75f, true) {
+                protected boolean removeEldestEntry(Map.Entry<TaxonSet, Restriction> eldest) {
+                    return size() > maxSubsets;
+                }
+            };
+        }
+
+        boolean isValid(Tree tree, int[] ids) {
+            // the registry returns the same array as long as the leaves are unchanged
+            return ids == taxonIds && tree.getRoot() == root
+                    && tree.getExternalNodeCount() + tree.getInternalNodeCount() == nodeNum
+                    && getLinkHash(tree) == linkHash;
+        }
+
+        /**
+         * Hashes the parent and the branch length of every node, so a tree modified in place
+         * (e.g. by an SPR or NNI move keeping the root and the number of nodes) is detected in O(n)
+         * time without allocation.
+         */
+        static long getLinkHash(Tree tree) {
+            long h = tree.getExternalNodeCount();
+            for (int i = 0; i < tree.getExternalNodeCount(); i++) {
+                h = mixLink(h, tree.getExternalNode(i));
+            }
+            for (int i = 0; i < tree.getInternalNodeCount(); i++) {
+                h = mixLink(h, tree.getInternalNode(i));
+            }
+            return h;
+        }
+
+        private static long mixLink(long h, Node node) {
+            h = TopologyFingerprint.mix(h ^ System.identityHashCode(node));
+            h = TopologyFingerprint.mix(h ^ System.identityHashCode(node.getParent()));
+            return TopologyFingerprint.mix(h ^ Double.doubleToLongBits(node.getBranchLength()));
+        }
+    }
+
+    private static class Restriction {
+
+        final CompactTree compact;
+        Tree tree;
+
+        Restriction(CompactTree compact) {
+            this.compact = compact;
+        }
+    }
+
+    private static class TaxonSet {
+
+        final int[] taxa;
+        final int hash;
+
+        TaxonSet(int[] taxa) {
+            this.taxa = taxa;
+            this.hash = Arrays.hashCode(taxa);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return (o instanceof TaxonSet) && Arrays.equals(taxa, ((TaxonSet) o).taxa);
+        }
+    }
+}
@@ -0,0 +1,217 @@
+/** This file is part of TreeCmp, a tool for comparing phylogenetic trees
+    using the Matching Split distance and other metrics.
+    Copyright (C) 2011,  Damian Bogdanowicz
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>. */
+
+package treecmp.common;
+
+import pal.misc.IdGroup;
+import pal.tree.Node;
+import pal.tree.Tree;
+
+import java.util.BitSet;
+import java.util.HashMap;
+
+/**
+ * Edges of a tree stored as packed splits (or clusters) together with their branch lengths.
+ *
+ * <p>Every non-root node of the tree contributes one entry: external nodes first (in the order
+ * of {@code Tree.getExternalNode(i)}) and then internal nodes (in the order of
+ * {@code Tree.getInternalNode(i)}). The splits are computed in a single post-order pass by
+ * OR-ing the bit sets of the children, so building the structure takes O(n<sup>2</sup>/64) time
+ * and memory. A hash index over the splits allows each lookup in O(n/64) time, which makes
+ * comparing two trees O(n<sup>2</sup>/64) instead of O(n<sup>3</sup>) for the linear scans
+ * over {@code boolean[]} splits.
+ *
+ * <p>If the same split is carried by more than one edge (e.g. the two edges incident to the root
+ * of a rooted binary tree treated as unrooted), the index refers to the first such edge.
+ */
+public class WeightedSplits {
+
+    private final BitSet[] splits;
+    private final double[] weights;
+    private final HashMap<BitSet, Integer> index;
+
+    private WeightedSplits(BitSet[] splits, double[] weights) {
+        this.splits = splits;
+        this.weights = weights;
+        int hashSize = (4 * (splits.length + 1)) / 3;
+        this.index = new HashMap<BitSet, Integer>(hashSize);
+        for (int i = 0; i < splits.length; i++) {
+            if (!index.containsKey(splits[i])) {
+                index.put(splits[i], i);
+            }
+        }
+    }
+
+    /**
+     * Returns the unrooted splits of all edges of the tree (leaf edges included).
+     * Splits are standardized, i.e. the leaf with index 0 in {@code idGroup} is always on the true side.
+     *
+     * @param t       The tree.
+     * @param idGroup The leaf labels defining the bit positions.
+     * @return The weighted splits of {@code t}.
+     */
+    public static WeightedSplits getSplits(Tree t, IdGroup idGroup) {
+        return getWeightedBitSets(t, idGroup, true);
+    }
+
+    /**
+     * Returns the rooted clusters of all edges of the tree (leaf edges included).
+     *
+     * @param t       The tree.
+     * @param idGroup The leaf labels defining the bit positions.
+     * @return The weighted clusters of {@code t}.
+     */
+    public static WeightedSplits getClusters(Tree t, IdGroup idGroup) {
+        return getWeightedBitSets(t, idGroup, false);
+    }
+
+    private static WeightedSplits getWeightedBitSets(Tree t, IdGroup idGroup, boolean standardize) {
+        int n = idGroup.getIdCount();
+        int extNum = t.getExternalNodeCount();
+        int intNum = t.getInternalNodeCount();
+        int[] alias = TaxonRegistry.getShared().mapExternalIdentifiers(idGroup, t);
+
+        BitSet[] extBs = new BitSet[extNum];
+        BitSet[] intBs = new BitSet[intNum];
+        Node[] postOrder = TreeCmpUtils.getNodesInPostOrder(t);
+        Node node, child;
+        BitSet bs;
+        for (int i = 0; i < postOrder.length; i++) {
+            node = postOrder[i];
+            bs = new BitSet(n);
+            if (node.isLeaf()) {
+                bs.set(alias[node.getNumber()]);
+                extBs[node.getNumber()] = bs;
+            } else {
+                for (int j = 0; j < node.getChildCount(); j++) {
+                    child = node.getChild(j);
+                    if (child.isLeaf()) {
+                        bs.or(extBs[child.getNumber()]);
+                    } else {
+                        bs.or(intBs[child.getNumber()]);
+                    }
+                }
+                intBs[node.getNumber()] = bs;
+            }
+        }
+
+        BitSet[] splits = new BitSet[extNum + intNum - 1];
+        double[] weights = new double[extNum + intNum - 1];
+        int k = 0;
+        for (int i = 0; i < extNum; i++) {
+            splits[k] = extBs[i];
+            weights[k] = t.getExternalNode(i).getBranchLength();
+            k++;
+        }
+        for (int i = 0; i < intNum; i++) {
+            node = t.getInternalNode(i);
+            if (node.isRoot()) {
+                continue;
+            }
+            splits[k] = intBs[i];
+            weights[k] = node.getBranchLength();
+            k++;
+        }
+
+        // standardize splits (i.e. first index is always true);
+        // done after the pass as the children bit sets are reused above
+        if (standardize) {
+            for (int i = 0; i < splits.length; i++) {
+                if (!splits[i].get(0)) {
+                    splits[i].flip(0, n);
+                }
+            }
+        }
+        return new WeightedSplits(splits, weights);
+    }
+
+    public int size() {
+        return splits.length;
+    }
+
+    public BitSet getSplit(int i) {
+        return splits[i];
+    }
+
+    public double getWeight(int i) {
+        return weights[i];
+    }
+
+    /**
+     * @param split The split (cluster) to look for.
+     * @return The index of the first edge carrying {@code split} or -1 if there is no such edge.
+     */
+    public int indexOf(BitSet split) {
+        Integer i = index.get(split);
+        return (i == null) ? -1 : i;
+    }
+
+    public boolean contains(BitSet split) {
+        return index.containsKey(split);
+    }
+
+    /**
+     * Weighted Robinson-Foulds (L1) distance: the sum of absolute branch length differences
+     * over shared splits plus the lengths of the splits present in only one of the structures.
+     *
+     * @return The L1 distance between the branch length vectors.
+     */
+    public static double getL1Dist(WeightedSplits s1, WeightedSplits s2) {
+        double dist = 0.0;
+        int j;
+        for (int i = 0; i < s1.size(); i++) {
+            j = s2.indexOf(s1.splits[i]);
+            if (j >= 0) {
+                dist += Math.abs(s1.weights[i] - s2.weights[j]);
+            } else {
+                dist += s1.weights[i];
+            }
+        }
+        for (int i = 0; i < s2.size(); i++) {
+            if (!s1.contains(s2.splits[i])) {
+                dist += s2.weights[i];
+            }
+        }
+        return dist;
+    }
+
+    /**
+     * Branch score (L2) distance of Kuhner and Felsenstein: the square root of the sum of squared
+     * branch length differences, a split missing in one of the structures having length 0 there.
+     *
+     * @return The L2 distance between the branch length vectors.
+     */
+    public static double getL2Dist(WeightedSplits s1, WeightedSplits s2) {
+        double dist = 0.0, diff;
+        int j;
+        for (int i = 0; i < s1.size(); i++) {
+            j = s2.indexOf(s1.splits[i]);
+            if (j >= 0) {
+                diff = s1.weights[i] - s2.weights[j];
+            } else {
+                diff = s1.weights[i];
+            }
+            dist += diff * diff;
+        }
+        for (int i = 0; i < s2.size(); i++) {
+            if (!s1.contains(s2.splits[i])) {
+                dist += s2.weights[i] * s2.weights[i];
+            }
+        }
+        return Math.sqrt(dist);
+    }
+}
@@ -65,4 +65,39 @@ public class DefinedMetricsSet {
     public int size() {
         return this.metricList.size();
     }
+
+    /**
+     * Creates new instances of the defined metrics with the same configuration, e.g. one list per
+     * thread or per process of a parallel comparison.
+     */
+    public List<Metric> createDefinedMetrics() {
+        List<Metric> metrics = new ArrayList<Metric>(metricList.size());
+        for (Metric m : metricList) {
+            metrics.add(createInstance(m));
+        }
+        return metrics;
+    }
+
+    private static Metric createInstance(Metric m) {
+        Metric copy;
+        try {
+            copy = m.getClass().getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot create metric " + m.getName(), e);
+        }
+        copy.setName(m.getName());
+        copy.setCommandLineName(m.getCommandLineName());
+        copy.setDescription(m.getDescription());
+        if (m instanceof BaseMetric && copy instanceof BaseMetric) {
+            BaseMetric from = (BaseMetric) m;
+            BaseMetric to = (BaseMetric) copy;
+            to.setUnifomFileName(from.getUnifomFileName());
+            to.setYuleFileName(from.getYuleFileName());
+            to.setAlnFileSuffix(from.getAlnFileSuffix());
+            to.setRooted(from.isRooted());
+            to.setWeighted(from.isWeighted());
+            to.setDiffLeafSets(from.isDiffLeafSets());
+        }
+        return copy;
+    }
 }
@@ -0,0 +1,143 @@
+/** This file is part of TreeCmp, a tool for comparing phylogenetic trees
+    using the Matching Split distance and other metrics.
+    Copyright (C) 2011,  Damian Bogdanowicz
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>. */
+
+package treecmp.metrics;
+
+import pal.tree.Tree;
+import treecmp.common.TreeCmpException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Parallel computation of the distances between all pairs of trees into a
+ * {@link DistanceMatrixStore}.
+ *
+ * <p>Every incomplete block of the store is a task of a thread pool with its own metric instances;
+ * it compares the trees of the block with all trees before them, taken in chunks of
+ * {@link #ROW_CHUNK} trees, and marks the block complete when done. The metrics rebuild the node
+ * lists of their trees, so a task works on its own copies of the trees. Blocks completed before an
+ * interruption are not computed again when the computation is resumed with the same store.</p>
+ */
+public class AllPairsComparison {
+
+    public static final int ROW_CHUNK = 256;
+
+    private final Supplier<? extends List<? extends Metric>> metricFactory;
+    private int threadCount;
+
+    /**
+     * @param metricFactory Creates the metric instances; one list is used by one thread at a time.
+     */
+    public AllPairsComparison(Supplier<? extends List<? extends Metric>> metricFactory) {
+        this.metricFactory = metricFactory;
+        this.threadCount = Runtime.getRuntime().availableProcessors();
+    }
+
+    public void setThreadCount(int threadCount) {
+        this.threadCount = Math.max(1, threadCount);
+    }
+
+    /**
+     * Computes the incomplete blocks of the store.
+     *
+     * @return The number of computed blocks.
+     * @throws IllegalArgumentException if the store does not fit the trees and the metrics.
+     */
+    public int compare(List<? extends Tree> trees, DistanceMatrixStore store) throws TreeCmpException {
+        return compare(trees, store, 0, 1);
+    }
+
+    /**
+     * Computes the incomplete blocks b of the store with b mod shardCount = shard; the blocks are
+     * dealt out cyclically, so the long last columns of the triangle are spread over all shards.
+     *
+     * @return The number of computed blocks.
+     * @throws IllegalArgumentException if the store does not fit the trees and the metrics.
+     */
+    public int compare(final List<? extends Tree> trees, final DistanceMatrixStore store, int shard, int shardCount)
+            throws TreeCmpException {
+        if (store.getSize() != trees.size() || store.getMetricCount() != metricFactory.get().size()) {
+            throw new IllegalArgumentException("The store does not fit the trees and the metrics");
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        List<Future<Object>> results = new ArrayList<Future<Object>>();
+        try {
+            for (int b = shard; b < store.getBlockCount(); b += shardCount) {
+                if (!store.isBlockComplete(b)) {
+                    final int block = b;
+                    results.add(executor.submit(new Callable<Object>() {
+                        public Object call() throws TreeCmpException {
+                            computeBlock(trees, store, block);
+                            return null;
+                        }
+                    }));
+                }
+            }
+            for (Future<Object> f : results) {
+                f.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TreeCmpException("Comparison interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TreeCmpException) {
+                throw (TreeCmpException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return results.size();
+    }
+
+    private void computeBlock(List<? extends Tree> trees, DistanceMatrixStore store, int b) throws TreeCmpException {
+        MultiMetricEvaluator evaluator = new MultiMetricEvaluator(metricFactory.get());
+        int start = store.getBlockStart(b);
+        int end = store.getBlockEnd(b);
+        Tree[] block = new Tree[end - start];
+        for (int j = start; j < end; j++) {
+            block[j - start] = trees.get(j).getCopy();
+        }
+        double[] distances = new double[evaluator.getMetricCount()];
+        Tree[] rows = new Tree[ROW_CHUNK];
+        for (int r = 0; r < end - 1; r += ROW_CHUNK) {
+            int rEnd = Math.min(end - 1, r + ROW_CHUNK);
+            for (int i = r; i < rEnd; i++) {
+                rows[i - r] = (i >= start) ? block[i - start] : trees.get(i).getCopy();
+            }
+            for (int j = Math.max(start, r + 1); j < end; j++) {
+                if (Thread.interrupted()) {
+                    throw new TreeCmpException("Comparison interrupted");
+                }
+                for (int i = r; i < rEnd && i < j; i++) {
+                    evaluator.getDistances(rows[i - r], block[j - start], distances);
+                    for (int m = 0; m < distances.length; m++) {
+                        store.set(m, i, j, distances[m]);
+                    }
+                }
+            }
+        }
+        store.setBlockComplete(b);
+    }
+}
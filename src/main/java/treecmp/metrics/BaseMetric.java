@@ -20,12 +20,9 @@ package treecmp.metrics;
 import pal.tree.Tree;
 import treecmp.common.AlignInfo;
 import treecmp.config.ConfigSettings;
+import treecmp.statdata.DistributionStore;
 import treecmp.statdata.IMetircDistrbHolder;
-import treecmp.statdata.MetircDistrbHolder;
-import treecmp.statdata.MetricDistribution;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -139,33 +136,20 @@ public abstract class BaseMetric implements Metric{
     }
     
     private IMetircDistrbHolder parseData(String dataDir, String dataFileName){
-        
-        MetircDistrbHolder mdh = new MetircDistrbHolder();
-
-        String fullPath = dataDir + "/" + dataFileName;
-
         try {
-        FileReader fr = new FileReader(fullPath);
-        BufferedReader br = new BufferedReader(fr);
-        int cnt = 0;
-        String line;
-        while ((line = br.readLine()) != null){
-          cnt++;
-          if(cnt > 1){
-              MetricDistribution md = new MetricDistribution();
-              md.readData(line);
-              mdh.insertDistribution(md);
-          }
+            return DistributionStore.getSharedHolder(dataDir, dataFileName);
+        }
+        catch (IOException e) {
+            Logger.getLogger(ConfigSettings.class.getName()).log(Level.SEVERE, "Error while reading data file:" + dataDir + "/" + dataFileName, e);
+            return null;
         }
-        br.close();
-      }
-      catch (IOException e) {
-          Logger.getLogger(ConfigSettings.class.getName()).log(Level.SEVERE, "Error while reading data file:" + fullPath, e);
-          mdh = null;
-      }
-        return mdh;
     }
 
+    /**
+     * Loads the reference distributions of the metric. They are taken from the binary store
+     * ({@link DistributionStore#FILE_NAME}) of the data directory if it exists, otherwise from the
+     * text files, and are shared by all metric instances.
+     */
     public void initData(){
         ConfigSettings config = ConfigSettings.getConfig();
         String dataDir = config.getDataDir();
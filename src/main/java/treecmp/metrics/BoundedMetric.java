@@ -0,0 +1,35 @@
+/** This file is part of TreeCmp, a tool for comparing phylogenetic trees
+    using the Matching Split distance and other metrics.
+    Copyright (C) 2011,  Damian Bogdanowicz
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>. */
+
+package treecmp.metrics;
+
+import pal.tree.Tree;
+import treecmp.common.TreeCmpException;
+
+/**
+ * A metric able to stop computing a distance as soon as it is known to exceed a bound, for
+ * queries which only need to know whether two trees are within a threshold (clustering,
+ * deduplication, range and nearest-neighbor search, see {@link MetricTreeIndex}).
+ */
+public interface BoundedMetric extends Metric {
+
+    /**
+     * @return The distance of the trees if it is at most {@code bound}, otherwise a value greater
+     * than {@code bound} which is at most the distance.
+     */
+    public double getDistanceAtMost(Tree t1, Tree t2, double bound) throws TreeCmpException;
+}
@@ -0,0 +1,33 @@
+/** This file is part of TreeCmp, a tool for comparing phylogenetic trees
+    using the Matching Split distance and other metrics.
+    Copyright (C) 2011,  Damian Bogdanowicz
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>. */
+
+package treecmp.metrics;
+
+import pal.tree.Tree;
+import treecmp.common.TreeCmpException;
+
+/**
+ * A metric able to bound a distance from quantities much cheaper than the distance itself, e.g.
+ * the shared splits or clades or a greedy matching, see {@link CascadeEvaluator}.
+ */
+public interface BoundingMetric extends Metric {
+
+    /**
+     * @return The bounds {lower, upper} of {@code getDistance(t1, t2)}.
+     */
+    public double[] getDistanceBounds(Tree t1, Tree t2) throws TreeCmpException;
+}
@@ -0,0 +1,186 @@
+/** This file is part of TreeCmp, a tool for comparing phylogenetic trees
+    using the Matching Split distance and other metrics.
+    Copyright (C) 2011,  Damian Bogdanowicz
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>. */
+
+package treecmp.metrics;
+
+import pal.tree.Tree;
+import treecmp.common.Neighbor;
+import treecmp.common.TreeCmpException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Evaluates queries over a metric in stages: first the cheap bounds of a {@link BoundingMetric},
+ * then, only where the bounds do not decide the query, the exact distance, stopped early by a
+ * {@link BoundedMetric}. For other metrics every query computes the exact distances.
+ *
+ * <p>A k-nearest-neighbor query computes the bounds of all trees and then the exact distances in
+ * the order of the lower bounds, until the lower bound exceeds the distance of the current k-th
+ * neighbor. The evaluator is not thread safe when the metric is not.</p>
+ */
+public class CascadeEvaluator {
+
+    private final Metric metric;
+    private long boundCount;
+    private long exactCount;
+
+    public CascadeEvaluator(Metric metric) {
+        this.metric = metric;
+    }
+
+    public Metric getMetric() {
+        return metric;
+    }
+
+    /**
+     * @return The number of bound computations since the evaluator was created.
+     */
+    public long getBoundEvaluationCount() {
+        return boundCount;
+    }
+
+    /**
+     * @return The number of exact (possibly early stopped) distance computations since the
+     * evaluator was created.
+     */
+    public long getExactEvaluationCount() {
+        return exactCount;
+    }
+
+    /**
+     * @return The bounds {lower, upper} of the distance, {0, infinity} if the metric is not a
+     * {@link BoundingMetric}.
+     */
+    public double[] getBounds(Tree t1, Tree t2) throws TreeCmpException {
+        if (!(metric instanceof BoundingMetric)) {
+            return new double[]{0.0, Double.POSITIVE_INFINITY};
+        }
+        boundCount++;
+        return ((BoundingMetric) metric).getDistanceBounds(t1, t2);
+    }
+
+    /**
+     * @return Whether the distance of the trees is at most {@code threshold}.
+     */
+    public boolean isWithin(Tree t1, Tree t2, double threshold) throws TreeCmpException {
+        double[] bounds = getBounds(t1, t2);
+        if (bounds[1] <= threshold) {
+            return true;
+        }
+        if (bounds[0] > threshold) {
+            return false;
+        }
+        return getDistance(t1, t2, threshold) <= threshold;
+    }
+
+    /**
+     * @return A negative number, zero or a positive number if the query is closer to {@code a}
+     * than to {@code b}, as close to both or closer to {@code b}.
+     */
+    public int compareDistances(Tree query, Tree a, Tree b) throws TreeCmpException {
+        double[] boundsA = getBounds(query, a);
+        double[] boundsB = getBounds(query, b);
+        if (boundsA[1] < boundsB[0]) {
+            return -1;
+        }
+        if (boundsB[1] < boundsA[0]) {
+            return 1;
+        }
+        double da = getDistance(query, a, Double.POSITIVE_INFINITY);
+        if (da < boundsB[0]) {
+            return -1;
+        }
+        if (da > boundsB[1]) {
+            return 1;
+        }
+        return Double.compare(da, getDistance(query, b, Double.POSITIVE_INFINITY));
+    }
+
+    /**
+     * @return The indexes of the trees at distance at most {@code radius} from the query, in
+     * increasing order. The distances of the trees accepted by their upper bounds are not
+     * computed.
+     */
+    public List<Integer> withinDistance(Tree query, List<? extends Tree> trees, double radius)
+            throws TreeCmpException {
+        List<Integer> found = new ArrayList<Integer>();
+        for (int i = 0; i < trees.size(); i++) {
+            if (isWithin(query, trees.get(i), radius)) {
+                found.add(i);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @return The k trees nearest to the query with their exact distances, ordered by distance
+     * and index.
+     */
+    public List<Neighbor> nearest(Tree query, List<? extends Tree> trees, int k) throws TreeCmpException {
+        Neighbor.Collector collector = new Neighbor.Collector(k);
+        int n = trees.size();
+        if (k <= 0 || n == 0) {
+            return collector.getNeighbors();
+        }
+        final double[] lower = new double[n];
+        double[] upper = new double[n];
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            double[] bounds = getBounds(query, trees.get(i));
+            lower[i] = bounds[0];
+            upper[i] = bounds[1];
+            order[i] = i;
+        }
+        // the k trees of the smallest upper bounds are at most the k-th smallest upper bound away
+        double[] sortedUpper = upper.clone();
+        Arrays.sort(sortedUpper);
+        double kthUpper = (k <= n) ? sortedUpper[k - 1] : Double.POSITIVE_INFINITY;
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer i1, Integer i2) {
+                int c = Double.compare(lower[i1], lower[i2]);
+                return (c != 0) ? c : i1.compareTo(i2);
+            }
+        });
+        for (int i : order) {
+            double bound = Math.min(kthUpper, collector.getBound());
+            if (lower[i] > bound) {
+                break;
+            }
+            double d = getDistance(query, trees.get(i), bound);
+            // a larger value may be only a lower bound, and such a tree is not among the nearest
+            if (d <= bound) {
+                collector.offer(i, d);
+            }
+        }
+        return collector.getNeighbors();
+    }
+
+    /**
+     * @return The distance, or a value above {@code bound} if the distance is above it and the
+     * metric is a {@link BoundedMetric}.
+     */
+    private double getDistance(Tree t1, Tree t2, double bound) throws TreeCmpException {
+        exactCount++;
+        if (bound < Double.POSITIVE_INFINITY && metric instanceof BoundedMetric) {
+            return ((BoundedMetric) metric).getDistanceAtMost(t1, t2, bound);
+        }
+        return metric.getDistance(t1, t2);
+    }
+}
@@ -0,0 +1,33 @@
+/** This file is part of TreeCmp, a tool for comparing phylogenetic trees
+    using the Matching Split distance and other metrics.
+    Copyright (C) 2011,  Damian Bogdanowicz
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>. */
+
+package treecmp.metrics;
+
+import treecmp.common.TreeCmpException;
+import treecmp.common.TreePairContext;
+
+/**
+ * A metric able to take the intermediate results of a tree pair from a {@link TreePairContext}
+ * shared with other metrics, see {@link MultiMetricEvaluator}.
+ */
+public interface ContextMetric extends Metric {
+
+    /**
+     * @return The same value as {@code getDistance(context.getT1(), context.getT2())}.
+     */
+    public double getDistance(TreePairContext context) throws TreeCmpException;
+}
@@ -0,0 +1,255 @@
+/** This file is part of TreeCmp, a tool for comparing phylogenetic trees
+    using the Matching Split distance and other metrics.
+    Copyright (C) 2011,  Damian Bogdanowicz
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>. */
+
+package treecmp.metrics;
+
+import pal.tree.Tree;
+import treecmp.common.TopologyGroups;
+import treecmp.common.TreeCmpException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * All-pairs comparison of a tree collection computing every topological metric once per pair of
+ * distinct topologies.
+ *
+ * <p>The trees are grouped by their rooted {@link treecmp.common.TopologyFingerprint}. Metrics
+ * that are not weighted ({@link Metric#isWeighted()}) only depend on the topologies, so they are
+ * evaluated for the pairs of group representatives; trees of one group are at distance 0. Weighted
+ * metrics are evaluated for all pairs of trees. The distances can be read for the original tree
+ * indexes or, for the topological metrics, in the compressed form of a matrix over the distinct
+ * topologies with their multiplicities. With u distinct topologies among n trees the topological
+ * work drops from n(n-1)/2 to u(u-1)/2 comparisons.</p>
+ */
+public class DeduplicatedComparison {
+
+    private final Metric[] metrics;
+    private final MultiMetricEvaluator topological;
+    private final MultiMetricEvaluator weighted;
+    // position of every metric in the topological or weighted evaluator
+    private final int[] position;
+
+    public DeduplicatedComparison(List<? extends Metric> metrics) {
+        this.metrics = metrics.toArray(new Metric[metrics.size()]);
+        this.position = new int[this.metrics.length];
+        List<Metric> topologicalMetrics = new ArrayList<Metric>();
+        List<Metric> weightedMetrics = new ArrayList<Metric>();
+        for (int m = 0; m < this.metrics.length; m++) {
+            if (this.metrics[m].isWeighted()) {
+                position[m] = weightedMetrics.size();
+                weightedMetrics.add(this.metrics[m]);
+            } else {
+                position[m] = topologicalMetrics.size();
+                topologicalMetrics.add(this.metrics[m]);
+            }
+        }
+        this.topological = new MultiMetricEvaluator(topologicalMetrics);
+        this.weighted = new MultiMetricEvaluator(weightedMetrics);
+    }
+
+    public int getMetricCount() {
+        return metrics.length;
+    }
+
+    public Metric getMetric(int m) {
+        return metrics[m];
+    }
+
+    /**
+     * Compares all pairs of trees.
+     *
+     * @throws IllegalArgumentException if the pairs of the distinct topologies, or of the trees when
+     * there are weighted metrics, do not fit in a Java array.
+     */
+    public Result compare(List<? extends Tree> trees) throws TreeCmpException {
+        TopologyGroups groups = TopologyGroups.of(trees, true);
+        int n = groups.getTreeCount();
+        int u = groups.getTopologyCount();
+
+        double[][] topologicalDistances = allocate(topological.getMetricCount(), u, "distinct topologies");
+        double[] distances = new double[topological.getMetricCount()];
+        if (distances.length > 0) {
+            for (int a = 0; a < u; a++) {
+                Tree t1 = trees.get(groups.getRepresentative(a));
+                for (int b = a + 1; b < u; b++) {
+                    topological.getDistances(t1, trees.get(groups.getRepresentative(b)), distances);
+                    int p = pairIndex(a, b, u);
+                    for (int m = 0; m < distances.length; m++) {
+                        topologicalDistances[m][p] = distances[m];
+                    }
+                }
+            }
+        }
+
+        double[][] weightedDistances = allocate(weighted.getMetricCount(), n, "trees");
+        distances = new double[weighted.getMetricCount()];
+        if (distances.length > 0) {
+            for (int i = 0; i < n; i++) {
+                for (int j = i + 1; j < n; j++) {
+                    weighted.getDistances(trees.get(i), trees.get(j), distances);
+                    int p = pairIndex(i, j, n);
+                    for (int m = 0; m < distances.length; m++) {
+                        weightedDistances[m][p] = distances[m];
+                    }
+                }
+            }
+        }
+        return new Result(groups, topologicalDistances, weightedDistances);
+    }
+
+    private static long pairCount(int n) {
+        return (long) n * (n - 1) / 2;
+    }
+
+    /**
+     * @return The distances of the metrics over all pairs of n items, no array if there are no
+     * metrics.
+     */
+    private static double[][] allocate(int metricCount, int n, String items) {
+        if (metricCount == 0) {
+            return new double[0][];
+        }
+        long pairs = pairCount(n);
+        // the largest array size supported by common JVMs
+        if (pairs > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Too many " + items + " (" + n + ") to store the distances of "
+                    + pairs + " pairs");
+        }
+        return new double[metricCount][(int) pairs];
+    }
+
+    /**
+     * @return The position of the pair (i, j), i &lt; j, in the row-wise upper triangle of an
+     * n&times;n matrix.
+     */
+    private static int pairIndex(int i, int j, int n) {
+        return (int) ((long) i * (2L * n - i - 1) / 2) + (j - i - 1);
+    }
+
+    /**
+     * The distances of a compared collection.
+     */
+    public class Result {
+
+        private final TopologyGroups groups;
+        private final double[][] topologicalDistances;
+        private final double[][] weightedDistances;
+
+        Result(TopologyGroups groups, double[][] topologicalDistances, double[][] weightedDistances) {
+            this.groups = groups;
+            this.topologicalDistances = topologicalDistances;
+            this.weightedDistances = weightedDistances;
+        }
+
+        public TopologyGroups getGroups() {
+            return groups;
+        }
+
+        /**
+         * @return Whether metric m was computed once per pair of distinct topologies.
+         */
+        public boolean isDeduplicated(int m) {
+            return !metrics[m].isWeighted();
+        }
+
+        /**
+         * @return The distance of metric m between trees i and j.
+         */
+        public double getDistance(int m, int i, int j) {
+            if (isDeduplicated(m)) {
+                return getTopologyDistance(m, groups.getTopology(i), groups.getTopology(j));
+            }
+            if (i == j) {
+                return 0.0;
+            }
+            int n = groups.getTreeCount();
+            return weightedDistances[position[m]][(i < j) ? pairIndex(i, j, n) : pairIndex(j, i, n)];
+        }
+
+        /**
+         * @return The distance of the topological metric m between distinct topologies a and b.
+         * @throws IllegalArgumentException if metric m is weighted.
+         */
+        public double getTopologyDistance(int m, int a, int b) {
+            if (!isDeduplicated(m)) {
+                throw new IllegalArgumentException("Metric " + metrics[m].getName() + " is weighted");
+            }
+            if (a == b) {
+                return 0.0;
+            }
+            int u = groups.getTopologyCount();
+            return topologicalDistances[position[m]][(a < b) ? pairIndex(a, b, u) : pairIndex(b, a, u)];
+        }
+
+        /**
+         * @return The distances of metric m between all trees.
+         */
+        public double[][] getMatrix(int m) {
+            int n = groups.getTreeCount();
+            double[][] matrix = new double[n][n];
+            for (int i = 0; i < n; i++) {
+                for (int j = i + 1; j < n; j++) {
+                    matrix[i][j] = matrix[j][i] = getDistance(m, i, j);
+                }
+            }
+            return matrix;
+        }
+
+        /**
+         * @return The distances of the topological metric m between the distinct topologies; the
+         * multiplicities are given by {@link TopologyGroups#getMultiplicity(int)}.
+         * @throws IllegalArgumentException if metric m is weighted.
+         */
+        public double[][] getTopologyMatrix(int m) {
+            int u = groups.getTopologyCount();
+            double[][] matrix = new double[u][u];
+            for (int a = 0; a < u; a++) {
+                for (int b = a + 1; b < u; b++) {
+                    matrix[a][b] = matrix[b][a] = getTopologyDistance(m, a, b);
+                }
+            }
+            return matrix;
+        }
+
+        /**
+         * @return The mean distance of metric m over all pairs of different trees, or 0 for fewer
+         * than two trees.
+         */
+        public double getMeanDistance(int m) {
+            int n = groups.getTreeCount();
+            if (n < 2) {
+                return 0.0;
+            }
+            double sum = 0.0;
+            if (isDeduplicated(m)) {
+                int u = groups.getTopologyCount();
+                for (int a = 0; a < u; a++) {
+                    for (int b = a + 1; b < u; b++) {
+                        sum += (double) groups.getMultiplicity(a) * groups.getMultiplicity(b)
+                                * getTopologyDistance(m, a, b);
+                    }
+                }
+            } else {
+                for (double d : weightedDistances[position[m]]) {
+                    sum += d;
+                }
+            }
+            return sum / (double) pairCount(n);
+        }
+    }
+}
@@ -0,0 +1,529 @@
+/** This file is part of TreeCmp, a tool for comparing phylogenetic trees
+    using the Matching Split distance and other metrics.
+    Copyright (C) 2011,  Damian Bogdanowicz
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>. */
+
+package treecmp.metrics;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Memory-mapped file holding the distances of several metrics between all pairs of n trees.
+ *
+ * <p>Only one triangle is stored, column by column: the pairs (i, j), i &lt; j, are ordered by j
+ * and then by i, with the values of all metrics of a pair next to each other. So the columns of a
+ * block of trees are one contiguous region of the file, and new trees are appended at its end
+ * ({@link #grow(int)}). The file is mapped in segments of 1 GB, so its size is not limited by the
+ * heap or by the 2 GB limit of a single mapping. Layout (big-endian):
+ * <pre>
+ *     int magic, int version, int size, int metricCount, int blockSize, int cellType, double scale,
+ *     int blockCapacity, int unused
+ *     metricCount x (short nameLength, byte[nameLength] name (UTF-8))
+ *     blockCapacity x byte complete
+ *     padding to a multiple of 8
+ *     size(size-1)/2 x metricCount x cell
+ * </pre>
+ * A cell is a {@code double}, a {@code float} or an {@code int} holding the distance multiplied by
+ * the scale ({@link CellType#FIXED}, e.g. with scale 2 for the half-integer RF distances).</p>
+ *
+ * <p>The trees are divided into blocks of {@code blockSize} trees. Block b holds the distances of
+ * its trees to all trees before them; it is marked complete ({@link #setBlockComplete(int)}) after
+ * its distances are flushed to the file, so an interrupted computation can be resumed by computing
+ * the incomplete blocks only (see {@link AllPairsComparison}). Different cells may be written by
+ * different threads.</p>
+ */
+public class DistanceMatrixStore implements Closeable {
+
+    public enum CellType {
+        DOUBLE(8), FLOAT(4), FIXED(4);
+
+        private final int bytes;
+
+        CellType(int bytes) {
+            this.bytes = bytes;
+        }
+
+        public int getBytes() {
+            return bytes;
+        }
+    }
+
+    private static final int MAGIC = 0x5443444D;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 40;
+    private static final int SEGMENT_SHIFT = 30;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+    // the missing value of FIXED cells
+    private static final int FIXED_NAN = Integer.MIN_VALUE;
+
+    private final File file;
+    private final int size;
+    private final int metricCount;
+    private final int blockSize;
+    private final CellType cellType;
+    private final double scale;
+    private final int blockCapacity;
+    private final List<String> metricNames;
+    private final long flagOffset;
+    private final long dataOffset;
+    private final boolean writable;
+    private MappedByteBuffer[] segments;
+
+    private DistanceMatrixStore(File file, MappedByteBuffer[] segments, boolean writable) throws IOException {
+        this.file = file;
+        this.segments = segments;
+        this.writable = writable;
+        if (segments.length == 0 || segments[0].getInt(0) != MAGIC || segments[0].getInt(4) != VERSION) {
+            throw new IOException("Not a distance matrix store (version " + VERSION + ")");
+        }
+        size = segments[0].getInt(8);
+        metricCount = segments[0].getInt(12);
+        blockSize = segments[0].getInt(16);
+        cellType = CellType.values()[segments[0].getInt(20)];
+        scale = segments[0].getDouble(24);
+        blockCapacity = segments[0].getInt(32);
+        List<String> names = new ArrayList<String>(metricCount);
+        int pos = HEADER_SIZE;
+        for (int m = 0; m < metricCount; m++) {
+            byte[] name = new byte[segments[0].getShort(pos)];
+            for (int k = 0; k < name.length; k++) {
+                name[k] = segments[0].get(pos + 2 + k);
+            }
+            names.add(new String(name, StandardCharsets.UTF_8));
+            pos += 2 + name.length;
+        }
+        metricNames = Collections.unmodifiableList(names);
+        flagOffset = pos;
+        dataOffset = getDataOffset(flagOffset, blockCapacity);
+    }
+
+    /**
+     * Creates a store file with all blocks incomplete.
+     *
+     * @param size The number of trees.
+     * @param blockSize The number of trees of a block.
+     * @param scale The factor of the {@link CellType#FIXED} cells, ignored for the other types.
+     */
+    public static DistanceMatrixStore create(File file, int size, int metricCount, int blockSize, CellType cellType,
+                                             double scale) throws IOException {
+        return create(file, size, Collections.nCopies(Math.max(metricCount, 0), ""), blockSize, cellType, scale);
+    }
+
+    /**
+     * Creates a store file with all blocks incomplete.
+     *
+     * @param metricNames The names of the metrics, e.g. their command line names, checked when the
+     * outputs of several processes are merged.
+     */
+    public static DistanceMatrixStore create(File file, int size, List<String> metricNames, int blockSize,
+                                             CellType cellType, double scale) throws IOException {
+        int metricCount = metricNames.size();
+        if (size < 0 || metricCount < 1 || blockSize < 1) {
+            throw new IllegalArgumentException("Invalid matrix size");
+        }
+        long flagOffset = HEADER_SIZE;
+        List<byte[]> names = new ArrayList<byte[]>(metricCount);
+        for (String name : metricNames) {
+            byte[] bytes = ((name != null) ? name : "").getBytes(StandardCharsets.UTF_8);
+            names.add(bytes);
+            flagOffset += 2 + bytes.length;
+        }
+        int blockCapacity = Math.max(getBlockCount(size, blockSize), 1);
+        long length = getDataOffset(flagOffset, blockCapacity) + getPairCount(size) * metricCount * cellType.getBytes();
+        MappedByteBuffer[] segments = map(file, true, length);
+        MappedByteBuffer header = segments[0];
+        header.putInt(0, MAGIC);
+        header.putInt(4, VERSION);
+        header.putInt(8, size);
+        header.putInt(12, metricCount);
+        header.putInt(16, blockSize);
+        header.putInt(20, cellType.ordinal());
+        header.putDouble(24, scale);
+        header.putInt(32, blockCapacity);
+        int pos = HEADER_SIZE;
+        for (byte[] name : names) {
+            header.putShort(pos, (short) name.length);
+            for (int k = 0; k < name.length; k++) {
+                header.put(pos + 2 + k, name[k]);
+            }
+            pos += 2 + name.length;
+        }
+        header.force();
+        return new DistanceMatrixStore(file, segments, true);
+    }
+
+    /**
+     * Maps an existing store file into memory.
+     *
+     * @param writable Whether distances may be written, e.g. to resume the computation.
+     */
+    public static DistanceMatrixStore open(File file, boolean writable) throws IOException {
+        return new DistanceMatrixStore(file, map(file, writable, -1), writable);
+    }
+
+    /**
+     * @param length The new length of the file, or -1 to keep it.
+     */
+    private static MappedByteBuffer[] map(File file, boolean writable, long length) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, writable ? "rw" : "r");
+        try {
+            if (length >= 0) {
+                // a new file is filled with zeros
+                raf.setLength(0);
+                raf.setLength(length);
+            }
+            FileChannel channel = raf.getChannel();
+            long fileSize = channel.size();
+            MappedByteBuffer[] segments = new MappedByteBuffer[(int) ((fileSize + SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+            FileChannel.MapMode mode = writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY;
+            for (int s = 0; s < segments.length; s++) {
+                long start = (long) s << SEGMENT_SHIFT;
+                segments[s] = channel.map(mode, start, Math.min(SEGMENT_MASK + 1, fileSize - start));
+            }
+            return segments;
+        } finally {
+            // the mappings stay valid after the channel is closed
+            raf.close();
+        }
+    }
+
+    private static long getDataOffset(long flagOffset, int blockCapacity) {
+        return (flagOffset + blockCapacity + 7) & ~7L;
+    }
+
+    private static int getBlockCount(int size, int blockSize) {
+        return (int) (((long) size + blockSize - 1) / blockSize);
+    }
+
+    private static long getPairCount(int size) {
+        return (long) size * (size - 1) / 2;
+    }
+
+    /**
+     * Appends trees to the store. Their blocks are incomplete, and so is the last block if it was
+     * not full, since its new trees have to be compared as well; the other distances are kept.
+     * This store is closed.
+     *
+     * @param newSize The number of trees, old and new.
+     * @return The store of the grown file.
+     */
+    public DistanceMatrixStore grow(int newSize) throws IOException {
+        if (!writable) {
+            throw new IllegalStateException("The store is read-only");
+        }
+        if (newSize < size) {
+            throw new IllegalArgumentException("The store has more than " + newSize + " trees");
+        }
+        int oldBlockCount = getBlockCount();
+        int newBlockCount = getBlockCount(newSize, blockSize);
+        int newCapacity = blockCapacity;
+        while (newCapacity < newBlockCount) {
+            newCapacity *= 2;
+        }
+        long newDataOffset = getDataOffset(flagOffset, newCapacity);
+        long cellBytes = (long) metricCount * cellType.getBytes();
+        long dataLength = getPairCount(size) * cellBytes;
+        close();
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            FileChannel channel = raf.getChannel();
+            raf.setLength(newDataOffset + getPairCount(newSize) * cellBytes);
+            if (newDataOffset != dataOffset) {
+                // the flags need more space; the data are moved from the end, so nothing is overwritten
+                ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+                for (long end = dataLength; end > 0; ) {
+                    int len = (int) Math.min(buffer.capacity(), end);
+                    end -= len;
+                    buffer.clear();
+                    buffer.limit(len);
+                    while (buffer.hasRemaining()) {
+                        channel.read(buffer, dataOffset + end + buffer.position());
+                    }
+                    buffer.flip();
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer, newDataOffset + end + buffer.position());
+                    }
+                }
+                channel.write(ByteBuffer.allocate((int) (newDataOffset - flagOffset - blockCapacity)),
+                        flagOffset + blockCapacity);
+            }
+            if (size % blockSize != 0 && newSize > size) {
+                channel.write(ByteBuffer.wrap(new byte[]{0}), flagOffset + oldBlockCount - 1);
+            }
+            ByteBuffer header = ByteBuffer.allocate(4);
+            header.putInt(0, newSize);
+            channel.write(header, 8);
+            header.clear();
+            header.putInt(0, newCapacity);
+            channel.write(header, 32);
+            channel.force(true);
+        } finally {
+            raf.close();
+        }
+        return open(file, true);
+    }
+
+    /**
+     * @return The number of trees.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    public int getMetricCount() {
+        return metricCount;
+    }
+
+    /**
+     * @return The names of the metrics given when the store was created.
+     */
+    public List<String> getMetricNames() {
+        return metricNames;
+    }
+
+    public CellType getCellType() {
+        return cellType;
+    }
+
+    public double getScale() {
+        return scale;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    public int getBlockCount() {
+        return getBlockCount(size, blockSize);
+    }
+
+    /**
+     * @return The first tree of block b.
+     */
+    public int getBlockStart(int b) {
+        return b * blockSize;
+    }
+
+    /**
+     * @return The tree after the last tree of block b.
+     */
+    public int getBlockEnd(int b) {
+        return (int) Math.min((long) (b + 1) * blockSize, size);
+    }
+
+    public boolean isBlockComplete(int b) {
+        return getSegment(flagOffset + b).get(getIndex(flagOffset + b)) != 0;
+    }
+
+    /**
+     * @return The number of complete blocks.
+     */
+    public int getCompleteBlockCount() {
+        int count = 0;
+        for (int b = 0; b < getBlockCount(); b++) {
+            if (isBlockComplete(b)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return Whether all blocks are complete.
+     */
+    public boolean isComplete() {
+        return getCompleteBlockCount() == getBlockCount();
+    }
+
+    /**
+     * Flushes the distances to the file and then marks block b complete.
+     */
+    public synchronized void setBlockComplete(int b) {
+        long start = getColumnPosition(getBlockStart(b));
+        long end = getColumnPosition(getBlockEnd(b));
+        for (long s = start >>> SEGMENT_SHIFT; s <= (end - 1) >>> SEGMENT_SHIFT && end > start; s++) {
+            segments[(int) s].force();
+        }
+        MappedByteBuffer segment = getSegment(flagOffset + b);
+        segment.put(getIndex(flagOffset + b), (byte) 1);
+        segment.force();
+    }
+
+    /**
+     * @return The distance of metric m between trees i and j.
+     */
+    public double get(int m, int i, int j) {
+        if (i == j) {
+            return 0.0;
+        }
+        long pos = getPosition(m, i, j);
+        MappedByteBuffer segment = getSegment(pos);
+        int index = getIndex(pos);
+        switch (cellType) {
+            case DOUBLE:
+                return segment.getDouble(index);
+            case FLOAT:
+                return segment.getFloat(index);
+            default:
+                int value = segment.getInt(index);
+                return (value == FIXED_NAN) ? Double.NaN : value / scale;
+        }
+    }
+
+    /**
+     * Stores the distance of metric m between trees i and j, i != j.
+     *
+     * @throws IllegalArgumentException if the distance cannot be stored in a {@link CellType#FIXED}
+     * cell.
+     */
+    public void set(int m, int i, int j, double distance) {
+        long pos = getPosition(m, i, j);
+        MappedByteBuffer segment = getSegment(pos);
+        int index = getIndex(pos);
+        switch (cellType) {
+            case DOUBLE:
+                segment.putDouble(index, distance);
+                break;
+            case FLOAT:
+                segment.putFloat(index, (float) distance);
+                break;
+            default:
+                double value = Math.rint(distance * scale);
+                if (Double.isNaN(value)) {
+                    segment.putInt(index, FIXED_NAN);
+                } else if (Math.abs(value) <= Integer.MAX_VALUE) {
+                    segment.putInt(index, (int) value);
+                } else {
+                    throw new IllegalArgumentException("Distance " + distance + " out of the range of fixed cells");
+                }
+        }
+    }
+
+    /**
+     * Reads the distances of metric m between tree i and all trees.
+     */
+    public void getRow(int m, int i, double[] row) {
+        for (int j = 0; j < size; j++) {
+            row[j] = get(m, i, j);
+        }
+    }
+
+    /**
+     * @return Whether the other store has the same trees, metrics, blocks and cells, so that
+     * blocks can be copied between them.
+     */
+    public boolean hasSameLayout(DistanceMatrixStore other) {
+        return size == other.size && blockSize == other.blockSize && cellType == other.cellType
+                && Double.compare(scale, other.scale) == 0 && metricNames.equals(other.metricNames);
+    }
+
+    /**
+     * Copies the distances of block b from a store with the same layout and marks it complete.
+     */
+    void copyBlock(DistanceMatrixStore source, int b) {
+        long start = getColumnPosition(getBlockStart(b));
+        long end = getColumnPosition(getBlockEnd(b));
+        long shift = source.dataOffset - dataOffset;
+        byte[] buffer = new byte[1 << 16];
+        for (long pos = start; pos < end; ) {
+            // neither region crosses a segment boundary
+            int len = (int) Math.min(Math.min(buffer.length, end - pos),
+                    Math.min((SEGMENT_MASK + 1) - getIndex(pos), (SEGMENT_MASK + 1) - getIndex(pos + shift)));
+            ByteBuffer from = source.getSegment(pos + shift).duplicate();
+            from.position(getIndex(pos + shift));
+            from.get(buffer, 0, len);
+            ByteBuffer to = getSegment(pos).duplicate();
+            to.position(getIndex(pos));
+            to.put(buffer, 0, len);
+            pos += len;
+        }
+        setBlockComplete(b);
+    }
+
+    /**
+     * Writes the distances of all pairs i &lt; j as lines {@code i sep j sep d_1 ... sep d_m} in
+     * the order of the file, i.e. by j and then by i, with the tree numbers counted from 1,
+     * preceded by a header line with the metric names.
+     */
+    public void writeCsv(Writer out, String sep) throws IOException {
+        StringBuilder line = new StringBuilder("Tree1").append(sep).append("Tree2");
+        for (String name : metricNames) {
+            line.append(sep).append(name);
+        }
+        out.write(line.append('\n').toString());
+        for (int j = 1; j < size; j++) {
+            for (int i = 0; i < j; i++) {
+                line.setLength(0);
+                line.append(i + 1).append(sep).append(j + 1);
+                for (int m = 0; m < metricCount; m++) {
+                    line.append(sep).append(get(m, i, j));
+                }
+                out.write(line.append('\n').toString());
+            }
+        }
+        out.flush();
+    }
+
+    public boolean isWritable() {
+        return writable;
+    }
+
+    /**
+     * Flushes the distances and releases the mapping.
+     */
+    public void close() {
+        if (segments != null && writable) {
+            for (MappedByteBuffer segment : segments) {
+                segment.force();
+            }
+        }
+        segments = null;
+    }
+
+    private long getPosition(int m, int i, int j) {
+        if (i > j) {
+            int t = i;
+            i = j;
+            j = t;
+        }
+        return getColumnPosition(j) + ((long) i * metricCount + m) * cellType.getBytes();
+    }
+
+    /**
+     * @return The position of the first cell of column j.
+     */
+    private long getColumnPosition(int j) {
+        return dataOffset + getPairCount(j) * metricCount * cellType.getBytes();
+    }
+
+    private MappedByteBuffer getSegment(long pos) {
+        return segments[(int) (pos >>> SEGMENT_SHIFT)];
+    }
+
+    private static int getIndex(long pos) {
+        return (int) (pos & SEGMENT_MASK);
+    }
+}
@@ -0,0 +1,305 @@
+/** This file is part of TreeCmp, a tool for comparing phylogenetic trees
+    using the Matching Split distance and other metrics.
+    Copyright (C) 2011,  Damian Bogdanowicz
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>. */
+
+
+package treecmp.metrics;
+
+import pal.tree.ClusterTree;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Agglomerative hierarchical clustering of the trees of a {@link DistanceMatrixStore}, by default
+ * with average linkage (UPGMA).
+ *
+ * <p>The distances between the clusters are updated by a {@link ClusterTree.ClusteringMethod}
+ * (the Lance-Williams update of {@link ClusterTree}) in a working copy of the matrix, a store file
+ * of its own, so the matrix is never held in memory and only O(n) memory is used. The merges are
+ * found by the nearest-neighbor chain algorithm: it follows nearest neighbors until two clusters
+ * are each other's nearest neighbor and merges them, which needs O(n<sup>2</sup>) distance reads
+ * and gives the same dendrogram as the classic algorithm for the reducible methods UPGMA, WPGMA,
+ * single and complete linkage. The working copy holds doubles for a matrix of doubles and floats
+ * otherwise.</p>
+ */
+public class HierarchicalClustering {
+
+    private final ClusterTree.ClusteringMethod method;
+
+    public HierarchicalClustering() {
+        this(ClusterTree.UPGMA);
+    }
+
+    /**
+     * @param method A reducible clustering method, e.g. {@link ClusterTree#UPGMA}.
+     */
+    public HierarchicalClustering(ClusterTree.ClusteringMethod method) {
+        this.method = method;
+    }
+
+    /**
+     * Clusters the trees by the distances of metric m, with the working copy in a temporary file.
+     */
+    public Dendrogram cluster(DistanceMatrixStore store, int m) throws IOException {
+        File workFile = File.createTempFile("treecmp-clustering", ".bin");
+        try {
+            return cluster(store, m, workFile);
+        } finally {
+            workFile.delete();
+        }
+    }
+
+    /**
+     * Clusters the trees by the distances of metric m.
+     *
+     * @param workFile The file of the working copy of the distances; it is overwritten.
+     * @throws IllegalArgumentException if the store is not complete or contains NaN distances.
+     */
+    public Dendrogram cluster(DistanceMatrixStore store, int m, File workFile) throws IOException {
+        if (!store.isComplete()) {
+            throw new IllegalArgumentException("The distance matrix is not complete");
+        }
+        int n = store.getSize();
+        DistanceMatrixStore.CellType cellType = (store.getCellType() == DistanceMatrixStore.CellType.DOUBLE)
+                ? DistanceMatrixStore.CellType.DOUBLE : DistanceMatrixStore.CellType.FLOAT;
+        DistanceMatrixStore work = DistanceMatrixStore.create(workFile, n, 1, Math.max(n, 1), cellType, 1.0);
+        try {
+            // column by column, the order of both files
+            for (int j = 1; j < n; j++) {
+                for (int i = 0; i < j; i++) {
+                    double d = store.get(m, i, j);
+                    if (Double.isNaN(d)) {
+                        throw new IllegalArgumentException("The distance of trees " + i + " and " + j + " is NaN");
+                    }
+                    work.set(0, i, j, d);
+                }
+            }
+            return mergeClusters(work, n);
+        } finally {
+            work.close();
+        }
+    }
+
+    private Dendrogram mergeClusters(DistanceMatrixStore work, int n) {
+        int[] size = new int[n];
+        Arrays.fill(size, 1);
+        // the active clusters, each held by the slot of one of its trees
+        int[] active = new int[n];
+        int[] position = new int[n];
+        for (int i = 0; i < n; i++) {
+            active[i] = position[i] = i;
+        }
+        int activeNum = n;
+        int[] chain = new int[n];
+        int chainLength = 0;
+        int[] mergeA = new int[Math.max(n - 1, 0)];
+        int[] mergeB = new int[mergeA.length];
+        double[] mergeHeight = new double[mergeA.length];
+        int mergeNum = 0;
+        while (activeNum > 1) {
+            if (chainLength == 0) {
+                chain[chainLength++] = active[0];
+            }
+            int c = chain[chainLength - 1];
+            int prev = (chainLength > 1) ? chain[chainLength - 2] : -1;
+            // the previous cluster wins ties, so the chain cannot cycle
+            int nearest = prev;
+            double nearestDist = (prev >= 0) ? work.get(0, c, prev) : Double.POSITIVE_INFINITY;
+            for (int p = 0; p < activeNum; p++) {
+                int x = active[p];
+                if (x != c) {
+                    double d = work.get(0, c, x);
+                    if (d < nearestDist) {
+                        nearest = x;
+                        nearestDist = d;
+                    }
+                }
+            }
+            if (nearest != prev) {
+                chain[chainLength++] = nearest;
+                continue;
+            }
+            chainLength -= 2;
+            int a = Math.min(c, prev);
+            int b = Math.max(c, prev);
+            for (int p = 0; p < activeNum; p++) {
+                int x = active[p];
+                if (x != a && x != b) {
+                    work.set(0, a, x, method.computeDistance(size[x], size[a], work.get(0, a, x),
+                            size[b], work.get(0, b, x)));
+                }
+            }
+            size[a] += size[b];
+            active[position[b]] = active[--activeNum];
+            position[active[position[b]]] = position[b];
+            mergeA[mergeNum] = a;
+            mergeB[mergeNum] = b;
+            mergeHeight[mergeNum] = nearestDist;
+            mergeNum++;
+        }
+        return new Dendrogram(n, mergeA, mergeB, mergeHeight);
+    }
+
+    /**
+     * The merges of a hierarchical clustering of n trees, in increasing order of height. Tree i has
+     * id i and the cluster formed by merge s has id n + s.
+     */
+    public static class Dendrogram {
+
+        private final int n;
+        private final int[] left;
+        private final int[] right;
+        private final int[] size;
+        private final double[] height;
+
+        /**
+         * @param mergeA The first tree of each of the merged clusters, in the order of the merges.
+         */
+        Dendrogram(int n, int[] mergeA, int[] mergeB, final double[] mergeHeight) {
+            this.n = n;
+            int mergeNum = mergeA.length;
+            Integer[] order = new Integer[mergeNum];
+            for (int s = 0; s < mergeNum; s++) {
+                order[s] = s;
+            }
+            // stable, so a merge stays after the merges of its clusters
+            Arrays.sort(order, new Comparator<Integer>() {
+                public int compare(Integer s1, Integer s2) {
+                    return Double.compare(mergeHeight[s1], mergeHeight[s2]);
+                }
+            });
+            left = new int[mergeNum];
+            right = new int[mergeNum];
+            size = new int[mergeNum];
+            height = new double[mergeNum];
+            int[] parent = new int[n];
+            int[] id = new int[n];
+            for (int i = 0; i < n; i++) {
+                parent[i] = id[i] = i;
+            }
+            for (int s = 0; s < mergeNum; s++) {
+                int ra = find(parent, mergeA[order[s]]);
+                int rb = find(parent, mergeB[order[s]]);
+                left[s] = Math.min(id[ra], id[rb]);
+                right[s] = Math.max(id[ra], id[rb]);
+                size[s] = getSize(left[s]) + getSize(right[s]);
+                height[s] = mergeHeight[order[s]];
+                parent[rb] = ra;
+                id[ra] = n + s;
+            }
+        }
+
+        private static int find(int[] parent, int i) {
+            while (parent[i] != i) {
+                parent[i] = parent[parent[i]];
+                i = parent[i];
+            }
+            return i;
+        }
+
+        public int getLeafCount() {
+            return n;
+        }
+
+        public int getMergeCount() {
+            return left.length;
+        }
+
+        /**
+         * @return The smaller id of the clusters of merge s.
+         */
+        public int getLeft(int s) {
+            return left[s];
+        }
+
+        /**
+         * @return The larger id of the clusters of merge s.
+         */
+        public int getRight(int s) {
+            return right[s];
+        }
+
+        /**
+         * @return The distance between the clusters of merge s.
+         */
+        public double getHeight(int s) {
+            return height[s];
+        }
+
+        /**
+         * @return The number of trees of the cluster with the given id.
+         */
+        public int getSize(int id) {
+            return (id < n) ? 1 : size[id - n];
+        }
+
+        /**
+         * @return The cluster of every tree when the dendrogram is cut into k clusters, numbered in
+         * the order of their first trees.
+         */
+        public int[] cut(int k) {
+            if (k < 1 || k > Math.max(n, 1)) {
+                throw new IllegalArgumentException("The number of clusters must be between 1 and the number of trees");
+            }
+            return getClusters(n - k);
+        }
+
+        /**
+         * @return The cluster of every tree after the merges of height at most h, numbered in the
+         * order of their first trees.
+         */
+        public int[] cutAtHeight(double h) {
+            int mergeNum = 0;
+            while (mergeNum < height.length && height[mergeNum] <= h) {
+                mergeNum++;
+            }
+            return getClusters(mergeNum);
+        }
+
+        private int[] getClusters(int mergeNum) {
+            int[] parent = new int[n];
+            for (int i = 0; i < n; i++) {
+                parent[i] = i;
+            }
+            // a tree of every cluster
+            int[] tree = new int[n + mergeNum];
+            for (int i = 0; i < n; i++) {
+                tree[i] = i;
+            }
+            for (int s = 0; s < mergeNum; s++) {
+                int ra = find(parent, tree[left[s]]);
+                int rb = find(parent, tree[right[s]]);
+                parent[rb] = ra;
+                tree[n + s] = ra;
+            }
+            int[] label = new int[n];
+            Arrays.fill(label, -1);
+            int[] clusters = new int[n];
+            int clusterNum = 0;
+            for (int i = 0; i < n; i++) {
+                int r = find(parent, i);
+                if (label[r] < 0) {
+                    label[r] = clusterNum++;
+                }
+                clusters[i] = label[r];
+            }
+            return clusters;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/** This file is part of TreeCmp, a tool for comparing phylogenetic trees
+    using the Matching Split distance and other metrics.
+    Copyright (C) 2011,  Damian Bogdanowicz
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>. */
+
+package treecmp.metrics;
+
+import pal.tree.Tree;
+import treecmp.common.TreeCmpException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Adds trees to an all-pairs comparison, computing only the distances of the new trees.
+ *
+ * <p>The caller keeps the trees compared before, in their order, and appends the new ones; the
+ * distances between the old trees are taken from the matrix. A growing tree file can be monitored
+ * by appending the trees of {@link treecmp.common.NewickTreeReader#readAvailable()} periodically:</p>
+ * <pre>
+ *     trees.addAll(reader.readAvailable());
+ *     store = comparison.append(store, trees);
+ * </pre>
+ */
+public class IncrementalComparison {
+
+    // the number of new trees of a task of the in-memory mode
+    private static final int COLUMN_CHUNK = 16;
+
+    private final Supplier<? extends List<? extends Metric>> metricFactory;
+    private int threadCount;
+
+    /**
+     * @param metricFactory Creates the metric instances; one list is used by one thread at a time.
+     */
+    public IncrementalComparison(Supplier<? extends List<? extends Metric>> metricFactory) {
+        this.metricFactory = metricFactory;
+        this.threadCount = Runtime.getRuntime().availableProcessors();
+    }
+
+    public void setThreadCount(int threadCount) {
+        this.threadCount = Math.max(1, threadCount);
+    }
+
+    /**
+     * Grows the store to all trees and computes its incomplete blocks (see
+     * {@link DistanceMatrixStore#grow(int)}); the first {@code store.getSize()} trees are the trees
+     * of the store. The store is closed.
+     *
+     * @return The store of all trees.
+     */
+    public DistanceMatrixStore append(DistanceMatrixStore store, List<? extends Tree> trees)
+            throws TreeCmpException, IOException {
+        DistanceMatrixStore grown = (trees.size() > store.getSize()) ? store.grow(trees.size()) : store;
+        AllPairsComparison comparison = new AllPairsComparison(metricFactory);
+        comparison.setThreadCount(threadCount);
+        comparison.compare(trees, grown);
+        return grown;
+    }
+
+    /**
+     * Extends in-memory distance matrices, {@code matrices[m][i][j]} for metric m, to all trees;
+     * the first {@code matrices[m].length} trees are the trees of the matrices.
+     *
+     * @return The matrices of all trees.
+     * @throws IllegalArgumentException if there is not one matrix per metric.
+     */
+    public double[][][] append(double[][][] matrices, final List<? extends Tree> trees) throws TreeCmpException {
+        if (matrices.length != metricFactory.get().size()) {
+            throw new IllegalArgumentException("There must be one matrix per metric");
+        }
+        final int oldSize = (matrices.length > 0) ? matrices[0].length : 0;
+        final int n = trees.size();
+        final double[][][] result = new double[matrices.length][n][n];
+        for (int m = 0; m < matrices.length; m++) {
+            for (int i = 0; i < oldSize; i++) {
+                System.arraycopy(matrices[m][i], 0, result[m][i], 0, oldSize);
+            }
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        List<Future<Object>> results = new ArrayList<Future<Object>>();
+        try {
+            for (int c = oldSize; c < n; c += COLUMN_CHUNK) {
+                final int start = c;
+                final int end = Math.min(n, c + COLUMN_CHUNK);
+                results.add(executor.submit(new Callable<Object>() {
+                    public Object call() throws TreeCmpException {
+                        appendColumns(trees, start, end, result);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Object> f : results) {
+                f.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TreeCmpException("Comparison interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TreeCmpException) {
+                throw (TreeCmpException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return result;
+    }
+
+    /**
+     * Compares the trees from {@code start} to {@code end - 1} with all trees before them, on copies
+     * of the trees.
+     */
+    private void appendColumns(List<? extends Tree> trees, int start, int end, double[][][] result)
+            throws TreeCmpException {
+        MultiMetricEvaluator evaluator = new MultiMetricEvaluator(metricFactory.get());
+        Tree[] columns = new Tree[end - start];
+        for (int j = start; j < end; j++) {
+            columns[j - start] = trees.get(j).getCopy();
+        }
+        double[] distances = new double[evaluator.getMetricCount()];
+        for (int i = 0; i < end - 1; i++) {
+            Tree ti = (i >= start) ? columns[i - start] : trees.get(i).getCopy();
+            for (int j = Math.max(start, i + 1); j < end; j++) {
+                evaluator.getDistances(ti, columns[j - start], distances);
+                for (int m = 0; m < result.length; m++) {
+                    result[m][i][j] = result[m][j][i] = distances[m];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,490 @@
+/** This file is part of TreeCmp, a tool for comparing phylogenetic trees
+    using the Matching Split distance and other metrics.
+    Copyright (C) 2011,  Damian Bogdanowicz
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>. */
+
+
+package treecmp.metrics;
+
+import pal.math.MersenneTwisterFast;
+import pal.tree.Tree;
+import treecmp.common.TreeCmpException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Parallel k-medoids clustering of trees (PAM and CLARA, Kaufman and Rousseeuw 1990) computing
+ * the distances on demand instead of from a full distance matrix.
+ *
+ * <p>A collection of at most {@link #setSampleSize(int) sampleSize} trees is clustered by PAM on
+ * its distance matrix. A larger one is clustered by CLARA: PAM is run on
+ * {@link #setSampleCount(int) sampleCount} random samples, each containing the best medoids found
+ * so far, and all trees are assigned to the nearest medoid of the sample; the medoids with the
+ * smallest total distance win. A run takes about sampleCount (sampleSize<sup>2</sup> / 2 + n k)
+ * distance evaluations and O(n + sampleSize<sup>2</sup>) memory. The assignment stops an
+ * evaluation of a {@link BoundedMetric} as soon as the tree is farther than from the nearest
+ * medoid so far.</p>
+ *
+ * <p>The distances are computed by a thread pool, every task with its own metric instance and
+ * copies of its trees (the metrics rebuild the node lists of their trees). The exact distances
+ * are cached, up to {@link #setCacheCapacity(int) cacheCapacity} pairs, so the pairs of the
+ * medoids kept between samples are not evaluated again.</p>
+ */
+public class KMedoidsClustering {
+
+    public static final int DEFAULT_SAMPLE_COUNT = 5;
+    public static final int DEFAULT_CACHE_CAPACITY = 1 << 20;
+    public static final int MAX_ITERATIONS = 100;
+
+    private final Supplier<? extends Metric> metricFactory;
+    private int threadCount;
+    private int sampleSize;
+    private int sampleCount;
+    private int cacheCapacity;
+    private long seed;
+    private final Map<Long, Double> cache;
+    private final AtomicLong evaluationCount;
+
+    /**
+     * @param metricFactory Creates the metric instances; one instance is used by one thread at a
+     * time.
+     */
+    public KMedoidsClustering(Supplier<? extends Metric> metricFactory) {
+        this.metricFactory = metricFactory;
+        this.threadCount = Runtime.getRuntime().availableProcessors();
+        this.sampleSize = -1;
+        this.sampleCount = DEFAULT_SAMPLE_COUNT;
+        this.cacheCapacity = DEFAULT_CACHE_CAPACITY;
+        this.cache = new ConcurrentHashMap<Long, Double>();
+        this.evaluationCount = new AtomicLong();
+    }
+
+    public void setThreadCount(int threadCount) {
+        this.threadCount = Math.max(1, threadCount);
+    }
+
+    /**
+     * @param sampleSize The number of trees of a CLARA sample, by default 40 + 2 k.
+     */
+    public void setSampleSize(int sampleSize) {
+        this.sampleSize = sampleSize;
+    }
+
+    public void setSampleCount(int sampleCount) {
+        this.sampleCount = Math.max(1, sampleCount);
+    }
+
+    /**
+     * @param cacheCapacity The maximal number of cached distances.
+     */
+    public void setCacheCapacity(int cacheCapacity) {
+        this.cacheCapacity = Math.max(0, cacheCapacity);
+    }
+
+    /**
+     * @param seed The seed of the CLARA samples.
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * @return The number of distance evaluations, without the cached ones, since the clustering
+     * was created.
+     */
+    public long getEvaluationCount() {
+        return evaluationCount.get();
+    }
+
+    /**
+     * Clusters the trees; the cache is cleared first, since it is keyed by the tree indices.
+     *
+     * @param k The number of clusters, at most the number of trees.
+     */
+    public Result cluster(List<? extends Tree> trees, int k) throws TreeCmpException {
+        int n = trees.size();
+        if (k < 1 || k > n) {
+            throw new IllegalArgumentException("The number of clusters must be between 1 and the number of trees");
+        }
+        cache.clear();
+        int s = (sampleSize > 0) ? Math.max(sampleSize, k) : 40 + 2 * k;
+        if (n <= s) {
+            int[] all = new int[n];
+            for (int i = 0; i < n; i++) {
+                all[i] = i;
+            }
+            double[][] d = getDistanceMatrix(trees, all);
+            int[] medoids = pam(d, k);
+            Result result = new Result(medoids, n);
+            double[] row = new double[k];
+            for (int i = 0; i < n; i++) {
+                for (int m = 0; m < k; m++) {
+                    row[m] = d[medoids[m]][i];
+                }
+                result.assign(i, row);
+            }
+            return result;
+        }
+        MersenneTwisterFast random = new MersenneTwisterFast(seed);
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Result best = null;
+        for (int c = 0; c < sampleCount; c++) {
+            int[] sample = getSample(order, s, (best != null) ? best.medoids : new int[0], random);
+            int[] medoids = pam(getDistanceMatrix(trees, sample), k);
+            for (int i = 0; i < k; i++) {
+                medoids[i] = sample[medoids[i]];
+            }
+            Arrays.sort(medoids);
+            if (best != null && Arrays.equals(medoids, best.medoids)) {
+                continue;
+            }
+            Result result = assign(trees, medoids);
+            if (best == null || result.cost < best.cost) {
+                best = result;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return A random sample of {@code s} tree indices containing the {@code kept} ones.
+     */
+    private static int[] getSample(int[] order, int s, int[] kept, MersenneTwisterFast random) {
+        int n = order.length;
+        int[] sample = new int[s];
+        int num = 0;
+        for (int m : kept) {
+            sample[num++] = m;
+        }
+        // a partial Fisher-Yates shuffle of the other indices
+        int end = n;
+        while (num < s) {
+            int r = random.nextInt(end);
+            int t = order[r];
+            order[r] = order[--end];
+            order[end] = t;
+            if (Arrays.binarySearch(kept, t) < 0) {
+                sample[num++] = t;
+            }
+        }
+        return sample;
+    }
+
+    /**
+     * PAM (BUILD and SWAP) on a distance matrix.
+     *
+     * @return The indices of the k medoids, in increasing order.
+     */
+    static int[] pam(double[][] d, int k) {
+        int n = d.length;
+        boolean[] isMedoid = new boolean[n];
+        double[] nearest = new double[n];
+        Arrays.fill(nearest, Double.POSITIVE_INFINITY);
+        int[] medoids = new int[k];
+        // BUILD: add the medoids decreasing the total distance most
+        for (int m = 0; m < k; m++) {
+            int bestItem = -1;
+            double bestGain = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < n; i++) {
+                if (isMedoid[i]) {
+                    continue;
+                }
+                double gain = 0.0;
+                for (int j = 0; j < n; j++) {
+                    if (m == 0) {
+                        gain -= d[i][j];
+                    } else if (d[i][j] < nearest[j]) {
+                        gain += nearest[j] - d[i][j];
+                    }
+                }
+                if (gain > bestGain) {
+                    bestGain = gain;
+                    bestItem = i;
+                }
+            }
+            medoids[m] = bestItem;
+            isMedoid[bestItem] = true;
+            for (int j = 0; j < n; j++) {
+                nearest[j] = Math.min(nearest[j], d[bestItem][j]);
+            }
+        }
+        // SWAP: exchange a medoid and another item while the total distance decreases
+        int[] nearestMedoid = new int[n];
+        double[] second = new double[n];
+        for (int iter = 0; iter < MAX_ITERATIONS; iter++) {
+            for (int j = 0; j < n; j++) {
+                nearest[j] = second[j] = Double.POSITIVE_INFINITY;
+                for (int m = 0; m < k; m++) {
+                    double dj = d[medoids[m]][j];
+                    if (dj < nearest[j]) {
+                        second[j] = nearest[j];
+                        nearest[j] = dj;
+                        nearestMedoid[j] = m;
+                    } else if (dj < second[j]) {
+                        second[j] = dj;
+                    }
+                }
+            }
+            double bestDelta = 0.0;
+            int bestMedoid = -1;
+            int bestItem = -1;
+            for (int h = 0; h < n; h++) {
+                if (isMedoid[h]) {
+                    continue;
+                }
+                for (int m = 0; m < k; m++) {
+                    double delta = 0.0;
+                    for (int j = 0; j < n; j++) {
+                        if (nearestMedoid[j] == m) {
+                            delta += Math.min(d[h][j], second[j]) - nearest[j];
+                        } else if (d[h][j] < nearest[j]) {
+                            delta += d[h][j] - nearest[j];
+                        }
+                    }
+                    if (delta < bestDelta - 1e-12) {
+                        bestDelta = delta;
+                        bestMedoid = m;
+                        bestItem = h;
+                    }
+                }
+            }
+            if (bestMedoid < 0) {
+                break;
+            }
+            isMedoid[medoids[bestMedoid]] = false;
+            isMedoid[bestItem] = true;
+            medoids[bestMedoid] = bestItem;
+        }
+        Arrays.sort(medoids);
+        return medoids;
+    }
+
+    /**
+     * @return The distances between the trees of the sample, rows computed in parallel.
+     */
+    private double[][] getDistanceMatrix(final List<? extends Tree> trees, final int[] sample) throws TreeCmpException {
+        final int s = sample.length;
+        final double[][] d = new double[s][s];
+        final int taskCount = Math.min(threadCount, s);
+        List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+        for (int t = 0; t < taskCount; t++) {
+            final int first = t;
+            tasks.add(new Callable<Object>() {
+                public Object call() throws TreeCmpException {
+                    Metric metric = metricFactory.get();
+                    Tree[] copies = new Tree[s];
+                    // rows first, first + taskCount, ...; the short and long rows are mixed
+                    for (int i = first; i < s; i += taskCount) {
+                        for (int j = i + 1; j < s; j++) {
+                            double dij = getCached(sample[i], sample[j]);
+                            if (Double.isNaN(dij)) {
+                                dij = evaluate(metric, getCopy(trees, sample, copies, i),
+                                        getCopy(trees, sample, copies, j), Double.POSITIVE_INFINITY);
+                                putCached(sample[i], sample[j], dij);
+                            }
+                            d[i][j] = d[j][i] = dij;
+                        }
+                    }
+                    return null;
+                }
+            });
+        }
+        run(tasks);
+        return d;
+    }
+
+    private static Tree getCopy(List<? extends Tree> trees, int[] sample, Tree[] copies, int i) {
+        if (copies[i] == null) {
+            copies[i] = trees.get(sample[i]).getCopy();
+        }
+        return copies[i];
+    }
+
+    /**
+     * Assigns every tree to its nearest medoid, chunks of trees computed in parallel.
+     */
+    private Result assign(final List<? extends Tree> trees, final int[] medoids) throws TreeCmpException {
+        final int n = trees.size();
+        final int k = medoids.length;
+        final Result result = new Result(medoids, n);
+        final int chunk = Math.max(AllPairsComparison.ROW_CHUNK, n / (4 * threadCount) + 1);
+        List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+        for (int start = 0; start < n; start += chunk) {
+            final int from = start;
+            tasks.add(new Callable<Object>() {
+                public Object call() throws TreeCmpException {
+                    Metric metric = metricFactory.get();
+                    Tree[] medoidTrees = new Tree[k];
+                    for (int m = 0; m < k; m++) {
+                        medoidTrees[m] = trees.get(medoids[m]).getCopy();
+                    }
+                    double[] row = new double[k];
+                    for (int i = from; i < Math.min(n, from + chunk); i++) {
+                        if (Thread.interrupted()) {
+                            throw new TreeCmpException("Clustering interrupted");
+                        }
+                        Tree tree = null;
+                        double bound = Double.POSITIVE_INFINITY;
+                        for (int m = 0; m < k; m++) {
+                            double d = (medoids[m] == i) ? 0.0 : getCached(medoids[m], i);
+                            if (Double.isNaN(d)) {
+                                if (tree == null) {
+                                    tree = trees.get(i).getCopy();
+                                }
+                                d = evaluate(metric, medoidTrees[m], tree, bound);
+                                if (d <= bound) {
+                                    putCached(medoids[m], i, d);
+                                }
+                            }
+                            row[m] = d;
+                            bound = Math.min(bound, d);
+                        }
+                        // only one task assigns tree i
+                        result.assign(i, row);
+                    }
+                    return null;
+                }
+            });
+        }
+        run(tasks);
+        return result;
+    }
+
+    private void run(List<Callable<Object>> tasks) throws TreeCmpException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threadCount, tasks.size())));
+        try {
+            List<Future<Object>> results = new ArrayList<Future<Object>>();
+            for (Callable<Object> task : tasks) {
+                results.add(executor.submit(task));
+            }
+            for (Future<Object> f : results) {
+                f.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TreeCmpException("Clustering interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TreeCmpException) {
+                throw (TreeCmpException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private double evaluate(Metric metric, Tree t1, Tree t2, double bound) throws TreeCmpException {
+        evaluationCount.incrementAndGet();
+        if (bound < Double.POSITIVE_INFINITY && metric instanceof BoundedMetric) {
+            return ((BoundedMetric) metric).getDistanceAtMost(t1, t2, bound);
+        }
+        return metric.getDistance(t1, t2);
+    }
+
+    private static long getKey(int i, int j) {
+        return (i < j) ? ((long) i << 32) | j : ((long) j << 32) | i;
+    }
+
+    /**
+     * @return The cached distance, or NaN if it is not cached.
+     */
+    private double getCached(int i, int j) {
+        Double d = cache.get(getKey(i, j));
+        return (d != null) ? d : Double.NaN;
+    }
+
+    private void putCached(int i, int j, double d) {
+        if (cache.size() < cacheCapacity) {
+            cache.put(getKey(i, j), d);
+        }
+    }
+
+    /**
+     * The medoids of a clustering and the assignment of the trees to them.
+     */
+    public static class Result {
+
+        private final int[] medoids;
+        private final int[] assignment;
+        private final double[] distances;
+        private double cost;
+
+        Result(int[] medoids, int n) {
+            this.medoids = medoids;
+            this.assignment = new int[n];
+            this.distances = new double[n];
+        }
+
+        /**
+         * Assigns tree i to the nearest medoid by its distances {@code row[m]} from the medoids.
+         */
+        void assign(int i, double[] row) {
+            int nearest = 0;
+            for (int m = 1; m < medoids.length; m++) {
+                if (row[m] < row[nearest]) {
+                    nearest = m;
+                }
+            }
+            assignment[i] = nearest;
+            distances[i] = row[nearest];
+            synchronized (this) {
+                cost += distances[i];
+            }
+        }
+
+        /**
+         * @return The indices of the medoid trees, in increasing order; cluster c has medoid
+         * {@code getMedoids()[c]}.
+         */
+        public int[] getMedoids() {
+            return medoids.clone();
+        }
+
+        /**
+         * @return The cluster of every tree.
+         */
+        public int[] getAssignment() {
+            return assignment.clone();
+        }
+
+        /**
+         * @return The distance of tree i from the medoid of its cluster.
+         */
+        public double getDistance(int i) {
+            return distances[i];
+        }
+
+        /**
+         * @return The sum of the distances of the trees from the medoids of their clusters.
+         */
+        public double getCost() {
+            return cost;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+/** This file is part of TreeCmp, a tool for comparing phylogenetic trees
+    using the Matching Split distance and other metrics.
+    Copyright (C) 2011,  Damian Bogdanowicz
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>. */
+
+package treecmp.metrics;
+
+import pal.math.MersenneTwisterFast;
+import pal.tree.Tree;
+import treecmp.common.Neighbor;
+import treecmp.common.TreeCmpException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Vantage-point tree over a tree collection answering nearest-neighbor and range queries under
+ * any metric satisfying the triangle inequality, e.g. the RF, matching split or matching cluster
+ * distance.
+ *
+ * <p>Every node of the index holds a vantage tree and the median distance mu of the trees below it
+ * from the vantage tree; the trees closer than mu are in the inner subtree. A query at distance d
+ * from the vantage tree skips the inner subtree if d - mu &gt; r and the outer one if
+ * mu - d &gt; r, where r is the query radius or the distance of the current k-th neighbor. The
+ * index is built with O(n log n) and queried with typically far fewer than n distance
+ * evaluations; a {@link BoundedMetric} stops the evaluations whose result cannot change the
+ * answer. It is not thread safe when the metric is not. For the RF distance
+ * {@link treecmp.common.SplitIndex} gives all distances without comparing trees.</p>
+ */
+public class MetricTreeIndex {
+
+    private final Metric metric;
+    private final Tree[] trees;
+    // node u holds trees[vantage[u]]; its children are nodes inner[u] and outer[u] (-1 if empty)
+    private final int[] vantage;
+    private final double[] mu;
+    private final int[] inner;
+    private final int[] outer;
+    private final int root;
+    private int nodeNum;
+    private long evaluationCount;
+
+    /**
+     * @param seed The seed of the choice of the vantage trees.
+     */
+    public MetricTreeIndex(Metric metric, List<? extends Tree> trees, long seed) throws TreeCmpException {
+        this.metric = metric;
+        this.trees = trees.toArray(new Tree[trees.size()]);
+        int n = this.trees.length;
+        vantage = new int[n];
+        mu = new double[n];
+        inner = new int[n];
+        outer = new int[n];
+        int[] items = new int[n];
+        for (int i = 0; i < n; i++) {
+            items[i] = i;
+        }
+        root = build(items, 0, n, new double[n], new MersenneTwisterFast(seed));
+    }
+
+    /**
+     * Builds the index of all remaining trees of the iterator.
+     */
+    public static MetricTreeIndex of(Metric metric, Iterator<? extends Tree> trees, long seed) throws TreeCmpException {
+        List<Tree> list = new ArrayList<Tree>();
+        while (trees.hasNext()) {
+            list.add(trees.next());
+        }
+        return new MetricTreeIndex(metric, list, seed);
+    }
+
+    public int size() {
+        return trees.length;
+    }
+
+    public Tree getTree(int i) {
+        return trees[i];
+    }
+
+    /**
+     * @return The number of distance evaluations since the index was created, including the
+     * construction.
+     */
+    public long getEvaluationCount() {
+        return evaluationCount;
+    }
+
+    /**
+     * @return The k trees nearest to the query, ordered by distance and index.
+     */
+    public List<Neighbor> nearest(Tree query, int k) throws TreeCmpException {
+        Neighbor.Collector collector = new Neighbor.Collector(k);
+        if (k > 0) {
+            search(query, root, collector, null, 0.0);
+        }
+        return collector.getNeighbors();
+    }
+
+    /**
+     * @return The trees at distance at most {@code radius} from the query, ordered by distance and
+     * index.
+     */
+    public List<Neighbor> withinDistance(Tree query, double radius) throws TreeCmpException {
+        List<Neighbor> neighbors = new ArrayList<Neighbor>();
+        search(query, root, null, neighbors, radius);
+        Collections.sort(neighbors);
+        return neighbors;
+    }
+
+    private void search(Tree query, int u, Neighbor.Collector collector, List<Neighbor> found, double radius)
+            throws TreeCmpException {
+        if (u < 0) {
+            return;
+        }
+        double r0 = (collector != null) ? collector.getBound() : radius;
+        // a distance above mu + r0 skips the inner subtree like any larger one, so a
+        // BoundedMetric may stop there
+        double bound = (inner[u] < 0 && outer[u] < 0) ? r0 : Math.max(r0, mu[u] + r0);
+        double d = distance(query, trees[vantage[u]], bound);
+        if (collector != null) {
+            collector.offer(vantage[u], d);
+        } else if (d <= radius) {
+            found.add(new Neighbor(vantage[u], d));
+        }
+        // the side of the query first, so that the bound shrinks before the other side is checked
+        boolean innerFirst = d <= mu[u];
+        for (int side = 0; side < 2; side++) {
+            boolean visitInner = (side == 0) == innerFirst;
+            double r = (collector != null) ? collector.getBound() : radius;
+            if (visitInner) {
+                if (d - r <= mu[u]) {
+                    search(query, inner[u], collector, found, radius);
+                }
+            } else if (d + r >= mu[u]) {
+                search(query, outer[u], collector, found, radius);
+            }
+        }
+    }
+
+    /**
+     * Builds the subtree of {@code items[lo..hi-1]}.
+     *
+     * @return The node of the subtree or -1 if it is empty.
+     */
+    private int build(int[] items, int lo, int hi, double[] dist, MersenneTwisterFast random) throws TreeCmpException {
+        if (lo >= hi) {
+            return -1;
+        }
+        int u = nodeNum++;
+        swap(items, lo, lo + random.nextInt(hi - lo));
+        vantage[u] = items[lo];
+        if (hi - lo == 1) {
+            inner[u] = outer[u] = -1;
+            return u;
+        }
+        Tree v = trees[items[lo]];
+        for (int i = lo + 1; i < hi; i++) {
+            dist[items[i]] = distance(v, trees[items[i]], Double.POSITIVE_INFINITY);
+        }
+        // split the others at the median distance
+        int mid = (lo + 1 + hi) / 2;
+        select(items, lo + 1, hi - 1, mid, dist);
+        mu[u] = dist[items[mid]];
+        // the trees at distance mu, except the median itself, may be on both sides
+        inner[u] = build(items, lo + 1, mid, dist, random);
+        outer[u] = build(items, mid, hi, dist, random);
+        return u;
+    }
+
+    /**
+     * Reorders {@code items[lo..hi]} so that item k has the k-th smallest distance, the items
+     * before it have no larger and the items after it no smaller distances.
+     */
+    private static void select(int[] items, int lo, int hi, int k, double[] dist) {
+        while (lo < hi) {
+            double pivot = dist[items[(lo + hi) >>> 1]];
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (dist[items[i]] < pivot) {
+                    i++;
+                }
+                while (dist[items[j]] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(items, i++, j--);
+                }
+            }
+            if (k <= j) {
+                hi = j;
+            } else if (k >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private static void swap(int[] items, int i, int j) {
+        int t = items[i];
+        items[i] = items[j];
+        items[j] = t;
+    }
+
+    /**
+     * @return The distance, or a lower bound of it above {@code bound} for a {@link BoundedMetric}.
+     */
+    private double distance(Tree t1, Tree t2, double bound) throws TreeCmpException {
+        evaluationCount++;
+        if (bound < Double.POSITIVE_INFINITY && metric instanceof BoundedMetric) {
+            return ((BoundedMetric) metric).getDistanceAtMost(t1, t2, bound);
+        }
+        return metric.getDistance(t1, t2);
+    }
+}
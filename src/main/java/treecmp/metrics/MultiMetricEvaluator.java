@@ -0,0 +1,87 @@
+/** This file is part of TreeCmp, a tool for comparing phylogenetic trees
+    using the Matching Split distance and other metrics.
+    Copyright (C) 2011,  Damian Bogdanowicz
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>. */
+
+package treecmp.metrics;
+
+import pal.tree.Tree;
+import treecmp.common.TreeCmpException;
+import treecmp.common.TreePairContext;
+import treecmp.config.DefinedMetricsSet;
+
+import java.util.List;
+
+/**
+ * Computes the distances of several metrics for a tree pair, sharing the intermediate results.
+ *
+ * <p>All {@link ContextMetric}s are evaluated on one {@link TreePairContext}, so e.g. the cluster
+ * intersection matrix used by the matching cluster, matching split and triplet metrics or the LCA
+ * matrices used by the matching pair, triplet and matching triplet metrics are computed once per
+ * pair. They are evaluated before the other metrics, which get the trees themselves; the
+ * distances are returned in the order of the metrics.</p>
+ */
+public class MultiMetricEvaluator {
+
+    private final Metric[] metrics;
+
+    public MultiMetricEvaluator(List<? extends Metric> metrics) {
+        this.metrics = metrics.toArray(new Metric[metrics.size()]);
+    }
+
+    /**
+     * @return An evaluator of the metrics of {@link DefinedMetricsSet}.
+     */
+    public static MultiMetricEvaluator forDefinedMetrics() {
+        return new MultiMetricEvaluator(DefinedMetricsSet.getDefinedMetricsSet().getDefinedMetrics());
+    }
+
+    public int getMetricCount() {
+        return metrics.length;
+    }
+
+    public Metric getMetric(int i) {
+        return metrics[i];
+    }
+
+    /**
+     * @return The distance of every metric between the trees.
+     */
+    public double[] getDistances(Tree t1, Tree t2) throws TreeCmpException {
+        double[] distances = new double[metrics.length];
+        getDistances(t1, t2, distances);
+        return distances;
+    }
+
+    /**
+     * Stores the distance of metric i between the trees in {@code distances[i]}.
+     */
+    public void getDistances(Tree t1, Tree t2, double[] distances) throws TreeCmpException {
+        TreePairContext context = null;
+        for (int i = 0; i < metrics.length; i++) {
+            if (metrics[i] instanceof ContextMetric) {
+                if (context == null) {
+                    context = new TreePairContext(t1, t2);
+                }
+                distances[i] = ((ContextMetric) metrics[i]).getDistance(context);
+            }
+        }
+        for (int i = 0; i < metrics.length; i++) {
+            if (!(metrics[i] instanceof ContextMetric)) {
+                distances[i] = metrics[i].getDistance(t1, t2);
+            }
+        }
+    }
+}
@@ -0,0 +1,211 @@
+/** This file is part of TreeCmp, a tool for comparing phylogenetic trees
+    using the Matching Split distance and other metrics.
+    Copyright (C) 2011,  Damian Bogdanowicz
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>. */
+
+package treecmp.metrics;
+
+import pal.tree.Tree;
+import treecmp.common.TreeCmpException;
+import treecmp.config.DefinedMetricsSet;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * One shard of an all-pairs comparison split across processes or machines.
+ *
+ * <p>The blocks of trees are dealt out cyclically: shard s of k computes the blocks b with
+ * b mod k = s (see {@link AllPairsComparison}). Every shard writes a {@link DistanceMatrixStore}
+ * file of its own; its block flags are the progress checkpoint, so a shard started again with the
+ * same file computes only its missing blocks. The file has the size of the whole matrix, but the
+ * blocks of the other shards are never written, so it is sparse on the usual file systems.
+ * {@link #merge(List, File)} copies the blocks of all shard files into one store, which can be read
+ * directly or written as CSV ({@link DistanceMatrixStore#writeCsv}).</p>
+ *
+ * <p>All shards must read the same trees in the same order and use the same metric list, e.g.
+ * {@link #forDefinedMetrics(int, int)} with the same configuration file; the command line names of
+ * the metrics are stored in the shard files and checked by the merge.</p>
+ */
+public class ShardedComparison {
+
+    private final Supplier<? extends List<? extends Metric>> metricFactory;
+    private final int shard;
+    private final int shardCount;
+    private int threadCount;
+    private int blockSize;
+    private DistanceMatrixStore.CellType cellType;
+    private double scale;
+
+    /**
+     * @param metricFactory Creates the metric instances; one list is used by one thread at a time.
+     * @param shard The index of this shard, from 0 to {@code shardCount - 1}.
+     */
+    public ShardedComparison(Supplier<? extends List<? extends Metric>> metricFactory, int shard, int shardCount) {
+        if (shardCount < 1 || shard < 0 || shard >= shardCount) {
+            throw new IllegalArgumentException("Invalid shard " + shard + " of " + shardCount);
+        }
+        this.metricFactory = metricFactory;
+        this.shard = shard;
+        this.shardCount = shardCount;
+        this.threadCount = Runtime.getRuntime().availableProcessors();
+        this.blockSize = 64;
+        this.cellType = DistanceMatrixStore.CellType.DOUBLE;
+        this.scale = 1.0;
+    }
+
+    /**
+     * @return A shard comparing the trees by the metrics of {@link DefinedMetricsSet}.
+     */
+    public static ShardedComparison forDefinedMetrics(int shard, int shardCount) {
+        final DefinedMetricsSet set = DefinedMetricsSet.getDefinedMetricsSet();
+        return new ShardedComparison(new Supplier<List<Metric>>() {
+            public List<Metric> get() {
+                return set.createDefinedMetrics();
+            }
+        }, shard, shardCount);
+    }
+
+    public void setThreadCount(int threadCount) {
+        this.threadCount = Math.max(1, threadCount);
+    }
+
+    /**
+     * @param blockSize The number of trees of a block, the unit of work and of the checkpoints.
+     */
+    public void setBlockSize(int blockSize) {
+        this.blockSize = Math.max(1, blockSize);
+    }
+
+    /**
+     * @param scale The factor of {@link DistanceMatrixStore.CellType#FIXED} cells.
+     */
+    public void setCellType(DistanceMatrixStore.CellType cellType, double scale) {
+        this.cellType = cellType;
+        this.scale = scale;
+    }
+
+    public int getShard() {
+        return shard;
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    /**
+     * @return The file of shard s of k in the directory, named after {@code prefix}.
+     */
+    public static File getShardFile(File dir, String prefix, int s, int k) {
+        return new File(dir, prefix + ".shard" + s + "of" + k + ".bin");
+    }
+
+    /**
+     * Computes the blocks of this shard into the file; if the file exists, the blocks completed
+     * before are kept.
+     *
+     * @return The number of computed blocks.
+     * @throws TreeCmpException if the existing file belongs to another comparison.
+     */
+    public int run(List<? extends Tree> trees, File file) throws TreeCmpException, IOException {
+        List<String> names = getMetricNames(metricFactory.get());
+        DistanceMatrixStore store;
+        if (file.exists()) {
+            store = DistanceMatrixStore.open(file, true);
+            if (store.getSize() != trees.size() || store.getBlockSize() != blockSize
+                    || store.getCellType() != cellType || !store.getMetricNames().equals(names)) {
+                store.close();
+                throw new TreeCmpException("The file " + file + " belongs to another comparison");
+            }
+        } else {
+            store = DistanceMatrixStore.create(file, trees.size(), names, blockSize, cellType, scale);
+        }
+        try {
+            AllPairsComparison comparison = new AllPairsComparison(metricFactory);
+            comparison.setThreadCount(threadCount);
+            return comparison.compare(trees, store, shard, shardCount);
+        } finally {
+            store.close();
+        }
+    }
+
+    /**
+     * @return Whether all blocks of this shard are complete in the store.
+     */
+    public boolean isComplete(DistanceMatrixStore store) {
+        for (int b = shard; b < store.getBlockCount(); b += shardCount) {
+            if (!store.isBlockComplete(b)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Copies the complete blocks of the shard files into a new store.
+     *
+     * @throws TreeCmpException if the shard files belong to different comparisons or a block is
+     * not complete in any of them.
+     */
+    public static DistanceMatrixStore merge(List<File> shardFiles, File output) throws TreeCmpException, IOException {
+        List<DistanceMatrixStore> shards = new ArrayList<DistanceMatrixStore>();
+        try {
+            for (File f : shardFiles) {
+                shards.add(DistanceMatrixStore.open(f, false));
+            }
+            if (shards.isEmpty()) {
+                throw new TreeCmpException("No shard files");
+            }
+            DistanceMatrixStore first = shards.get(0);
+            for (DistanceMatrixStore s : shards) {
+                if (!s.hasSameLayout(first)) {
+                    throw new TreeCmpException("The shard files belong to different comparisons");
+                }
+            }
+            DistanceMatrixStore merged = DistanceMatrixStore.create(output, first.getSize(), first.getMetricNames(),
+                    first.getBlockSize(), first.getCellType(), first.getScale());
+            for (int b = 0; b < merged.getBlockCount(); b++) {
+                DistanceMatrixStore source = null;
+                for (DistanceMatrixStore s : shards) {
+                    if (s.isBlockComplete(b)) {
+                        source = s;
+                        break;
+                    }
+                }
+                if (source == null) {
+                    merged.close();
+                    throw new TreeCmpException("Block " + b + " is not complete in any shard file");
+                }
+                merged.copyBlock(source, b);
+            }
+            return merged;
+        } finally {
+            for (DistanceMatrixStore s : shards) {
+                s.close();
+            }
+        }
+    }
+
+    private static List<String> getMetricNames(List<? extends Metric> metrics) {
+        List<String> names = new ArrayList<String>(metrics.size());
+        for (Metric m : metrics) {
+            names.add((m.getCommandLineName() != null) ? m.getCommandLineName() : m.getClass().getName());
+        }
+        return names;
+    }
+}
@@ -0,0 +1,241 @@
+/** This file is part of TreeCmp, a tool for comparing phylogenetic trees
+    using the Matching Split distance and other metrics.
+    Copyright (C) 2011,  Damian Bogdanowicz
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>. */
+
+
+package treecmp.metrics;
+
+import pal.tree.Tree;
+import treecmp.common.Neighbor;
+import treecmp.common.SplitSketch;
+import treecmp.common.TreeCmpException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Locality-sensitive hashing index of {@link SplitSketch}es generating the candidate pairs of
+ * similar trees in large collections; the exact metric is computed only for the candidates.
+ *
+ * <p>The first b r values of a sketch are cut into b bands of r values and the sketch is put into
+ * one bucket per band. Two trees whose split sets have Jaccard similarity J share a bucket with
+ * probability 1 - (1 - J<sup>r</sup>)<sup>b</sup> ({@link #getCandidateProbability}), an S-curve
+ * with the threshold near (1 / b)<sup>1 / r</sup>: similar trees are found with high probability,
+ * dissimilar ones rarely become candidates. The results of the searches are therefore
+ * approximate: trees within the radius are missed with the probability that they are no
+ * candidates.</p>
+ *
+ * <p>The index keeps only the sketches, so they can be read from a sketch file and the trees
+ * streamed; the searches take the trees as a list in the order of the sketches. It is not thread
+ * safe.</p>
+ */
+public class SketchIndex {
+
+    private final Metric metric;
+    private final int bands;
+    private final int rows;
+    private final List<SplitSketch> sketches;
+    // band key -> ids of the sketches in the bucket, in increasing order
+    private final Map<Long, List<Integer>> buckets;
+    private long evaluationCount;
+
+    /**
+     * @param metric The metric computed for the candidates.
+     * @param bands The number of bands b.
+     * @param rows The number of sketch values r of a band.
+     */
+    public SketchIndex(Metric metric, int bands, int rows) {
+        if (bands < 1 || rows < 1) {
+            throw new IllegalArgumentException("There must be at least one band and row");
+        }
+        this.metric = metric;
+        this.bands = bands;
+        this.rows = rows;
+        this.sketches = new ArrayList<SplitSketch>();
+        this.buckets = new HashMap<Long, List<Integer>>();
+    }
+
+    /**
+     * @return The probability that two trees with split sets of Jaccard similarity
+     * {@code jaccard} are candidates.
+     */
+    public static double getCandidateProbability(double jaccard, int bands, int rows) {
+        return 1.0 - Math.pow(1.0 - Math.pow(jaccard, rows), bands);
+    }
+
+    public int size() {
+        return sketches.size();
+    }
+
+    public SplitSketch getSketch(int i) {
+        return sketches.get(i);
+    }
+
+    /**
+     * @return The number of metric evaluations since the index was created.
+     */
+    public long getEvaluationCount() {
+        return evaluationCount;
+    }
+
+    /**
+     * Adds the sketch of a tree, computed like the sketches already in the index or, for the first
+     * tree, with b r values of 64 bits and the default seed.
+     *
+     * @return The id of the tree.
+     */
+    public int add(Tree tree) {
+        return add(getSketch(tree));
+    }
+
+    /**
+     * Adds a precomputed sketch, e.g. read from a sketch file.
+     *
+     * @return The id of the sketch.
+     * @throws IllegalArgumentException if the sketch has fewer than b r values or is not
+     * compatible with the sketches in the index.
+     */
+    public int add(SplitSketch sketch) {
+        if (sketch.size() < bands * rows) {
+            throw new IllegalArgumentException("The sketch has fewer than " + (bands * rows) + " values");
+        }
+        if (!sketches.isEmpty() && !sketches.get(0).isCompatible(sketch)) {
+            throw new IllegalArgumentException("The sketch is not compatible with the indexed sketches");
+        }
+        int id = sketches.size();
+        sketches.add(sketch);
+        for (int band = 0; band < bands; band++) {
+            Long key = getBandKey(sketch, band);
+            List<Integer> bucket = buckets.get(key);
+            if (bucket == null) {
+                bucket = new ArrayList<Integer>(2);
+                buckets.put(key, bucket);
+            }
+            bucket.add(id);
+        }
+        return id;
+    }
+
+    /**
+     * @return The ids of the indexed sketches sharing a bucket with the query, in increasing order.
+     */
+    public int[] getCandidates(SplitSketch query) {
+        if (!sketches.isEmpty() && !sketches.get(0).isCompatible(query)) {
+            throw new IllegalArgumentException("The query is not compatible with the indexed sketches");
+        }
+        Set<Integer> candidates = new HashSet<Integer>();
+        for (int band = 0; band < bands; band++) {
+            List<Integer> bucket = buckets.get(getBandKey(query, band));
+            if (bucket != null) {
+                candidates.addAll(bucket);
+            }
+        }
+        int[] result = new int[candidates.size()];
+        int num = 0;
+        for (int id : candidates) {
+            result[num++] = id;
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * @return The pairs {i, j}, i &lt; j, of indexed sketches sharing a bucket, ordered by i and j.
+     */
+    public List<int[]> getCandidatePairs() {
+        Set<Long> pairs = new HashSet<Long>();
+        for (List<Integer> bucket : buckets.values()) {
+            for (int a = 0; a < bucket.size(); a++) {
+                for (int b = a + 1; b < bucket.size(); b++) {
+                    pairs.add(((long) bucket.get(a) << 32) | bucket.get(b));
+                }
+            }
+        }
+        long[] sorted = new long[pairs.size()];
+        int num = 0;
+        for (long p : pairs) {
+            sorted[num++] = p;
+        }
+        Arrays.sort(sorted);
+        List<int[]> result = new ArrayList<int[]>(sorted.length);
+        for (long p : sorted) {
+            result.add(new int[]{(int) (p >>> 32), (int) p});
+        }
+        return result;
+    }
+
+    /**
+     * @param trees The indexed trees, in the order of their sketches.
+     * @return The candidates at distance at most {@code radius} from the query, ordered by distance
+     * and id.
+     */
+    public List<Neighbor> withinDistance(Tree query, List<? extends Tree> trees, double radius) throws TreeCmpException {
+        List<Neighbor> neighbors = new ArrayList<Neighbor>();
+        for (int id : getCandidates(getSketch(query))) {
+            double d = distance(query, trees.get(id), radius);
+            if (d <= radius) {
+                neighbors.add(new Neighbor(id, d));
+            }
+        }
+        Collections.sort(neighbors);
+        return neighbors;
+    }
+
+    /**
+     * @param trees The indexed trees, in the order of their sketches.
+     * @return The k candidates nearest to the query, ordered by distance and id.
+     */
+    public List<Neighbor> nearest(Tree query, List<? extends Tree> trees, int k) throws TreeCmpException {
+        Neighbor.Collector collector = new Neighbor.Collector(k);
+        if (k > 0) {
+            for (int id : getCandidates(getSketch(query))) {
+                collector.offer(id, distance(query, trees.get(id), collector.getBound()));
+            }
+        }
+        return collector.getNeighbors();
+    }
+
+    private SplitSketch getSketch(Tree tree) {
+        if (sketches.isEmpty()) {
+            return SplitSketch.create(tree, bands * rows, 64, SplitSketch.DEFAULT_SEED);
+        }
+        SplitSketch first = sketches.get(0);
+        return SplitSketch.create(tree, first.size(), first.getBits(), first.getSeed());
+    }
+
+    private long getBandKey(SplitSketch sketch, int band) {
+        long h = band + 1L;
+        for (int i = band * rows; i < (band + 1) * rows; i++) {
+            h = (h ^ sketch.getValue(i)) * 0x9E3779B97F4A7C15L;
+            h ^= h >>> 29;
+        }
+        return h;
+    }
+
+    private double distance(Tree t1, Tree t2, double bound) throws TreeCmpException {
+        evaluationCount++;
+        if (bound < Double.POSITIVE_INFINITY && metric instanceof BoundedMetric) {
+            return ((BoundedMetric) metric).getDistanceAtMost(t1, t2, bound);
+        }
+        return metric.getDistance(t1, t2);
+    }
+}
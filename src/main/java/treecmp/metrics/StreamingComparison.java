@@ -0,0 +1,328 @@
+/** This file is part of TreeCmp, a tool for comparing phylogenetic trees
+    using the Matching Split distance and other metrics.
+    Copyright (C) 2011,  Damian Bogdanowicz
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>. */
+
+package treecmp.metrics;
+
+import pal.tree.Tree;
+import treecmp.common.TreeCmpException;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Comparison modes of the TreeCmp application over tree iterators with bounded memory: consecutive
+ * trees, a sliding window, all trees against reference trees and the trees of two files in pairs.
+ *
+ * <p>The trees are pulled lazily; only the last w trees of the window mode (or the reference
+ * trees) are kept. The pairs are collected into batches of about {@link #setBatchSize(int)} pairs
+ * evaluated on a thread pool, every batch by its own metric instances, and at most two batches per
+ * thread are in flight. The metrics rebuild the node lists of their trees, so a tree that may be
+ * compared by more than one batch is copied for every batch using it. The distances are passed to
+ * the {@link Sink} by the calling thread, in the order of the pairs, so the output does not depend
+ * on the number of threads.</p>
+ */
+public class StreamingComparison {
+
+    /**
+     * Receives the distances of the compared pairs.
+     */
+    public interface Sink {
+
+        /**
+         * @param i The index of the first tree (of the reference tree in the reference mode).
+         * @param j The index of the second tree.
+         * @param distances The distances of the metrics, in the order of the metric list.
+         */
+        void accept(int i, int j, double[] distances) throws TreeCmpException;
+    }
+
+    private final Supplier<? extends List<? extends Metric>> metricFactory;
+    private int threadCount;
+    private int batchSize;
+
+    /**
+     * @param metricFactory Creates the metric instances; one list is used by one thread at a time.
+     */
+    public StreamingComparison(Supplier<? extends List<? extends Metric>> metricFactory) {
+        this.metricFactory = metricFactory;
+        this.threadCount = Runtime.getRuntime().availableProcessors();
+        this.batchSize = 256;
+    }
+
+    public void setThreadCount(int threadCount) {
+        this.threadCount = Math.max(1, threadCount);
+    }
+
+    /**
+     * @param batchSize The number of pairs of a batch; a batch ends with the last pair of a tree,
+     * so it may be larger.
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Compares every tree with the next one.
+     *
+     * @return The number of compared pairs.
+     */
+    public long compareConsecutive(Iterator<? extends Tree> trees, Sink sink) throws TreeCmpException {
+        return compareWindow(trees, 1, sink);
+    }
+
+    /**
+     * Compares trees i and j for 0 &lt; j - i &lt;= width. The pairs are ordered by j and then by i.
+     *
+     * @return The number of compared pairs.
+     */
+    public long compareWindow(Iterator<? extends Tree> trees, int width, Sink sink) throws TreeCmpException {
+        if (width < 1) {
+            throw new IllegalArgumentException("The window width must be positive");
+        }
+        Run run = new Run(sink);
+        try {
+            Tree[] ring = new Tree[width];
+            // position of every tree of the ring in the current batch and the number of that batch
+            int[] ringPos = new int[width];
+            long[] ringBatch = new long[width];
+            Arrays.fill(ringBatch, -1L);
+            for (int k = 0; trees.hasNext(); k++) {
+                Tree tree = trees.next();
+                int pos = run.batch.addTree(tree, true);
+                for (int i = Math.max(0, k - width); i < k; i++) {
+                    int slot = i % width;
+                    if (ringBatch[slot] != run.batchNum) {
+                        ringPos[slot] = run.batch.addTree(ring[slot], true);
+                        ringBatch[slot] = run.batchNum;
+                    }
+                    run.batch.addPair(ringPos[slot], pos, i, k);
+                }
+                int slot = k % width;
+                ring[slot] = tree;
+                ringPos[slot] = pos;
+                ringBatch[slot] = run.batchNum;
+                run.endTree();
+            }
+            return run.finish();
+        } finally {
+            run.close();
+        }
+    }
+
+    /**
+     * Compares every tree with every reference tree. The pairs are ordered by the tree and then by
+     * the reference tree.
+     *
+     * @return The number of compared pairs.
+     */
+    public long compareWithReferences(List<? extends Tree> references, Iterator<? extends Tree> trees, Sink sink)
+            throws TreeCmpException {
+        Run run = new Run(sink);
+        try {
+            int[] refPos = new int[references.size()];
+            long[] refBatch = new long[references.size()];
+            Arrays.fill(refBatch, -1L);
+            for (int k = 0; trees.hasNext(); k++) {
+                int pos = run.batch.addTree(trees.next(), false);
+                for (int r = 0; r < refPos.length; r++) {
+                    if (refBatch[r] != run.batchNum) {
+                        refPos[r] = run.batch.addTree(references.get(r), true);
+                        refBatch[r] = run.batchNum;
+                    }
+                    run.batch.addPair(refPos[r], pos, r, k);
+                }
+                run.endTree();
+            }
+            return run.finish();
+        } finally {
+            run.close();
+        }
+    }
+
+    /**
+     * Compares the i-th trees of both iterators.
+     *
+     * @return The number of compared pairs.
+     * @throws TreeCmpException if the iterators have different numbers of trees; the pairs of the
+     * shorter one are compared before.
+     */
+    public long comparePaired(Iterator<? extends Tree> trees1, Iterator<? extends Tree> trees2, Sink sink)
+            throws TreeCmpException {
+        Run run = new Run(sink);
+        try {
+            for (int k = 0; trees1.hasNext() && trees2.hasNext(); k++) {
+                int pos1 = run.batch.addTree(trees1.next(), false);
+                int pos2 = run.batch.addTree(trees2.next(), false);
+                run.batch.addPair(pos1, pos2, k, k);
+                run.endTree();
+            }
+            long pairCount = run.finish();
+            if (trees1.hasNext() || trees2.hasNext()) {
+                throw new TreeCmpException("The tree sets have different numbers of trees");
+            }
+            return pairCount;
+        } finally {
+            run.close();
+        }
+    }
+
+    /**
+     * The batches of one comparison.
+     */
+    private class Run {
+
+        private final Sink sink;
+        private final ExecutorService executor;
+        private final ArrayDeque<Batch> batches;
+        private final ArrayDeque<Future<double[][]>> results;
+        private Batch batch;
+        private long batchNum;
+        private long pairCount;
+
+        Run(Sink sink) {
+            this.sink = sink;
+            this.executor = Executors.newFixedThreadPool(threadCount);
+            this.batches = new ArrayDeque<Batch>();
+            this.results = new ArrayDeque<Future<double[][]>>();
+            this.batch = new Batch();
+        }
+
+        /**
+         * Submits the current batch if it is full.
+         */
+        void endTree() throws TreeCmpException {
+            if (batch.pairCount >= batchSize) {
+                submit();
+            }
+        }
+
+        /**
+         * Submits the last batch and passes all distances to the sink.
+         */
+        long finish() throws TreeCmpException {
+            if (batch.pairCount > 0) {
+                submit();
+            }
+            while (!results.isEmpty()) {
+                deliver();
+            }
+            return pairCount;
+        }
+
+        void close() {
+            for (Future<double[][]> f : results) {
+                f.cancel(true);
+            }
+            executor.shutdown();
+        }
+
+        private void submit() throws TreeCmpException {
+            final Batch b = batch;
+            batches.add(b);
+            results.add(executor.submit(new Callable<double[][]>() {
+                public double[][] call() throws TreeCmpException {
+                    return b.evaluate(new MultiMetricEvaluator(metricFactory.get()));
+                }
+            }));
+            batch = new Batch();
+            batchNum++;
+            while (results.size() > 2 * threadCount) {
+                deliver();
+            }
+        }
+
+        private void deliver() throws TreeCmpException {
+            Batch b = batches.poll();
+            double[][] distances;
+            try {
+                distances = results.peek().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new TreeCmpException("Comparison interrupted");
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof TreeCmpException) {
+                    throw (TreeCmpException) e.getCause();
+                }
+                throw new RuntimeException(e.getCause());
+            }
+            results.poll();
+            for (int p = 0; p < b.pairCount; p++) {
+                sink.accept(b.index1[p], b.index2[p], distances[p]);
+            }
+            pairCount += b.pairCount;
+        }
+    }
+
+    /**
+     * The trees and pairs of a batch.
+     */
+    private static class Batch {
+
+        private final List<Tree> trees = new ArrayList<Tree>();
+        // whether the tree may be used by other batches as well
+        private final List<Boolean> shared = new ArrayList<Boolean>();
+        private int[] pos1 = new int[16];
+        private int[] pos2 = new int[16];
+        private int[] index1 = new int[16];
+        private int[] index2 = new int[16];
+        private int pairCount;
+
+        /**
+         * @return The position of the tree in the batch.
+         */
+        int addTree(Tree tree, boolean isShared) {
+            trees.add(tree);
+            shared.add(isShared);
+            return trees.size() - 1;
+        }
+
+        void addPair(int p1, int p2, int i, int j) {
+            if (pairCount == pos1.length) {
+                pos1 = Arrays.copyOf(pos1, 2 * pairCount);
+                pos2 = Arrays.copyOf(pos2, 2 * pairCount);
+                index1 = Arrays.copyOf(index1, 2 * pairCount);
+                index2 = Arrays.copyOf(index2, 2 * pairCount);
+            }
+            pos1[pairCount] = p1;
+            pos2[pairCount] = p2;
+            index1[pairCount] = i;
+            index2[pairCount] = j;
+            pairCount++;
+        }
+
+        double[][] evaluate(MultiMetricEvaluator evaluator) throws TreeCmpException {
+            Tree[] local = new Tree[trees.size()];
+            for (int t = 0; t < local.length; t++) {
+                local[t] = shared.get(t) ? trees.get(t).getCopy() : trees.get(t);
+            }
+            double[][] distances = new double[pairCount][];
+            for (int p = 0; p < pairCount; p++) {
+                distances[p] = evaluator.getDistances(local[pos1[p]], local[pos2[p]]);
+            }
+            return distances;
+        }
+    }
+}
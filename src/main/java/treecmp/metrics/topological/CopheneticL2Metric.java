@@ -21,8 +21,10 @@ package treecmp.metrics.topological;
 import pal.misc.IdGroup;
 import pal.tree.Node;
 import pal.tree.Tree;
-import pal.tree.TreeUtils;
+import treecmp.common.CopheneticDist;
 import treecmp.common.TreeCmpUtils;
+import treecmp.common.TaxonRegistry;
+import treecmp.common.TopologyFingerprint;
 import treecmp.metrics.*;
 
 /*
@@ -44,13 +46,27 @@ public class CopheneticL2Metric extends BaseMetric implements Metric {
     }
 
     public double getDistance(Tree t1, Tree t2, int... indexes) {
+        if (t1.getExternalNodeCount() <= 2) {
+            return 0.0;
+        }
+        if (TopologyFingerprint.isSameTopology(t1, t2, true)) {
+            return 0.0;
+        }
+        return CopheneticDist.getL2Dist(t1, t2);
+    }
+
+    /**
+     * Reference implementation of {@link #getDistance(Tree, Tree, int...)} enumerating all leaf pairs
+     * with two n&times;n LCA matrices. It needs O(n<sup>2</sup>) time and memory.
+     */
+    public double getPairwiseDistance(Tree t1, Tree t2) {
 
         int extT1Num = t1.getExternalNodeCount();
         int extT2Num = t2.getExternalNodeCount();
         if (extT1Num <= 2) {
             return 0.0;
         }
-        IdGroup id1 = TreeUtils.getLeafIdGroup(t1);
+        IdGroup id1 = TaxonRegistry.getShared().getLeafIdGroup(t1);
         int[][] lcaMatrix1 = TreeCmpUtils.calcLcaMatrix(t1, null);
         int[][] lcaMatrix2 = TreeCmpUtils.calcLcaMatrix(t2, id1);
 
@@ -20,10 +20,11 @@ package treecmp.metrics.topological;
 
 import pal.tree.Tree;
 import treecmp.common.AlignInfo;
+import treecmp.common.TreePairContext;
 import treecmp.config.IOSettings;
 import treecmp.metrics.*;
 
-public class MatchingClusterMetric extends BaseMetric implements Metric {
+public class MatchingClusterMetric extends BaseMetric implements ContextMetric, BoundedMetric, BoundingMetric {
 
     private MatchingClusterMetricO3 mc03;
     private MatchingClusterMetricOptRF mcRF;
@@ -48,6 +49,34 @@ public class MatchingClusterMetric extends BaseMetric implements Metric {
         return mc03.getDistance(t1, t2);
     }
 
+    public double getDistance(TreePairContext context) {
+
+        if (IOSettings.getIOSettings().isOptMsMcByRf()) {
+            return mcRF.getDistance(context);
+        }
+        if (IOSettings.getIOSettings().isUseMsMcFreeLeafSet()) {
+            return mcFree.getDistance(context.getT1(), context.getT2());
+        }
+
+        return mc03.getDistance(context);
+    }
+
+    public double getDistanceAtMost(Tree t1, Tree t2, double bound) {
+
+        if (IOSettings.getIOSettings().isUseMsMcFreeLeafSet()) {
+            return mcFree.getDistance(t1, t2);
+        }
+        TreePairContext context = new TreePairContext(t1, t2);
+        int lower = RFClusterMetric.getUnsharedClusterCount(context);
+        if (lower > bound) {
+            return lower;
+        }
+        if (IOSettings.getIOSettings().isOptMsMcByRf()) {
+            return mcRF.getDistance(context);
+        }
+        return mc03.getDistance(context, bound);
+    }
+
     @Override
     public AlignInfo getAlignment() {
         if (IOSettings.getIOSettings().isOptMsMcByRf()) {
@@ -59,4 +88,20 @@ public class MatchingClusterMetric extends BaseMetric implements Metric {
 
         return mc03.getAlignment();
     }
+
+    /**
+     * @return The bounds of the assignment problem (see {@link MatchingClusterMetricO3#getDistanceBounds}), the
+     * lower one at least the number of unshared clusters.
+     */
+    public double[] getDistanceBounds(Tree t1, Tree t2) {
+
+        if (IOSettings.getIOSettings().isUseMsMcFreeLeafSet()) {
+            double dist = mcFree.getDistance(t1, t2);
+            return new double[]{dist, dist};
+        }
+        TreePairContext context = new TreePairContext(t1, t2);
+        double[] bounds = mc03.getDistanceBounds(context);
+        bounds[0] = Math.max(bounds[0], RFClusterMetric.getUnsharedClusterCount(context));
+        return bounds;
+    }
 }
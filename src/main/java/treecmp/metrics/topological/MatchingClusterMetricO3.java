@@ -18,17 +18,14 @@
 package treecmp.metrics.topological;
 
 
-import pal.misc.IdGroup;
-import pal.misc.SimpleIdGroup;
 import pal.tree.Node;
 import pal.tree.Tree;
-import pal.tree.TreeUtils;
 import treecmp.common.*;
 import treecmp.common.ClustIntersectInfoMatrix.ClustPair;
 import treecmp.config.IOSettings;
 import treecmp.metrics.*;
 
-public class MatchingClusterMetricO3 extends BaseMetric implements Metric {
+public class MatchingClusterMetricO3 extends BaseMetric implements ContextMetric, BoundedMetric, BoundingMetric {
 
     protected int[] costId2NumT1;
     protected int[] costId2NumT2;
@@ -39,13 +36,65 @@ public class MatchingClusterMetricO3 extends BaseMetric implements Metric {
 
     public double getDistance(Tree t1, Tree t2, int... indexes) {
 
+        return getDistance(new TreePairContext(t1, t2));
+    }
+
+    public double getDistance(TreePairContext context) {
+
+        return getDistance(context, Double.POSITIVE_INFINITY);
+    }
+
+    public double getDistanceAtMost(Tree t1, Tree t2, double bound) {
+
+        return getDistance(new TreePairContext(t1, t2), bound);
+    }
+
+    /**
+     * Stops early if the distance is known to exceed the bound: every cluster without an equal
+     * cluster in the other tree is matched at a positive cost, and the cost of the assignment is at
+     * least the bound of {@link LapSolver#lowerBoundShort}. The alignment is not computed then.
+     *
+     * @return The distance if it is at most {@code bound}, otherwise a lower bound of it greater
+     * than {@code bound}.
+     */
+    public double getDistance(TreePairContext context, double bound) {
+
+        return getDistance(context, bound, null);
+    }
+
+    /**
+     * @return The bounds {lower, upper} of the distance from the assignment problem, without
+     * solving it: the bound of {@link LapSolver#lowerBoundShort} and the cost of the greedy
+     * assignment ({@link LapSolver#greedyShort}).
+     */
+    public double[] getDistanceBounds(TreePairContext context) {
+
+        double[] bounds = new double[2];
+        getDistance(context, Double.POSITIVE_INFINITY, bounds);
+        return bounds;
+    }
+
+    public double[] getDistanceBounds(Tree t1, Tree t2) {
+
+        return getDistanceBounds(new TreePairContext(t1, t2));
+    }
+
+    /**
+     * @param bounds If not null, receives the bounds of the distance instead of solving the
+     * assignment problem.
+     */
+    private double getDistance(TreePairContext context, double bound, double[] bounds) {
+
+        // the alignment is generated from the cluster intersection matrix
+        if (!IOSettings.getIOSettings().isGenAlignments() && context.isSameTopology(true)) {
+            return 0.0;
+        }
         int metric, t1NodeNum, t2NodeNum, il, jl;
         Node t1Node, t2Node;
+        Tree t1 = context.getT1();
+        Tree t2 = context.getT2();
 
-        IdGroup idGroup1 = TreeUtils.getLeafIdGroup(t1);
-        IdGroup idGroup2 = TreeUtils.getLeafIdGroup(t2);
-        IdGroup idGroup = new SimpleIdGroup(idGroup1,idGroup2);
-        cIntM = TreeCmpUtils.calcClustIntersectMatrix(t1, t2, idGroup);
+        cIntM = context.getClustIntersectMatrix();
 
         int size1 = t1.getInternalNodeCount();
         int size2 = t2.getInternalNodeCount();
@@ -53,6 +102,9 @@ public class MatchingClusterMetricO3 extends BaseMetric implements Metric {
 
         int size = Math.max(size1 - eqClustSize, size2 - eqClustSize);
         int sizeIt = Math.max(size1, size2);
+        if (size > bound) {
+            return size;
+        }
 
         assigncost = new short[size][size];
         rowsol = new int[size];
@@ -153,6 +205,17 @@ public class MatchingClusterMetricO3 extends BaseMetric implements Metric {
             il++;
         }
 
+        if (bounds != null) {
+            bounds[0] = Math.max(size, LapSolver.lowerBoundShort(size, assigncost));
+            bounds[1] = LapSolver.greedyShort(size, assigncost);
+            return bounds[0];
+        }
+        if (bound < Double.POSITIVE_INFINITY) {
+            int lower = LapSolver.lowerBoundShort(size, assigncost);
+            if (lower > bound) {
+                return lower;
+            }
+        }
         metric = LapSolver.lapShort(size, assigncost, rowsol, colsol, u, v);
         return metric;
     }
@@ -20,13 +20,14 @@ package treecmp.metrics.topological;
 import pal.misc.IdGroup;
 import pal.tree.Node;
 import pal.tree.Tree;
-import pal.tree.TreeUtils;
 import treecmp.common.AlignInfo;
 import treecmp.common.ClustIntersectInfoMatrix;
 import treecmp.common.ClustIntersectInfoMatrix.ClustPair;
 import treecmp.common.IntNodePair;
 import treecmp.common.LapSolver;
 import treecmp.common.TreeCmpUtils;
+import treecmp.common.TaxonRegistry;
+import treecmp.common.TopologyFingerprint;
 import treecmp.config.IOSettings;
 import treecmp.metrics.*;
 
@@ -41,11 +42,15 @@ public class MatchingClusterMetricO3Long extends BaseMetric implements Metric {
 
     public double getDistance(Tree t1, Tree t2, int... indexes) {
 
+        // the alignment is generated from the cluster intersection matrix
+        if (!IOSettings.getIOSettings().isGenAlignments() && TopologyFingerprint.isSameTopology(t1, t2, true)) {
+            return 0.0;
+        }
         long metric, metric_scaled;
         int t1NodeNum, t2NodeNum, il, jl;
         Node t1Node, t2Node;
 
-        IdGroup idGroup = TreeUtils.getLeafIdGroup(t1);
+        IdGroup idGroup = TaxonRegistry.getShared().getLeafIdGroup(t1);
         cIntM = TreeCmpUtils.calcClustIntersectMatrix(t1, t2, idGroup);
 
         int size1 = t1.getInternalNodeCount();
@@ -17,29 +17,32 @@
 
 package treecmp.metrics.topological;
 
-import pal.misc.IdGroup;
 import pal.tree.Tree;
-import pal.tree.TreeUtils;
 import treecmp.common.ClusterDist;
 import treecmp.common.LapSolver;
+import treecmp.common.TreePairContext;
 import treecmp.metrics.*;
 
 import java.util.*;
 
-public class MatchingClusterMetricOptRF extends BaseMetric implements Metric {
+public class MatchingClusterMetricOptRF extends BaseMetric implements ContextMetric {
   
     public double getDistance(Tree t1, Tree t2, int... indexes) {
 
+        return getDistance(new TreePairContext(t1, t2));
+    }
+
+    public double getDistance(TreePairContext context) {
+
         int i, j;
         int metric;
         BitSet[] c1,c2;
         BitSet bs_temp;
 
-        IdGroup idGroup = TreeUtils.getLeafIdGroup(t1);
-        BitSet[] c1_temp = ClusterDist.RootedTree2BitSetArray(t1, idGroup);
-        BitSet[] c2_temp = ClusterDist.RootedTree2BitSetArray(t2, idGroup);
+        BitSet[] c1_temp = context.getClusters1();
+        BitSet[] c2_temp = context.getClusters2();
 
-        int n = t1.getExternalNodeCount();
+        int n = context.getT1().getExternalNodeCount();
 
         int size1_temp = c1_temp.length;
         int size2_temp = c2_temp.length;
@@ -16,15 +16,14 @@
     along with this program.  If not, see <http://www.gnu.org/licenses/>. */
 package treecmp.metrics.topological;
 
-import pal.misc.IdGroup;
 import pal.tree.Node;
 import pal.tree.Tree;
-import pal.tree.TreeUtils;
 import treecmp.common.LapSolver;
 import treecmp.common.TreeCmpUtils;
+import treecmp.common.TreePairContext;
 import treecmp.metrics.*;
 
-public class MatchingPairMetric extends BaseMetric implements Metric {
+public class MatchingPairMetric extends BaseMetric implements ContextMetric {
 
     protected int[] rowsol;
     protected int[] colsol;
@@ -40,22 +39,28 @@ public class MatchingPairMetric extends BaseMetric implements Metric {
         if (t1.getExternalNodeCount() <= 2){
             return 0.0;
         }
-        
-        IdGroup id1 = TreeUtils.getLeafIdGroup(t1);
-        int[][] lcaMatrix1 = TreeCmpUtils.calcLcaMatrix(t1, null);
-        int[][] lcaMatrix2 = TreeCmpUtils.calcLcaMatrix(t2, id1);
+        return getDistance(new TreePairContext(t1, t2));
+    }
 
-        int intT1Num = t1.getInternalNodeCount();
-        int intT2Num = t2.getInternalNodeCount();
+    public double getDistance(TreePairContext context) {
+
+        Tree t1 = context.getT1();
+        Tree t2 = context.getT2();
+        if (t1.getExternalNodeCount() <= 2){
+            return 0.0;
+        }
+        if (context.isSameTopology(true)) {
+            return 0.0;
+        }
 
-        Node[] postOrderT1 = TreeCmpUtils.getNodesInPostOrder(t1);
-        Node[] postOrderT2 = TreeCmpUtils.getNodesInPostOrder(t2);
+        int[][] lcaMatrix1 = context.getLcaMatrix1();
+        int[][] lcaMatrix2 = context.getLcaMatrix2();
 
-        short[] cSize1 = new short[intT1Num];
-        short[] cSize2 = new short[intT2Num];
+        int intT1Num = t1.getInternalNodeCount();
+        int intT2Num = t2.getInternalNodeCount();
 
-        TreeCmpUtils.calcCladeSizes(t1, postOrderT1, cSize1);
-        TreeCmpUtils.calcCladeSizes(t2, postOrderT2, cSize2);
+        short[] cSize1 = context.getCladeSizes1();
+        short[] cSize2 = context.getCladeSizes2();
 
         int N = t1.getExternalNodeCount();
 
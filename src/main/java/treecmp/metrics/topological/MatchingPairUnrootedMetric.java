@@ -20,7 +20,7 @@ import pal.misc.IdGroup;
 import pal.tree.Node;
 import pal.tree.SimpleTree;
 import pal.tree.Tree;
-import pal.tree.TreeUtils;
+import treecmp.common.TaxonRegistry;
 import treecmp.metrics.Metric;
 import treecmp.metrics.*;
 
@@ -47,8 +47,8 @@ public class MatchingPairUnrootedMetric extends BaseMetric implements Metric {
         int t1ExternalNodeCount = t1.getExternalNodeCount();
         Node removedNode, removedNodeParent;
         double sum = 0;
-        IdGroup idGroup = TreeUtils.getLeafIdGroup(t1);
-        int[] alias = TreeUtils.mapExternalIdentifiers(idGroup, t2);
+        IdGroup idGroup = TaxonRegistry.getShared().getLeafIdGroup(t1);
+        int[] alias = TaxonRegistry.getShared().mapExternalIdentifiers(idGroup, t2);
         for (int i=0; i<t1ExternalNodeCount; i++) {
             final SimpleTree tree1 = new SimpleTree(t1);
             removedNode = tree1.getExternalNode(alias[i]);
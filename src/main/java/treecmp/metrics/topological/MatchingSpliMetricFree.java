@@ -21,10 +21,11 @@ package treecmp.metrics.topological;
 import pal.misc.IdGroup;
 import pal.tree.Node;
 import pal.tree.Tree;
-import pal.tree.TreeUtils;
 import treecmp.common.ClustIntersectInfoMatrix;
 import treecmp.common.LapSolver;
 import treecmp.common.TreeCmpUtils;
+import treecmp.common.TaxonRegistry;
+import treecmp.common.TopologyFingerprint;
 import treecmp.metrics.*;
 
 public class MatchingSpliMetricFree extends BaseMetric implements Metric {
@@ -38,11 +39,15 @@ public class MatchingSpliMetricFree extends BaseMetric implements Metric {
 
     public double getDistance(Tree t1, Tree t2, int... indexes) {
 
+        if (TopologyFingerprint.isSameTopology(t1, t2, true)) {
+            return 0.0;
+        }
+
         int metric;
         double metricDouble;
-        IdGroup idGroup1 = TreeUtils.getLeafIdGroup(t1);
-        IdGroup idGroup2 = TreeUtils.getLeafIdGroup(t2);
-        IdGroup idGroup = TreeCmpUtils.mergeIdGroups(idGroup1, idGroup2);
+        IdGroup idGroup1 = TaxonRegistry.getShared().getLeafIdGroup(t1);
+        IdGroup idGroup2 = TaxonRegistry.getShared().getLeafIdGroup(t2);
+        IdGroup idGroup = TaxonRegistry.getShared().mergeIdGroups(idGroup1, idGroup2);
         cIntM = TreeCmpUtils.calcClustIntersectMatrix(t1, t2, idGroup);
         int totL = idGroup.getIdCount();
 
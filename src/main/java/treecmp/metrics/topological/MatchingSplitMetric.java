@@ -20,10 +20,11 @@ package treecmp.metrics.topological;
 
 import pal.tree.Tree;
 import treecmp.common.AlignInfo;
+import treecmp.common.TreePairContext;
 import treecmp.config.IOSettings;
 import treecmp.metrics.*;
 
-public class MatchingSplitMetric extends BaseMetric implements Metric {
+public class MatchingSplitMetric extends BaseMetric implements ContextMetric, BoundedMetric, BoundingMetric {
   private MatchingSplitMetricO3 ms03;
   private MatchingSplitMetricOptRF msRF;
   private MatchingSpliMetricFree msFree;
@@ -47,6 +48,32 @@ public class MatchingSplitMetric extends BaseMetric implements Metric {
         return ms03.getDistance(t1, t2);
     }
 
+    public double getDistance(TreePairContext context) {
+
+        if (IOSettings.getIOSettings().isOptMsMcByRf())
+            return msRF.getDistance(context);
+        if (IOSettings.getIOSettings().isUseMsMcFreeLeafSet()) {
+            return msFree.getDistance(context.getT1(), context.getT2());
+        }
+        return ms03.getDistance(context);
+    }
+
+    public double getDistanceAtMost(Tree t1, Tree t2, double bound) {
+
+        if (IOSettings.getIOSettings().isUseMsMcFreeLeafSet()) {
+            return msFree.getDistance(t1, t2);
+        }
+        TreePairContext context = new TreePairContext(t1, t2);
+        int lower = RFMetric.getUnsharedSplitCount(context);
+        if (lower > bound) {
+            return lower;
+        }
+        if (IOSettings.getIOSettings().isOptMsMcByRf()) {
+            return msRF.getDistance(context);
+        }
+        return ms03.getDistance(context, bound);
+    }
+
     @Override
     public AlignInfo getAlignment() {
         if (IOSettings.getIOSettings().isOptMsMcByRf()) {
@@ -58,4 +85,20 @@ public class MatchingSplitMetric extends BaseMetric implements Metric {
         }
         return ms03.getAlignment();
     }
+
+    /**
+     * @return The bounds of the assignment problem (see {@link MatchingSplitMetricO3#getDistanceBounds}), the
+     * lower one at least the number of unshared splits.
+     */
+    public double[] getDistanceBounds(Tree t1, Tree t2) {
+
+        if (IOSettings.getIOSettings().isUseMsMcFreeLeafSet()) {
+            double dist = msFree.getDistance(t1, t2);
+            return new double[]{dist, dist};
+        }
+        TreePairContext context = new TreePairContext(t1, t2);
+        double[] bounds = ms03.getDistanceBounds(context);
+        bounds[0] = Math.max(bounds[0], RFMetric.getUnsharedSplitCount(context));
+        return bounds;
+    }
 }
@@ -18,16 +18,14 @@
 package treecmp.metrics.topological;
 
 
-import pal.misc.IdGroup;
 import pal.tree.Node;
 import pal.tree.Tree;
-import pal.tree.TreeUtils;
 import treecmp.common.*;
 import treecmp.common.ClustIntersectInfoMatrix.ClustPair;
 import treecmp.config.IOSettings;
 import treecmp.metrics.*;
 
-public class MatchingSplitMetricO3 extends BaseMetric implements Metric {
+public class MatchingSplitMetricO3 extends BaseMetric implements ContextMetric, BoundedMetric, BoundingMetric {
     
     protected int[] costId2NumT1;
     protected int[] costId2NumT2;
@@ -38,11 +36,64 @@ public class MatchingSplitMetricO3 extends BaseMetric implements Metric {
 
     public double getDistance(Tree t1, Tree t2, int... indexes) {
 
+        return getDistance(new TreePairContext(t1, t2));
+    }
+
+    public double getDistance(TreePairContext context) {
+
+        return getDistance(context, Double.POSITIVE_INFINITY);
+    }
+
+    public double getDistanceAtMost(Tree t1, Tree t2, double bound) {
+
+        return getDistance(new TreePairContext(t1, t2), bound);
+    }
+
+    /**
+     * Stops before solving the assignment problem if its bound ({@link LapSolver#lowerBoundShort})
+     * exceeds the bound. The alignment is not computed then.
+     *
+     * @return The distance if it is at most {@code bound}, otherwise a lower bound of it greater
+     * than {@code bound}.
+     */
+    public double getDistance(TreePairContext context, double bound) {
+
+        return getDistance(context, bound, null);
+    }
+
+    /**
+     * @return The bounds {lower, upper} of the distance from the assignment problem, without
+     * solving it: the bound of {@link LapSolver#lowerBoundShort} and the cost of the greedy
+     * assignment ({@link LapSolver#greedyShort}).
+     */
+    public double[] getDistanceBounds(TreePairContext context) {
+
+        double[] bounds = new double[2];
+        getDistance(context, Double.POSITIVE_INFINITY, bounds);
+        return bounds;
+    }
+
+    public double[] getDistanceBounds(Tree t1, Tree t2) {
+
+        return getDistanceBounds(new TreePairContext(t1, t2));
+    }
+
+    /**
+     * @param bounds If not null, receives the bounds of the distance instead of solving the
+     * assignment problem.
+     */
+    private double getDistance(TreePairContext context, double bound, double[] bounds) {
+
+        // the alignment is generated from the cluster intersection matrix
+        if (!IOSettings.getIOSettings().isGenAlignments() && context.isSameTopology(true)) {
+            return 0.0;
+        }
         int metric, t1NodeNum, t2NodeNum, il, jl, x1, x2;
         Node t1Node, t2Node;
+        Tree t1 = context.getT1();
+        Tree t2 = context.getT2();
         short n = (short) t1.getExternalNodeCount();
-        IdGroup idGroup = TreeUtils.getLeafIdGroup(t1);
-        cIntM = TreeCmpUtils.calcClustIntersectMatrix(t1, t2, idGroup);
+        cIntM = context.getClustIntersectMatrix();
 
         int size1 = t1.getInternalNodeCount();
         int size2 = t2.getInternalNodeCount();
@@ -154,6 +205,17 @@ public class MatchingSplitMetricO3 extends BaseMetric implements Metric {
             il++;
         }
 
+        if (bounds != null) {
+            bounds[0] = LapSolver.lowerBoundShort(size, assigncost);
+            bounds[1] = LapSolver.greedyShort(size, assigncost);
+            return bounds[0];
+        }
+        if (bound < Double.POSITIVE_INFINITY) {
+            int lower = LapSolver.lowerBoundShort(size, assigncost);
+            if (lower > bound) {
+                return lower;
+            }
+        }
         metric = LapSolver.lapShort(size, assigncost, rowsol, colsol, u, v);
         return metric;
     }
@@ -17,29 +17,32 @@
 
 package treecmp.metrics.topological;
 
-import pal.misc.IdGroup;
 import pal.tree.Tree;
-import pal.tree.TreeUtils;
 import treecmp.common.LapSolver;
 import treecmp.common.SplitDist;
+import treecmp.common.TreePairContext;
 import treecmp.metrics.*;
 
 import java.util.*;
 
-public class MatchingSplitMetricOptRF extends BaseMetric implements Metric {
+public class MatchingSplitMetricOptRF extends BaseMetric implements ContextMetric {
 
     public double getDistance(Tree t1, Tree t2, int... indexes) {
 
+        return getDistance(new TreePairContext(t1, t2));
+    }
+
+    public double getDistance(TreePairContext context) {
+
         int i, j;
         int metric;
         BitSet[] s1,s2;
         BitSet bs_temp;
 
-        IdGroup idGroup = TreeUtils.getLeafIdGroup(t1);
-        BitSet[] s1_temp=SplitDist.getSplits(t1, idGroup);
-        BitSet[] s2_temp=SplitDist.getSplits(t2, idGroup);
+        BitSet[] s1_temp=context.getSplits1();
+        BitSet[] s2_temp=context.getSplits2();
 
-        int n=t1.getExternalNodeCount();
+        int n=context.getT1().getExternalNodeCount();
 
         int size1_temp = s1_temp.length;
         int size2_temp = s2_temp.length;
@@ -19,14 +19,15 @@ package treecmp.metrics.topological;
 import pal.misc.IdGroup;
 import pal.tree.Node;
 import pal.tree.Tree;
-import pal.tree.TreeUtils;
 import treecmp.common.LapSolver;
 import treecmp.common.TreeCmpUtils;
+import treecmp.common.TaxonRegistry;
+import treecmp.common.TreePairContext;
 import treecmp.metrics.*;
 
 import java.util.Set;
 
-public class MatchingTripletMetric extends BaseMetric implements Metric {
+public class MatchingTripletMetric extends BaseMetric implements ContextMetric {
 
     protected int[] rowsol;
     protected int[] colsol;
@@ -43,27 +44,34 @@ public class MatchingTripletMetric extends BaseMetric implements Metric {
         if (t1.getExternalNodeCount() <= 2){
             return 0.0;
         }
+        return getDistance(new TreePairContext(t1, t2));
+    }
+
+    public double getDistance(TreePairContext context) {
+
+        Tree t1 = context.getT1();
+        Tree t2 = context.getT2();
+        if (t1.getExternalNodeCount() <= 2){
+            return 0.0;
+        }
+        if (context.isSameTopology(true)) {
+            return 0.0;
+        }
 
         // ncv - nearest common vertex
 
         int intT1Num = t1.getInternalNodeCount();
         int intT2Num = t2.getInternalNodeCount();
 
-        Node[] postOrderT1 = TreeCmpUtils.getNodesInPostOrder(t1);
-        Node[] postOrderT2 = TreeCmpUtils.getNodesInPostOrder(t2);
-
         Set<Node>[] verticesOutsideClade1 = TreeCmpUtils.getVerticesOutsideClade(t1);
         Set<Node>[] verticesOutsideClade2 = TreeCmpUtils.getVerticesOutsideClade(t2);
 
-        IdGroup id1 = TreeUtils.getLeafIdGroup(t1);
-        int [][] lcaMatrix1 = TreeCmpUtils.calcLcaMatrix(t1, null);
-        int [][] lcaMatrix2 = TreeCmpUtils.calcLcaMatrix(t2, id1);
-
-        short[] cSize1 = new short[intT1Num];
-        short[] cSize2 = new short[intT2Num];
+        IdGroup id1 = context.getIdGroup();
+        int [][] lcaMatrix1 = context.getLcaMatrix1();
+        int [][] lcaMatrix2 = context.getLcaMatrix2();
 
-        TreeCmpUtils.calcCladeSizes(t1, postOrderT1, cSize1);
-        TreeCmpUtils.calcCladeSizes(t2, postOrderT2, cSize2);
+        short[] cSize1 = context.getCladeSizes1();
+        short[] cSize2 = context.getCladeSizes2();
 
         int N = t1.getExternalNodeCount();
 
@@ -81,7 +89,7 @@ public class MatchingTripletMetric extends BaseMetric implements Metric {
         //int[][][] ncvMatrix1 = TreeCmpUtils.calcNcvMatrix(t1, null, lcaMatrix1);
         //int[][][] ncvMatrix2 = TreeCmpUtils.calcNcvMatrix(t2, id1, lcaMatrix2);
 
-        int[] alias = TreeUtils.mapExternalIdentifiers(id1, t1);
+        int[] alias = TaxonRegistry.getShared().mapExternalIdentifiers(id1, t1);
 
         //iterate by all possible triplets of leaves
         //and fill assigncost with the value of intersection size
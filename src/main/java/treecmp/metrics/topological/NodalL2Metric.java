@@ -20,17 +20,29 @@ package treecmp.metrics.topological;
 import pal.misc.IdGroup;
 import pal.tree.Tree;
 import pal.tree.TreeDistanceMatrix;
-import pal.tree.TreeUtils;
+import treecmp.common.NodalDist;
 import treecmp.common.TreeCmpUtils;
+import treecmp.common.TaxonRegistry;
+import treecmp.common.TopologyFingerprint;
 import treecmp.metrics.*;
 
 public class NodalL2Metric extends BaseMetric implements Metric {
 
-    //This seems to be faster than old implementation
     public double getDistance(Tree t1, Tree t2, int... indexes) {
+        if (TopologyFingerprint.isSameTopology(t1, t2, true)) {
+            return 0.0;
+        }
+        return NodalDist.getL2Dist(t1, t2);
+    }
+
+    /**
+     * Reference implementation of {@link #getDistance(Tree, Tree, int...)} based on two n&times;n
+     * splitted path-length matrices. It needs O(n<sup>2</sup>) time and memory.
+     */
+    public double getPairwiseDistance(Tree t1, Tree t2) {
         double dist, diff;
 
-        IdGroup id1 = TreeUtils.getLeafIdGroup(t1);
+        IdGroup id1 = TaxonRegistry.getShared().getLeafIdGroup(t1);
         int[][] nsMatrix1 = TreeCmpUtils.calcNodalSplittedMatrix(t1, null);
         int[][] nsMatrix2 = TreeCmpUtils.calcNodalSplittedMatrix(t2, id1);
 
@@ -48,7 +60,7 @@ public class NodalL2Metric extends BaseMetric implements Metric {
         double dist, diff;
 
 
-        IdGroup id1 = TreeUtils.getLeafIdGroup(t1);
+        IdGroup id1 = TaxonRegistry.getShared().getLeafIdGroup(t1);
         TreeDistanceMatrix tr1 = new TreeDistanceMatrix(t1, true, 0);
         TreeDistanceMatrix tr2 = new TreeDistanceMatrix(t2, id1, true, 0);
 
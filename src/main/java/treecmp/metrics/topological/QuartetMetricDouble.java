@@ -21,13 +21,15 @@ import pal.io.OutputTarget;
 import pal.tree.Tree;
 import pal.tree.TreeUtils;
 import qt.*;
+import treecmp.common.SplitBounds;
+import treecmp.common.TopologyFingerprint;
 import treecmp.metrics.*;
 
 /**
  *
  * @author Damian
  */
-public class QuartetMetricDouble extends BaseMetric implements Metric {
+public class QuartetMetricDouble extends BaseMetric implements BoundingMetric {
 
     public QuartetMetricDouble() {
     }
@@ -64,6 +66,22 @@ public class QuartetMetricDouble extends BaseMetric implements Metric {
 
     public double getDistance(Tree t1, Tree t2, int... indexes) {
 
+        // quartets do not depend on the root
+        if (TopologyFingerprint.isSameTopology(t1, t2, false)) {
+            return 0.0;
+        }
         return QuartetMetricDouble.getQuartetDistance(t1, t2);
     }
+
+    /**
+     * @return The bounds {0 or 1, the bound of {@link SplitBounds#getQuartetUpperBound}}.
+     */
+    public double[] getDistanceBounds(Tree t1, Tree t2) {
+
+        if (TopologyFingerprint.isSameTopology(t1, t2, false)) {
+            return new double[]{0.0, 0.0};
+        }
+        long upper = SplitBounds.getQuartetUpperBound(t1, t2);
+        return new double[]{1.0, (upper < 0) ? Double.POSITIVE_INFINITY : (double) upper};
+    }
 }
@@ -17,23 +17,28 @@
 
 package treecmp.metrics.topological;
 
-import pal.misc.IdGroup;
 import pal.tree.Tree;
-import pal.tree.TreeUtils;
-import treecmp.common.ClusterDist;
+import treecmp.common.TreePairContext;
 import treecmp.metrics.*;
 
 import java.util.BitSet;
 import java.util.HashSet;
 
-public class RFClusterMetric extends BaseMetric implements Metric {
+public class RFClusterMetric extends BaseMetric implements ContextMetric {
 
     public static double getRFClusterMetric(Tree t1, Tree t2) {
 
-        IdGroup idGroup = TreeUtils.getLeafIdGroup(t1);
+        return getRFClusterMetric(new TreePairContext(t1, t2));
+    }
+
+    public static double getRFClusterMetric(TreePairContext context) {
 
-        BitSet[] bs1 = ClusterDist.RootedTree2BitSetArray(t1, idGroup);
-        BitSet[] bs2 = ClusterDist.RootedTree2BitSetArray(t2, idGroup);
+        if (context.isSameTopology(true)) {
+            return 0.0;
+        }
+
+        BitSet[] bs1 = context.getClusters1();
+        BitSet[] bs2 = context.getClusters2();
 
         int size1 = bs1.length;
         int size2 = bs2.length;
@@ -56,11 +61,38 @@ public class RFClusterMetric extends BaseMetric implements Metric {
 
     }
 
-    
+    /**
+     * @return The larger of the numbers of clusters of one tree missing in the other one, a lower
+     * bound of the matching cluster distance (every such cluster is matched at a positive cost).
+     */
+    public static int getUnsharedClusterCount(TreePairContext context) {
+
+        if (context.isSameTopology(true)) {
+            return 0;
+        }
+        BitSet[] bs1 = context.getClusters1();
+        BitSet[] bs2 = context.getClusters2();
+        HashSet<BitSet> hs1=new HashSet<BitSet>((4*(bs1.length+1))/3);
+        for(int i=0;i<bs1.length;i++){
+            hs1.add(bs1[i]);
+        }
+        int common=0;
+        for(int i=0;i<bs2.length;i++){
+            if (hs1.contains(bs2[i]))
+                common++;
+        }
+        return Math.max(bs1.length, bs2.length) - common;
+    }
 
     public double getDistance(Tree t1, Tree t2, int... indexes) {
 
         return RFClusterMetric.getRFClusterMetric(t1, t2);
 
     }
+
+    public double getDistance(TreePairContext context) {
+
+        return RFClusterMetric.getRFClusterMetric(context);
+
+    }
 }
@@ -17,10 +17,8 @@
 
 package treecmp.metrics.topological;
 
-import pal.misc.IdGroup;
 import pal.tree.Tree;
-import pal.tree.TreeUtils;
-import treecmp.common.SplitDist;
+import treecmp.common.TreePairContext;
 import treecmp.metrics.*;
 
 import java.util.BitSet;
@@ -30,7 +28,7 @@ import java.util.HashSet;
  *
  * @author Damian
  */
-public class RFMetric extends BaseMetric implements Metric {
+public class RFMetric extends BaseMetric implements ContextMetric, BoundedMetric {
 
     public static double getRFDistance(Tree t1, Tree t2) {
 
@@ -38,9 +36,20 @@ public class RFMetric extends BaseMetric implements Metric {
         if (n <= 3)
             return 0;
 
-        IdGroup idGroup = TreeUtils.getLeafIdGroup(t1);
-        BitSet[] s_t1=SplitDist.getSplits(t1, idGroup);
-        BitSet[] s_t2=SplitDist.getSplits(t2, idGroup);
+        return getRFDistance(new TreePairContext(t1, t2));
+    }
+
+    public static double getRFDistance(TreePairContext context) {
+
+        int n = context.getT1().getExternalNodeCount();
+        if (n <= 3)
+            return 0;
+        if (context.isSameTopology(true)) {
+            return 0.0;
+        }
+
+        BitSet[] s_t1=context.getSplits1();
+        BitSet[] s_t2=context.getSplits2();
         int N1=s_t1.length;
         int N2=s_t2.length;
         int hashSetSize=(4*(N1+1))/3;
@@ -64,11 +73,88 @@ public class RFMetric extends BaseMetric implements Metric {
 
     }
 
-    
+    /**
+     * Counts the splits of the second tree missing in the first one and stops as soon as the
+     * distance, (N1 - N2) / 2 plus their number, exceeds the bound.
+     *
+     * @return The RF distance if it is at most {@code bound}, otherwise a lower bound of it greater
+     * than {@code bound}.
+     */
+    public static double getRFDistanceAtMost(TreePairContext context, double bound) {
+
+        int n = context.getT1().getExternalNodeCount();
+        if (n <= 3)
+            return 0;
+        if (context.isSameTopology(true)) {
+            return 0.0;
+        }
+
+        BitSet[] s_t1=context.getSplits1();
+        BitSet[] s_t2=context.getSplits2();
+        int N1=s_t1.length;
+        int N2=s_t2.length;
+        double lower=Math.abs((double)N1-(double)N2)*0.5;
+        if (lower > bound) {
+            return lower;
+        }
+        int hashSetSize=(4*(N1+1))/3;
+
+        HashSet<BitSet> s_t1_hs=new HashSet<BitSet>(hashSetSize);
+        for(int i=0;i<N1;i++){
+            s_t1_hs.add(s_t1[i]);
+        }
+
+        double dist=((double)N1-(double)N2)*0.5;
+        for(int i=0;i<N2;i++){
+            if (!s_t1_hs.contains(s_t2[i])){
+                dist++;
+                if (dist > bound) {
+                    return dist;
+                }
+            }
+        }
+        return dist;
+    }
+
+    /**
+     * @return The larger of the numbers of splits of one tree missing in the other one, a lower
+     * bound of the matching split distance (every such split is matched at a positive cost).
+     */
+    public static int getUnsharedSplitCount(TreePairContext context) {
+
+        if (context.getT1().getExternalNodeCount() <= 3 || context.isSameTopology(true)) {
+            return 0;
+        }
+        BitSet[] s_t1=context.getSplits1();
+        BitSet[] s_t2=context.getSplits2();
+        HashSet<BitSet> s_t1_hs=new HashSet<BitSet>((4*(s_t1.length+1))/3);
+        for(int i=0;i<s_t1.length;i++){
+            s_t1_hs.add(s_t1[i]);
+        }
+        int common=0;
+        for(int i=0;i<s_t2.length;i++){
+            if (s_t1_hs.contains(s_t2[i])){
+                common++;
+            }
+        }
+        return Math.max(s_t1.length, s_t2.length) - common;
+    }
 
     public double getDistance(Tree t1, Tree t2, int... indexes) {
 
         return RFMetric.getRFDistance(t1, t2);
 
     }
+
+    public double getDistance(TreePairContext context) {
+
+        return RFMetric.getRFDistance(context);
+
+    }
+
+    public double getDistanceAtMost(Tree t1, Tree t2, double bound) {
+
+        return RFMetric.getRFDistanceAtMost(new TreePairContext(t1, t2), bound);
+
+    }
 }
@@ -2,15 +2,20 @@ package treecmp.metrics.topological;
 
 import pal.tree.Node;
 import pal.tree.Tree;
+import treecmp.common.CommonCladeReducer;
 import treecmp.common.LapSolver;
+import treecmp.common.SplitBounds;
+import treecmp.common.TopologyFingerprint;
 import treecmp.metrics.*;
 
+import java.util.Map;
+
 /**
  * RMAST metric.
  * Implementation of Procedure 3
  * Farach, Martin and Thorup, Mikkel; Fast comparison of evolutionary trees. 
  */
-public class RMASTMetric extends BaseMetric implements Metric {
+public class RMASTMetric extends BaseMetric implements BoundingMetric {
 
 	@Override
 	public boolean isRooted() {
@@ -19,10 +24,27 @@ public class RMASTMetric extends BaseMetric implements Metric {
 
 	@Override
 	public double getDistance(Tree t1, Tree t2, int... indexes) {
-		return Math.max(t1.getExternalNodeCount(), t2.getExternalNodeCount()) - crmast(t1, t2).getRMAST();
+		if (TopologyFingerprint.isSameTopology(t1, t2, true)) {
+			return 0.0;
+		}
+		final int n = Math.max(t1.getExternalNodeCount(), t2.getExternalNodeCount());
+		//common clades are collapsed into meta-leaves weighted by their sizes
+		final CommonCladeReducer.Reduction reduction = CommonCladeReducer.reduce(t1, t2);
+		if (reduction != null) {
+			return n - crmast(reduction.getT1(), reduction.getT2(), reduction.getWeights()).getRMAST();
+		}
+		return n - crmast(t1, t2).getRMAST();
 	}
 	
 	public static CRMAST crmast(Tree t1, Tree t2) {
+		return crmast(t1, t2, null);
+	}
+
+	/**
+	 * @param weights The weights of the leaves by label (1 if absent or if the map is null); the
+	 *                result is the maximum weight of a common subtree.
+	 */
+	public static CRMAST crmast(Tree t1, Tree t2, Map<String, Integer> weights) {
 		final int t1Leafs = t1.getExternalNodeCount();
 		final int t2Leafs = t2.getExternalNodeCount();
 		
@@ -37,18 +59,19 @@ public class RMASTMetric extends BaseMetric implements Metric {
 				final Node leaf2 = t2.getExternalNode(j);
 				
 				if (leaf1.getIdentifier().equals(leaf2.getIdentifier())) {
-					mast.set(i, j, 1);
+					final int weight = getWeight(leaf1, weights);
+					mast.set(i, j, weight);
 					
 					Node v1 = leaf1;
 					do {
 						v1 = v1.getParent();
-						mast.set(v1, leaf2, 1);
+						mast.set(v1, leaf2, weight);
 					} while (!v1.isRoot());
 					
 					Node v2 = leaf2;
 					do {
 						v2 = v2.getParent();
-						mast.set(leaf1, v2, 1);
+						mast.set(leaf1, v2, weight);
 					} while (!v2.isRoot());
 				}
 			}
@@ -68,6 +91,14 @@ public class RMASTMetric extends BaseMetric implements Metric {
 		return mast;
 	}
 
+	static int getWeight(Node leaf, Map<String, Integer> weights) {
+		if (weights == null) {
+			return 1;
+		}
+		final Integer weight = weights.get(leaf.getIdentifier().getName());
+		return (weight == null) ? 1 : weight;
+	}
+
 	private static int diag(Node v1, Tree t1, Node v2, Tree t2, CRMAST mast) {
 		int result = 0;
 		for (int i=0; i<v2.getChildCount(); i++) {
@@ -126,6 +157,13 @@ public class RMASTMetric extends BaseMetric implements Metric {
 		return order;
 	}
 
+	/**
+	 * @return The bounds of {@link SplitBounds#getMastDistanceBounds}.
+	 */
+	public double[] getDistanceBounds(Tree t1, Tree t2) {
+		final int[] bounds = SplitBounds.getMastDistanceBounds(t1, t2, true);
+		return new double[]{bounds[0], bounds[1]};
+	}
 }
 
 final class CRMAST {
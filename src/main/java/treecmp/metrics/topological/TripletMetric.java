@@ -17,10 +17,10 @@
 
 package treecmp.metrics.topological;
 
-import pal.misc.IdGroup;
 import pal.tree.Tree;
-import pal.tree.TreeUtils;
+import treecmp.common.TopologyFingerprint;
 import treecmp.common.TreeCmpUtils;
+import treecmp.common.TreePairContext;
 import treecmp.metrics.*;
 
 import java.util.ArrayList;
@@ -28,7 +28,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-public class TripletMetric extends BaseMetric implements Metric {
+public class TripletMetric extends BaseMetric implements ContextMetric, BoundedMetric {
     private TripletMetric2 tt2;
   public TripletMetric(){
       super();
@@ -37,6 +37,9 @@ public class TripletMetric extends BaseMetric implements Metric {
 
     public double getDistance(Tree t1, Tree t2, int... indexes) {
 
+        if (TopologyFingerprint.isSameTopology(t1, t2, true)) {
+            return 0.0;
+        }
         if (TreeCmpUtils.isBinary(t1, true) && TreeCmpUtils.isBinary(t2, true)) {
             return getDistForBinary(t1, t2);
         }
@@ -45,10 +48,24 @@ public class TripletMetric extends BaseMetric implements Metric {
 
     }
 
+    public double getDistance(TreePairContext context) {
+
+        if (context.isSameTopology(true)) {
+            return 0.0;
+        }
+        if (TreeCmpUtils.isBinary(context.getT1(), true) && TreeCmpUtils.isBinary(context.getT2(), true)) {
+            return getDistForBinary(context);
+        }
+        return tt2.getDistance(context);
+    }
+
     public double getDistForBinary(Tree t1, Tree t2) {
-        IdGroup id1 = TreeUtils.getLeafIdGroup(t1);
-        int[][] lcaMatrix1 = TreeCmpUtils.calcLcaMatrix(t1, null);
-        int[][] lcaMatrix2 = TreeCmpUtils.calcLcaMatrix(t2, id1);
+        return getDistForBinary(new TreePairContext(t1, t2));
+    }
+
+    public double getDistForBinary(TreePairContext context) {
+        int[][] lcaMatrix1 = context.getLcaMatrix1();
+        int[][] lcaMatrix2 = context.getLcaMatrix2();
         int n = lcaMatrix1.length;
         long n_l = (long) n;
         long val_l;
@@ -66,6 +83,66 @@ public class TripletMetric extends BaseMetric implements Metric {
         return (double) dist;
     }
 
+    public double getDistanceAtMost(Tree t1, Tree t2, double bound) {
+
+        if (TopologyFingerprint.isSameTopology(t1, t2, true)) {
+            return 0.0;
+        }
+        if (TreeCmpUtils.isBinary(t1, true) && TreeCmpUtils.isBinary(t2, true)) {
+            return getDistForBinaryAtMost(new TreePairContext(t1, t2), bound);
+        }
+        return tt2.getDistance(t1, t2);
+    }
+
+    /**
+     * Sums over the leaves x the number of triplets with outgroup x in the first tree which do not
+     * have outgroup x in the second one, and stops as soon as the sum exceeds the bound. For binary
+     * trees every triplet has one outgroup, so the complete sum is the triplet distance.
+     *
+     * @return The distance if it is at most {@code bound}, otherwise a lower bound of it greater
+     * than {@code bound}.
+     */
+    public double getDistForBinaryAtMost(TreePairContext context, double bound) {
+        int[][] lcaMatrix1 = context.getLcaMatrix1();
+        int[][] lcaMatrix2 = context.getLcaMatrix2();
+        int n = lcaMatrix1.length;
+        long val_l;
+        long dist = 0;
+
+        for (int i = 0; i < n; i++) {
+            dist += getOutgroupPairNum(i, lcaMatrix1);
+            List<Integer> numList = getPatternNum(i, lcaMatrix1, lcaMatrix2);
+            for (Integer val : numList) {
+                val_l = (long) val;
+                dist -= val_l * (val_l - 1) / 2;
+            }
+            if (dist > bound) {
+                return (double) dist;
+            }
+        }
+        return (double) dist;
+    }
+
+    /**
+     * @return The number of pairs of leaves with the same lca with leaf x, i.e. of the triplets
+     * with outgroup x in a binary tree.
+     */
+    private static long getOutgroupPairNum(int x, int[][] a) {
+        Map<Integer, Integer> classMap = new HashMap<Integer, Integer>((4 * a.length) / 3);
+        for (int i = 0; i < a.length; i++) {
+            if (i == x) {
+                continue;
+            }
+            Integer num = classMap.get(a[x][i]);
+            classMap.put(a[x][i], (num == null) ? 1 : num.intValue() + 1);
+        }
+        long pairs = 0;
+        for (Integer val : classMap.values()) {
+            pairs += (long) val * (val - 1) / 2;
+        }
+        return pairs;
+    }
+
     class Pattern {
 
         public int a;
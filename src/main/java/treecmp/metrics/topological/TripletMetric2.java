@@ -19,20 +19,30 @@ package treecmp.metrics.topological;
 
 import pal.tree.Node;
 import pal.tree.Tree;
-import pal.tree.TreeUtils;
 import treecmp.common.ClustIntersectInfoMatrix;
 import treecmp.common.TreeCmpUtils;
+import treecmp.common.TreePairContext;
 import treecmp.metrics.*;
 
 
-public class TripletMetric2 extends BaseMetric implements Metric {
+public class TripletMetric2 extends BaseMetric implements ContextMetric {
 
     public double getDistance(Tree t1, Tree t2, int... indexes) {
 
-        long n = t1.getExternalNodeCount();
-        Node [] nodesT1 = TreeCmpUtils.getNodesInPostOrder(t1);
-        Node [] nodesT2 = TreeCmpUtils.getNodesInPostOrder(t2);
-        ClustIntersectInfoMatrix cIM =TreeCmpUtils.calcClustIntersectMatrix(t1, t2, TreeUtils.getLeafIdGroup(t1));
+        return getDistance(new TreePairContext(t1, t2));
+    }
+
+    public double getDistance(TreePairContext context) {
+
+        if (context.isSameTopology(true)) {
+            return 0.0;
+        }
+
+        long n = context.getT1().getExternalNodeCount();
+        Tree t2 = context.getT2();
+        Node [] nodesT1 = context.getPostOrder1();
+        Node [] nodesT2 = context.getPostOrder2();
+        ClustIntersectInfoMatrix cIM = context.getClustIntersectMatrix();
        // long Rt1 = TreeCmpUtils.calcResolvedTriplets(t1, nodesT1, cIM.cSize1);
         long Rt2 = TreeCmpUtils.calcResolvedTriplets(t2, nodesT2, cIM.cSize2);
         long St1t2 = TreeCmpUtils.calcResolvedAndEqualTriplets(cIM, nodesT1, nodesT2);
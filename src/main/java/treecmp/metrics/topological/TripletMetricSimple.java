@@ -19,14 +19,18 @@ package treecmp.metrics.topological;
 
 import pal.misc.IdGroup;
 import pal.tree.Tree;
-import pal.tree.TreeUtils;
 import treecmp.common.TreeCmpUtils;
+import treecmp.common.TaxonRegistry;
+import treecmp.common.TopologyFingerprint;
 import treecmp.metrics.*;
 
 public class TripletMetricSimple extends BaseMetric implements Metric {
   
 
     public double getDistance(Tree t1, Tree t2, int... indexes) {
+        if (TopologyFingerprint.isSameTopology(t1, t2, true)) {
+            return 0.0;
+        }
         return getDistForArbitrary(t1, t2);
     }
 
@@ -45,7 +49,7 @@ public class TripletMetricSimple extends BaseMetric implements Metric {
      */
     public double getDistForArbitrary(Tree t1, Tree t2) {
 
-        IdGroup id1 = TreeUtils.getLeafIdGroup(t1);
+        IdGroup id1 = TaxonRegistry.getShared().getLeafIdGroup(t1);
         int[][] nsMatrix1 = TreeCmpUtils.calcNodalSplittedMatrix(t1, null);
         int[][] nsMatrix2 = TreeCmpUtils.calcNodalSplittedMatrix(t2, id1);
         long unResolved_T1 = 0;
@@ -22,7 +22,10 @@ import pal.tree.Node;
 import pal.tree.NodeFactory;
 import pal.tree.SimpleTree;
 import pal.tree.Tree;
+import treecmp.common.CommonCladeReducer;
 import treecmp.common.LapSolver;
+import treecmp.common.SplitBounds;
+import treecmp.common.TopologyFingerprint;
 import treecmp.common.TreeCmpUtils;
 import treecmp.metrics.*;
 
@@ -33,7 +36,7 @@ import java.util.*;
  * Implementation of Procedure 1
  * Farach, Martin and Thorup, Mikkel; Fast comparison of evolutionary trees.
  */
-public class UMASTMetric extends BaseMetric implements Metric {
+public class UMASTMetric extends BaseMetric implements BoundingMetric {
     @Override
     public boolean isRooted() {
         return false;
@@ -41,16 +44,41 @@ public class UMASTMetric extends BaseMetric implements Metric {
 
     @Override
     public double getDistance(Tree t1, Tree t2, int... indexes) {
-        Tree tmpT1 = t1.getCopy();
-        Tree tmpT2 = t2.getCopy();
-        int result = umast(new SimpleUnrootedTreePreservingNodeNumbers(tmpT1.getRoot()), new SimpleUnrootedTreePreservingNodeNumbers(tmpT2.getRoot()));
+        if (TopologyFingerprint.isSameTopology(t1, t2, false)) {
+            return 0.0;
+        }
+        final int n = Math.max(t1.getExternalNodeCount(), t2.getExternalNodeCount());
+        //common clades are collapsed into meta-leaves weighted by their sizes
+        final CommonCladeReducer.Reduction reduction = CommonCladeReducer.reduce(t1, t2);
+        Tree tmpT1, tmpT2;
+        Map<String, Integer> weights = null;
+        if (reduction != null) {
+            tmpT1 = reduction.getT1();
+            tmpT2 = reduction.getT2();
+            weights = reduction.getWeights();
+        } else {
+            tmpT1 = t1.getCopy();
+            tmpT2 = t2.getCopy();
+        }
+        int result = umast(new SimpleUnrootedTreePreservingNodeNumbers(tmpT1.getRoot()), new SimpleUnrootedTreePreservingNodeNumbers(tmpT2.getRoot()), weights);
+
+        return n - result;
+    }
 
-        return Math.max(tmpT1.getExternalNodeCount(), tmpT2.getExternalNodeCount()) - result;
+    /**
+     * @return The bounds of {@link SplitBounds#getMastDistanceBounds}.
+     */
+    public double[] getDistanceBounds(Tree t1, Tree t2) {
+        final int[] bounds = SplitBounds.getMastDistanceBounds(t1, t2, false);
+        return new double[]{bounds[0], bounds[1]};
     }
 
-    private static int umast(final SimpleTree tree1, final SimpleTree tree2) {
+    /**
+     * @param weights The weights of the leaves by label (1 if absent or if the map is null).
+     */
+    private static int umast(final SimpleTree tree1, final SimpleTree tree2, final Map<String, Integer> weights) {
         if (tree1.getExternalNodeCount() <= 3 || tree2.getExternalNodeCount() <= 3) {
-            return getLeafLabelsIntersectionSize(tree1, tree2);
+            return getLeafLabelsIntersectionSize(tree1, tree2, weights);
         }
         final int n1 = tree1.getExternalNodeCount();
         final int n2 = tree2.getExternalNodeCount();
@@ -79,7 +107,7 @@ public class UMASTMetric extends BaseMetric implements Metric {
                 final SimpleTree t1Restricted = r1.getRestrictedTo(union);
                 final SimpleTree t2Restricted = r2.getRestrictedTo(union);
 
-                result = Math.max(result, umast(t1Restricted, t2Restricted));
+                result = Math.max(result, umast(t1Restricted, t2Restricted, weights));
             }
         }
 
@@ -91,7 +119,7 @@ public class UMASTMetric extends BaseMetric implements Metric {
             tree1.reroot(tree1.getInternalNode(core1.getExternalNodeIdx(i)));
             for (int j=0; j<c2ExternalNodes; j++) {
                 tree2.reroot(tree2.getInternalNode(core2.getExternalNodeIdx(j)));
-                crmastSet.include(RMASTMetric.crmast(tree1, tree2), tree1, tree2);
+                crmastSet.include(RMASTMetric.crmast(tree1, tree2, weights), tree1, tree2);
             }
         }
 
@@ -108,11 +136,19 @@ public class UMASTMetric extends BaseMetric implements Metric {
         return result;
     }
 
-    private static int getLeafLabelsIntersectionSize(Tree tree1, Tree tree2) {
+    private static int getLeafLabelsIntersectionSize(Tree tree1, Tree tree2, Map<String, Integer> weights) {
         final Set<String> t1Labels = getLeafLabels(tree1);
         final Set<String> t2Labels = getLeafLabels(tree2);
         t1Labels.retainAll(t2Labels);
-        return t1Labels.size();
+        if (weights == null) {
+            return t1Labels.size();
+        }
+        int size = 0;
+        for (final String label : t1Labels) {
+            final Integer weight = weights.get(label);
+            size += (weight == null) ? 1 : weight;
+        }
+        return size;
     }
 
     private static Set<String> getLeafLabels(Tree tree) {
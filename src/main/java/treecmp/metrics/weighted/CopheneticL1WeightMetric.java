@@ -28,6 +28,11 @@ public class CopheneticL1WeightMetric extends BaseMetric implements Metric {
         return true;
     }
 
+    @Override
+    public boolean isWeighted() {
+        return true;
+    }
+
     /**
      * Calculates the distance between two phylogenetic trees, {@code t1} and {@code t2}, using
      * a cophenetic metric, as described in the paper "Cophenetic metrics for phylogenetic trees,
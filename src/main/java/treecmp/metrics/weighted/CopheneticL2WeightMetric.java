@@ -21,8 +21,9 @@ package treecmp.metrics.weighted;
 import pal.misc.IdGroup;
 import pal.tree.Node;
 import pal.tree.Tree;
-import pal.tree.TreeUtils;
+import treecmp.common.CopheneticDist;
 import treecmp.common.TreeCmpUtils;
+import treecmp.common.TaxonRegistry;
 import treecmp.metrics.*;
 
 /*
@@ -34,11 +35,19 @@ import treecmp.metrics.*;
 
  public class CopheneticL2WeightMetric extends BaseMetric implements Metric {
 
+    /** Largest number of leaves for which the distance is computed by enumerating leaf pairs. */
+    public static final int PAIRWISE_LEAF_LIMIT = 1000;
+
     @Override
     public boolean isRooted() {
         return true;
     }
 
+    @Override
+    public boolean isWeighted() {
+        return true;
+    }
+
      public CopheneticL2WeightMetric() {
          super();
      }
@@ -55,8 +64,10 @@ import treecmp.metrics.*;
       * <li>The depth of the root-to-tip path (tip height) for every individual leaf (i).</li>
       * </ul>
       *
-      * <p>The method uses the LCA matrix (`lcaMatrix`) and pre-calculated node depths (`intDepthT` and `extDepthT`)
-      * to efficiently compute the squared difference in path lengths.
+      * <p>For trees with more than {@link #PAIRWISE_LEAF_LIMIT} leaves the pairs are not enumerated: the
+      * squared norm is expanded into per-tree sums and a cross term computed by
+      * {@link CopheneticDist#getWeightedL2Dist(Tree, Tree)} in O(n log<sup>3</sup> n) time. The expansion
+      * loses precision for nearly identical trees, so smaller trees use the pairwise computation.
       *
       * @param t1 The first phylogenetic tree.
       * @param t2 The second phylogenetic tree.
@@ -65,12 +76,31 @@ import treecmp.metrics.*;
       */
     @Override
     public double getDistance(Tree t1, Tree t2, int... indexes) {
+        int extT1Num = t1.getExternalNodeCount();
+        if (extT1Num <= 1) {
+            return 0.0;
+        }
+        if (extT1Num <= PAIRWISE_LEAF_LIMIT) {
+            return getPairwiseDistance(t1, t2);
+        }
+        return CopheneticDist.getWeightedL2Dist(t1, t2);
+    }
+
+    /**
+     * Reference implementation of {@link #getDistance(Tree, Tree, int...)} enumerating all leaf pairs
+     * with two n&times;n LCA matrices. It needs O(n<sup>2</sup>) time and memory.
+     *
+     * @param t1 The first phylogenetic tree.
+     * @param t2 The second phylogenetic tree.
+     * @return The Patristic Distance (Euclidean distance) between the two trees.
+     */
+    public double getPairwiseDistance(Tree t1, Tree t2) {
         int extT1Num = t1.getExternalNodeCount();
         int extT2Num = t2.getExternalNodeCount();
         if (extT1Num <= 1) {
             return 0.0;
         }
-        IdGroup id1 = TreeUtils.getLeafIdGroup(t1);
+        IdGroup id1 = TaxonRegistry.getShared().getLeafIdGroup(t1);
         int[][] lcaMatrix1 = TreeCmpUtils.calcLcaMatrix(t1, null);
         int[][] lcaMatrix2 = TreeCmpUtils.calcLcaMatrix(t2, id1);
 
@@ -5,13 +5,14 @@
 package treecmp.metrics.weighted;
 
 import pal.tree.Tree;
+import treecmp.common.SplitBounds;
 import treecmp.metrics.*;
 
 /**
  *
  * @author Damian
  */
-public class GeoRootedMetric extends BaseMetric implements Metric {
+public class GeoRootedMetric extends BaseMetric implements BoundingMetric {
 
     private GeoMetricWrapper geoMetricWrapper = new GeoMetricWrapper();
 
@@ -20,9 +21,21 @@ public class GeoRootedMetric extends BaseMetric implements Metric {
         return true;
     }
 
+    @Override
+    public boolean isWeighted() {
+        return true;
+    }
+
     @Override
     public double getDistance(Tree t1, Tree t2, int... indexes) {
         double dist = geoMetricWrapper.getDistance(t1, t2, true, null);
         return dist;
     }
+
+    /**
+     * @return The bounds of {@link SplitBounds#getGeodesicBounds}.
+     */
+    public double[] getDistanceBounds(Tree t1, Tree t2) {
+        return SplitBounds.getGeodesicBounds(t1, t2, true);
+    }
 }
@@ -6,13 +6,14 @@ package treecmp.metrics.weighted;
 
 import pal.tree.Tree;
 import pal.tree.TreeTool;
+import treecmp.common.SplitBounds;
 import treecmp.metrics.*;
 
 /**
  *
  * @author Damian
  */
-public class GeoUnrootedMetric extends BaseMetric implements Metric {
+public class GeoUnrootedMetric extends BaseMetric implements BoundingMetric {
 
     private GeoMetricWrapper geoMetricWrapper = new GeoMetricWrapper();
 
@@ -21,6 +22,11 @@ public class GeoUnrootedMetric extends BaseMetric implements Metric {
         return false;
     }
 
+    @Override
+    public boolean isWeighted() {
+        return true;
+    }
+
     @Override
     public double getDistance(Tree t1, Tree t2, int... indexes) {
         int extT1Num = t1.getExternalNodeCount();
@@ -39,4 +45,14 @@ public class GeoUnrootedMetric extends BaseMetric implements Metric {
         double dist = geoMetricWrapper.getDistance(t1u, t2u, false, null);
         return dist;
     }
+
+    /**
+     * @return The bounds of {@link SplitBounds#getGeodesicBounds}.
+     */
+    public double[] getDistanceBounds(Tree t1, Tree t2) {
+        if (t1.getExternalNodeCount() <= 1) {
+            return new double[]{0.0, 0.0};
+        }
+        return SplitBounds.getGeodesicBounds(t1, t2, false);
+    }
 }
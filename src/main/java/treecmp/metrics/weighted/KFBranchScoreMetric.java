@@ -0,0 +1,44 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package treecmp.metrics.weighted;
+
+import pal.misc.IdGroup;
+import pal.tree.Tree;
+import treecmp.common.TreeCmpUtils;
+import treecmp.common.WeightedSplits;
+import treecmp.common.TaxonRegistry;
+import treecmp.metrics.*;
+
+/**
+ * Branch score distance of Kuhner and Felsenstein (1994): the Euclidean (L2) distance between
+ * the branch length vectors of two unrooted trees indexed by splits. A split absent
+ * from a tree has length 0 in that tree.
+ *
+ * <p>Rooted input trees are unrooted first (the two root edges are merged), so that each split
+ * occurs only once.
+ */
+public class KFBranchScoreMetric extends BaseMetric implements Metric {
+
+    @Override
+    public boolean isRooted() {
+        return false;
+    }
+
+    @Override
+    public boolean isWeighted() {
+        return true;
+    }
+
+    @Override
+    public double getDistance(Tree t1, Tree t2, int... indexes) {
+        Tree ut1 = TreeCmpUtils.unrootTreeIfNeeded(t1);
+        Tree ut2 = TreeCmpUtils.unrootTreeIfNeeded(t2);
+        IdGroup idGroup = TaxonRegistry.getShared().getLeafIdGroup(ut1);
+        WeightedSplits s1 = WeightedSplits.getSplits(ut1, idGroup);
+        WeightedSplits s2 = WeightedSplits.getSplits(ut2, idGroup);
+
+        return WeightedSplits.getL2Dist(s1, s2);
+    }
+}
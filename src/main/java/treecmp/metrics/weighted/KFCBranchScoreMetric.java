@@ -0,0 +1,37 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package treecmp.metrics.weighted;
+
+import pal.misc.IdGroup;
+import pal.tree.Tree;
+import treecmp.common.WeightedSplits;
+import treecmp.common.TaxonRegistry;
+import treecmp.metrics.*;
+
+/**
+ * Rooted variant of the Kuhner-Felsenstein branch score distance: the Euclidean (L2) distance
+ * between the branch length vectors of two rooted trees indexed by clusters.
+ */
+public class KFCBranchScoreMetric extends BaseMetric implements Metric {
+
+    @Override
+    public boolean isRooted() {
+        return true;
+    }
+
+    @Override
+    public boolean isWeighted() {
+        return true;
+    }
+
+    @Override
+    public double getDistance(Tree t1, Tree t2, int... indexes) {
+        IdGroup idGroup = TaxonRegistry.getShared().getLeafIdGroup(t1);
+        WeightedSplits c1 = WeightedSplits.getClusters(t1, idGroup);
+        WeightedSplits c2 = WeightedSplits.getClusters(t2, idGroup);
+
+        return WeightedSplits.getL2Dist(c1, c2);
+    }
+}
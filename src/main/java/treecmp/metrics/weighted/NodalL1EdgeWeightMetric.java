@@ -8,7 +8,8 @@ package treecmp.metrics.weighted;
 import pal.misc.IdGroup;
 import pal.tree.Tree;
 import pal.tree.TreeDistanceMatrix;
-import pal.tree.TreeUtils;
+import treecmp.common.NodalDist;
+import treecmp.common.TaxonRegistry;
 import treecmp.metrics.*;
 
 /**
@@ -22,8 +23,24 @@ public class NodalL1EdgeWeightMetric extends BaseMetric implements Metric {
         return false;
     }
 
+    @Override
+    public boolean isWeighted() {
+        return true;
+    }
+
+    /**
+     * Streams over the leaf pairs using constant time LCA queries, so only O(n log n) memory is used.
+     */
     @Override
     public double getDistance(Tree t1, Tree t2, int... indexes) {
+        return NodalDist.getStreamingL1Dist(t1, t2, true);
+    }
+
+    /**
+     * Reference implementation of {@link #getDistance(Tree, Tree, int...)} based on two n&times;n
+     * distance matrices. It needs O(n<sup>2</sup>) time and memory.
+     */
+    public double getPairwiseDistance(Tree t1, Tree t2) {
         double dist;
         String n1, n2;
         int row1, col1, row2, col2;
@@ -31,7 +48,7 @@ public class NodalL1EdgeWeightMetric extends BaseMetric implements Metric {
         TreeDistanceMatrix tr1 = new TreeDistanceMatrix(t1);
         TreeDistanceMatrix tr2 = new TreeDistanceMatrix(t2);
 
-        IdGroup id1 = TreeUtils.getLeafIdGroup(t1);
+        IdGroup id1 = TaxonRegistry.getShared().getLeafIdGroup(t1);
 
         dist = 0.0;
         for (int i = 0; i < id1.getIdCount(); i++) {
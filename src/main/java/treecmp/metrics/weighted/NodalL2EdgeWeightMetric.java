@@ -8,7 +8,8 @@ package treecmp.metrics.weighted;
 import pal.misc.IdGroup;
 import pal.tree.Tree;
 import pal.tree.TreeDistanceMatrix;
-import pal.tree.TreeUtils;
+import treecmp.common.NodalDist;
+import treecmp.common.TaxonRegistry;
 import treecmp.metrics.*;
 
 /**
@@ -17,13 +18,37 @@ import treecmp.metrics.*;
  */
 public class NodalL2EdgeWeightMetric extends BaseMetric implements Metric {
 
+    /** Largest number of leaves for which the leaf pairs are enumerated. */
+    public static final int STREAMING_LEAF_LIMIT = 5000;
+
     @Override
     public boolean isRooted() {
         return false;
     }
 
+    @Override
+    public boolean isWeighted() {
+        return true;
+    }
+
+    /**
+     * Up to {@link #STREAMING_LEAF_LIMIT} leaves the leaf pairs are streamed using constant time LCA
+     * queries (O(n log n) memory). Larger trees use the O(n log<sup>3</sup> n) expansion of the
+     * squared norm, which is less accurate for nearly identical trees.
+     */
     @Override
     public double getDistance(Tree t1, Tree t2, int... indexes) {
+        if (t1.getExternalNodeCount() <= STREAMING_LEAF_LIMIT) {
+            return NodalDist.getStreamingL2Dist(t1, t2, true);
+        }
+        return NodalDist.getWeightedL2Dist(t1, t2);
+    }
+
+    /**
+     * Reference implementation of {@link #getDistance(Tree, Tree, int...)} based on two n&times;n
+     * distance matrices. It needs O(n<sup>2</sup>) time and memory.
+     */
+    public double getPairwiseDistance(Tree t1, Tree t2) {
         double dist, diff;
         String n1, n2;
         int row1, col1, row2, col2;
@@ -31,7 +56,7 @@ public class NodalL2EdgeWeightMetric extends BaseMetric implements Metric {
         TreeDistanceMatrix tr1 = new TreeDistanceMatrix(t1);
         TreeDistanceMatrix tr2 = new TreeDistanceMatrix(t2);
 
-        IdGroup id1 = TreeUtils.getLeafIdGroup(t1);
+        IdGroup id1 = TaxonRegistry.getShared().getLeafIdGroup(t1);
 
         dist = 0.0;
         for (int i = 0; i < id1.getIdCount(); i++) {
@@ -0,0 +1,361 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package treecmp.statdata;
+
+import pal.tree.Tree;
+import treecmp.common.SplitIndex;
+import treecmp.common.TaxonRegistry;
+import treecmp.common.TreeCmpException;
+import treecmp.metrics.Metric;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Online convergence diagnostics of MCMC chains, updated as the sampled trees are produced.
+ *
+ * <p>For the average standard deviation of split frequencies (ASDSF) every chain counts the trees
+ * containing each split; the splits are kept as the hashes of {@link SplitIndex#getSplitHashes},
+ * so a tree costs one traversal and the table grows only with the number of distinct splits. The
+ * ASDSF is computed on request from the table.</p>
+ *
+ * <p>For the pseudo effective sample size (Lanfear et al. 2016) every chain keeps the distances of
+ * its trees to its first {@link #setReferenceCount(int) reference} trees after the burn-in. The
+ * trace has a fixed capacity: when it is full every second value is dropped and only every
+ * second tree is compared from then on, so the trace covers the whole chain evenly and the
+ * number of distance computations per tree decreases over time. The distances are Robinson-Foulds
+ * distances computed from the split hashes, or those of {@link #setMetric(Metric)}.</p>
+ *
+ * <p>All trees must have the same taxa. The monitor is not thread safe.</p>
+ *
+ * @author Damian
+ */
+public class ConvergenceMonitor {
+
+    public static final double DEFAULT_MIN_FREQUENCY = 0.1;
+    public static final int DEFAULT_TRACE_CAPACITY = 1024;
+
+    private final TaxonRegistry registry;
+    private final Chain[] chains;
+    // split hash -> number of post-burn-in trees of each chain containing the split
+    private final Map<Long, int[]> splitCounts;
+    private int burnIn;
+    private int referenceCount;
+    private int traceCapacity;
+    private Metric metric;
+
+    public ConvergenceMonitor(int chainCount) {
+        this(chainCount, TaxonRegistry.getShared());
+    }
+
+    /**
+     * @param registry The registry assigning the taxon ids.
+     */
+    public ConvergenceMonitor(int chainCount, TaxonRegistry registry) {
+        if (chainCount < 1) {
+            throw new IllegalArgumentException("There must be at least one chain");
+        }
+        this.registry = registry;
+        this.chains = new Chain[chainCount];
+        for (int c = 0; c < chainCount; c++) {
+            chains[c] = new Chain();
+        }
+        this.splitCounts = new HashMap<Long, int[]>();
+        this.burnIn = 0;
+        this.referenceCount = 1;
+        this.traceCapacity = DEFAULT_TRACE_CAPACITY;
+    }
+
+    /**
+     * @param burnIn The number of first trees of every chain which are ignored. Must be set before
+     * the first tree is added.
+     */
+    public void setBurnIn(int burnIn) {
+        checkEmpty();
+        this.burnIn = Math.max(0, burnIn);
+    }
+
+    /**
+     * @param referenceCount The number of reference trees of the pseudo-ESS of a chain. Must be set
+     * before the first tree is added.
+     */
+    public void setReferenceCount(int referenceCount) {
+        checkEmpty();
+        this.referenceCount = Math.max(1, referenceCount);
+    }
+
+    /**
+     * @param traceCapacity The maximal length of a distance trace, rounded up to an even number.
+     * Must be set before the first tree is added.
+     */
+    public void setTraceCapacity(int traceCapacity) {
+        checkEmpty();
+        this.traceCapacity = Math.max(2, traceCapacity + (traceCapacity & 1));
+    }
+
+    /**
+     * @param metric The metric of the distance traces, or null for the Robinson-Foulds distance
+     * computed from the split hashes. Must be set before the first tree is added.
+     */
+    public void setMetric(Metric metric) {
+        checkEmpty();
+        this.metric = metric;
+    }
+
+    public int getChainCount() {
+        return chains.length;
+    }
+
+    /**
+     * @return The number of trees added to the chain, including the burn-in.
+     */
+    public int getTreeCount(int chain) {
+        return chains[chain].treeCount;
+    }
+
+    /**
+     * @return The number of distinct splits of the post-burn-in trees of all chains.
+     */
+    public int getSplitCount() {
+        return splitCounts.size();
+    }
+
+    /**
+     * Adds the next tree of a chain.
+     */
+    public void add(int chain, Tree tree) throws TreeCmpException {
+        Chain c = chains[chain];
+        c.treeCount++;
+        if (c.treeCount <= burnIn) {
+            return;
+        }
+        long[] splits = SplitIndex.getSplitHashes(tree, registry);
+        Arrays.sort(splits);
+        for (int i = 0; i < splits.length; i++) {
+            if (i > 0 && splits[i] == splits[i - 1]) {
+                continue;
+            }
+            int[] counts = splitCounts.get(splits[i]);
+            if (counts == null) {
+                counts = new int[chains.length];
+                splitCounts.put(splits[i], counts);
+            }
+            counts[chain]++;
+        }
+        c.addToTrace(tree);
+    }
+
+    /**
+     * @return The frequency of a split in the post-burn-in trees of the chain.
+     */
+    public double getSplitFrequency(int chain, long split) {
+        int[] counts = splitCounts.get(split);
+        int n = chains[chain].getSampleCount();
+        return (counts == null || n == 0) ? 0.0 : (double) counts[chain] / n;
+    }
+
+    /**
+     * @return The ASDSF of the splits with frequency at least {@link #DEFAULT_MIN_FREQUENCY} in one
+     * of the chains.
+     */
+    public double getASDSF() {
+        return getASDSF(DEFAULT_MIN_FREQUENCY);
+    }
+
+    /**
+     * Returns the mean over the splits of the sample standard deviation of their frequencies in the
+     * chains, as in MrBayes; a split is included if its frequency is at least
+     * {@code minFrequency} in one of the chains.
+     *
+     * @return The ASDSF, or NaN if there are fewer than two chains with post-burn-in trees or no
+     * split is included.
+     */
+    public double getASDSF(double minFrequency) {
+        int[] samples = new int[chains.length];
+        int chainNum = 0;
+        for (int c = 0; c < chains.length; c++) {
+            samples[c] = chains[c].getSampleCount();
+            if (samples[c] > 0) {
+                chainNum++;
+            }
+        }
+        if (chainNum < 2) {
+            return Double.NaN;
+        }
+        double[] freq = new double[chains.length];
+        double sum = 0.0;
+        int splitNum = 0;
+        for (int[] counts : splitCounts.values()) {
+            double mean = 0.0;
+            double max = 0.0;
+            for (int c = 0; c < chains.length; c++) {
+                if (samples[c] > 0) {
+                    freq[c] = (double) counts[c] / samples[c];
+                    mean += freq[c];
+                    max = Math.max(max, freq[c]);
+                }
+            }
+            if (max < minFrequency) {
+                continue;
+            }
+            mean /= chainNum;
+            double ss = 0.0;
+            for (int c = 0; c < chains.length; c++) {
+                if (samples[c] > 0) {
+                    ss += (freq[c] - mean) * (freq[c] - mean);
+                }
+            }
+            sum += Math.sqrt(ss / (chainNum - 1));
+            splitNum++;
+        }
+        return (splitNum == 0) ? Double.NaN : sum / splitNum;
+    }
+
+    /**
+     * @return The distances of the traced trees of the chain to one of its reference trees, in the
+     * order of the chain.
+     */
+    public double[] getTrace(int chain, int reference) {
+        Chain c = chains[chain];
+        return Arrays.copyOf(c.trace[reference], c.traceLength);
+    }
+
+    /**
+     * @return The number of trees of the chain between consecutive values of its traces.
+     */
+    public int getTraceStride(int chain) {
+        return chains[chain].stride;
+    }
+
+    /**
+     * Returns the pseudo-ESS of a chain: the mean over the reference trees of the effective sample
+     * size of the distance trace, scaled by the stride of the trace to the number of traced trees.
+     * The result is at most the number of post-burn-in trees after the reference trees.
+     *
+     * @return The pseudo-ESS, or NaN if the trace has fewer than two values.
+     */
+    public double getPseudoESS(int chain) {
+        Chain c = chains[chain];
+        if (c.traceLength < 2) {
+            return Double.NaN;
+        }
+        double sum = 0.0;
+        for (int r = 0; r < referenceCount; r++) {
+            sum += getEffectiveSampleSize(c.trace[r], c.traceLength);
+        }
+        double ess = sum / referenceCount;
+        // the trace is a thinned sample; it cannot have more independent values than it has values
+        return Math.min(ess, c.traceLength) * c.stride;
+    }
+
+    /**
+     * Effective sample size N / (1 + 2 sum rho_k) of the first n values, summing the
+     * autocorrelations rho_k while the sums of consecutive pairs are positive (Geyer's initial
+     * positive sequence).
+     */
+    static double getEffectiveSampleSize(double[] values, int n) {
+        double mean = 0.0;
+        for (int i = 0; i < n; i++) {
+            mean += values[i];
+        }
+        mean /= n;
+        double gamma0 = autocovariance(values, n, mean, 0);
+        if (gamma0 <= 0.0) {
+            return n;
+        }
+        double tau = 1.0;
+        for (int k = 1; k + 1 < n; k += 2) {
+            double pair = autocovariance(values, n, mean, k) + autocovariance(values, n, mean, k + 1);
+            if (pair <= 0.0) {
+                break;
+            }
+            tau += 2.0 * pair / gamma0;
+        }
+        return n / tau;
+    }
+
+    private static double autocovariance(double[] values, int n, double mean, int lag) {
+        double s = 0.0;
+        for (int i = 0; i + lag < n; i++) {
+            s += (values[i] - mean) * (values[i + lag] - mean);
+        }
+        return s / n;
+    }
+
+    private void checkEmpty() {
+        for (Chain c : chains) {
+            if (c.treeCount > 0) {
+                throw new IllegalStateException("Trees have been added already");
+            }
+        }
+    }
+
+    private class Chain {
+
+        int treeCount;
+        SplitIndex referenceIndex;
+        Tree[] references;
+        int referenceNum;
+        double[][] trace;
+        int traceLength;
+        // the trace holds the distances of every stride-th post-reference tree
+        int stride = 1;
+        long skipped;
+
+        int getSampleCount() {
+            return Math.max(0, treeCount - burnIn);
+        }
+
+        void addToTrace(Tree tree) throws TreeCmpException {
+            if (referenceNum < referenceCount) {
+                addReference(tree);
+                return;
+            }
+            if (skipped++ % stride != 0) {
+                return;
+            }
+            if (traceLength == traceCapacity) {
+                for (int r = 0; r < referenceCount; r++) {
+                    for (int i = 0; i < traceLength / 2; i++) {
+                        trace[r][i] = trace[r][2 * i];
+                    }
+                }
+                traceLength /= 2;
+                // the capacity is even, so the current tree is on the new stride
+                stride *= 2;
+            }
+            if (metric == null) {
+                double[] d = referenceIndex.getDistances(tree);
+                for (int r = 0; r < referenceCount; r++) {
+                    trace[r][traceLength] = d[r];
+                }
+            } else {
+                for (int r = 0; r < referenceCount; r++) {
+                    trace[r][traceLength] = metric.getDistance(references[r], tree);
+                }
+            }
+            traceLength++;
+        }
+
+        private void addReference(Tree tree) {
+            if (referenceNum == 0) {
+                trace = new double[referenceCount][traceCapacity];
+                if (metric == null) {
+                    referenceIndex = new SplitIndex(registry);
+                } else {
+                    references = new Tree[referenceCount];
+                }
+            }
+            if (metric == null) {
+                referenceIndex.add(tree);
+            } else {
+                references[referenceNum] = tree.getCopy();
+            }
+            referenceNum++;
+        }
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package treecmp.statdata;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Binary, memory-mapped store of the reference distributions of all metrics.
+ *
+ * <p>One file ({@link #FILE_NAME} in the data directory) holds the tables of all text data files
+ * (the {@code unif_data} and {@code yule_data} entries of the configuration), so they do not have
+ * to be parsed at startup. Layout (big-endian):
+ * <pre>
+ *     int magic, int version, int tableCount
+ *     tableCount x (short nameLength, byte[nameLength] name (UTF-8), int rowCount, long offset)
+ *     rows: int leafNum, double avg, std, min, max, 13 x double quantile  (sorted by leafNum)
+ * </pre>
+ *
+ * <p>Holders obtained by {@link #getSharedHolder(String, String)} are cached and shared by all
+ * metric instances; they fall back to the text file if the binary store does not contain the table
+ * and answer queries for missing leaf numbers by interpolation ({@link InterpolatedDistrbHolder}).
+ *
+ * @author Damian
+ */
+public class DistributionStore {
+
+    public static final String FILE_NAME = "distributions.bin";
+
+    private static final int MAGIC = 0x54434453;
+    private static final int VERSION = 1;
+    private static final int ROW_SIZE = 4 + 8 * (4 + MetricDistribution.QUANTILE_NUM);
+
+    private static final Map<String, DistributionStore> sharedStores = new HashMap<String, DistributionStore>();
+    private static final Map<String, IMetircDistrbHolder> sharedHolders = new HashMap<String, IMetircDistrbHolder>();
+
+    private final ByteBuffer buffer;
+    private final Map<String, int[]> tables;
+
+    private DistributionStore(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        this.tables = new HashMap<String, int[]>();
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a distribution store (version " + VERSION + ")");
+        }
+        int tableCount = buffer.getInt(8);
+        int pos = 12;
+        for (int i = 0; i < tableCount; i++) {
+            int nameLength = buffer.getShort(pos);
+            byte[] name = new byte[nameLength];
+            for (int j = 0; j < nameLength; j++) {
+                name[j] = buffer.get(pos + 2 + j);
+            }
+            pos += 2 + nameLength;
+            int rowCount = buffer.getInt(pos);
+            long offset = buffer.getLong(pos + 4);
+            pos += 12;
+            tables.put(new String(name, StandardCharsets.UTF_8), new int[]{(int) offset, rowCount});
+        }
+    }
+
+    /**
+     * Maps a store file into memory.
+     */
+    public static DistributionStore open(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            return new DistributionStore(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            // the mapping stays valid after the channel is closed
+            raf.close();
+        }
+    }
+
+    public boolean hasTable(String dataFileName) {
+        return tables.containsKey(dataFileName);
+    }
+
+    /**
+     * @return The table stored under {@code dataFileName} (without interpolation) or null.
+     */
+    public IMetircDistrbHolder getTable(String dataFileName) {
+        int[] table = tables.get(dataFileName);
+        if (table == null) {
+            return null;
+        }
+        return new MappedDistrbHolder(buffer, table[0], table[1]);
+    }
+
+    /**
+     * Returns the shared holder of the distributions of the data file {@code dataFileName}. The binary
+     * store of {@code dataDir} is used if it contains the table, otherwise the text file is parsed.
+     *
+     * @return The distributions with interpolation for missing leaf numbers.
+     * @throws IOException if neither the store nor the text file can be read.
+     */
+    public static synchronized IMetircDistrbHolder getSharedHolder(String dataDir, String dataFileName) throws IOException {
+        String fullPath = dataDir + "/" + dataFileName;
+        IMetircDistrbHolder holder = sharedHolders.get(fullPath);
+        if (holder != null) {
+            return holder;
+        }
+        DistributionStore store = getSharedStore(dataDir);
+        if (store != null && store.hasTable(dataFileName)) {
+            MappedDistrbHolder table = (MappedDistrbHolder) store.getTable(dataFileName);
+            holder = new InterpolatedDistrbHolder(table, table.getLeafNums());
+        } else {
+            MetircDistrbHolder table = MetircDistrbHolder.readTextFile(fullPath);
+            holder = new InterpolatedDistrbHolder(table, table.getLeafNums());
+        }
+        sharedHolders.put(fullPath, holder);
+        return holder;
+    }
+
+    private static DistributionStore getSharedStore(String dataDir) throws IOException {
+        if (sharedStores.containsKey(dataDir)) {
+            return sharedStores.get(dataDir);
+        }
+        File file = new File(dataDir, FILE_NAME);
+        DistributionStore store = file.isFile() ? open(file) : null;
+        sharedStores.put(dataDir, store);
+        return store;
+    }
+
+    /**
+     * Drops all shared stores and holders, e.g. after the store file has been rewritten.
+     */
+    public static synchronized void clearShared() {
+        sharedStores.clear();
+        sharedHolders.clear();
+    }
+
+    /**
+     * Writes the tables to a store file.
+     *
+     * @param tables The distributions keyed by the name of their text data file.
+     */
+    public static void write(File file, Map<String, MetircDistrbHolder> tables) throws IOException {
+        long offset = 12;
+        for (String name : tables.keySet()) {
+            offset += 2 + name.getBytes(StandardCharsets.UTF_8).length + 12;
+        }
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(tables.size());
+            for (Map.Entry<String, MetircDistrbHolder> e : tables.entrySet()) {
+                byte[] name = e.getKey().getBytes(StandardCharsets.UTF_8);
+                int rowCount = e.getValue().getLeafNums().length;
+                out.writeShort(name.length);
+                out.write(name);
+                out.writeInt(rowCount);
+                out.writeLong(offset);
+                offset += (long) rowCount * ROW_SIZE;
+            }
+            for (MetircDistrbHolder mdh : tables.values()) {
+                for (int n : mdh.getLeafNums()) {
+                    IMetricDistribution md = mdh.getDistribution(n);
+                    out.writeInt(n);
+                    out.writeDouble(md.getAvg());
+                    out.writeDouble(md.getStd());
+                    out.writeDouble(md.getMin());
+                    out.writeDouble(md.getMax());
+                    for (double q : InterpolatedDistrbHolder.getQuantiles(md)) {
+                        out.writeDouble(q);
+                    }
+                }
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Converts text data files of a data directory into the store file {@link #FILE_NAME} of the same
+     * directory and drops the shared holders read before.
+     *
+     * @param dataFileNames The names of the text data files (e.g. the {@code unif_data} and
+     *                      {@code yule_data} entries of all metrics); null entries are skipped.
+     */
+    public static void convertTextData(String dataDir, Collection<String> dataFileNames) throws IOException {
+        Map<String, MetircDistrbHolder> tables = new LinkedHashMap<String, MetircDistrbHolder>();
+        for (String name : dataFileNames) {
+            if (name != null && !tables.containsKey(name)) {
+                tables.put(name, MetircDistrbHolder.readTextFile(dataDir + "/" + name));
+            }
+        }
+        write(new File(dataDir, FILE_NAME), tables);
+        clearShared();
+    }
+
+    /**
+     * Table of a store read directly from the mapped buffer.
+     */
+    private static class MappedDistrbHolder implements IMetircDistrbHolder {
+
+        private final ByteBuffer buffer;
+        private final int offset;
+        private final int rowCount;
+
+        MappedDistrbHolder(ByteBuffer buffer, int offset, int rowCount) {
+            this.buffer = buffer;
+            this.offset = offset;
+            this.rowCount = rowCount;
+        }
+
+        private int leafNumAt(int row) {
+            return buffer.getInt(offset + row * ROW_SIZE);
+        }
+
+        int[] getLeafNums() {
+            int[] leafNums = new int[rowCount];
+            for (int i = 0; i < rowCount; i++) {
+                leafNums[i] = leafNumAt(i);
+            }
+            return leafNums;
+        }
+
+        public IMetricDistribution getDistribution(int n) {
+            int lo = 0, hi = rowCount - 1, mid, midNum;
+            while (lo <= hi) {
+                mid = (lo + hi) >>> 1;
+                midNum = leafNumAt(mid);
+                if (midNum < n) {
+                    lo = mid + 1;
+                } else if (midNum > n) {
+                    hi = mid - 1;
+                } else {
+                    int pos = offset + mid * ROW_SIZE + 4;
+                    double[] q = new double[MetricDistribution.QUANTILE_NUM];
+                    for (int i = 0; i < q.length; i++) {
+                        q[i] = buffer.getDouble(pos + 32 + 8 * i);
+                    }
+                    return new MetricDistribution(n, buffer.getDouble(pos), buffer.getDouble(pos + 8),
+                            buffer.getDouble(pos + 16), buffer.getDouble(pos + 24), q);
+                }
+            }
+            return null;
+        }
+
+        public int getMaxLeafNum(int n) {
+            return (rowCount == 0) ? -1 : leafNumAt(rowCount - 1);
+        }
+
+        public int getMinLeafNum(int n) {
+            return (rowCount == 0) ? Integer.MAX_VALUE : leafNumAt(0);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package treecmp.statdata;
+
+import java.util.Arrays;
+
+/**
+ * Distribution holder answering queries for leaf numbers missing from the underlying table.
+ *
+ * <p>Distributions stored in the table are returned unchanged. For a missing leaf number all
+ * values (avg, std, min, max and the quantiles) are interpolated linearly between the nearest
+ * smaller and larger stored leaf numbers, or extrapolated linearly from the two nearest stored
+ * leaf numbers outside the table range. Extrapolated values are clamped at 0 and the order
+ * min &lt;= quantiles &lt;= max is preserved.
+ *
+ * @author Damian
+ */
+public class InterpolatedDistrbHolder implements IMetircDistrbHolder {
+
+    private final IMetircDistrbHolder base;
+    private final int[] leafNums;
+
+    /**
+     * @param base     The table.
+     * @param leafNums The leaf numbers stored in {@code base}, in increasing order.
+     */
+    public InterpolatedDistrbHolder(IMetircDistrbHolder base, int[] leafNums) {
+        this.base = base;
+        this.leafNums = leafNums;
+    }
+
+    public IMetricDistribution getDistribution(int n) {
+        int pos = Arrays.binarySearch(leafNums, n);
+        if (pos >= 0) {
+            return base.getDistribution(n);
+        }
+        if (leafNums.length < 2) {
+            return null;
+        }
+        int upper = -pos - 1;
+        if (upper == 0) {
+            upper = 1;
+        } else if (upper == leafNums.length) {
+            upper = leafNums.length - 1;
+        }
+        int lowerNum = leafNums[upper - 1];
+        int upperNum = leafNums[upper];
+        return interpolate(n, base.getDistribution(lowerNum), base.getDistribution(upperNum));
+    }
+
+    public int getMaxLeafNum(int n) {
+        return base.getMaxLeafNum(n);
+    }
+
+    public int getMinLeafNum(int n) {
+        return base.getMinLeafNum(n);
+    }
+
+    static MetricDistribution interpolate(int n, IMetricDistribution lower, IMetricDistribution upper) {
+        double t = (double) (n - lower.getLeafNum()) / (double) (upper.getLeafNum() - lower.getLeafNum());
+        double[] q = new double[MetricDistribution.QUANTILE_NUM];
+        double[] lowerQ = getQuantiles(lower);
+        double[] upperQ = getQuantiles(upper);
+        double min = Math.max(0.0, lin(t, lower.getMin(), upper.getMin()));
+        double prev = min;
+        for (int i = 0; i < q.length; i++) {
+            q[i] = Math.max(prev, lin(t, lowerQ[i], upperQ[i]));
+            prev = q[i];
+        }
+        double max = Math.max(prev, lin(t, lower.getMax(), upper.getMax()));
+        double avg = Math.max(0.0, lin(t, lower.getAvg(), upper.getAvg()));
+        double std = Math.max(0.0, lin(t, lower.getStd(), upper.getStd()));
+        return new MetricDistribution(n, avg, std, min, max, q);
+    }
+
+    private static double lin(double t, double a, double b) {
+        return a + t * (b - a);
+    }
+
+    static double[] getQuantiles(IMetricDistribution md) {
+        return new double[]{
+            md.get02Quantile(), md.get05Quantile(), md.get10Quantile(), md.get20Quantile(),
+            md.get30Quantile(), md.get40Quantile(), md.get50Quantile(), md.get60Quantile(),
+            md.get70Quantile(), md.get80Quantile(), md.get90Quantile(), md.get95Quantile(),
+            md.get97Quantile()
+        };
+    }
+}
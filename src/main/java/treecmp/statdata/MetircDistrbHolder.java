@@ -5,6 +5,10 @@
 
 package treecmp.statdata;
 
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -38,6 +42,43 @@ public class MetircDistrbHolder implements IMetircDistrbHolder{
         return minLeafNum;
     }
 
+    /**
+     * @return The leaf numbers for which a distribution is available, in increasing order.
+     */
+    public int[] getLeafNums() {
+        int[] leafNums = new int[distMap.size()];
+        int i = 0;
+        for (Integer n : distMap.keySet()) {
+            leafNums[i++] = n;
+        }
+        Arrays.sort(leafNums);
+        return leafNums;
+    }
+
+    /**
+     * Reads a text data file: a header line followed by one tab separated row per leaf number
+     * (see {@link MetricDistribution#readData(String)}).
+     */
+    public static MetircDistrbHolder readTextFile(String fullPath) throws IOException {
+        MetircDistrbHolder mdh = new MetircDistrbHolder();
+        BufferedReader br = new BufferedReader(new FileReader(fullPath));
+        try {
+            int cnt = 0;
+            String line;
+            while ((line = br.readLine()) != null) {
+                cnt++;
+                if (cnt > 1) {
+                    MetricDistribution md = new MetricDistribution();
+                    md.readData(line);
+                    mdh.insertDistribution(md);
+                }
+            }
+        } finally {
+            br.close();
+        }
+        return mdh;
+    }
+
     public void insertDistribution(IMetricDistribution distrb){
         int leafNum = distrb.getLeafNum();
         distMap.put(leafNum, distrb);
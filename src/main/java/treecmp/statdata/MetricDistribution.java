@@ -15,7 +15,9 @@ public class MetricDistribution implements IMetricDistribution {
 
     private final static String SPLIT_REGEX = "\t";
     private final static Pattern p = Pattern.compile(SPLIT_REGEX);
-    private final static int QUANTILE_NUM = 13;
+    public final static int QUANTILE_NUM = 13;
+    /** probabilities of the quantiles, in the order of get02Quantile() .. get97Quantile() */
+    public final static double[] QUANTILE_PROBS = {0.02, 0.05, 0.10, 0.20, 0.30, 0.40, 0.50, 0.60, 0.70, 0.80, 0.90, 0.95, 0.97};
 
     private int n;
     private double avg;
@@ -35,6 +37,15 @@ public class MetricDistribution implements IMetricDistribution {
         quantile = new double[QUANTILE_NUM];
     }
 
+    public MetricDistribution(int n, double avg, double std, double min, double max, double[] quantile){
+        this.n = n;
+        this.avg = avg;
+        this.std = std;
+        this.min = min;
+        this.max = max;
+        this.quantile = quantile.clone();
+    }
+
     public void readData(String dataRow){
 
        String[] fileds = p.split(dataRow);
@@ -123,4 +134,11 @@ public class MetricDistribution implements IMetricDistribution {
         return quantile[12];
     }
 
+    /**
+     * @param i The index of the quantile, from 0 (2% quantile) to QUANTILE_NUM - 1 (97% quantile).
+     */
+    public double getQuantile(int i) {
+        return quantile[i];
+    }
+
 }
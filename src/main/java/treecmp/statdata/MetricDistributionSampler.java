@@ -0,0 +1,162 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package treecmp.statdata;
+
+import pal.math.MersenneTwisterFast;
+import pal.tree.Tree;
+import treecmp.common.RandomTreeGenerator;
+import treecmp.common.TreeCmpException;
+import treecmp.metrics.Metric;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Monte Carlo estimation of the null distribution of a metric: the distances between pairs of
+ * independent random trees (uniform or Yule model, see {@link RandomTreeGenerator}).
+ *
+ * <p>The samples are split into chunks of {@link #CHUNK_SIZE} pairs evaluated on a thread pool. Every
+ * chunk has its own metric instance and its own {@code MersenneTwisterFast} seeded from the sampler
+ * seed and the chunk index, and accumulates its distances in a {@link StreamingDistribution}; the
+ * chunk results are merged in chunk order. The result therefore depends only on the seed, not on
+ * the number of threads, and no distance is stored.
+ *
+ * @author Damian
+ */
+public class MetricDistributionSampler {
+
+    public static final int CHUNK_SIZE = 1000;
+
+    private final Supplier<? extends Metric> metricFactory;
+    private RandomTreeGenerator.Model model;
+    private Boolean rooted;
+    private int sampleCount;
+    private int threadCount;
+    private long seed;
+    private double branchLengthMean;
+
+    /**
+     * @param metricFactory Creates the metric instances; one instance is used by one thread at a time.
+     */
+    public MetricDistributionSampler(Supplier<? extends Metric> metricFactory) {
+        this.metricFactory = metricFactory;
+        this.model = RandomTreeGenerator.Model.UNIFORM;
+        this.rooted = null;
+        this.sampleCount = 10000;
+        this.threadCount = Runtime.getRuntime().availableProcessors();
+        this.seed = 0;
+        this.branchLengthMean = 0.0;
+    }
+
+    public void setModel(RandomTreeGenerator.Model model) {
+        this.model = model;
+    }
+
+    /**
+     * @param rooted Whether rooted trees are generated; by default {@code Metric.isRooted()} decides.
+     */
+    public void setRooted(boolean rooted) {
+        this.rooted = rooted;
+    }
+
+    public void setSampleCount(int sampleCount) {
+        this.sampleCount = sampleCount;
+    }
+
+    public void setThreadCount(int threadCount) {
+        this.threadCount = Math.max(1, threadCount);
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * @see RandomTreeGenerator#setBranchLengthMean(double)
+     */
+    public void setBranchLengthMean(double branchLengthMean) {
+        this.branchLengthMean = branchLengthMean;
+    }
+
+    /**
+     * Samples the distribution of the metric for trees with {@code leafNum} leaves.
+     */
+    public MetricDistribution sample(int leafNum) throws TreeCmpException {
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            return sample(leafNum, executor);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Samples the distributions for all leaf numbers from {@code minLeafNum} to {@code maxLeafNum},
+     * e.g. to be written by {@link DistributionStore#write}.
+     */
+    public MetircDistrbHolder sample(int minLeafNum, int maxLeafNum) throws TreeCmpException {
+        MetircDistrbHolder mdh = new MetircDistrbHolder();
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            for (int n = minLeafNum; n <= maxLeafNum; n++) {
+                mdh.insertDistribution(sample(n, executor));
+            }
+        } finally {
+            executor.shutdown();
+        }
+        return mdh;
+    }
+
+    private MetricDistribution sample(final int leafNum, ExecutorService executor) throws TreeCmpException {
+        int chunkCount = (sampleCount + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        List<Future<StreamingDistribution>> results = new ArrayList<Future<StreamingDistribution>>(chunkCount);
+        for (int c = 0; c < chunkCount; c++) {
+            final long chunkSeed = seed + 0x9E3779B97F4A7C15L * (((long) leafNum << 32) + c + 1);
+            final int size = Math.min(CHUNK_SIZE, sampleCount - c * CHUNK_SIZE);
+            results.add(executor.submit(new Callable<StreamingDistribution>() {
+                public StreamingDistribution call() throws TreeCmpException {
+                    return sampleChunk(leafNum, size, chunkSeed);
+                }
+            }));
+        }
+        StreamingDistribution dist = new StreamingDistribution();
+        try {
+            for (Future<StreamingDistribution> f : results) {
+                dist.merge(f.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TreeCmpException("Sampling interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TreeCmpException) {
+                throw (TreeCmpException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+        return dist.toMetricDistribution(leafNum);
+    }
+
+    private StreamingDistribution sampleChunk(int leafNum, int size, long chunkSeed) throws TreeCmpException {
+        Metric metric = metricFactory.get();
+        boolean isRooted = (rooted != null) ? rooted : metric.isRooted();
+        RandomTreeGenerator generator = new RandomTreeGenerator(leafNum, model, isRooted, new MersenneTwisterFast(chunkSeed));
+        generator.setBranchLengthMean(branchLengthMean);
+        StreamingDistribution dist = new StreamingDistribution();
+        Tree t1, t2;
+        for (int i = 0; i < size; i++) {
+            t1 = generator.nextTree();
+            t2 = generator.nextTree();
+            dist.add(metric.getDistance(t1, t2));
+        }
+        return dist;
+    }
+}
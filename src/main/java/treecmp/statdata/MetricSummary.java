@@ -0,0 +1,275 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package treecmp.statdata;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * Mergeable accumulator of the distances of several metrics over the compared pairs of trees: a
+ * {@link StreamingDistribution} per metric and the correlations between the metrics.
+ *
+ * <p>The Pearson correlations are exact: the co-moments of the metrics are updated like the
+ * variance of Welford's algorithm and merged by Chan's formula. The Spearman correlations are
+ * computed from a uniform sample of at most {@code sampleSize} distance vectors (the vectors with
+ * the smallest random priorities), which stays uniform when samples are merged. Only the vectors
+ * without NaN distances enter the correlations.</p>
+ *
+ * <p>An accumulator is not thread safe; every worker thread updates its own and the results are
+ * merged at the end:</p>
+ * <pre>
+ *     MetricSummary local = new MetricSummary(metricCount);
+ *     ... local.add(distances) ...
+ *     synchronized (total) { total.merge(local); }
+ * </pre>
+ *
+ * @author Damian
+ */
+public class MetricSummary {
+
+    public static final int DEFAULT_SAMPLE_SIZE = 4096;
+
+    private final int metricCount;
+    private final StreamingDistribution[] distributions;
+    private final int sampleSize;
+    private final Random random;
+    // the sampled vectors, the one with the largest priority on top
+    private final PriorityQueue<Sample> sample;
+    private long count;
+    private final double[] mean;
+    // co-moments sum (x_a - mean_a)(x_b - mean_b) of the vectors without NaN, a <= b
+    private final double[][] comoment;
+
+    public MetricSummary(int metricCount) {
+        this(metricCount, QuantileSketch.DEFAULT_K, DEFAULT_SAMPLE_SIZE, new Random());
+    }
+
+    /**
+     * @param k The level capacity of the quantile sketches.
+     * @param sampleSize The maximal number of vectors of the Spearman sample.
+     * @param random The source of the sample priorities; accumulators to be merged must not share
+     * the seed.
+     */
+    public MetricSummary(int metricCount, int k, int sampleSize, Random random) {
+        this.metricCount = metricCount;
+        this.distributions = new StreamingDistribution[metricCount];
+        for (int m = 0; m < metricCount; m++) {
+            distributions[m] = new StreamingDistribution(k);
+        }
+        this.sampleSize = Math.max(2, sampleSize);
+        this.random = random;
+        this.sample = new PriorityQueue<Sample>(11, new Comparator<Sample>() {
+            public int compare(Sample s1, Sample s2) {
+                return Double.compare(s2.priority, s1.priority);
+            }
+        });
+        this.count = 0;
+        this.mean = new double[metricCount];
+        this.comoment = new double[metricCount][metricCount];
+    }
+
+    public int getMetricCount() {
+        return metricCount;
+    }
+
+    /**
+     * @return The number of vectors without NaN distances.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Adds the distances of one pair of trees, one per metric. NaN distances are left out of the
+     * distribution of their metric.
+     */
+    public void add(double[] distances) {
+        if (distances.length != metricCount) {
+            throw new IllegalArgumentException("There must be one distance per metric");
+        }
+        boolean complete = true;
+        for (int m = 0; m < metricCount; m++) {
+            if (Double.isNaN(distances[m])) {
+                complete = false;
+            } else {
+                distributions[m].add(distances[m]);
+            }
+        }
+        if (!complete) {
+            return;
+        }
+        count++;
+        double[] delta = new double[metricCount];
+        for (int a = 0; a < metricCount; a++) {
+            delta[a] = distances[a] - mean[a];
+            mean[a] += delta[a] / count;
+        }
+        for (int a = 0; a < metricCount; a++) {
+            for (int b = a; b < metricCount; b++) {
+                comoment[a][b] += delta[a] * (distances[b] - mean[b]);
+            }
+        }
+        offer(new Sample(random.nextDouble(), distances.clone()));
+    }
+
+    /**
+     * Adds all vectors accumulated by {@code other}.
+     *
+     * @throws IllegalArgumentException if the accumulators have different numbers of metrics.
+     */
+    public void merge(MetricSummary other) {
+        if (other.metricCount != metricCount) {
+            throw new IllegalArgumentException("The summaries have different numbers of metrics");
+        }
+        for (int m = 0; m < metricCount; m++) {
+            distributions[m].merge(other.distributions[m]);
+        }
+        if (other.count == 0) {
+            return;
+        }
+        long n = count + other.count;
+        double f = (double) count * other.count / n;
+        for (int a = 0; a < metricCount; a++) {
+            for (int b = a; b < metricCount; b++) {
+                comoment[a][b] += other.comoment[a][b]
+                        + (other.mean[a] - mean[a]) * (other.mean[b] - mean[b]) * f;
+            }
+        }
+        for (int a = 0; a < metricCount; a++) {
+            mean[a] += (other.mean[a] - mean[a]) * other.count / n;
+        }
+        count = n;
+        for (Sample s : other.sample) {
+            offer(s);
+        }
+    }
+
+    private void offer(Sample s) {
+        if (sample.size() < sampleSize) {
+            sample.add(s);
+        } else if (s.priority < sample.peek().priority) {
+            sample.poll();
+            sample.add(s);
+        }
+    }
+
+    public StreamingDistribution getDistribution(int metric) {
+        return distributions[metric];
+    }
+
+    /**
+     * @return The Pearson correlation of two metrics, or NaN if one of them is constant.
+     */
+    public double getPearson(int a, int b) {
+        if (a > b) {
+            return getPearson(b, a);
+        }
+        double denom = Math.sqrt(comoment[a][a] * comoment[b][b]);
+        return (count < 2 || denom == 0.0) ? Double.NaN : comoment[a][b] / denom;
+    }
+
+    /**
+     * @return The Spearman correlation of two metrics on the sampled vectors (exact while there are
+     * at most {@code sampleSize} vectors), or NaN if one of them is constant.
+     */
+    public double getSpearman(int a, int b) {
+        List<Sample> samples = new ArrayList<Sample>(sample);
+        double[] ra = getRanks(samples, a);
+        double[] rb = getRanks(samples, b);
+        int n = samples.size();
+        double ma = 0.0;
+        double mb = 0.0;
+        for (int i = 0; i < n; i++) {
+            ma += ra[i];
+            mb += rb[i];
+        }
+        ma /= n;
+        mb /= n;
+        double sab = 0.0;
+        double saa = 0.0;
+        double sbb = 0.0;
+        for (int i = 0; i < n; i++) {
+            sab += (ra[i] - ma) * (rb[i] - mb);
+            saa += (ra[i] - ma) * (ra[i] - ma);
+            sbb += (rb[i] - mb) * (rb[i] - mb);
+        }
+        double denom = Math.sqrt(saa * sbb);
+        return (n < 2 || denom == 0.0) ? Double.NaN : sab / denom;
+    }
+
+    /**
+     * @return The Pearson correlations of all pairs of metrics.
+     */
+    public double[][] getPearsonMatrix() {
+        double[][] result = new double[metricCount][metricCount];
+        for (int a = 0; a < metricCount; a++) {
+            for (int b = 0; b < metricCount; b++) {
+                result[a][b] = getPearson(a, b);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return The Spearman correlations of all pairs of metrics.
+     */
+    public double[][] getSpearmanMatrix() {
+        double[][] result = new double[metricCount][metricCount];
+        for (int a = 0; a < metricCount; a++) {
+            for (int b = a; b < metricCount; b++) {
+                result[a][b] = result[b][a] = getSpearman(a, b);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return The ranks of the values of a metric, ties getting their average rank.
+     */
+    private static double[] getRanks(List<Sample> samples, final int metric) {
+        int n = samples.size();
+        Integer[] order = new Integer[n];
+        final double[] values = new double[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+            values[i] = samples.get(i).values[metric];
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer i1, Integer i2) {
+                return Double.compare(values[i1], values[i2]);
+            }
+        });
+        double[] ranks = new double[n];
+        int i = 0;
+        while (i < n) {
+            int j = i;
+            while (j + 1 < n && values[order[j + 1]] == values[order[i]]) {
+                j++;
+            }
+            double rank = (i + j) / 2.0 + 1.0;
+            for (int t = i; t <= j; t++) {
+                ranks[order[t]] = rank;
+            }
+            i = j + 1;
+        }
+        return ranks;
+    }
+
+    private static class Sample {
+
+        final double priority;
+        final double[] values;
+
+        Sample(double priority, double[] values) {
+            this.priority = priority;
+            this.values = values;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package treecmp.statdata;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Mergeable streaming quantile sketch (a simplified KLL sketch).
+ *
+ * <p>Values are kept in levels of at most {@code k} items; an item on level h represents
+ * 2<sup>h</sup> input values. When a level overflows it is sorted and every second item
+ * (alternately the odd or the even ones) is promoted to the next level. Up to {@code k} values the
+ * sketch is exact; in general the rank error is O(log(n/k)/k) with O(k log(n/k)) memory.
+ * Sketches built independently (e.g. by worker threads) can be merged.
+ *
+ * @author Damian
+ */
+public class QuantileSketch {
+
+    public static final int DEFAULT_K = 256;
+
+    private final int k;
+    private final List<double[]> levels;
+    private final List<Integer> sizes;
+    private final List<Boolean> oddOffset;
+    private long count;
+
+    public QuantileSketch() {
+        this(DEFAULT_K);
+    }
+
+    /**
+     * @param k The capacity of a level, controls the accuracy (must be at least 2).
+     */
+    public QuantileSketch(int k) {
+        if (k < 2) {
+            throw new IllegalArgumentException("k must be at least 2");
+        }
+        this.k = k;
+        this.levels = new ArrayList<double[]>();
+        this.sizes = new ArrayList<Integer>();
+        this.oddOffset = new ArrayList<Boolean>();
+        this.count = 0;
+        addLevel();
+    }
+
+    private void addLevel() {
+        levels.add(new double[k]);
+        sizes.add(0);
+        oddOffset.add(false);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    public void add(double value) {
+        append(0, value);
+        count++;
+        compress();
+    }
+
+    private void append(int level, double value) {
+        double[] items = levels.get(level);
+        int size = sizes.get(level);
+        if (size == items.length) {
+            items = Arrays.copyOf(items, 2 * items.length);
+            levels.set(level, items);
+        }
+        items[size] = value;
+        sizes.set(level, size + 1);
+    }
+
+    private void compress() {
+        for (int h = 0; h < levels.size(); h++) {
+            int size = sizes.get(h);
+            if (size < k) {
+                continue;
+            }
+            if (h == levels.size() - 1) {
+                addLevel();
+            }
+            double[] items = levels.get(h);
+            Arrays.sort(items, 0, size);
+            // an odd item stays on this level, so the total weight is preserved
+            int pairs = size / 2;
+            int offset = oddOffset.get(h) ? 1 : 0;
+            oddOffset.set(h, !oddOffset.get(h));
+            for (int i = 0; i < pairs; i++) {
+                append(h + 1, items[2 * i + offset]);
+            }
+            if (size % 2 == 1) {
+                items[0] = items[size - 1];
+                sizes.set(h, 1);
+            } else {
+                sizes.set(h, 0);
+            }
+        }
+    }
+
+    /**
+     * Adds all values summarized by {@code other} to this sketch.
+     */
+    public void merge(QuantileSketch other) {
+        while (levels.size() < other.levels.size()) {
+            addLevel();
+        }
+        for (int h = 0; h < other.levels.size(); h++) {
+            double[] items = other.levels.get(h);
+            int size = other.sizes.get(h);
+            for (int i = 0; i < size; i++) {
+                append(h, items[i]);
+            }
+        }
+        count += other.count;
+        compress();
+    }
+
+    /**
+     * @param prob The probability, from 0 to 1.
+     * @return The smallest summarized value whose (estimated) rank is at least {@code prob * count},
+     * or NaN for an empty sketch.
+     */
+    public double getQuantile(double prob) {
+        return getQuantiles(new double[]{prob})[0];
+    }
+
+    /**
+     * @param probs The probabilities, from 0 to 1.
+     * @return The quantiles for all probabilities (see {@link #getQuantile(double)}).
+     */
+    public double[] getQuantiles(double[] probs) {
+        double[] result = new double[probs.length];
+        if (count == 0) {
+            Arrays.fill(result, Double.NaN);
+            return result;
+        }
+        int total = 0;
+        for (int size : sizes) {
+            total += size;
+        }
+        double[] values = new double[total];
+        long[] weights = new long[total];
+        Integer[] order = new Integer[total];
+        int j = 0;
+        for (int h = 0; h < levels.size(); h++) {
+            double[] items = levels.get(h);
+            for (int i = 0; i < sizes.get(h); i++) {
+                values[j] = items[i];
+                weights[j] = 1L << h;
+                order[j] = j;
+                j++;
+            }
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+        long totalWeight = 0;
+        for (long w : weights) {
+            totalWeight += w;
+        }
+        for (int p = 0; p < probs.length; p++) {
+            double target = probs[p] * totalWeight;
+            long cum = 0;
+            result[p] = values[order[total - 1]];
+            for (int i = 0; i < total; i++) {
+                cum += weights[order[i]];
+                if (cum >= target) {
+                    result[p] = values[order[i]];
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+}
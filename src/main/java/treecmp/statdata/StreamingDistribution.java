@@ -0,0 +1,114 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package treecmp.statdata;
+
+/**
+ * Mergeable accumulator of the values summarized by a {@link MetricDistribution}: mean and standard
+ * deviation (Welford's algorithm), minimum, maximum and the quantiles (by a {@link QuantileSketch}).
+ * The values are not stored.
+ *
+ * @author Damian
+ */
+public class StreamingDistribution {
+
+    private long count;
+    private double mean;
+    private double m2;
+    private double min;
+    private double max;
+    private final QuantileSketch sketch;
+
+    public StreamingDistribution() {
+        this(QuantileSketch.DEFAULT_K);
+    }
+
+    /**
+     * @param k The level capacity of the quantile sketch.
+     */
+    public StreamingDistribution(int k) {
+        this.count = 0;
+        this.mean = 0.0;
+        this.m2 = 0.0;
+        this.min = Double.POSITIVE_INFINITY;
+        this.max = Double.NEGATIVE_INFINITY;
+        this.sketch = new QuantileSketch(k);
+    }
+
+    public void add(double value) {
+        count++;
+        double delta = value - mean;
+        mean += delta / count;
+        m2 += delta * (value - mean);
+        if (value < min) {
+            min = value;
+        }
+        if (value > max) {
+            max = value;
+        }
+        sketch.add(value);
+    }
+
+    /**
+     * Adds all values accumulated by {@code other} (Chan's parallel update of the moments).
+     */
+    public void merge(StreamingDistribution other) {
+        if (other.count == 0) {
+            return;
+        }
+        long n = count + other.count;
+        double delta = other.mean - mean;
+        mean += delta * other.count / n;
+        m2 += other.m2 + delta * delta * ((double) count * other.count / n);
+        count = n;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        sketch.merge(other.sketch);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMean() {
+        return (count == 0) ? Double.NaN : mean;
+    }
+
+    /**
+     * @return The sample variance (divided by count - 1).
+     */
+    public double getVariance() {
+        return (count < 2) ? 0.0 : m2 / (count - 1);
+    }
+
+    public double getStd() {
+        return Math.sqrt(getVariance());
+    }
+
+    public double getMin() {
+        return (count == 0) ? Double.NaN : min;
+    }
+
+    public double getMax() {
+        return (count == 0) ? Double.NaN : max;
+    }
+
+    public double getQuantile(double prob) {
+        return sketch.getQuantile(prob);
+    }
+
+    public QuantileSketch getSketch() {
+        return sketch;
+    }
+
+    /**
+     * @param leafNum The number of leaves the values refer to.
+     * @return The distribution with the quantiles of {@link MetricDistribution#QUANTILE_PROBS}.
+     */
+    public MetricDistribution toMetricDistribution(int leafNum) {
+        return new MetricDistribution(leafNum, getMean(), getStd(), getMin(), getMax(),
+                sketch.getQuantiles(MetricDistribution.QUANTILE_PROBS));
+    }
+}
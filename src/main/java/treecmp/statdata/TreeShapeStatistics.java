@@ -0,0 +1,259 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package treecmp.statdata;
+
+import pal.math.MersenneTwisterFast;
+import pal.tree.Tree;
+import treecmp.common.BalanceIndices;
+import treecmp.common.CompactTree;
+import treecmp.common.RandomTreeGenerator;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tree-shape (balance) statistics of single trees and tree streams.
+ *
+ * <p>Sackin, Colless and the cherries are taken from the {@link BalanceIndices} of the
+ * {@link CompactTree} of a tree; the other indices are computed by one post-order sweep using
+ * work arrays kept between trees, so an instance must not be shared by threads. Depths are
+ * counted in edges; B2 uses the probabilities of the equiprobable random walk from the root.</p>
+ *
+ * <p>A value can be normalised as a z-score, (x - avg) / std, against the reference distribution
+ * of the index for the number of leaves, e.g. one sampled by
+ * {@link #sampleReference(Index, RandomTreeGenerator.Model, boolean, int, int, int, long)}.</p>
+ *
+ * @author Damian
+ */
+public class TreeShapeStatistics {
+
+    public enum Index {
+        /** sum of the leaf depths */
+        SACKIN,
+        /** sum over the internal nodes of the leaf count differences of their children */
+        COLLESS,
+        /** sum over all pairs of leaves of the depth of their lowest common ancestor */
+        TOTAL_COPHENETIC,
+        /** number of pairs of leaves with the same parent */
+        CHERRIES,
+        /** Shao and Sokal B1: sum over the non-root internal nodes of 1 / (height of the node) */
+        B1,
+        /** Shao and Sokal B2: entropy (in bits) of the leaf reached by a random walk from the root */
+        B2,
+        /** maximum leaf depth */
+        HEIGHT
+    }
+
+    private final Index[] indices;
+    private final Map<Index, IMetircDistrbHolder> references;
+    private final boolean needsBalanceIndices;
+
+    // work arrays, grown as needed
+    private int[] height = new int[0];
+    private double[] entropy = new double[0];
+    private int[] depth = new int[0];
+
+    /**
+     * @param indices The indices computed, in the order of the returned values.
+     */
+    public TreeShapeStatistics(Index... indices) {
+        this.indices = indices.clone();
+        this.references = new EnumMap<Index, IMetircDistrbHolder>(Index.class);
+        boolean needsBalanceIndices = false;
+        for (Index index : indices) {
+            if (index == Index.SACKIN || index == Index.COLLESS || index == Index.CHERRIES) {
+                needsBalanceIndices = true;
+            }
+        }
+        this.needsBalanceIndices = needsBalanceIndices;
+    }
+
+    /**
+     * Statistics computing all indices.
+     */
+    public TreeShapeStatistics() {
+        this(Index.values());
+    }
+
+    public Index[] getIndices() {
+        return indices.clone();
+    }
+
+    /**
+     * Sets the reference distributions of an index used by the normalised methods.
+     */
+    public void setReference(Index index, IMetircDistrbHolder reference) {
+        references.put(index, reference);
+    }
+
+    public double[] compute(Tree tree) {
+        return compute(new CompactTree(tree));
+    }
+
+    /**
+     * @return The values of the indices, in the order given to the constructor.
+     */
+    public double[] compute(CompactTree tree) {
+        ensureCapacity(tree.nodeNum);
+        BalanceIndices balance = needsBalanceIndices ? BalanceIndices.of(tree) : null;
+        int root = tree.root;
+        long cophenetic = 0;
+        double b1 = 0.0;
+        for (int i = 0; i < tree.nodeNum; i++) {
+            int u = tree.postOrder[i];
+            int[] ch = tree.children[u];
+            if (ch == null) {
+                height[u] = 0;
+                entropy[u] = 0.0;
+            } else {
+                int k = ch.length;
+                int h = 0;
+                double e = 0.0;
+                for (int c : ch) {
+                    h = Math.max(h, height[c]);
+                    e += entropy[c];
+                }
+                height[u] = h + 1;
+                entropy[u] = (k == 1) ? e : log2(k) + e / k;
+                if (u != root) {
+                    b1 += 1.0 / height[u];
+                    long l = tree.leafCount[u];
+                    cophenetic += l * (l - 1) / 2;
+                }
+            }
+        }
+
+        double[] values = new double[indices.length];
+        for (int j = 0; j < indices.length; j++) {
+            switch (indices[j]) {
+                case SACKIN:
+                    values[j] = balance.getSackin();
+                    break;
+                case COLLESS:
+                    values[j] = balance.getColless();
+                    break;
+                case TOTAL_COPHENETIC:
+                    values[j] = cophenetic;
+                    break;
+                case CHERRIES:
+                    values[j] = balance.getCherries();
+                    break;
+                case B1:
+                    values[j] = b1;
+                    break;
+                case B2:
+                    values[j] = entropy[root];
+                    break;
+                case HEIGHT:
+                    values[j] = height[root];
+                    break;
+            }
+        }
+        return values;
+    }
+
+    /**
+     * @return The values of the indices, as z-scores for the indices with a reference
+     * distribution for the number of leaves of the tree and raw otherwise.
+     */
+    public double[] computeNormalized(CompactTree tree) {
+        double[] values = compute(tree);
+        for (int j = 0; j < indices.length; j++) {
+            values[j] = normalize(indices[j], values[j], tree.leafNum);
+        }
+        return values;
+    }
+
+    /**
+     * Computes the indices of all remaining trees of the iterator.
+     *
+     * @param normalized Whether the values are normalised, see {@link #computeNormalized}.
+     * @return The values by index and tree: {@code values[j][t]} is index j of tree t.
+     */
+    public double[][] computeAll(Iterator<? extends Tree> trees, boolean normalized) {
+        List<double[]> rows = new ArrayList<double[]>();
+        while (trees.hasNext()) {
+            CompactTree tree = new CompactTree(trees.next());
+            rows.add(normalized ? computeNormalized(tree) : compute(tree));
+        }
+        double[][] values = new double[indices.length][rows.size()];
+        for (int t = 0; t < rows.size(); t++) {
+            double[] row = rows.get(t);
+            for (int j = 0; j < indices.length; j++) {
+                values[j][t] = row[j];
+            }
+        }
+        return values;
+    }
+
+    /**
+     * @return The number of leaves at every depth, from the root (depth 0) to the height of the
+     * tree.
+     */
+    public int[] getDepthProfile(CompactTree tree) {
+        ensureCapacity(tree.nodeNum);
+        int maxDepth = 0;
+        // the reverse post-order visits every parent before its children
+        for (int i = tree.nodeNum - 1; i >= 0; i--) {
+            int u = tree.postOrder[i];
+            depth[u] = (u == tree.root) ? 0 : depth[tree.parent[u]] + 1;
+            maxDepth = Math.max(maxDepth, depth[u]);
+        }
+        int[] profile = new int[maxDepth + 1];
+        for (int u = 0; u < tree.leafNum; u++) {
+            profile[depth[u]]++;
+        }
+        return profile;
+    }
+
+    /**
+     * @return The z-score of the value, or the value itself if there is no reference distribution
+     * for the index and number of leaves.
+     */
+    public double normalize(Index index, double value, int leafNum) {
+        IMetircDistrbHolder reference = references.get(index);
+        IMetricDistribution dist = (reference == null) ? null : reference.getDistribution(leafNum);
+        if (dist == null) {
+            return value;
+        }
+        return (dist.getStd() > 0.0) ? (value - dist.getAvg()) / dist.getStd() : 0.0;
+    }
+
+    /**
+     * Samples the distribution of an index over random trees for all leaf numbers from
+     * {@code minLeafNum} to {@code maxLeafNum}.
+     */
+    public static MetircDistrbHolder sampleReference(Index index, RandomTreeGenerator.Model model, boolean rooted,
+                                                     int minLeafNum, int maxLeafNum, int sampleCount, long seed) {
+        TreeShapeStatistics stats = new TreeShapeStatistics(index);
+        MetircDistrbHolder mdh = new MetircDistrbHolder();
+        for (int n = minLeafNum; n <= maxLeafNum; n++) {
+            MersenneTwisterFast random = new MersenneTwisterFast(seed + 0x9E3779B97F4A7C15L * n);
+            RandomTreeGenerator generator = new RandomTreeGenerator(n, model, rooted, random);
+            StreamingDistribution dist = new StreamingDistribution();
+            for (int i = 0; i < sampleCount; i++) {
+                dist.add(stats.compute(generator.nextTree())[0]);
+            }
+            mdh.insertDistribution(dist.toMetricDistribution(n));
+        }
+        return mdh;
+    }
+
+    private static double log2(int k) {
+        return Math.log(k) / Math.log(2.0);
+    }
+
+    private void ensureCapacity(int nodeNum) {
+        if (height.length < nodeNum) {
+            height = new int[nodeNum];
+            entropy = new double[nodeNum];
+            depth = new int[nodeNum];
+        }
+    }
+}
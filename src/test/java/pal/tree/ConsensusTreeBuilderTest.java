@@ -0,0 +1,195 @@
+package pal.tree;
+
+import org.junit.jupiter.api.Test;
+import pal.io.InputSource;
+import pal.misc.IdGroup;
+import pal.misc.SimpleIdGroup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConsensusTreeBuilderTest {
+
+    private static final IdGroup FIVE = new SimpleIdGroup(new String[]{"A", "B", "C", "D", "E"});
+    private static final IdGroup SIX = new SimpleIdGroup(new String[]{"A", "B", "C", "D", "E", "F"});
+
+    private static Tree tree(String newick) throws TreeParseException {
+        return new ReadTree(InputSource.openString(newick));
+    }
+
+    private static ConsensusTreeBuilder builder(IdGroup ids, boolean rooted, String... newicks)
+            throws TreeParseException {
+        var builder = new ConsensusTreeBuilder(ids, rooted);
+        for (String newick : newicks) {
+            builder.add(tree(newick));
+        }
+        return builder;
+    }
+
+    /**
+     * The non-root internal nodes of a tree by their clusters, the sorted labels below them.
+     */
+    private static Map<String, Node> clusters(Tree tree) {
+        Map<String, Node> clusters = new HashMap<String, Node>();
+        for (int i = 0; i < tree.getInternalNodeCount(); i++) {
+            Node node = tree.getInternalNode(i);
+            if (!node.isRoot()) {
+                clusters.put(cluster(node), node);
+            }
+        }
+        return clusters;
+    }
+
+    private static String cluster(Node node) {
+        List<String> labels = new ArrayList<String>();
+        for (Node leaf : NodeUtils.getExternalNodes(node)) {
+            labels.add(leaf.getIdentifier().getName());
+        }
+        labels.sort(null);
+        return String.join("", labels);
+    }
+
+    private static Set<String> splits(IdGroup ids, Tree tree) {
+        Set<String> splits = new HashSet<String>();
+        for (boolean[] split : SplitUtils.getSplits(ids, tree).getSplitVector()) {
+            // the side without the first label
+            if (split[0]) {
+                for (int i = 0; i < split.length; i++) {
+                    split[i] = !split[i];
+                }
+            }
+            splits.add(Arrays.toString(split));
+        }
+        return splits;
+    }
+
+    private static double probability(Tree tree, Node node) {
+        return (Double) tree.getAttribute(node, AttributeNode.CLADE_PROBABILITY);
+    }
+
+    @Test
+    void consensus_identicalTrees_treeWithFullSupportAndMeanBranchLengths() throws TreeParseException {
+        var builder = builder(FIVE, true,
+                "((A:1,B:2):1,((C:1,D:1):2,E:3):1);",
+                "((A:1,B:2):2,((C:1,D:1):2,E:3):1);",
+                "((A:1,B:2):3,((C:1,D:1):2,E:3):1);");
+
+        for (Tree consensus : List.of(builder.getStrictConsensus(), builder.getMajorityRuleConsensus(),
+                builder.getGreedyConsensus())) {
+            var clusters = clusters(consensus);
+            assertEquals(Set.of("AB", "CD", "CDE"), clusters.keySet());
+            for (Node node : clusters.values()) {
+                assertEquals(1.0, probability(consensus, node), 1e-12);
+            }
+            assertEquals(2.0, clusters.get("AB").getBranchLength(), 1e-12);
+            assertEquals(2.0, clusters.get("CD").getBranchLength(), 1e-12);
+            assertEquals(1.0, clusters.get("CDE").getBranchLength(), 1e-12);
+            for (int i = 0; i < consensus.getExternalNodeCount(); i++) {
+                Node leaf = consensus.getExternalNode(i);
+                double expected = Map.of("A", 1.0, "B", 2.0, "C", 1.0, "D", 1.0, "E", 3.0)
+                        .get(leaf.getIdentifier().getName());
+                assertEquals(expected, leaf.getBranchLength(), 1e-12);
+            }
+        }
+    }
+
+    @Test
+    void consensus_identicalUnrootedTrees_sameSplits() throws TreeParseException {
+        String newick = "((A,B),(C,D),(E,F));";
+        var builder = builder(SIX, false, newick, newick, newick);
+
+        var expected = splits(SIX, tree(newick));
+        assertEquals(expected, splits(SIX, builder.getStrictConsensus()));
+        assertEquals(expected, splits(SIX, builder.getMajorityRuleConsensus()));
+        assertEquals(expected, splits(SIX, builder.getGreedyConsensus()));
+    }
+
+    @Test
+    void getMajorityRuleConsensus_cladeInHalfOfTrees_notUsed() throws TreeParseException {
+        var builder = builder(FIVE, true,
+                "(((A,B),C),(D,E));",
+                "(((A,B),C),(D,E));",
+                "(((A,C),B),(D,E));",
+                "((A,(B,C)),(D,E));");
+
+        assertEquals(Set.of("ABC", "DE"), clusters(builder.getMajorityRuleConsensus()).keySet());
+    }
+
+    @Test
+    void getMajorityRuleConsensus_cladeInMoreThanHalfOfTrees_usedWithItsFrequency() throws TreeParseException {
+        var builder = builder(FIVE, true,
+                "(((A,B),C),(D,E));",
+                "(((A,B),C),(D,E));",
+                "(((A,B),C),(D,E));",
+                "(((A,C),B),(D,E));",
+                "((A,(B,C)),(D,E));");
+
+        var consensus = builder.getMajorityRuleConsensus();
+        var clusters = clusters(consensus);
+        assertEquals(Set.of("AB", "ABC", "DE"), clusters.keySet());
+        assertEquals(0.6, probability(consensus, clusters.get("AB")), 1e-12);
+        assertEquals(1.0, probability(consensus, clusters.get("ABC")), 1e-12);
+    }
+
+    @Test
+    void getStrictConsensus_conflictingClades_onlyCladesOfAllTrees() throws TreeParseException {
+        var builder = builder(FIVE, true,
+                "(((A,B),C),(D,E));",
+                "(((A,B),C),(D,E));",
+                "(((A,B),C),(D,E));",
+                "(((A,C),B),(D,E));",
+                "((A,(B,C)),(D,E));");
+
+        assertEquals(Set.of("ABC", "DE"), clusters(builder.getStrictConsensus()).keySet());
+    }
+
+    @Test
+    void getMajorityRuleConsensus_conflictingUnrootedSplits_majoritySplits() throws TreeParseException {
+        var builder = builder(SIX, false,
+                "((A,B),(C,D),(E,F));",
+                "((A,B),(C,D),(E,F));",
+                "((A,C),(B,D),(E,F));");
+
+        assertEquals(splits(SIX, tree("((A,B),(C,D),(E,F));")),
+                splits(SIX, builder.getMajorityRuleConsensus()));
+        assertEquals(splits(SIX, tree("(A,B,C,D,(E,F));")),
+                splits(SIX, builder.getStrictConsensus()));
+    }
+
+    @Test
+    void getMajorityRuleConsensus_thresholdOne_strictConsensus() throws TreeParseException {
+        var builder = builder(SIX, false,
+                "((A,B),(C,D),(E,F));",
+                "((A,B),(C,D),(E,F));",
+                "((A,C),(B,D),(E,F));");
+
+        assertEquals(splits(SIX, builder.getStrictConsensus()),
+                splits(SIX, builder.getMajorityRuleConsensus(1.0)));
+        assertEquals(1, splits(SIX, builder.getMajorityRuleConsensus(1.0)).size());
+    }
+
+    @Test
+    void getGreedyConsensus_compatibleMinorityClades_resolved() throws TreeParseException {
+        var builder = builder(FIVE, true,
+                "((A,B),(C,(D,E)));",
+                "((A,B),((C,D),E));",
+                "((A,C),((B,D),E));",
+                "(((A,B),C),(D,E));");
+
+        assertEquals(Set.of("AB"), clusters(builder.getMajorityRuleConsensus()).keySet());
+        var greedy = builder.getGreedyConsensus();
+        var clusters = clusters(greedy);
+        // CDE and DE are in half of the trees and compatible with AB, ABC and CD are not with them
+        assertEquals(Set.of("AB", "CDE", "DE"), clusters.keySet());
+        assertEquals(0.75, probability(greedy, clusters.get("AB")), 1e-12);
+        assertEquals(0.5, probability(greedy, clusters.get("CDE")), 1e-12);
+        assertEquals(0.5, probability(greedy, clusters.get("DE")), 1e-12);
+    }
+}
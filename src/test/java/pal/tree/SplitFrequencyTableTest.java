@@ -0,0 +1,358 @@
+package pal.tree;
+
+import org.junit.jupiter.api.Test;
+import pal.io.InputSource;
+import pal.math.MersenneTwisterFast;
+import pal.misc.IdGroup;
+import pal.misc.Identifier;
+import pal.util.AlgorithmCallback;
+import treecmp.common.RandomTreeGenerator;
+import treecmp.metrics.util.TestTreeFactory;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SplitFrequencyTableTest {
+
+    private static Tree tree(String newick) throws TreeParseException {
+        return new ReadTree(InputSource.openString(newick));
+    }
+
+    /**
+     * Replicates sharing splits with the base tree: copies of it among random trees.
+     */
+    private static Tree[] replicates(Tree base, boolean rooted, long seed) {
+        var random = TestTreeFactory.randomTrees(30, 7, RandomTreeGenerator.Model.YULE, rooted, seed);
+        Tree[] trees = new Tree[random.size()];
+        for (int i = 0; i < trees.length; i++) {
+            trees[i] = (i % 3 == 0) ? base.getCopy() : random.get(i);
+        }
+        return trees;
+    }
+
+    /**
+     * The support counts of the base tree splits computed from a SplitSystem per replicate.
+     */
+    private static int[] splitSystemCounts(Tree base, Tree[] replicates) {
+        IdGroup ids = TreeUtils.getLeafIdGroup(base);
+        boolean[][] baseVector = SplitUtils.getSplits(ids, base).getSplitVector();
+        int[] counts = new int[baseVector.length];
+        for (Tree replicate : replicates) {
+            SplitSystem system = SplitUtils.getSplits(ids, replicate);
+            for (int j = 0; j < baseVector.length; j++) {
+                if (system.hasSplit(baseVector[j])) {
+                    counts[j]++;
+                }
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * The clade probabilities of the non-root internal nodes computed by CladeSystem.hasClade.
+     */
+    private static double[] hasCladeProbabilities(Tree tree, CladeSystem[] cladeSystems) {
+        IdGroup ids = cladeSystems[0].getIdGroup();
+        double[] probabilities = new double[tree.getInternalNodeCount()];
+        boolean[] clade = new boolean[ids.getIdCount()];
+        for (int i = 0; i < tree.getInternalNodeCount(); i++) {
+            Node node = tree.getInternalNode(i);
+            if (node.isRoot()) {
+                continue;
+            }
+            CladeSystem.getClade(ids, node, clade);
+            int count = 0;
+            for (CladeSystem system : cladeSystems) {
+                if (system.hasClade(clade)) {
+                    count++;
+                }
+            }
+            probabilities[i] = count / (double) cladeSystems.length;
+        }
+        return probabilities;
+    }
+
+    @Test
+    void getBootstrapSupportByCladeTree_randomReplicates_equalToSplitSystemCounts() {
+        for (boolean rooted : new boolean[]{false, true}) {
+            var base = TestTreeFactory.randomTrees(1, 7, RandomTreeGenerator.Model.YULE, rooted, 1).get(0);
+            var replicates = replicates(base, rooted, 2);
+            int[] expected = splitSystemCounts(base, replicates);
+
+            var result = TreeUtils.getBootstrapSupportByCladeTree("support", base, replicates);
+
+            for (int j = 0; j < expected.length; j++) {
+                assertEquals(expected[j] * 100 / replicates.length,
+                        result.getAttribute(result.getInternalNode(j), "support"), "rooted " + rooted);
+            }
+        }
+    }
+
+    @Test
+    void getReplicateCladeSupport_generatedReplicates_equalToSplitSystemCounts() {
+        for (boolean rooted : new boolean[]{false, true}) {
+            var base = TestTreeFactory.randomTrees(1, 6, RandomTreeGenerator.Model.UNIFORM, rooted, 3).get(0);
+            var replicates = TestTreeFactory.randomTrees(40, 6, RandomTreeGenerator.Model.UNIFORM, rooted, 4)
+                    .toArray(new Tree[0]);
+            int[] expected = splitSystemCounts(base, replicates);
+            var generator = new RandomTreeGenerator(6, RandomTreeGenerator.Model.UNIFORM, rooted,
+                    new MersenneTwisterFast(4));
+
+            var result = TreeUtils.getReplicateCladeSupport("support", base, generator, 40,
+                    AlgorithmCallback.Utils.getNullCallback());
+
+            for (int j = 0; j < expected.length; j++) {
+                assertEquals(expected[j] * 100 / 40, result.getAttribute(result.getInternalNode(j), "support"));
+            }
+        }
+    }
+
+    @Test
+    void calculateCladeProbabilities_randomSamples_equalToHasClade() {
+        var trees = TestTreeFactory.randomTrees(40, 6, RandomTreeGenerator.Model.YULE, true, 5).toArray(new Tree[0]);
+        var cladeSystems = CladeSystem.getCladeSystems(trees);
+
+        for (int t = 0; t < 5; t++) {
+            var tree = trees[t];
+            double[] expected = hasCladeProbabilities(tree, cladeSystems);
+
+            CladeSystem.calculateCladeProbabilities(tree, cladeSystems);
+
+            for (int i = 0; i < tree.getInternalNodeCount() - 1; i++) {
+                assertEquals(expected[i], (Double) tree.getAttribute(tree.getInternalNode(i), AttributeNode.CLADE_PROBABILITY), 1e-12);
+            }
+        }
+    }
+
+    @Test
+    void calculateCladeProbabilities_prebuiltTable_equalToCladeSystems() {
+        var trees = TestTreeFactory.randomTrees(30, 6, RandomTreeGenerator.Model.YULE, true, 6).toArray(new Tree[0]);
+        var cladeSystems = CladeSystem.getCladeSystems(trees);
+        var table = new SplitFrequencyTable(cladeSystems[0].getIdGroup(), false);
+        for (Tree t : trees) {
+            table.add(t);
+        }
+        var tree = trees[0];
+        double[] expected = hasCladeProbabilities(tree, cladeSystems);
+
+        CladeSystem.calculateCladeProbabilities(tree, table);
+
+        for (int i = 0; i < tree.getInternalNodeCount() - 1; i++) {
+            assertEquals(expected[i], (Double) tree.getAttribute(tree.getInternalNode(i), AttributeNode.CLADE_PROBABILITY), 1e-12);
+        }
+    }
+
+    @Test
+    void calculateCladeProbabilities_complementOnly_matchesLikeHasClade() throws TreeParseException {
+        var tree = tree("((A,B),(C,(D,E)));");
+        // contains the complement {C, D, E} of the clade {A, B}, but not {A, B}
+        var sample = tree("(A,(B,(E,(C,D))));");
+        var cladeSystems = CladeSystem.getCladeSystems(new Tree[]{tree, sample});
+        double[] expected = hasCladeProbabilities(tree, cladeSystems);
+
+        CladeSystem.calculateCladeProbabilities(tree, cladeSystems);
+
+        Node ab = tree.getRoot().getChild(0);
+        assertEquals(1.0, expected[ab.getNumber()]);
+        assertEquals(1.0, tree.getAttribute(ab, AttributeNode.CLADE_PROBABILITY));
+        for (int i = 0; i < tree.getInternalNodeCount() - 1; i++) {
+            assertEquals(expected[i], (Double) tree.getAttribute(tree.getInternalNode(i), AttributeNode.CLADE_PROBABILITY), 1e-12);
+        }
+    }
+
+    @Test
+    void calculateCladeProbabilities_rootNotLast_annotatesAllOtherNodes() throws TreeParseException {
+        var tree = new ReorderedTree(tree("((A,B),((C,D),E),F);"));
+        var samples = new Tree[]{tree("((A,B),(C,D),(E,F));"), tree("((A,C),((B,D),E),F);")};
+        var cladeSystems = CladeSystem.getCladeSystems(samples);
+        assertTrue(tree.getInternalNode(0).isRoot());
+        double[] expected = hasCladeProbabilities(tree, cladeSystems);
+
+        CladeSystem.calculateCladeProbabilities(tree, cladeSystems);
+
+        assertNull(tree.getAttribute(tree.getInternalNode(0), AttributeNode.CLADE_PROBABILITY));
+        for (int i = 1; i < tree.getInternalNodeCount(); i++) {
+            assertEquals(expected[i], (Double) tree.getAttribute(tree.getInternalNode(i), AttributeNode.CLADE_PROBABILITY), 1e-12);
+        }
+    }
+
+    @Test
+    void getBootstrapSupportByCladeTree_rootNotLast_annotatesAllOtherNodes() throws TreeParseException {
+        var simple = tree("((A,B),((C,D),E),F);");
+        var base = new ReorderedTree(simple);
+        var replicates = new Tree[]{tree("((A,B),(C,D),(E,F));"), tree("((A,C),((B,D),E),F);")};
+        int[] expected = splitSystemCounts(simple, replicates);
+
+        var result = TreeUtils.getBootstrapSupportByCladeTree("support", base, replicates);
+
+        // the result is a copy with the root last, in the node order of the SimpleTree
+        for (int j = 0; j < expected.length; j++) {
+            assertEquals(expected[j] * 100 / 2, result.getAttribute(result.getInternalNode(j), "support"));
+        }
+    }
+
+    @Test
+    void add_randomTrees_countsOncePerTreeAndSumsBranchLengths() {
+        var trees = TestTreeFactory.randomTrees(60, 20, RandomTreeGenerator.Model.UNIFORM, false, 7, 1.0);
+        IdGroup ids = TreeUtils.getLeafIdGroup(trees.get(0));
+        var table = new SplitFrequencyTable(ids, false);
+        Map<String, Integer> counts = new HashMap<>();
+        Map<String, Double> lengths = new HashMap<>();
+        boolean[] split = new boolean[ids.getIdCount()];
+
+        for (Tree t : trees) {
+            table.add(t);
+            Set<String> seen = new HashSet<>();
+            for (int i = 0; i < t.getInternalNodeCount(); i++) {
+                Node node = t.getInternalNode(i);
+                if (node.isRoot()) {
+                    continue;
+                }
+                SplitUtils.getSplit(ids, node, split);
+                String key = Arrays.toString(split);
+                if (seen.add(key)) {
+                    counts.merge(key, 1, Integer::sum);
+                }
+                lengths.merge(key, node.getBranchLength(), Double::sum);
+            }
+        }
+
+        assertEquals(60, table.getTreeCount());
+        assertEquals(counts.size(), table.getSplitCount());
+        assertTrue(table.getSplitCount() > 16, "the table grew past its initial capacity");
+        for (int e = 0; e < table.getSplitCount(); e++) {
+            String key = Arrays.toString(table.getSplit(e));
+            assertEquals(counts.get(key), table.getCount(e));
+            assertEquals(lengths.get(key), table.getBranchLengthSum(e), 1e-9);
+            assertEquals(table.getCount(e), table.getCount(table.getSplit(e)));
+        }
+    }
+
+    @Test
+    void add_binaryRoot_countsSplitOncePerTree() throws TreeParseException {
+        var t = tree("((A:1,B:1):2,(C:1,D:1):3);");
+        var table = new SplitFrequencyTable(TreeUtils.getLeafIdGroup(t), false);
+
+        table.add(t);
+        table.add(t);
+
+        assertEquals(1, table.getSplitCount());
+        assertEquals(2, table.getCount(0));
+        assertEquals(10.0, table.getBranchLengthSum(0), 1e-12);
+        assertEquals(1.0, table.getFrequency(table.getSplit(0)));
+    }
+
+    @Test
+    void add_rootedTable_keepsCladeAndComplementApart() throws TreeParseException {
+        var t = tree("((A,B),(C,D,E));");
+        var ids = TreeUtils.getLeafIdGroup(t);
+        var rooted = new SplitFrequencyTable(ids, true);
+        var unrooted = new SplitFrequencyTable(ids, false);
+
+        rooted.add(t);
+        unrooted.add(t);
+
+        assertEquals(2, rooted.getSplitCount());
+        assertEquals(1, unrooted.getSplitCount());
+        boolean[] ab = new boolean[5];
+        ab[ids.whichIdNumber("A")] = ab[ids.whichIdNumber("B")] = true;
+        assertEquals(1, rooted.getCount(ab));
+        assertEquals(1, unrooted.getCount(ab));
+    }
+
+    @Test
+    void add_keyTreeTable_countsOnlyKeySplits() throws TreeParseException {
+        var key = tree("((A,B),(C,D),(E,F));");
+        var table = new SplitFrequencyTable(TreeUtils.getLeafIdGroup(key), false, key);
+
+        table.add(tree("((A,B),(C,E),(D,F));"));
+        table.add(key);
+
+        assertEquals(3, table.getSplitCount());
+        assertEquals(2, table.getTreeCount());
+        int[] counts = table.getNodeCounts(key);
+        for (int i = 0; i < key.getInternalNodeCount(); i++) {
+            Node node = key.getInternalNode(i);
+            boolean hasAB = !node.isRoot() && node.getChild(0).getIdentifier().getName().equals("A");
+            assertEquals(node.isRoot() ? 0 : (hasAB ? 2 : 1), counts[i]);
+        }
+    }
+
+    /**
+     * A view of a tree listing its internal nodes in reverse order, so the root is the first one.
+     */
+    private static class ReorderedTree implements Tree {
+
+        private final Tree tree;
+
+        ReorderedTree(Tree tree) {
+            this.tree = tree;
+        }
+
+        public Node getRoot() {
+            return tree.getRoot();
+        }
+
+        public void setRoot(Node root) {
+            tree.setRoot(root);
+        }
+
+        public int getExternalNodeCount() {
+            return tree.getExternalNodeCount();
+        }
+
+        public int getInternalNodeCount() {
+            return tree.getInternalNodeCount();
+        }
+
+        public Node getExternalNode(int i) {
+            return tree.getExternalNode(i);
+        }
+
+        public Node getInternalNode(int i) {
+            return tree.getInternalNode(tree.getInternalNodeCount() - 1 - i);
+        }
+
+        public void createNodeList() {
+            tree.createNodeList();
+        }
+
+        public int getUnits() {
+            return tree.getUnits();
+        }
+
+        public void setAttribute(Node node, String name, Object value) {
+            tree.setAttribute(node, name, value);
+        }
+
+        public Object getAttribute(Node node, String name) {
+            return tree.getAttribute(node, name);
+        }
+
+        public Tree getCopy() {
+            return new ReorderedTree(tree.getCopy());
+        }
+
+        public int getIdCount() {
+            return tree.getIdCount();
+        }
+
+        public Identifier getIdentifier(int i) {
+            return tree.getIdentifier(i);
+        }
+
+        public void setIdentifier(int i, Identifier id) {
+            tree.setIdentifier(i, id);
+        }
+
+        public int whichIdNumber(String name) {
+            return tree.whichIdNumber(name);
+        }
+    }
+}
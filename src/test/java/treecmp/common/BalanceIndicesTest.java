@@ -0,0 +1,95 @@
+package treecmp.common;
+
+import org.junit.jupiter.api.Test;
+import pal.misc.Identifier;
+import pal.tree.SimpleNode;
+import pal.tree.SimpleTree;
+import pal.tree.Tree;
+import treecmp.metrics.util.TestTreeFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BalanceIndicesTest {
+
+    private static Tree caterpillar(int leafNum) {
+        SimpleNode root = new SimpleNode();
+        SimpleNode node = root;
+        for (int i = 0; i < leafNum - 1; i++) {
+            SimpleNode leaf = new SimpleNode();
+            leaf.setIdentifier(new Identifier("t" + i));
+            node.addChild(leaf);
+            SimpleNode next = new SimpleNode();
+            node.addChild(next);
+            node = next;
+        }
+        node.setIdentifier(new Identifier("t" + (leafNum - 1)));
+        return new SimpleTree(root);
+    }
+
+    @Test
+    void of_balancedFourLeavesTree_returnsIndices() {
+        var indices = BalanceIndices.of(TestTreeFactory.fourLeavesTree1());
+
+        assertEquals(4, indices.getLeafNum());
+        assertEquals(8, indices.getSackin());
+        assertEquals(6, indices.getUnrootedSackin());
+        assertEquals(0, indices.getColless());
+        assertEquals(2, indices.getCherries());
+    }
+
+    @Test
+    void of_caterpillarFourLeavesTree_returnsIndices() {
+        var indices = BalanceIndices.of(TestTreeFactory.fourLeavesRootedWeightedTree2());
+
+        assertEquals(9, indices.getSackin());
+        assertEquals(6, indices.getUnrootedSackin());
+        assertEquals(3, indices.getColless());
+        assertEquals(1, indices.getCherries());
+    }
+
+    @Test
+    void of_unrootedTree_equalsSackinIndexOfBestRoot() {
+        var t = TestTreeFactory.tenLeavesBinaryUnrootedTree1();
+        var indices = BalanceIndices.of(t);
+
+        double min = Double.MAX_VALUE;
+        for (int i = 0; i < t.getInternalNodeCount(); i++) {
+            var rerooted = new SimpleTree(t);
+            rerooted.reroot(rerooted.getInternalNode(i));
+            min = Math.min(min, TreeCmpUtils.getSackinIndex(rerooted));
+        }
+        assertEquals(min, indices.getUnrootedSackin());
+        assertEquals(min, TreeCmpUtils.getSackinUnrootedIndex(t));
+    }
+
+    @Test
+    void of_compactTree_equalsIndicesOfTree() {
+        for (var t : new Tree[]{TestTreeFactory.tenLeavesBinaryUnrootedTree1(),
+                TestTreeFactory.tenLeavesBinaryRootedTree1(), TestTreeFactory.fourLeavesRootedWeightedTree2()}) {
+            var expected = BalanceIndices.of(t);
+
+            var indices = BalanceIndices.of(new CompactTree(t));
+
+            assertEquals(expected.toString(), indices.toString());
+            assertEquals(expected.getLeafNum(), indices.getLeafNum());
+        }
+    }
+
+    @Test
+    void getSackinIndex_deepCaterpillar_doesNotOverflowStack() {
+        long n = 5000;
+        var t = caterpillar((int) n);
+
+        assertEquals(n * (n - 1) / 2 + n - 1, TreeCmpUtils.getSackinIndex(t));
+        assertEquals((n - 1) * (n - 2) / 2, BalanceIndices.of(t).getColless());
+    }
+
+    @Test
+    void of_treeArray_returnsIndicesOfEveryTree() {
+        var indices = BalanceIndices.of(new Tree[]{
+                TestTreeFactory.fourLeavesTree1(), TestTreeFactory.tenLeavesBinaryRootedTree1()});
+
+        assertEquals(2, indices.length);
+        assertEquals(10, indices[1].getLeafNum());
+    }
+}
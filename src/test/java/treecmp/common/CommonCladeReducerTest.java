@@ -0,0 +1,54 @@
+package treecmp.common;
+
+import org.junit.jupiter.api.Test;
+import pal.io.InputSource;
+import pal.tree.ReadTree;
+import pal.tree.Tree;
+import pal.tree.TreeParseException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CommonCladeReducerTest {
+
+    private static Tree parse(String newick) throws TreeParseException {
+        return new ReadTree(InputSource.openString(newick));
+    }
+
+    @Test
+    void reduce_treesWithCommonClades_collapsesThemIntoMetaLeaves() throws TreeParseException {
+        var t1 = parse("(((1,2),(3,4)),((5,6),(7,(8,9))));");
+        var t2 = parse("(((4,3),(2,1)),((5,7),(6,(9,8))));");
+
+        var reduction = CommonCladeReducer.reduce(t1, t2);
+
+        assertNotNull(reduction);
+        assertEquals(9, reduction.getLeafNum());
+        assertEquals(5, reduction.getT1().getExternalNodeCount());
+        assertEquals(5, reduction.getT2().getExternalNodeCount());
+        assertEquals(2, reduction.getWeights().size());
+        assertTrue(reduction.getWeights().values().contains(4));
+        assertTrue(reduction.getWeights().values().contains(2));
+        var labels1 = TaxonRegistry.getShared().getLeafIdGroup(reduction.getT1());
+        var labels2 = TaxonRegistry.getShared().getLeafIdGroup(reduction.getT2());
+        for (var label : reduction.getWeights().keySet()) {
+            assertTrue(labels1.whichIdNumber(label) >= 0);
+            assertTrue(labels2.whichIdNumber(label) >= 0);
+        }
+    }
+
+    @Test
+    void reduce_noCommonClade_returnsNull() throws TreeParseException {
+        var t1 = parse("((1,2),(3,4));");
+        var t2 = parse("((1,3),(2,4));");
+
+        assertNull(CommonCladeReducer.reduce(t1, t2));
+    }
+
+    @Test
+    void reduce_differentLeafSets_returnsNull() throws TreeParseException {
+        var t1 = parse("(((1,2),3),(4,5));");
+        var t2 = parse("(((1,2),3),(4,6));");
+
+        assertNull(CommonCladeReducer.reduce(t1, t2));
+    }
+}
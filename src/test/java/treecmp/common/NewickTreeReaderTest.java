@@ -0,0 +1,66 @@
+package treecmp.common;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import pal.io.InputSource;
+import pal.tree.ReadTree;
+import pal.tree.TreeParseException;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NewickTreeReaderTest {
+
+    @TempDir
+    File dir;
+
+    @Test
+    void next_treeFile_returnsAllTrees() throws IOException {
+        var file = new File(dir, "trees.nwk");
+        Files.writeString(file.toPath(), "((A,B),(C,D));\n[&R; x] ((X,B),(C,D));\n((A,C),(B,D));\n");
+
+        try (var reader = new NewickTreeReader(file)) {
+            assertTrue(reader.hasNext());
+            assertEquals(4, reader.next().getExternalNodeCount());
+            assertEquals("X", reader.next().getExternalNode(0).getIdentifier().getName());
+            assertTrue(reader.hasNext());
+            reader.next();
+            assertFalse(reader.hasNext());
+            assertEquals(3, reader.getTreeCount());
+        }
+    }
+
+    @Test
+    void readAvailable_growingFile_returnsCompletedTrees() throws IOException, TreeParseException {
+        var file = new File(dir, "trees.nwk");
+        Files.writeString(file.toPath(), "((A,B),(C,D));\n((A,C),");
+
+        try (var reader = new NewickTreeReader(file); var writer = new FileWriter(file, true)) {
+            assertEquals(1, reader.readAvailable().size());
+            assertTrue(reader.readAvailable().isEmpty());
+
+            writer.write("(B,D));\n((A,D),(B,C));\n");
+            writer.flush();
+            var trees = reader.readAvailable();
+
+            assertEquals(2, trees.size());
+            assertEquals(3, reader.getTreeCount());
+            assertTrue(TopologyFingerprint.isSameTopology(trees.get(0),
+                    new ReadTree(InputSource.openString("((A,C),(B,D));")), true));
+        }
+    }
+
+    @Test
+    void readAvailable_invalidTree_throwsException() throws IOException {
+        var file = new File(dir, "trees.nwk");
+        Files.writeString(file.toPath(), "((A,B),(C,D);\n");
+
+        try (var reader = new NewickTreeReader(file)) {
+            assertThrows(IOException.class, reader::readAvailable);
+        }
+    }
+}
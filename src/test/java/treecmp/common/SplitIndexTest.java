@@ -0,0 +1,56 @@
+package treecmp.common;
+
+import org.junit.jupiter.api.Test;
+import pal.io.InputSource;
+import pal.tree.ReadTree;
+import pal.tree.TreeParseException;
+import treecmp.metrics.topological.RFMetric;
+import treecmp.metrics.util.TestTreeFactory;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SplitIndexTest {
+
+    @Test
+    void getDistances_tenLeavesTrees_equalToRFDistances() {
+        var trees = List.of(TestTreeFactory.tenLeavesBinaryRootedTree1(), TestTreeFactory.tenLeavesBinaryRootedTree2(),
+                TestTreeFactory.tenLeavesBinaryUnrootedTree1(), TestTreeFactory.tenLeavesBinaryUnrootedTree2());
+        var index = new SplitIndex();
+        index.addAll(trees.iterator());
+
+        for (var query : trees) {
+            var distances = index.getDistances(query);
+            for (int t = 0; t < trees.size(); t++) {
+                assertEquals(RFMetric.getRFDistance(query, trees.get(t)), distances[t]);
+            }
+        }
+    }
+
+    @Test
+    void nearest_indexedTree_returnsItselfFirst() {
+        var index = new SplitIndex();
+        index.add(TestTreeFactory.tenLeavesBinaryRootedTree1());
+        index.add(TestTreeFactory.tenLeavesBinaryRootedTree2());
+        index.add(TestTreeFactory.tenLeavesBinaryUnrootedTree2());
+
+        var neighbors = index.nearest(TestTreeFactory.tenLeavesBinaryRootedTree2(), 2);
+
+        assertEquals(2, neighbors.size());
+        assertEquals(1, neighbors.get(0).getIndex());
+        assertEquals(0.0, neighbors.get(0).getDistance());
+        assertTrue(neighbors.get(1).getDistance() > 0.0);
+        assertEquals(1, index.withinDistance(TestTreeFactory.tenLeavesBinaryRootedTree2(), 0.0).size());
+    }
+
+    @Test
+    void add_otherTaxa_throwsException() throws TreeParseException {
+        var index = new SplitIndex();
+        index.add(TestTreeFactory.fourLeavesTree1());
+
+        var tree = new ReadTree(InputSource.openString("((A,B),(C,E));"));
+
+        assertThrows(IllegalArgumentException.class, () -> index.add(tree));
+    }
+}
@@ -0,0 +1,132 @@
+package treecmp.common;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import pal.io.InputSource;
+import pal.tree.ReadTree;
+import pal.tree.Tree;
+import pal.tree.TreeParseException;
+import treecmp.metrics.topological.RFMetric;
+import treecmp.metrics.util.TestTreeFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SplitSketchTest {
+
+    private static Tree tree(String newick) throws TreeParseException {
+        return new ReadTree(InputSource.openString(newick));
+    }
+
+    private static SplitSketch roundTrip(SplitSketch sketch) throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        sketch.write(new DataOutputStream(bytes));
+        return SplitSketch.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+
+    private static void assertSameValues(SplitSketch expected, SplitSketch actual) {
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected.getBits(), actual.getBits());
+        assertEquals(expected.getSeed(), actual.getSeed());
+        assertEquals(expected.getSplitCount(), actual.getSplitCount());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.getValue(i), actual.getValue(i));
+        }
+    }
+
+    @Test
+    void create_sameTopologyDifferentNewick_returnsSameSketch() throws TreeParseException {
+        var s1 = SplitSketch.create(tree("((A,B),(C,D),(E,F));"));
+        var s2 = SplitSketch.create(tree("((F,E),((B,A),(D,C)));"));
+
+        assertSameValues(s1, s2);
+        assertEquals(3, s1.getSplitCount());
+        assertEquals(0.0, s1.getRFEstimate(s2));
+    }
+
+    @Test
+    void getRFBounds_randomTrees_containRFDistance() {
+        var trees = TestTreeFactory.randomTrees(40, 20, RandomTreeGenerator.Model.YULE, false, 1);
+        var rf = new RFMetric();
+
+        for (int i = 0; i + 1 < trees.size(); i += 2) {
+            var s1 = SplitSketch.create(trees.get(i), 256, 64, 7);
+            var s2 = SplitSketch.create(trees.get(i + 1), 256, 64, 7);
+            double distance = rf.getDistance(trees.get(i), trees.get(i + 1));
+            double[] bounds = s1.getRFBounds(s2, 1e-4);
+
+            assertTrue(bounds[0] <= distance && distance <= bounds[1],
+                    bounds[0] + " <= " + distance + " <= " + bounds[1]);
+            assertTrue(bounds[0] <= s1.getRFEstimate(s2) && s1.getRFEstimate(s2) <= bounds[1]);
+        }
+    }
+
+    @Test
+    void getRFEstimate_largeSketch_isCloseToRFDistance() throws TreeParseException {
+        var t1 = tree("((((A,B),C),D),E,((F,G),(H,I)));");
+        var t2 = tree("((((A,C),B),D),E,((F,G),(H,I)));");
+
+        var s1 = SplitSketch.create(t1, 4096, 64, 3);
+        var s2 = SplitSketch.create(t2, 4096, 64, 3);
+
+        // 6 splits each, 5 shared: J = 5/7 and RF = 1
+        assertEquals(5.0 / 7.0, s1.getJaccard(s2), 0.03);
+        assertEquals(new RFMetric().getDistance(t1, t2), s1.getRFEstimate(s2), 0.2);
+    }
+
+    @Test
+    void toBits_estimateStaysClose() {
+        var trees = TestTreeFactory.randomTrees(2, 20, RandomTreeGenerator.Model.YULE, false, 2);
+        var s1 = SplitSketch.create(trees.get(0), 1024, 64, 5);
+        var s2 = SplitSketch.create(trees.get(1), 1024, 64, 5);
+
+        var b1 = s1.toBits(4);
+        var b2 = s2.toBits(4);
+
+        assertEquals(4, b1.getBits());
+        assertEquals(s1.getJaccard(s2), b1.getJaccard(b2), b1.getJaccardError(1e-3));
+        assertTrue(b1.getJaccardError(0.05) > s1.getJaccardError(0.05));
+    }
+
+    @Test
+    void write_read_roundTrip() throws IOException {
+        var sketch = SplitSketch.create(TestTreeFactory.randomTrees(1, 20, RandomTreeGenerator.Model.YULE, false, 3).get(0), 37, 64, 11);
+
+        assertSameValues(sketch, roundTrip(sketch));
+        assertSameValues(sketch.toBits(5), roundTrip(sketch.toBits(5)));
+        assertSameValues(sketch.toBits(1), roundTrip(sketch.toBits(1)));
+    }
+
+    @Test
+    void writeAll_readAll_roundTrip(@TempDir File dir) throws IOException {
+        List<SplitSketch> sketches = new ArrayList<>();
+        for (Tree t : TestTreeFactory.randomTrees(5, 20, RandomTreeGenerator.Model.YULE, false, 4)) {
+            sketches.add(SplitSketch.create(t, 64, 16, 1));
+        }
+        var file = new File(dir, "trees.sketch");
+
+        SplitSketch.writeAll(file, sketches);
+        var read = SplitSketch.readAll(file);
+
+        assertEquals(sketches.size(), read.size());
+        for (int i = 0; i < sketches.size(); i++) {
+            assertSameValues(sketches.get(i), read.get(i));
+        }
+    }
+
+    @Test
+    void getJaccard_differentSeeds_throws() throws TreeParseException {
+        var t = tree("((A,B),(C,D),(E,F));");
+
+        assertThrows(IllegalArgumentException.class,
+                () -> SplitSketch.create(t, 64, 64, 1).getJaccard(SplitSketch.create(t, 64, 64, 2)));
+    }
+}
@@ -0,0 +1,97 @@
+package treecmp.common;
+
+import org.junit.jupiter.api.Test;
+import pal.misc.Identifier;
+import pal.tree.TreeUtils;
+import treecmp.metrics.util.TestTreeFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TaxonRegistryTest {
+
+    @Test
+    void getLeafIdGroup_sameTree_returnsGroupsOfSameLabels() {
+        var registry = new TaxonRegistry();
+        var t1 = TestTreeFactory.tenLeavesBinaryRootedTree1();
+
+        var g1 = registry.getLeafIdGroup(t1);
+        var g2 = registry.getLeafIdGroup(t1);
+
+        assertEquals(10, g1.getIdCount());
+        assertEquals(g1.toString(), g2.toString());
+        for (int i = 0; i < t1.getExternalNodeCount(); i++) {
+            assertEquals(t1.getExternalNode(i).getIdentifier().getName(), g1.getIdentifier(i).getName());
+            assertEquals(i, g1.whichIdNumber(g1.getIdentifier(i).getName()));
+        }
+    }
+
+    @Test
+    void setIdentifier_sharedGroup_changesOnlyThatGroup() {
+        var registry = new TaxonRegistry();
+        var t1 = TestTreeFactory.tenLeavesBinaryRootedTree1();
+        var g1 = registry.getLeafIdGroup(t1);
+        String name = g1.getIdentifier(0).getName();
+
+        g1.setIdentifier(0, new Identifier("X"));
+
+        assertEquals(0, g1.whichIdNumber("X"));
+        assertEquals(-1, g1.whichIdNumber(name));
+        var g2 = registry.getLeafIdGroup(t1);
+        assertEquals(name, g2.getIdentifier(0).getName());
+        assertEquals(0, g2.whichIdNumber(name));
+        assertEquals(-1, g2.whichIdNumber("X"));
+    }
+
+    @Test
+    void whichIdNumber_manyRegisteredTaxa_findsOnlyGroupLabels() {
+        var registry = new TaxonRegistry();
+        for (int i = 0; i < 1000; i++) {
+            registry.getId("taxon" + i);
+        }
+        var t1 = TestTreeFactory.fourLeavesTree1();
+
+        var g1 = registry.getLeafIdGroup(t1);
+
+        for (int i = 0; i < g1.getIdCount(); i++) {
+            assertEquals(i, g1.whichIdNumber(g1.getIdentifier(i).getName()));
+        }
+        assertEquals(-1, g1.whichIdNumber("taxon999"));
+    }
+
+    @Test
+    void mapExternalIdentifiers_twoTrees_returnsSameAliasAsTreeUtils() {
+        var registry = new TaxonRegistry();
+        var t1 = TestTreeFactory.tenLeavesBinaryRootedTree1();
+        var t2 = TestTreeFactory.tenLeavesBinaryRootedTree2();
+
+        var idGroup = registry.getLeafIdGroup(t1);
+
+        assertArrayEquals(TreeUtils.mapExternalIdentifiers(TreeUtils.getLeafIdGroup(t1), t2),
+                registry.mapExternalIdentifiers(idGroup, t2));
+    }
+
+    @Test
+    void mapExternalIdentifiers_missingLabel_throwsException() {
+        var registry = new TaxonRegistry();
+        var t1 = TestTreeFactory.fourLeavesTree1();
+        var t2 = TestTreeFactory.tenLeavesBinaryRootedTree1();
+
+        var idGroup = registry.getLeafIdGroup(t1);
+
+        assertThrows(IllegalArgumentException.class, () -> registry.mapExternalIdentifiers(idGroup, t2));
+    }
+
+    @Test
+    void mergeIdGroups_differentTaxa_returnsUnion() {
+        var registry = new TaxonRegistry();
+        var g1 = registry.getLeafIdGroup(TestTreeFactory.fourLeavesTree1());
+        var g2 = registry.getLeafIdGroup(TestTreeFactory.fourLeavesRootedWeightedTree1());
+
+        var merged = registry.mergeIdGroups(g1, g2);
+
+        assertEquals(8, merged.getIdCount());
+        assertEquals(0, merged.whichIdNumber(g1.getIdentifier(0).getName()));
+        assertTrue(merged.whichIdNumber("3") >= 4);
+        assertEquals(g1.toString(), registry.mergeIdGroups(g1, g1).toString());
+    }
+}
@@ -0,0 +1,89 @@
+package treecmp.common;
+
+import org.junit.jupiter.api.Test;
+import pal.io.InputSource;
+import pal.tree.ReadTree;
+import pal.tree.SimpleTree;
+import pal.tree.Tree;
+import pal.tree.TreeParseException;
+import treecmp.metrics.util.TestTreeFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TopologyFingerprintTest {
+
+    private static Tree parse(String newick) throws TreeParseException {
+        return new ReadTree(InputSource.openString(newick));
+    }
+
+    @Test
+    void isSameTopology_reorderedChildren_returnsTrue() throws TreeParseException {
+        var t1 = TestTreeFactory.tenLeavesBinaryRootedTree1();
+        var t2 = parse("((4,((1:3,(8,7)),(10,9))),((6,3),(5,2)));");
+
+        assertTrue(TopologyFingerprint.isSameTopology(t1, t2, true));
+        assertEquals(TopologyFingerprint.getRooted(t1), TopologyFingerprint.getRooted(t2));
+        assertEquals(TopologyFingerprint.getUnrooted(t1), TopologyFingerprint.getUnrooted(t2));
+    }
+
+    @Test
+    void isSameTopology_treeModifiedInPlace_returnsFalse() throws TreeParseException {
+        var t1 = parse("((A,B),(C,D));");
+        var t2 = parse("((A,B),(C,D));");
+        assertTrue(TopologyFingerprint.isSameTopology(t1, t2, true));
+
+        // swaps B and C, keeping the root, the nodes and the leaf list
+        var ab = t1.getRoot().getChild(0);
+        var cd = t1.getRoot().getChild(1);
+        var b = ab.removeChild(1);
+        var c = cd.removeChild(0);
+        ab.addChild(c);
+        cd.addChild(b);
+
+        assertFalse(TopologyFingerprint.isSameTopology(t1, t2, true));
+        assertFalse(TopologyFingerprint.isSameTopology(t1, t2, false));
+        assertEquals(TopologyFingerprint.getRooted(parse("((A,C),(B,D));")), TopologyFingerprint.getRooted(t1));
+    }
+
+    @Test
+    void isSameTopology_differentTrees_returnsFalse() {
+        var t1 = TestTreeFactory.tenLeavesBinaryRootedTree1();
+        var t2 = TestTreeFactory.tenLeavesBinaryRootedTree2();
+
+        assertFalse(TopologyFingerprint.isSameTopology(t1, t2, true));
+        assertFalse(TopologyFingerprint.isSameTopology(t1, t2, false));
+    }
+
+    @Test
+    void isSameTopology_rerootedTree_differsOnlyWhenRooted() {
+        var t1 = TestTreeFactory.tenLeavesBinaryUnrootedTree1();
+        var t2 = new SimpleTree(t1);
+        t2.reroot(t2.getInternalNode(0));
+
+        assertFalse(TopologyFingerprint.isSameTopology(t1, t2, true));
+        assertTrue(TopologyFingerprint.isSameTopology(t1, t2, false));
+    }
+
+    @Test
+    void isSameTopology_differentLeafSets_returnsFalse() throws TreeParseException {
+        var t1 = parse("((A,B),(C,D));");
+        var t2 = parse("((A,B),(C,E));");
+
+        assertFalse(TopologyFingerprint.isSameTopology(t1, t2, true));
+        assertFalse(TopologyFingerprint.isSameTopology(t1, t2, false));
+    }
+
+    @Test
+    void getRooted_modifiedTree_isRecomputed() throws TreeParseException {
+        var t1 = parse("((A,B),(C,D));");
+        var before = TopologyFingerprint.getRooted(t1);
+        var t2 = parse("((A,C),(B,D));");
+
+        t1.getExternalNode(1).setIdentifier(t2.getExternalNode(1).getIdentifier());
+        t1.getExternalNode(2).setIdentifier(t2.getExternalNode(2).getIdentifier());
+        t1.createNodeList();
+
+        assertNotEquals(before, TopologyFingerprint.getRooted(t1));
+        assertEquals(TopologyFingerprint.getRooted(t2), TopologyFingerprint.getRooted(t1));
+    }
+}
@@ -0,0 +1,97 @@
+package treecmp.common;
+
+import org.junit.jupiter.api.Test;
+import treecmp.metrics.topological.RFMetric;
+import treecmp.metrics.util.TestTreeFactory;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TreeRestrictionCacheTest {
+
+    private static int[] taxa(TaxonRegistry registry, String... names) {
+        int[] ids = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            ids[i] = registry.getId(names[i]);
+        }
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    @Test
+    void getRestricted_weightedTree_suppressesUnaryNodes() {
+        var registry = new TaxonRegistry();
+        var cache = new TreeRestrictionCache(registry, 4);
+        var t1 = TestTreeFactory.fourLeavesRootedWeightedTree1();
+
+        var restricted = cache.getRestricted(t1, taxa(registry, "1", "2", "4"));
+
+        assertEquals(3, restricted.leafNum);
+        assertEquals(5, restricted.nodeNum);
+        for (int u = 0; u < restricted.leafNum; u++) {
+            if (restricted.leafNames[u].equals("2")) {
+                assertEquals(restricted.root, restricted.parent[u]);
+                assertEquals(177.0, restricted.branchLength[u]);
+            }
+        }
+        assertEquals(0.0, restricted.branchLength[restricted.root]);
+    }
+
+    @Test
+    void getRestrictedTree_sameSubset_returnsCachedTree() {
+        var registry = new TaxonRegistry();
+        var cache = new TreeRestrictionCache(registry, 4);
+        var t1 = TestTreeFactory.tenLeavesBinaryUnrootedTree1();
+        var subset = taxa(registry, "1", "3", "5", "7", "9");
+
+        var r1 = cache.getRestrictedTree(t1, subset);
+        var r2 = cache.getRestrictedTree(t1, subset.clone());
+
+        assertSame(r1, r2);
+        assertEquals(5, r1.getExternalNodeCount());
+    }
+
+    @Test
+    void getCommonTaxa_partiallyOverlappingTrees_returnsSortedCommonIds() {
+        var registry = new TaxonRegistry();
+        var cache = new TreeRestrictionCache(registry, 4);
+        for (int i = 0; i < 100; i++) {
+            registry.getId("unused" + i);
+        }
+        var t1 = TestTreeFactory.tenLeavesBinaryRootedTree1();
+        var t2 = TestTreeFactory.fourLeavesTree1();
+        t2.getExternalNode(0).getIdentifier().setName("7");
+        t2.getExternalNode(2).getIdentifier().setName("3");
+
+        var common = cache.getCommonTaxa(t1, t2);
+
+        assertArrayEquals(taxa(registry, "7", "3"), common);
+        assertArrayEquals(common, cache.getCommonTaxa(t2, t1));
+    }
+
+    @Test
+    void restrictToCommonTaxa_sameLeafSets_returnsInputTrees() {
+        var cache = TreeRestrictionCache.getShared();
+        var t1 = TestTreeFactory.tenLeavesBinaryRootedTree1();
+        var t2 = TestTreeFactory.tenLeavesBinaryRootedTree2();
+
+        var restricted = cache.restrictToCommonTaxa(t1, t2);
+
+        assertSame(t1, restricted[0]);
+        assertSame(t2, restricted[1]);
+    }
+
+    @Test
+    void restrictToCommonTaxa_restrictedIdenticalTrees_returnsZeroDistance() {
+        var registry = new TaxonRegistry();
+        var cache = new TreeRestrictionCache(registry, 4);
+        var t1 = TestTreeFactory.tenLeavesBinaryUnrootedTree1();
+        var t2 = cache.getRestrictedTree(t1, taxa(registry, "1", "2", "3", "4", "5", "6", "7"));
+
+        var restricted = cache.restrictToCommonTaxa(t1, t2);
+
+        assertEquals(7, restricted[0].getExternalNodeCount());
+        assertEquals(0.0, RFMetric.getRFDistance(restricted[0], restricted[1]));
+    }
+}
@@ -0,0 +1,56 @@
+package treecmp.metrics;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import treecmp.common.RandomTreeGenerator;
+import treecmp.common.TreeCmpException;
+import treecmp.metrics.topological.MatchingClusterMetric;
+import treecmp.metrics.topological.RFMetric;
+import treecmp.metrics.util.TestTreeFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AllPairsComparisonTest {
+
+    @TempDir
+    File dir;
+
+    @Test
+    void compare_randomTrees_storesPairwiseDistances() throws TreeCmpException, IOException {
+        var trees = TestTreeFactory.randomTrees(23, 8, RandomTreeGenerator.Model.YULE, true, 7);
+        var comparison = new AllPairsComparison(() -> List.of(new RFMetric(), new MatchingClusterMetric()));
+        comparison.setThreadCount(3);
+        var store = DistanceMatrixStore.create(new File(dir, "matrix.bin"), trees.size(), 2, 5,
+                DistanceMatrixStore.CellType.FIXED, 2.0);
+
+        assertEquals(5, comparison.compare(trees, store));
+
+        assertTrue(store.isComplete());
+        for (int i = 0; i < trees.size(); i++) {
+            for (int j = i + 1; j < trees.size(); j++) {
+                assertEquals(new RFMetric().getDistance(trees.get(i), trees.get(j)), store.get(0, j, i));
+                assertEquals(new MatchingClusterMetric().getDistance(trees.get(i), trees.get(j)), store.get(1, i, j));
+            }
+        }
+    }
+
+    @Test
+    void compare_partlyCompleteStore_computesIncompleteBlocksOnly() throws TreeCmpException, IOException {
+        var trees = TestTreeFactory.randomTrees(12, 8, RandomTreeGenerator.Model.YULE, true, 7);
+        var comparison = new AllPairsComparison(() -> List.of(new RFMetric()));
+        var store = DistanceMatrixStore.create(new File(dir, "matrix.bin"), trees.size(), 1, 4,
+                DistanceMatrixStore.CellType.DOUBLE, 1.0);
+        store.set(0, 0, 1, -1.0);
+        store.setBlockComplete(0);
+
+        assertEquals(2, comparison.compare(trees, store));
+        assertEquals(0, comparison.compare(trees, store));
+
+        assertEquals(-1.0, store.get(0, 0, 1));
+        assertEquals(new RFMetric().getDistance(trees.get(4), trees.get(11)), store.get(0, 4, 11));
+    }
+}
@@ -0,0 +1,142 @@
+package treecmp.metrics;
+
+import org.junit.jupiter.api.Test;
+import pal.tree.Tree;
+import treecmp.common.Neighbor;
+import treecmp.common.RandomTreeGenerator;
+import treecmp.common.TreeCmpException;
+import treecmp.metrics.topological.MatchingClusterMetric;
+import treecmp.metrics.topological.MatchingClusterMetricO3;
+import treecmp.metrics.topological.MatchingSplitMetric;
+import treecmp.metrics.topological.MatchingSplitMetricO3;
+import treecmp.metrics.topological.QuartetMetricLong;
+import treecmp.metrics.topological.RFMetric;
+import treecmp.metrics.topological.RMASTMetric;
+import treecmp.metrics.topological.UMASTMetric;
+import treecmp.metrics.util.TestTreeFactory;
+import treecmp.metrics.weighted.GeoRootedMetric;
+import treecmp.metrics.weighted.GeoUnrootedMetric;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CascadeEvaluatorTest {
+
+    private static void assertBoundsContainDistance(BoundingMetric metric, Tree t1, Tree t2) throws TreeCmpException {
+        double distance = metric.getDistance(t1, t2);
+        double[] bounds = metric.getDistanceBounds(t1, t2);
+        // the geodesic distance is computed from Newick strings with rounded branch lengths
+        double eps = 1e-6 * Math.max(1.0, distance);
+        assertTrue(bounds[0] <= distance + eps && distance <= bounds[1] + eps,
+                metric.getClass().getSimpleName() + ": " + bounds[0] + " <= " + distance + " <= " + bounds[1]);
+    }
+
+    @Test
+    void getDistanceBounds_randomTrees_containDistance() throws TreeCmpException {
+        List<BoundingMetric> unrooted = List.of(new MatchingSplitMetric(), new MatchingSplitMetricO3(),
+                new UMASTMetric(), new QuartetMetricLong(), new GeoUnrootedMetric());
+        List<BoundingMetric> rooted = List.of(new MatchingClusterMetric(), new MatchingClusterMetricO3(),
+                new RMASTMetric(), new GeoRootedMetric());
+        var unrootedTrees = TestTreeFactory.randomTrees(16, 12, RandomTreeGenerator.Model.YULE, false, 1, 0.5);
+        var rootedTrees = TestTreeFactory.randomTrees(16, 12, RandomTreeGenerator.Model.YULE, true, 2, 0.5);
+
+        for (int i = 0; i + 1 < 16; i += 2) {
+            for (var metric : unrooted) {
+                assertBoundsContainDistance(metric, unrootedTrees.get(i), unrootedTrees.get(i + 1));
+            }
+            for (var metric : rooted) {
+                assertBoundsContainDistance(metric, rootedTrees.get(i), rootedTrees.get(i + 1));
+            }
+        }
+    }
+
+    @Test
+    void getDistanceBounds_sharedClades_areTight() throws TreeCmpException {
+        var t1 = TestTreeFactory.tenLeavesBinaryUnrootedTree1();
+
+        assertArrayEquals(new double[]{0, 0}, new UMASTMetric().getDistanceBounds(t1, t1));
+        assertArrayEquals(new double[]{0, 0}, new QuartetMetricLong().getDistanceBounds(t1, t1));
+        assertArrayEquals(new double[]{0, 0}, new MatchingSplitMetric().getDistanceBounds(t1, t1));
+    }
+
+    @Test
+    void nearest_umast_equalToExhaustiveSearch() throws TreeCmpException {
+        var metric = new UMASTMetric();
+        var trees = TestTreeFactory.randomTrees(60, 12, RandomTreeGenerator.Model.YULE, false, 3, 0.5);
+        var query = TestTreeFactory.randomTrees(1, 12, RandomTreeGenerator.Model.YULE, false, 4, 0.5).get(0);
+        List<Neighbor> all = new ArrayList<>();
+        for (int t = 0; t < trees.size(); t++) {
+            all.add(new Neighbor(t, metric.getDistance(query, trees.get(t))));
+        }
+        Collections.sort(all);
+        var cascade = new CascadeEvaluator(metric);
+
+        var nearest = cascade.nearest(query, trees, 5);
+
+        assertEquals(all.subList(0, 5), nearest);
+    }
+
+    @Test
+    void nearest_matchingSplit_equalToExhaustiveSearch() throws TreeCmpException {
+        var metric = new MatchingSplitMetric();
+        var trees = TestTreeFactory.randomTrees(80, 12, RandomTreeGenerator.Model.YULE, false, 5, 0.5);
+        var query = TestTreeFactory.randomTrees(1, 12, RandomTreeGenerator.Model.YULE, false, 6, 0.5).get(0);
+        List<Neighbor> all = new ArrayList<>();
+        for (int t = 0; t < trees.size(); t++) {
+            all.add(new Neighbor(t, metric.getDistance(query, trees.get(t))));
+        }
+        Collections.sort(all);
+        var cascade = new CascadeEvaluator(metric);
+
+        var nearest = cascade.nearest(query, trees, 3);
+
+        assertEquals(all.subList(0, 3), nearest);
+        assertTrue(cascade.getExactEvaluationCount() < trees.size(), "" + cascade.getExactEvaluationCount());
+    }
+
+    @Test
+    void withinDistance_equalToExhaustiveSearch() throws TreeCmpException {
+        var metric = new QuartetMetricLong();
+        var trees = TestTreeFactory.randomTrees(40, 12, RandomTreeGenerator.Model.YULE, false, 7, 0.5);
+        var query = trees.get(0);
+        List<Integer> expected = new ArrayList<>();
+        for (int t = 0; t < trees.size(); t++) {
+            if (metric.getDistance(query, trees.get(t)) <= 150) {
+                expected.add(t);
+            }
+        }
+
+        var found = new CascadeEvaluator(metric).withinDistance(query, trees, 150);
+
+        assertEquals(expected, found);
+    }
+
+    @Test
+    void compareDistances_agreesWithExactDistances() throws TreeCmpException {
+        var metric = new MatchingClusterMetric();
+        var trees = TestTreeFactory.randomTrees(12, 12, RandomTreeGenerator.Model.YULE, true, 8, 0.5);
+        var cascade = new CascadeEvaluator(metric);
+
+        for (int i = 1; i + 1 < trees.size(); i++) {
+            double da = metric.getDistance(trees.get(0), trees.get(i));
+            double db = metric.getDistance(trees.get(0), trees.get(i + 1));
+            assertEquals(Integer.signum(Double.compare(da, db)),
+                    Integer.signum(cascade.compareDistances(trees.get(0), trees.get(i), trees.get(i + 1))));
+        }
+    }
+
+    @Test
+    void isWithin_metricWithoutBounds_usesExactDistance() throws TreeCmpException {
+        var cascade = new CascadeEvaluator(new RFMetric());
+        var t1 = TestTreeFactory.tenLeavesBinaryRootedTree1();
+        var t2 = TestTreeFactory.tenLeavesBinaryRootedTree2();
+
+        assertTrue(cascade.isWithin(t1, t2, 8));
+        assertFalse(cascade.isWithin(t1, t2, 7));
+        assertEquals(0, cascade.getBoundEvaluationCount());
+        assertEquals(2, cascade.getExactEvaluationCount());
+    }
+}
@@ -0,0 +1,93 @@
+package treecmp.metrics;
+
+import org.junit.jupiter.api.Test;
+import pal.tree.Tree;
+import treecmp.common.TreeCmpException;
+import treecmp.metrics.topological.MatchingClusterMetric;
+import treecmp.metrics.topological.RFClusterMetric;
+import treecmp.metrics.topological.RFMetric;
+import treecmp.metrics.weighted.RFWeightMetric;
+import treecmp.metrics.util.TestTreeFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeduplicatedComparisonTest {
+
+    @Test
+    void compare_repeatedTopologies_equalToPairwiseDistances() throws TreeCmpException {
+        List<Metric> metrics = List.of(new RFMetric(), new MatchingClusterMetric(), new RFWeightMetric());
+        var trees = List.of(TestTreeFactory.tenLeavesWeightedBinaryRootedTree1(),
+                TestTreeFactory.tenLeavesBinaryRootedTree2(),
+                TestTreeFactory.tenLeavesWeightedBinaryRootedTree1().getCopy(),
+                TestTreeFactory.tenLeavesWeightedBinaryRootedTree2(),
+                TestTreeFactory.tenLeavesBinaryRootedTree2().getCopy());
+        var comparison = new DeduplicatedComparison(metrics);
+
+        var result = comparison.compare(trees);
+
+        assertEquals(3, result.getGroups().getTopologyCount());
+        assertArrayEquals(new int[]{0, 2}, result.getGroups().getMembers(0));
+        assertEquals(2, result.getGroups().getMultiplicity(1));
+        assertTrue(result.isDeduplicated(0));
+        assertFalse(result.isDeduplicated(2));
+        for (int m = 0; m < metrics.size(); m++) {
+            var matrix = result.getMatrix(m);
+            double sum = 0.0;
+            for (int i = 0; i < trees.size(); i++) {
+                for (int j = i + 1; j < trees.size(); j++) {
+                    double expected = metrics.get(m).getDistance(trees.get(i), trees.get(j));
+                    assertEquals(expected, matrix[i][j], 1e-9);
+                    assertEquals(expected, matrix[j][i], 1e-9);
+                    sum += expected;
+                }
+            }
+            assertEquals(sum / 10, result.getMeanDistance(m), 1e-9);
+        }
+    }
+
+    @Test
+    void compare_manyTreesTopologicalMetricsOnly_pairCountAboveIntRange() throws TreeCmpException {
+        var t1 = TestTreeFactory.fourLeavesTree1();
+        var t2 = TestTreeFactory.fourLeavesTree2();
+        int n = 50000;
+        List<Tree> trees = new ArrayList<Tree>();
+        for (int i = 0; i < n; i++) {
+            trees.add((i % 5 == 0) ? t2 : t1);
+        }
+        var metric = new RFClusterMetric();
+        var comparison = new DeduplicatedComparison(List.of(metric));
+
+        var result = comparison.compare(trees);
+
+        double d = metric.getDistance(t1, t2);
+        assertEquals(2, result.getGroups().getTopologyCount());
+        assertEquals(d, result.getDistance(0, 0, n - 1));
+        double pairs = (double) n * (n - 1) / 2;
+        assertEquals(40000.0 * 10000.0 * d / pairs, result.getMeanDistance(0), 1e-12);
+    }
+
+    @Test
+    void compare_weightedPairsAboveArrayRange_throwsException() {
+        var t1 = TestTreeFactory.fourLeavesTree1();
+        List<Tree> trees = new ArrayList<Tree>();
+        for (int i = 0; i < 70000; i++) {
+            trees.add(t1);
+        }
+        var comparison = new DeduplicatedComparison(List.of(new RFMetric(), new RFWeightMetric()));
+
+        assertThrows(IllegalArgumentException.class, () -> comparison.compare(trees));
+    }
+
+    @Test
+    void getTopologyMatrix_weightedMetric_throwsException() throws TreeCmpException {
+        var comparison = new DeduplicatedComparison(List.of(new RFMetric(), new RFWeightMetric()));
+
+        var result = comparison.compare(List.of(TestTreeFactory.fourLeavesTree1(), TestTreeFactory.fourLeavesTree2()));
+
+        assertEquals(2, result.getTopologyMatrix(0).length);
+        assertThrows(IllegalArgumentException.class, () -> result.getTopologyMatrix(1));
+    }
+}
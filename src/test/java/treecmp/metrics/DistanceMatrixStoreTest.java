@@ -0,0 +1,64 @@
+package treecmp.metrics;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DistanceMatrixStoreTest {
+
+    @TempDir
+    File dir;
+
+    @Test
+    void get_allCellTypes_returnsStoredDistances() throws IOException {
+        for (var cellType : DistanceMatrixStore.CellType.values()) {
+            var store = DistanceMatrixStore.create(new File(dir, cellType + ".bin"), 7, 2, 3, cellType, 2.0);
+            for (int i = 0; i < 7; i++) {
+                for (int j = i + 1; j < 7; j++) {
+                    store.set(0, i, j, 0.5 * (i + j));
+                    store.set(1, j, i, 10 * i + j);
+                }
+            }
+
+            for (int i = 0; i < 7; i++) {
+                for (int j = 0; j < 7; j++) {
+                    assertEquals((i == j) ? 0.0 : 0.5 * (i + j), store.get(0, j, i));
+                    assertEquals((i == j) ? 0.0 : 10 * Math.min(i, j) + Math.max(i, j), store.get(1, i, j));
+                }
+            }
+            store.close();
+        }
+    }
+
+    @Test
+    void open_reopenedStore_keepsDistancesAndCompleteBlocks() throws IOException {
+        var file = new File(dir, "matrix.bin");
+        var store = DistanceMatrixStore.create(file, 10, 1, 4, DistanceMatrixStore.CellType.FLOAT, 1.0);
+        store.set(0, 8, 9, 1.25);
+        store.setBlockComplete(2);
+        store.close();
+
+        var reopened = DistanceMatrixStore.open(file, false);
+
+        assertEquals(10, reopened.getSize());
+        assertEquals(3, reopened.getBlockCount());
+        assertEquals(10, reopened.getBlockEnd(2));
+        assertEquals(1, reopened.getCompleteBlockCount());
+        assertTrue(reopened.isBlockComplete(2));
+        assertFalse(reopened.isComplete());
+        assertEquals(1.25, reopened.get(0, 9, 8));
+    }
+
+    @Test
+    void set_distanceOutOfFixedRange_throwsException() throws IOException {
+        var store = DistanceMatrixStore.create(new File(dir, "fixed.bin"), 3, 1, 1, DistanceMatrixStore.CellType.FIXED, 4.0);
+
+        assertThrows(IllegalArgumentException.class, () -> store.set(0, 0, 1, 1e12));
+        store.set(0, 0, 2, Double.NaN);
+        assertTrue(Double.isNaN(store.get(0, 2, 0)));
+    }
+}
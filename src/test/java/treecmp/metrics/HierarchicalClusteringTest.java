@@ -0,0 +1,140 @@
+package treecmp.metrics;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import pal.tree.ClusterTree;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HierarchicalClusteringTest {
+
+    @TempDir
+    File dir;
+
+    private DistanceMatrixStore randomPointStore(double[][] points) throws IOException {
+        int n = points.length;
+        var store = DistanceMatrixStore.create(new File(dir, "matrix.bin"), n, 1, 8,
+                DistanceMatrixStore.CellType.DOUBLE, 1.0);
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                store.set(0, i, j, Math.hypot(points[i][0] - points[j][0], points[i][1] - points[j][1]));
+            }
+        }
+        for (int b = 0; b < store.getBlockCount(); b++) {
+            store.setBlockComplete(b);
+        }
+        return store;
+    }
+
+    private static double[][] randomPoints(int n, long seed) {
+        var random = new Random(seed);
+        double[][] points = new double[n][];
+        for (int i = 0; i < n; i++) {
+            points[i] = new double[]{random.nextDouble(), random.nextDouble()};
+        }
+        return points;
+    }
+
+    /**
+     * The classic algorithm merging the closest pair of clusters, on the full matrix.
+     */
+    private static double[] naiveHeights(DistanceMatrixStore store, ClusterTree.ClusteringMethod method) {
+        int n = store.getSize();
+        double[][] d = new double[n][n];
+        for (int i = 0; i < n; i++) {
+            store.getRow(0, i, d[i]);
+        }
+        int[] size = new int[n];
+        Arrays.fill(size, 1);
+        List<Integer> active = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            active.add(i);
+        }
+        double[] heights = new double[n - 1];
+        for (int s = 0; s < n - 1; s++) {
+            int a = -1, b = -1;
+            for (int x : active) {
+                for (int y : active) {
+                    if (x < y && (a < 0 || d[x][y] < d[a][b])) {
+                        a = x;
+                        b = y;
+                    }
+                }
+            }
+            heights[s] = d[a][b];
+            for (int x : active) {
+                if (x != a && x != b) {
+                    d[a][x] = d[x][a] = method.computeDistance(size[x], size[a], d[a][x], size[b], d[b][x]);
+                }
+            }
+            size[a] += size[b];
+            active.remove(Integer.valueOf(b));
+        }
+        return heights;
+    }
+
+    @Test
+    void cluster_randomPoints_equalToClassicAlgorithm() throws IOException {
+        var store = randomPointStore(randomPoints(40, 1));
+
+        for (var method : List.of(ClusterTree.UPGMA, ClusterTree.COMPLETE_LINKAGE, ClusterTree.SINGLE_LINKAGE)) {
+            var dendrogram = new HierarchicalClustering(method).cluster(store, 0);
+
+            var expected = naiveHeights(store, method);
+            assertEquals(39, dendrogram.getMergeCount());
+            for (int s = 0; s < 39; s++) {
+                assertEquals(expected[s], dendrogram.getHeight(s), 1e-12, method.getMethodName());
+            }
+            assertEquals(40, dendrogram.getSize(40 + 38));
+        }
+    }
+
+    @Test
+    void cut_separatedGroups_returnsGroups() throws IOException {
+        var points = randomPoints(30, 2);
+        for (int i = 0; i < 30; i++) {
+            points[i][0] += 10 * (i % 3);
+        }
+        var store = randomPointStore(points);
+
+        var dendrogram = new HierarchicalClustering().cluster(store, 0, new File(dir, "work.bin"));
+
+        var clusters = dendrogram.cut(3);
+        for (int i = 0; i < 30; i++) {
+            assertEquals(i % 3, clusters[i]);
+        }
+        assertArrayEquals(clusters, dendrogram.cutAtHeight(5.0));
+        var singletons = dendrogram.cut(30);
+        for (int i = 0; i < 30; i++) {
+            assertEquals(i, singletons[i]);
+        }
+    }
+
+    @Test
+    void cluster_mergeIds_referToEarlierMerges() throws IOException {
+        var dendrogram = new HierarchicalClustering().cluster(randomPointStore(randomPoints(25, 3)), 0);
+
+        for (int s = 0; s < dendrogram.getMergeCount(); s++) {
+            assertTrue(dendrogram.getLeft(s) < dendrogram.getRight(s));
+            assertTrue(dendrogram.getRight(s) < 25 + s);
+            if (s > 0) {
+                assertTrue(dendrogram.getHeight(s - 1) <= dendrogram.getHeight(s));
+            }
+        }
+    }
+
+    @Test
+    void cluster_incompleteStore_throws() throws IOException {
+        var store = DistanceMatrixStore.create(new File(dir, "matrix.bin"), 10, 1, 4,
+                DistanceMatrixStore.CellType.FLOAT, 1.0);
+
+        assertThrows(IllegalArgumentException.class, () -> new HierarchicalClustering().cluster(store, 0));
+    }
+}
@@ -0,0 +1,70 @@
+package treecmp.metrics;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import treecmp.common.RandomTreeGenerator;
+import treecmp.common.TreeCmpException;
+import treecmp.metrics.topological.MatchingClusterMetric;
+import treecmp.metrics.topological.RFMetric;
+import treecmp.metrics.util.TestTreeFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IncrementalComparisonTest {
+
+    @TempDir
+    File dir;
+
+    private static IncrementalComparison comparison() {
+        var comparison = new IncrementalComparison(() -> List.of(new RFMetric(), new MatchingClusterMetric()));
+        comparison.setThreadCount(3);
+        return comparison;
+    }
+
+    @Test
+    void append_store_equalToPairwiseDistances() throws TreeCmpException, IOException {
+        var trees = TestTreeFactory.randomTrees(30, 8, RandomTreeGenerator.Model.YULE, true, 5);
+        var store = DistanceMatrixStore.create(new File(dir, "matrix.bin"), 5, 2, 3, DistanceMatrixStore.CellType.DOUBLE, 1.0);
+        var comparison = comparison();
+
+        store = comparison.append(store, trees.subList(0, 5));
+        store.set(0, 0, 1, -1.0);
+        store = comparison.append(store, trees.subList(0, 11));
+        store = comparison.append(store, trees);
+
+        assertEquals(30, store.getSize());
+        assertTrue(store.isComplete());
+        // the distances of complete blocks are not computed again
+        assertEquals(-1.0, store.get(0, 1, 0));
+        for (int i = 0; i < trees.size(); i++) {
+            for (int j = i + 1; j < trees.size(); j++) {
+                if (j > 1) {
+                    assertEquals(new RFMetric().getDistance(trees.get(i), trees.get(j)), store.get(0, i, j));
+                }
+                assertEquals(new MatchingClusterMetric().getDistance(trees.get(i), trees.get(j)), store.get(1, j, i));
+            }
+        }
+        store.close();
+    }
+
+    @Test
+    void append_matrices_equalToPairwiseDistances() throws TreeCmpException {
+        var trees = TestTreeFactory.randomTrees(40, 8, RandomTreeGenerator.Model.YULE, true, 5);
+        var comparison = comparison();
+
+        var matrices = comparison.append(new double[2][0][0], trees.subList(0, 17));
+        matrices = comparison.append(matrices, trees);
+
+        for (int i = 0; i < trees.size(); i++) {
+            assertEquals(0.0, matrices[0][i][i]);
+            for (int j = i + 1; j < trees.size(); j++) {
+                assertEquals(new RFMetric().getDistance(trees.get(i), trees.get(j)), matrices[0][j][i]);
+                assertEquals(new MatchingClusterMetric().getDistance(trees.get(i), trees.get(j)), matrices[1][i][j]);
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package treecmp.metrics;
+
+import org.junit.jupiter.api.Test;
+import pal.tree.Tree;
+import treecmp.common.RandomTreeGenerator;
+import treecmp.common.TreeCmpException;
+import treecmp.metrics.topological.MatchingSplitMetric;
+import treecmp.metrics.topological.RFMetric;
+import treecmp.metrics.util.TestTreeFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KMedoidsClusteringTest {
+
+    private static double cost(double[][] d, int[] medoids) {
+        double cost = 0;
+        for (int j = 0; j < d.length; j++) {
+            double min = Double.POSITIVE_INFINITY;
+            for (int m : medoids) {
+                min = Math.min(min, d[m][j]);
+            }
+            cost += min;
+        }
+        return cost;
+    }
+
+    @Test
+    void pam_separatedPoints_findsOptimalMedoids() {
+        var random = new Random(1);
+        int n = 15;
+        double[] x = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = 100 * (i % 3) + random.nextDouble() * 10;
+        }
+        double[][] d = new double[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                d[i][j] = Math.abs(x[i] - x[j]);
+            }
+        }
+        double optimum = Double.POSITIVE_INFINITY;
+        for (int a = 0; a < n; a++) {
+            for (int b = a + 1; b < n; b++) {
+                for (int c = b + 1; c < n; c++) {
+                    optimum = Math.min(optimum, cost(d, new int[]{a, b, c}));
+                }
+            }
+        }
+
+        var medoids = KMedoidsClustering.pam(d, 3);
+
+        assertEquals(optimum, cost(d, medoids), 1e-9);
+        assertEquals(3, medoids.length);
+    }
+
+    @Test
+    void cluster_twoIslands_separatesThem() throws TreeCmpException {
+        var base = TestTreeFactory.randomTrees(2, 12, RandomTreeGenerator.Model.YULE, false, 2);
+        List<Tree> trees = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            trees.add(base.get(i % 2).getCopy());
+        }
+        var clustering = new KMedoidsClustering(RFMetric::new);
+        clustering.setThreadCount(3);
+
+        var result = clustering.cluster(trees, 2);
+
+        assertEquals(0.0, result.getCost());
+        var assignment = result.getAssignment();
+        for (int i = 2; i < trees.size(); i++) {
+            assertEquals(assignment[i % 2], assignment[i]);
+        }
+        assertNotEquals(assignment[0], assignment[1]);
+    }
+
+    @Test
+    void cluster_clara_assignsNearestMedoid() throws TreeCmpException {
+        var trees = TestTreeFactory.randomTrees(150, 12, RandomTreeGenerator.Model.YULE, false, 3);
+        var clustering = new KMedoidsClustering(MatchingSplitMetric::new);
+        clustering.setThreadCount(4);
+        clustering.setSampleSize(30);
+        clustering.setSampleCount(3);
+
+        var result = clustering.cluster(trees, 4);
+
+        var metric = new MatchingSplitMetric();
+        var medoids = result.getMedoids();
+        var assignment = result.getAssignment();
+        double cost = 0;
+        for (int i = 0; i < trees.size(); i++) {
+            double own = metric.getDistance(trees.get(medoids[assignment[i]]), trees.get(i));
+            assertEquals(own, result.getDistance(i), 1e-9);
+            for (int m : medoids) {
+                assertTrue(own <= metric.getDistance(trees.get(m), trees.get(i)) + 1e-9);
+            }
+            cost += own;
+        }
+        assertEquals(cost, result.getCost(), 1e-6);
+        assertTrue(clustering.getEvaluationCount() < trees.size() * (trees.size() - 1) / 2,
+                "" + clustering.getEvaluationCount());
+    }
+
+    @Test
+    void cluster_smallCollection_runsPamOnAllTrees() throws TreeCmpException {
+        var trees = TestTreeFactory.randomTrees(20, 12, RandomTreeGenerator.Model.YULE, false, 4);
+        var rf = new RFMetric();
+        double[][] d = new double[20][20];
+        for (int i = 0; i < 20; i++) {
+            for (int j = 0; j < 20; j++) {
+                d[i][j] = rf.getDistance(trees.get(i), trees.get(j));
+            }
+        }
+        var clustering = new KMedoidsClustering(RFMetric::new);
+
+        var result = clustering.cluster(trees, 3);
+
+        assertArrayEquals(KMedoidsClustering.pam(d, 3), result.getMedoids());
+        assertEquals(cost(d, result.getMedoids()), result.getCost(), 1e-9);
+        assertEquals(190, clustering.getEvaluationCount());
+    }
+
+    @Test
+    void cluster_tooManyClusters_throws() {
+        var trees = TestTreeFactory.randomTrees(3, 12, RandomTreeGenerator.Model.YULE, false, 5);
+
+        assertThrows(IllegalArgumentException.class, () -> new KMedoidsClustering(RFMetric::new).cluster(trees, 4));
+    }
+}
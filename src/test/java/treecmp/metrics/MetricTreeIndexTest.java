@@ -0,0 +1,44 @@
+package treecmp.metrics;
+
+import org.junit.jupiter.api.Test;
+import treecmp.common.Neighbor;
+import treecmp.common.RandomTreeGenerator;
+import treecmp.common.TreeCmpException;
+import treecmp.metrics.topological.MatchingSplitMetric;
+import treecmp.metrics.util.TestTreeFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricTreeIndexTest {
+
+    @Test
+    void nearest_randomTrees_equalToExhaustiveSearch() throws TreeCmpException {
+        var metric = new MatchingSplitMetric();
+        var trees = TestTreeFactory.randomTrees(200, 12, RandomTreeGenerator.Model.YULE, true, 1);
+        var index = new MetricTreeIndex(metric, trees, 2);
+
+        for (var query : TestTreeFactory.randomTrees(5, 12, RandomTreeGenerator.Model.YULE, true, 3)) {
+            List<Neighbor> all = new ArrayList<>();
+            for (int t = 0; t < trees.size(); t++) {
+                all.add(new Neighbor(t, metric.getDistance(query, trees.get(t))));
+            }
+            Collections.sort(all);
+
+            assertEquals(all.subList(0, 7), index.nearest(query, 7));
+            double radius = all.get(30).getDistance();
+            assertEquals(all.stream().filter(n -> n.getDistance() <= radius).count(),
+                    index.withinDistance(query, radius).size());
+        }
+    }
+
+    @Test
+    void nearest_emptyIndex_returnsNoTrees() throws TreeCmpException {
+        var index = new MetricTreeIndex(new MatchingSplitMetric(), List.of(), 0);
+
+        assertTrue(index.nearest(TestTreeFactory.randomTrees(1, 12, RandomTreeGenerator.Model.YULE, true, 4).get(0), 3).isEmpty());
+    }
+}
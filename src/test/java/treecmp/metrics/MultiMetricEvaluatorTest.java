@@ -0,0 +1,40 @@
+package treecmp.metrics;
+
+import org.junit.jupiter.api.Test;
+import treecmp.common.TreeCmpException;
+import treecmp.common.TreePairContext;
+import treecmp.metrics.topological.*;
+import treecmp.metrics.util.TestTreeFactory;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MultiMetricEvaluatorTest {
+
+    @Test
+    void getDistances_tenLeavesTrees_equalToSeparateDistances() throws TreeCmpException {
+        List<Metric> metrics = List.of(new RFMetric(), new RFClusterMetric(), new MatchingClusterMetric(),
+                new MatchingSplitMetric(), new TripletMetric(), new MatchingPairMetric(),
+                new MatchingTripletMetric(), new CopheneticL2Metric());
+        var evaluator = new MultiMetricEvaluator(metrics);
+        var t1 = TestTreeFactory.tenLeavesBinaryRootedTree1();
+        var t2 = TestTreeFactory.tenLeavesBinaryRootedTree2();
+
+        var distances = evaluator.getDistances(t1, t2);
+
+        assertEquals(metrics.size(), distances.length);
+        for (int i = 0; i < metrics.size(); i++) {
+            assertEquals(metrics.get(i).getDistance(t1, t2), distances[i], metrics.get(i).getClass().getSimpleName());
+        }
+    }
+
+    @Test
+    void getSplits_sameContext_computedOnce() {
+        var context = new TreePairContext(TestTreeFactory.fourLeavesTree1(), TestTreeFactory.fourLeavesTree2());
+
+        assertSame(context.getSplits1(), context.getSplits1());
+        assertSame(context.getClustIntersectMatrix(), context.getClustIntersectMatrix());
+        assertSame(context.getLcaMatrix2(), context.getLcaMatrix2());
+    }
+}
@@ -0,0 +1,79 @@
+package treecmp.metrics;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import treecmp.common.RandomTreeGenerator;
+import treecmp.common.TreeCmpException;
+import treecmp.metrics.topological.MatchingSplitMetric;
+import treecmp.metrics.topological.RFMetric;
+import treecmp.metrics.util.TestTreeFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardedComparisonTest {
+
+    @TempDir
+    File dir;
+
+    private static ShardedComparison shard(int s) {
+        var shard = new ShardedComparison(() -> List.of(new RFMetric(), new MatchingSplitMetric()), s, 3);
+        shard.setBlockSize(2);
+        shard.setThreadCount(2);
+        return shard;
+    }
+
+    @Test
+    void merge_allShards_equalToPairwiseDistances() throws TreeCmpException, IOException {
+        var trees = TestTreeFactory.randomTrees(17, 8, RandomTreeGenerator.Model.UNIFORM, false, 11);
+        List<File> files = new ArrayList<>();
+        for (int s = 0; s < 3; s++) {
+            files.add(ShardedComparison.getShardFile(dir, "rf", s, 3));
+            assertEquals(3, shard(s).run(trees, files.get(s)));
+            assertEquals(0, shard(s).run(trees, files.get(s)));
+        }
+
+        var merged = ShardedComparison.merge(files, new File(dir, "rf.bin"));
+
+        assertTrue(merged.isComplete());
+        for (int i = 0; i < trees.size(); i++) {
+            for (int j = i + 1; j < trees.size(); j++) {
+                assertEquals(new RFMetric().getDistance(trees.get(i), trees.get(j)), merged.get(0, i, j));
+                assertEquals(new MatchingSplitMetric().getDistance(trees.get(i), trees.get(j)), merged.get(1, j, i));
+            }
+        }
+        var csv = new StringWriter();
+        merged.writeCsv(csv, ";");
+        var lines = csv.toString().split("\n");
+        assertEquals(1 + 17 * 16 / 2, lines.length);
+        assertEquals("1;2;" + merged.get(0, 0, 1) + ";" + merged.get(1, 0, 1), lines[1]);
+    }
+
+    @Test
+    void merge_missingShard_throwsException() throws TreeCmpException, IOException {
+        var trees = TestTreeFactory.randomTrees(9, 8, RandomTreeGenerator.Model.UNIFORM, false, 11);
+        var file0 = ShardedComparison.getShardFile(dir, "rf", 0, 3);
+        var file1 = ShardedComparison.getShardFile(dir, "rf", 1, 3);
+        shard(0).run(trees, file0);
+        shard(1).run(trees, file1);
+
+        try (var store = DistanceMatrixStore.open(file0, false)) {
+            assertTrue(shard(0).isComplete(store));
+            assertFalse(shard(2).isComplete(store));
+        }
+        assertThrows(TreeCmpException.class, () -> ShardedComparison.merge(List.of(file0, file1), new File(dir, "rf.bin")));
+    }
+
+    @Test
+    void run_fileOfOtherComparison_throwsException() throws TreeCmpException, IOException {
+        var file = ShardedComparison.getShardFile(dir, "rf", 0, 3);
+        shard(0).run(TestTreeFactory.randomTrees(9, 8, RandomTreeGenerator.Model.UNIFORM, false, 11), file);
+
+        assertThrows(TreeCmpException.class, () -> shard(0).run(TestTreeFactory.randomTrees(10, 8, RandomTreeGenerator.Model.UNIFORM, false, 11), file));
+    }
+}
@@ -0,0 +1,93 @@
+package treecmp.metrics;
+
+import org.junit.jupiter.api.Test;
+import pal.tree.Tree;
+import treecmp.common.Neighbor;
+import treecmp.common.RandomTreeGenerator;
+import treecmp.common.SplitSketch;
+import treecmp.common.TreeCmpException;
+import treecmp.metrics.topological.MatchingSplitMetric;
+import treecmp.metrics.topological.RFMetric;
+import treecmp.metrics.util.TestTreeFactory;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SketchIndexTest {
+
+    @Test
+    void getCandidateProbability_sCurve() {
+        assertEquals(1.0, SketchIndex.getCandidateProbability(1.0, 16, 4), 1e-12);
+        assertEquals(0.0, SketchIndex.getCandidateProbability(0.0, 16, 4), 1e-12);
+        assertTrue(SketchIndex.getCandidateProbability(0.8, 16, 4) > 0.99);
+        assertTrue(SketchIndex.getCandidateProbability(0.2, 16, 4) < 0.03);
+    }
+
+    @Test
+    void withinDistance_duplicates_foundWithFewEvaluations() throws TreeCmpException {
+        var trees = TestTreeFactory.randomTrees(200, 16, RandomTreeGenerator.Model.YULE, false, 1);
+        var query = trees.get(17);
+        trees.add(query.getCopy());
+        var index = new SketchIndex(new RFMetric(), 16, 4);
+        for (Tree t : trees) {
+            index.add(t);
+        }
+
+        var found = index.withinDistance(query, trees, 0);
+
+        assertEquals(List.of(new Neighbor(17, 0), new Neighbor(200, 0)), found);
+        assertTrue(index.getEvaluationCount() < 20, "" + index.getEvaluationCount());
+    }
+
+    @Test
+    void nearest_candidates_equalToExactDistancesOfCandidates() throws TreeCmpException {
+        var trees = TestTreeFactory.randomTrees(100, 16, RandomTreeGenerator.Model.YULE, false, 2);
+        var metric = new MatchingSplitMetric();
+        var index = new SketchIndex(metric, 32, 2);
+        for (Tree t : trees) {
+            index.add(t);
+        }
+        var query = trees.get(5);
+
+        var nearest = index.nearest(query, trees, 3);
+
+        int[] candidates = index.getCandidates(index.getSketch(5));
+        assertEquals(Math.min(3, candidates.length), nearest.size());
+        assertEquals(new Neighbor(5, 0), nearest.get(0));
+        for (Neighbor n : nearest) {
+            assertEquals(metric.getDistance(query, trees.get(n.getIndex())), n.getDistance(), 1e-9);
+        }
+    }
+
+    @Test
+    void getCandidatePairs_containsDuplicatePairs() {
+        var trees = TestTreeFactory.randomTrees(50, 16, RandomTreeGenerator.Model.YULE, false, 3);
+        var index = new SketchIndex(new RFMetric(), 8, 8);
+        for (Tree t : trees) {
+            index.add(t);
+        }
+        index.add(trees.get(3).getCopy());
+        index.add(trees.get(40).getCopy());
+
+        var pairs = index.getCandidatePairs();
+
+        assertTrue(pairs.stream().anyMatch(p -> p[0] == 3 && p[1] == 50));
+        assertTrue(pairs.stream().anyMatch(p -> p[0] == 40 && p[1] == 51));
+        for (int i = 1; i < pairs.size(); i++) {
+            var a = pairs.get(i - 1);
+            var b = pairs.get(i);
+            assertTrue(a[0] < b[0] || (a[0] == b[0] && a[1] < b[1]));
+        }
+    }
+
+    @Test
+    void add_incompatibleSketch_throws() {
+        var trees = TestTreeFactory.randomTrees(2, 16, RandomTreeGenerator.Model.YULE, false, 4);
+        var index = new SketchIndex(new RFMetric(), 4, 4);
+        index.add(SplitSketch.create(trees.get(0), 16, 64, 1));
+
+        assertThrows(IllegalArgumentException.class, () -> index.add(SplitSketch.create(trees.get(1), 16, 64, 2)));
+        assertThrows(IllegalArgumentException.class, () -> index.add(SplitSketch.create(trees.get(1), 8, 64, 1)));
+    }
+}
@@ -0,0 +1,86 @@
+package treecmp.metrics;
+
+import org.junit.jupiter.api.Test;
+import pal.tree.Tree;
+import treecmp.common.RandomTreeGenerator;
+import treecmp.common.TreeCmpException;
+import treecmp.metrics.topological.MatchingSplitMetric;
+import treecmp.metrics.topological.RFMetric;
+import treecmp.metrics.util.TestTreeFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamingComparisonTest {
+
+    private static StreamingComparison comparison() {
+        var comparison = new StreamingComparison(() -> List.of(new RFMetric(), new MatchingSplitMetric()));
+        comparison.setThreadCount(3);
+        comparison.setBatchSize(4);
+        return comparison;
+    }
+
+    private static void assertPair(List<double[]> pairs, int p, Tree t1, int i, Tree t2, int j) throws TreeCmpException {
+        var pair = pairs.get(p);
+        assertEquals(i, (int) pair[0]);
+        assertEquals(j, (int) pair[1]);
+        assertEquals(new RFMetric().getDistance(t1, t2), pair[2]);
+        assertEquals(new MatchingSplitMetric().getDistance(t1, t2), pair[3]);
+    }
+
+    @Test
+    void compareWindow_randomTrees_pairsInOrderWithDistances() throws TreeCmpException {
+        var trees = TestTreeFactory.randomTrees(30, 9, RandomTreeGenerator.Model.UNIFORM, false, 1);
+        List<double[]> pairs = new ArrayList<>();
+
+        long count = comparison().compareWindow(trees.iterator(), 3,
+                (i, j, d) -> pairs.add(new double[]{i, j, d[0], d[1]}));
+
+        assertEquals(84, count);
+        assertEquals(84, pairs.size());
+        int p = 0;
+        for (int j = 1; j < trees.size(); j++) {
+            for (int i = Math.max(0, j - 3); i < j; i++) {
+                assertPair(pairs, p++, trees.get(i), i, trees.get(j), j);
+            }
+        }
+    }
+
+    @Test
+    void compareConsecutive_oneTree_comparesNothing() throws TreeCmpException {
+        long count = comparison().compareConsecutive(TestTreeFactory.randomTrees(1, 9, RandomTreeGenerator.Model.UNIFORM, false, 2).iterator(), (i, j, d) -> fail());
+
+        assertEquals(0, count);
+    }
+
+    @Test
+    void compareWithReferences_randomTrees_pairsInOrderWithDistances() throws TreeCmpException {
+        var references = TestTreeFactory.randomTrees(2, 9, RandomTreeGenerator.Model.UNIFORM, false, 3);
+        var trees = TestTreeFactory.randomTrees(10, 9, RandomTreeGenerator.Model.UNIFORM, false, 4);
+        List<double[]> pairs = new ArrayList<>();
+
+        comparison().compareWithReferences(references, trees.iterator(),
+                (i, j, d) -> pairs.add(new double[]{i, j, d[0], d[1]}));
+
+        assertEquals(20, pairs.size());
+        for (int k = 0; k < trees.size(); k++) {
+            for (int r = 0; r < references.size(); r++) {
+                assertPair(pairs, 2 * k + r, references.get(r), r, trees.get(k), k);
+            }
+        }
+    }
+
+    @Test
+    void comparePaired_differentTreeNumbers_throwsExceptionAfterCommonPairs() {
+        var trees1 = TestTreeFactory.randomTrees(7, 9, RandomTreeGenerator.Model.UNIFORM, false, 5);
+        var trees2 = TestTreeFactory.randomTrees(6, 9, RandomTreeGenerator.Model.UNIFORM, false, 6);
+        List<double[]> pairs = new ArrayList<>();
+
+        assertThrows(TreeCmpException.class, () -> comparison().comparePaired(trees1.iterator(), trees2.iterator(),
+                (i, j, d) -> pairs.add(new double[]{i, j, d[0], d[1]})));
+
+        assertEquals(6, pairs.size());
+    }
+}
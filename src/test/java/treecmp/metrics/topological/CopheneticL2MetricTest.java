@@ -40,4 +40,16 @@ class CopheneticL2MetricTest {
 
         assertEquals(13.2664991614216, distance,0.00000000000001);
     }
+
+    @Test
+    void getCopheneticL2Distance_100leafsTrees_equalsPairwiseDistance() {
+        var t1 = TestTreeFactory.hundredLeavesBinaryUnrootedTree1();
+        var t2 = TestTreeFactory.hundredLeavesBinaryUnrootedTree2();
+
+        var mcm = new CopheneticL2Metric();
+
+        double distance = mcm.getDistance(t1, t2);
+
+        assertEquals(mcm.getPairwiseDistance(t1, t2), distance);
+    }
 }
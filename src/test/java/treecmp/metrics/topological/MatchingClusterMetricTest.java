@@ -1,9 +1,11 @@
 package treecmp.metrics.topological;
 
 import org.junit.jupiter.api.Test;
+import treecmp.common.TreeCmpException;
+import treecmp.metrics.util.MetricContracts;
 import treecmp.metrics.util.TestTreeFactory;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.*;
 
 class MatchingClusterMetricTest {
 
@@ -40,4 +42,10 @@ class MatchingClusterMetricTest {
 
         assertEquals(23.0, distance);
     }
+
+    @Test
+    void getDistanceAtMost_randomTrees_exactOrLowerBoundAboveBound() throws TreeCmpException {
+        MetricContracts.assertDistanceAtMostContract(new MatchingClusterMetric(), true);
+        MetricContracts.assertDistanceAtMostContract(new MatchingClusterMetricO3(), true);
+    }
 }
@@ -1,9 +1,11 @@
 package treecmp.metrics.topological;
 
 import org.junit.jupiter.api.Test;
+import treecmp.common.TreeCmpException;
+import treecmp.metrics.util.MetricContracts;
 import treecmp.metrics.util.TestTreeFactory;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.*;
 
 public class MatchingSplitMetricTest {
 
@@ -54,4 +56,9 @@ public class MatchingSplitMetricTest {
         assertEquals(1392, distance);
     }
 
+    @Test
+    void getDistanceAtMost_randomTrees_exactOrLowerBoundAboveBound() throws TreeCmpException {
+        MetricContracts.assertDistanceAtMostContract(new MatchingSplitMetric(), false);
+        MetricContracts.assertDistanceAtMostContract(new MatchingSplitMetricO3(), false);
+    }
 }
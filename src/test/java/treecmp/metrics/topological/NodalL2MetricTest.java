@@ -40,4 +40,16 @@ class NodalL2MetricTest {
 
         assertEquals(18.681541692269406, distance, 0.00000000000001);
     }
+
+    @Test
+    void getNodalL2Distance_100leafsTrees_equalsPairwiseDistance() {
+        var t1 = TestTreeFactory.hundredLeavesBinaryUnrootedTree1();
+        var t2 = TestTreeFactory.hundredLeavesBinaryUnrootedTree2();
+
+        var nm = new NodalL2Metric();
+
+        double distance = nm.getDistance(t1, t2);
+
+        assertEquals(nm.getPairwiseDistance(t1, t2), distance);
+    }
 }
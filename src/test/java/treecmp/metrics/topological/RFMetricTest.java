@@ -65,4 +65,26 @@ class RFMetricTest {
 
         assertEquals(8.0, distance);
     }
+
+    @Test
+    void getDistanceAtMost_boundNotExceeded_returnsDistance() {
+        var t1 = TestTreeFactory.tenLeavesBinaryRootedTree1();
+        var t2 = TestTreeFactory.tenLeavesBinaryRootedTree2();
+        var metric = new RFMetric();
+
+        assertEquals(8.0, metric.getDistanceAtMost(t1, t2, 8.0));
+        assertEquals(8.0, metric.getDistanceAtMost(t1, t2, Double.POSITIVE_INFINITY));
+    }
+
+    @Test
+    void getDistanceAtMost_boundExceeded_returnsValueAboveBound() {
+        var t1 = TestTreeFactory.tenLeavesBinaryRootedTree1();
+        var t2 = TestTreeFactory.tenLeavesBinaryRootedTree2();
+        var metric = new RFMetric();
+
+        for (double bound = 0; bound < 8.0; bound++) {
+            double value = metric.getDistanceAtMost(t1, t2, bound);
+            assertTrue(value > bound && value <= 8.0, "bound " + bound + ": " + value);
+        }
+    }
 }
@@ -1,6 +1,9 @@
 package treecmp.metrics.topological;
 
 import org.junit.jupiter.api.Test;
+import pal.io.InputSource;
+import pal.tree.ReadTree;
+import pal.tree.TreeParseException;
 import treecmp.metrics.util.TestTreeFactory;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -40,4 +43,17 @@ class RMASTMetricTest {
 
         assertEquals(5.0, distance);
     }
+
+    @Test
+    void getRMASTDistance_treesWithCommonClades_equalsUnreducedDistance() throws TreeParseException {
+        var t1 = new ReadTree(InputSource.openString("(((1,2),(3,4)),((5,6),(7,(8,9))));"));
+        var t2 = new ReadTree(InputSource.openString("(((1,2),(3,4)),((5,7),(6,(8,9))));"));
+
+        var rm = new RMASTMetric();
+
+        double distance = rm.getDistance(t1, t2);
+
+        assertEquals(9 - RMASTMetric.crmast(t1, t2).getRMAST(), distance);
+        assertEquals(2.0, distance);
+    }
 }
@@ -1,6 +1,8 @@
 package treecmp.metrics.topological;
 
 import org.junit.jupiter.api.Test;
+import treecmp.common.TreeCmpException;
+import treecmp.metrics.util.MetricContracts;
 import treecmp.metrics.util.TestTreeFactory;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -40,4 +42,31 @@ class TripletMetricTest {
 
         assertEquals(84.0, distance);
     }
+
+    @Test
+    void getDistanceAtMost_boundNotExceeded_returnsDistance() {
+        var t1 = TestTreeFactory.tenLeavesBinaryRootedTree1();
+        var t2 = TestTreeFactory.tenLeavesBinaryRootedTree2();
+        var metric = new TripletMetric();
+
+        assertEquals(84.0, metric.getDistanceAtMost(t1, t2, 84.0));
+        assertEquals(84.0, metric.getDistanceAtMost(t1, t2, Double.POSITIVE_INFINITY));
+    }
+
+    @Test
+    void getDistanceAtMost_boundExceeded_returnsValueAboveBound() {
+        var t1 = TestTreeFactory.tenLeavesBinaryRootedTree1();
+        var t2 = TestTreeFactory.tenLeavesBinaryRootedTree2();
+        var metric = new TripletMetric();
+
+        for (double bound = 0; bound < 84.0; bound++) {
+            double value = metric.getDistanceAtMost(t1, t2, bound);
+            assertTrue(value > bound && value <= 84.0, "bound " + bound + ": " + value);
+        }
+    }
+
+    @Test
+    void getDistanceAtMost_randomTrees_exactOrLowerBoundAboveBound() throws TreeCmpException {
+        MetricContracts.assertDistanceAtMostContract(new TripletMetric(), true);
+    }
 }
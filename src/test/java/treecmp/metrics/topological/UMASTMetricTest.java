@@ -1,6 +1,9 @@
 package treecmp.metrics.topological;
 
 import org.junit.jupiter.api.Test;
+import pal.io.InputSource;
+import pal.tree.ReadTree;
+import pal.tree.TreeParseException;
 import treecmp.metrics.util.TestTreeFactory;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -40,4 +43,16 @@ class UMASTMetricTest {
 
         assertEquals(4.0, distance);
     }
+
+    @Test
+    void getUMASTDistance_treesWithCommonClades_returnsTwo() throws TreeParseException {
+        var t1 = new ReadTree(InputSource.openString("(((1,2),(3,4)),((5,6),(7,(8,9))));"));
+        var t2 = new ReadTree(InputSource.openString("(((1,2),(3,4)),((5,7),(6,(8,9))));"));
+
+        var tm = new UMASTMetric();
+
+        double distance = tm.getDistance(t1, t2);
+
+        assertEquals(2.0, distance);
+    }
 }
@@ -0,0 +1,34 @@
+package treecmp.metrics.util;
+
+import treecmp.common.RandomTreeGenerator;
+import treecmp.common.TreeCmpException;
+import treecmp.metrics.BoundedMetric;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MetricContracts {
+
+    /**
+     * Checks {@code getDistanceAtMost} on pairs of random trees with 30 leaves for bounds below,
+     * at and above the distance: the distance if it is at most the bound, otherwise a value above
+     * the bound and at most the distance.
+     */
+    public static void assertDistanceAtMostContract(BoundedMetric metric, boolean rooted) throws TreeCmpException {
+        var trees = TestTreeFactory.randomTrees(40, 30, RandomTreeGenerator.Model.UNIFORM, rooted, 7);
+
+        for (int k = 0; k + 1 < trees.size(); k += 2) {
+            var t1 = trees.get(k);
+            var t2 = trees.get(k + 1);
+            double distance = metric.getDistance(t1, t2);
+            for (double bound : new double[]{0, distance / 4, distance / 2, distance - 1, distance, distance + 1}) {
+                double value = metric.getDistanceAtMost(t1, t2, bound);
+                if (distance <= bound) {
+                    assertEquals(distance, value);
+                } else {
+                    assertTrue(value > bound && value <= distance,
+                            metric.getClass().getSimpleName() + ", bound " + bound + ": " + value);
+                }
+            }
+        }
+    }
+}
@@ -1,9 +1,14 @@
 package treecmp.metrics.util;
 
+import pal.math.MersenneTwisterFast;
 import pal.tree.ReadTree;
 import pal.tree.Tree;
 import pal.io.InputSource;
 import pal.tree.TreeParseException;
+import treecmp.common.RandomTreeGenerator;
+
+import java.util.ArrayList;
+import java.util.List;
 
 public class TestTreeFactory {
 
@@ -98,6 +103,28 @@ public class TestTreeFactory {
         return parseNewick(newick);
     }
 
+    /**
+     * Random trees on leaves "1".."leafNum" with all branch lengths 1.
+     */
+    public static List<Tree> randomTrees(int count, int leafNum, RandomTreeGenerator.Model model, boolean rooted,
+                                         long seed) {
+        return randomTrees(count, leafNum, model, rooted, seed, 0.0);
+    }
+
+    /**
+     * Random trees on leaves "1".."leafNum" with exponential branch lengths of the given mean.
+     */
+    public static List<Tree> randomTrees(int count, int leafNum, RandomTreeGenerator.Model model, boolean rooted,
+                                         long seed, double branchLengthMean) {
+        var generator = new RandomTreeGenerator(leafNum, model, rooted, new MersenneTwisterFast(seed));
+        generator.setBranchLengthMean(branchLengthMean);
+        List<Tree> trees = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            trees.add(generator.nextTree());
+        }
+        return trees;
+    }
+
     private static Tree parseNewick(String newick) {
             pal.io.InputSource in1 = InputSource.openString(newick);
         try {
@@ -0,0 +1,44 @@
+package treecmp.metrics.weighted;
+
+import org.junit.jupiter.api.Test;
+import treecmp.common.CopheneticDist;
+import treecmp.metrics.util.TestTreeFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CopheneticL2WeightMetricTest {
+
+    @Test
+    void getCopheneticL2WeightDistance_identicalTrees_returnsZero() {
+        var t1 = TestTreeFactory.tenLeavesWeightedBinaryRootedTree1();
+        var cm = new CopheneticL2WeightMetric();
+
+        double distance = cm.getDistance(t1, t1);
+
+        assertEquals(0.0, distance);
+    }
+
+    @Test
+    void getWeightedL2Dist_4leafsTrees_equalsPairwiseDistance() {
+        var t1 = TestTreeFactory.fourLeavesRootedWeightedTree1();
+        var t2 = TestTreeFactory.fourLeavesRootedWeightedTree2();
+
+        var cm = new CopheneticL2WeightMetric();
+
+        double distance = CopheneticDist.getWeightedL2Dist(t1, t2);
+
+        assertEquals(cm.getPairwiseDistance(t1, t2), distance, 1e-10);
+    }
+
+    @Test
+    void getWeightedL2Dist_10leafsTrees_equalsPairwiseDistance() {
+        var t1 = TestTreeFactory.tenLeavesWeightedBinaryRootedTree1();
+        var t2 = TestTreeFactory.tenLeavesWeightedBinaryRootedTree2();
+
+        var cm = new CopheneticL2WeightMetric();
+
+        double distance = CopheneticDist.getWeightedL2Dist(t1, t2);
+
+        assertEquals(cm.getPairwiseDistance(t1, t2), distance, 1e-10);
+    }
+}
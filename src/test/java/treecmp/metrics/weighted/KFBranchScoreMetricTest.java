@@ -0,0 +1,68 @@
+package treecmp.metrics.weighted;
+
+import org.junit.jupiter.api.Test;
+import treecmp.metrics.util.TestTreeFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KFBranchScoreMetricTest {
+
+    @Test
+    void getKFDistance_identicalTrees_returnsZero() {
+        var t1 = TestTreeFactory.tenLeavesWeightedBinaryUnrootedTree1();
+
+        var kf = new KFBranchScoreMetric();
+
+        double distance = kf.getDistance(t1, t1);
+
+        assertEquals(0.0, distance);
+    }
+
+    @Test
+    void getKFDistance_4leafsZeroTrees_returnsZero() {
+        var t1 = TestTreeFactory.fourLeavesZeroWeightedTree1();
+        var t2 = TestTreeFactory.fourLeavesZeroWeightedTree2();
+
+        var kf = new KFBranchScoreMetric();
+
+        double distance = kf.getDistance(t1, t2);
+
+        assertEquals(0.0, distance);
+    }
+
+    @Test
+    void getKFDistance_4leafsTrees_returnsSqrtOf6167() {
+        var t1 = TestTreeFactory.fourLeavesUnrootedWeightedTree1();
+        var t2 = TestTreeFactory.fourLeavesUnrootedWeightedTree2();
+
+        var kf = new KFBranchScoreMetric();
+
+        double distance = kf.getDistance(t1, t2);
+
+        assertEquals(Math.sqrt(6167.0), distance, 1e-12);
+    }
+
+    @Test
+    void getKFDistance_10leafsTrees_returnsValue() {
+        var t1 = TestTreeFactory.tenLeavesWeightedBinaryUnrootedTree1();
+        var t2 = TestTreeFactory.tenLeavesWeightedBinaryUnrootedTree2();
+
+        var kf = new KFBranchScoreMetric();
+
+        double distance = kf.getDistance(t1, t2);
+
+        assertEquals(208.4634260487916, distance, 1e-10);
+    }
+
+    @Test
+    void getKFCDistance_10leafsRootedTrees_returnsValue() {
+        var t1 = TestTreeFactory.tenLeavesWeightedBinaryRootedTree1();
+        var t2 = TestTreeFactory.tenLeavesWeightedBinaryRootedTree2();
+
+        var kfc = new KFCBranchScoreMetric();
+
+        double distance = kfc.getDistance(t1, t2);
+
+        assertEquals(313.32570912709986, distance, 1e-10);
+    }
+}
@@ -0,0 +1,56 @@
+package treecmp.metrics.weighted;
+
+import org.junit.jupiter.api.Test;
+import treecmp.common.NodalDist;
+import treecmp.metrics.util.TestTreeFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class NodalL2EdgeWeightMetricTest {
+
+    @Test
+    void getNodalL2EdgeWeightDistance_identicalTrees_returnsZero() {
+        var t1 = TestTreeFactory.tenLeavesWeightedBinaryUnrootedTree1();
+        var nm = new NodalL2EdgeWeightMetric();
+
+        double distance = nm.getDistance(t1, t1);
+
+        assertEquals(0.0, distance);
+    }
+
+    @Test
+    void getNodalL2EdgeWeightDistance_10leafsTrees_equalsPairwiseDistance() {
+        var t1 = TestTreeFactory.tenLeavesWeightedBinaryUnrootedTree1();
+        var t2 = TestTreeFactory.tenLeavesWeightedBinaryUnrootedTree2();
+
+        var nm = new NodalL2EdgeWeightMetric();
+
+        double distance = nm.getDistance(t1, t2);
+
+        assertEquals(nm.getPairwiseDistance(t1, t2), distance, 1e-10);
+    }
+
+    @Test
+    void getWeightedL2Dist_10leafsTrees_equalsPairwiseDistance() {
+        var t1 = TestTreeFactory.tenLeavesWeightedBinaryUnrootedTree1();
+        var t2 = TestTreeFactory.tenLeavesWeightedBinaryUnrootedTree2();
+
+        var nm = new NodalL2EdgeWeightMetric();
+
+        double distance = NodalDist.getWeightedL2Dist(t1, t2);
+
+        assertEquals(nm.getPairwiseDistance(t1, t2), distance, 1e-10);
+    }
+
+    @Test
+    void getNodalL1EdgeWeightDistance_10leafsTrees_equalsPairwiseDistance() {
+        var t1 = TestTreeFactory.tenLeavesWeightedBinaryUnrootedTree1();
+        var t2 = TestTreeFactory.tenLeavesWeightedBinaryUnrootedTree2();
+
+        var nm = new NodalL1EdgeWeightMetric();
+
+        double distance = nm.getDistance(t1, t2);
+
+        assertEquals(nm.getPairwiseDistance(t1, t2), distance, 1e-10);
+    }
+}
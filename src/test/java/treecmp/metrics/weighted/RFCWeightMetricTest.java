@@ -0,0 +1,32 @@
+package treecmp.metrics.weighted;
+
+import org.junit.jupiter.api.Test;
+import treecmp.metrics.util.TestTreeFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RFCWeightMetricTest {
+
+    @Test
+    void getRFCWeightDistance_identicalTrees_returnsZero() {
+        var t1 = TestTreeFactory.tenLeavesWeightedBinaryRootedTree1();
+
+        var rfc = new RFCWeightMetric();
+
+        double distance = rfc.getDistance(t1, t1);
+
+        assertEquals(0.0, distance);
+    }
+
+    @Test
+    void getRFCWeightDistance_10leafsRootedTrees_returnsValue() {
+        var t1 = TestTreeFactory.tenLeavesWeightedBinaryRootedTree1();
+        var t2 = TestTreeFactory.tenLeavesWeightedBinaryRootedTree2();
+
+        var rfc = new RFCWeightMetric();
+
+        double distance = rfc.getDistance(t1, t2);
+
+        assertEquals(707.5, distance, 1e-10);
+    }
+}
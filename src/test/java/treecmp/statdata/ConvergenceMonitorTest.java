@@ -0,0 +1,165 @@
+package treecmp.statdata;
+
+import org.junit.jupiter.api.Test;
+import pal.io.InputSource;
+import pal.tree.ReadTree;
+import pal.tree.Tree;
+import pal.tree.TreeParseException;
+import treecmp.common.RandomTreeGenerator;
+import treecmp.common.TreeCmpException;
+import treecmp.metrics.topological.RFMetric;
+import treecmp.metrics.util.TestTreeFactory;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConvergenceMonitorTest {
+
+    private static Tree tree(String newick) throws TreeParseException {
+        return new ReadTree(InputSource.openString(newick));
+    }
+
+    @Test
+    void getASDSF_sameTreesInAllChains_returnsZero() throws Exception {
+        var monitor = new ConvergenceMonitor(3);
+
+        for (Tree t : TestTreeFactory.randomTrees(20, 10, RandomTreeGenerator.Model.UNIFORM, false, 1)) {
+            for (int c = 0; c < 3; c++) {
+                monitor.add(c, t);
+            }
+        }
+
+        assertEquals(0.0, monitor.getASDSF(), 1e-12);
+    }
+
+    @Test
+    void getASDSF_differentTopologies_returnsMeanStandardDeviation() throws Exception {
+        var monitor = new ConvergenceMonitor(2);
+
+        for (int i = 0; i < 4; i++) {
+            monitor.add(0, tree("((A,B),C,(D,E));"));
+            monitor.add(1, tree("((A,C),B,(D,E));"));
+        }
+
+        // splits AB and AC: frequencies 1 and 0; split DE: 1 and 1
+        assertEquals(3, monitor.getSplitCount());
+        assertEquals(2.0 * Math.sqrt(0.5) / 3.0, monitor.getASDSF(), 1e-12);
+    }
+
+    @Test
+    void getASDSF_burnIn_ignoresFirstTrees() throws Exception {
+        var monitor = new ConvergenceMonitor(2);
+        monitor.setBurnIn(2);
+
+        monitor.add(0, tree("((A,B),C,(D,E));"));
+        monitor.add(0, tree("((A,B),C,(D,E));"));
+        monitor.add(1, tree("((A,C),B,(D,E));"));
+        monitor.add(1, tree("((A,C),B,(D,E));"));
+        monitor.add(0, tree("((A,D),C,(B,E));"));
+        monitor.add(1, tree("((A,D),C,(B,E));"));
+
+        assertEquals(3, monitor.getTreeCount(0));
+        assertEquals(2, monitor.getSplitCount());
+        assertEquals(0.0, monitor.getASDSF(), 1e-12);
+    }
+
+    @Test
+    void getASDSF_oneChain_returnsNaN() throws Exception {
+        var monitor = new ConvergenceMonitor(1);
+
+        monitor.add(0, tree("((A,B),C,(D,E));"));
+
+        assertTrue(Double.isNaN(monitor.getASDSF()));
+    }
+
+    @Test
+    void getTrace_fullTrace_isThinned() throws Exception {
+        var monitor = new ConvergenceMonitor(1);
+        monitor.setTraceCapacity(8);
+        var trees = TestTreeFactory.randomTrees(100, 10, RandomTreeGenerator.Model.UNIFORM, false, 2);
+
+        for (Tree t : trees) {
+            monitor.add(0, t);
+        }
+
+        // the first tree is the reference; 99 trees are traced with stride 16
+        assertEquals(16, monitor.getTraceStride(0));
+        var trace = monitor.getTrace(0, 0);
+        assertEquals(7, trace.length);
+        var rf = new RFMetric();
+        for (int k = 0; k < trace.length; k++) {
+            assertEquals(rf.getDistance(trees.get(0), trees.get(1 + 16 * k)), trace[k], 1e-12);
+        }
+    }
+
+    @Test
+    void getTrace_metric_usesMetric() throws Exception {
+        var monitor = new ConvergenceMonitor(1);
+        monitor.setReferenceCount(2);
+        monitor.setMetric(new RFMetric());
+        var trees = TestTreeFactory.randomTrees(10, 10, RandomTreeGenerator.Model.UNIFORM, false, 3);
+
+        for (Tree t : trees) {
+            monitor.add(0, t);
+        }
+
+        var rf = new RFMetric();
+        var trace = monitor.getTrace(0, 1);
+        assertEquals(8, trace.length);
+        for (int k = 0; k < trace.length; k++) {
+            assertEquals(rf.getDistance(trees.get(1), trees.get(2 + k)), trace[k], 1e-12);
+        }
+    }
+
+    @Test
+    void getPseudoESS_independentTrees_closeToSampleSize() throws TreeCmpException {
+        var monitor = new ConvergenceMonitor(1);
+        monitor.setReferenceCount(3);
+
+        for (Tree t : TestTreeFactory.randomTrees(401, 10, RandomTreeGenerator.Model.UNIFORM, false, 4)) {
+            monitor.add(0, t);
+        }
+
+        double ess = monitor.getPseudoESS(0);
+        assertTrue(ess > 250 && ess <= 398, "ESS " + ess);
+    }
+
+    @Test
+    void getPseudoESS_repeatedTrees_isSmaller() throws TreeCmpException {
+        var monitor = new ConvergenceMonitor(1);
+
+        for (Tree t : TestTreeFactory.randomTrees(40, 10, RandomTreeGenerator.Model.UNIFORM, false, 5)) {
+            for (int r = 0; r < 10; r++) {
+                monitor.add(0, t);
+            }
+        }
+
+        double ess = monitor.getPseudoESS(0);
+        assertTrue(ess < 100, "ESS " + ess);
+    }
+
+    @Test
+    void getEffectiveSampleSize_autoregressiveSeries_matchesTheory() {
+        var random = new Random(6);
+        int n = 20000;
+        double rho = 0.9;
+        double[] values = new double[n];
+        for (int i = 1; i < n; i++) {
+            values[i] = rho * values[i - 1] + random.nextGaussian();
+        }
+
+        double ess = ConvergenceMonitor.getEffectiveSampleSize(values, n);
+
+        double expected = n * (1 - rho) / (1 + rho);
+        assertEquals(expected, ess, 0.25 * expected);
+    }
+
+    @Test
+    void setBurnIn_afterTrees_throws() throws Exception {
+        var monitor = new ConvergenceMonitor(2);
+        monitor.add(0, tree("((A,B),C,(D,E));"));
+
+        assertThrows(IllegalStateException.class, () -> monitor.setBurnIn(1));
+    }
+}
@@ -0,0 +1,77 @@
+package treecmp.statdata;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DistributionStoreTest {
+
+    private static final String HEADER = "n\tavg\tstd\tmin\tmax\tq02\tq05\tq10\tq20\tq30\tq40\tq50\tq60\tq70\tq80\tq90\tq95\tq97";
+
+    private static String row(int n, double base) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(n).append('\t').append(base).append('\t').append(base / 10).append('\t')
+                .append(base / 2).append('\t').append(base * 2);
+        for (int i = 0; i < MetricDistribution.QUANTILE_NUM; i++) {
+            sb.append('\t').append(base / 2 + i);
+        }
+        return sb.toString();
+    }
+
+    private static void writeTextData(Path dir) throws IOException {
+        Files.write(dir.resolve("unif_test.txt"), List.of(HEADER, row(4, 10.0), row(6, 20.0), row(10, 40.0)));
+        Files.write(dir.resolve("yule_test.txt"), List.of(HEADER, row(4, 5.0), row(5, 7.0)));
+    }
+
+    @Test
+    void convertTextData_readsBackSameValues(@TempDir Path dir) throws IOException {
+        writeTextData(dir);
+        DistributionStore.convertTextData(dir.toString(), List.of("unif_test.txt", "yule_test.txt"));
+
+        var store = DistributionStore.open(new File(dir.toFile(), DistributionStore.FILE_NAME));
+        var text = MetircDistrbHolder.readTextFile(dir.resolve("unif_test.txt").toString());
+        var table = store.getTable("unif_test.txt");
+
+        assertEquals(4, table.getMinLeafNum(0));
+        assertEquals(10, table.getMaxLeafNum(0));
+        assertNull(table.getDistribution(5));
+        for (int n : new int[]{4, 6, 10}) {
+            assertEquals(text.getDistribution(n).getAvg(), table.getDistribution(n).getAvg());
+            assertEquals(text.getDistribution(n).getMax(), table.getDistribution(n).getMax());
+            assertEquals(text.getDistribution(n).get97Quantile(), table.getDistribution(n).get97Quantile());
+        }
+        assertEquals(7.0, store.getTable("yule_test.txt").getDistribution(5).getAvg());
+        assertNull(store.getTable("missing.txt"));
+    }
+
+    @Test
+    void getSharedHolder_missingLeafNum_interpolates(@TempDir Path dir) throws IOException {
+        writeTextData(dir);
+        DistributionStore.convertTextData(dir.toString(), List.of("unif_test.txt"));
+
+        var holder = DistributionStore.getSharedHolder(dir.toString(), "unif_test.txt");
+
+        assertSame(holder, DistributionStore.getSharedHolder(dir.toString(), "unif_test.txt"));
+        assertEquals(15.0, holder.getDistribution(5).getAvg(), 1e-12);
+        assertEquals(30.0, holder.getDistribution(8).getAvg(), 1e-12);
+        assertEquals(50.0, holder.getDistribution(12).getAvg(), 1e-12);
+        assertEquals(0.0, holder.getDistribution(1).getAvg(), 1e-12);
+    }
+
+    @Test
+    void getSharedHolder_withoutStore_readsTextFile(@TempDir Path dir) throws IOException {
+        writeTextData(dir);
+
+        var holder = DistributionStore.getSharedHolder(dir.toString(), "yule_test.txt");
+
+        assertEquals(5.0, holder.getDistribution(4).getAvg());
+        assertEquals(9.0, holder.getDistribution(6).getAvg(), 1e-12);
+    }
+}
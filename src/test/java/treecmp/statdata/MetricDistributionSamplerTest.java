@@ -0,0 +1,70 @@
+package treecmp.statdata;
+
+import org.junit.jupiter.api.Test;
+import pal.math.MersenneTwisterFast;
+import treecmp.common.RandomTreeGenerator;
+import treecmp.common.TreeCmpException;
+import treecmp.metrics.topological.RFClusterMetric;
+import treecmp.metrics.topological.RFMetric;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricDistributionSamplerTest {
+
+    @Test
+    void nextTree_unrootedUniform_returnsTreeWithAllLeaves() {
+        var generator = new RandomTreeGenerator(12, RandomTreeGenerator.Model.UNIFORM, false, new MersenneTwisterFast(3));
+
+        var tree = generator.nextTree();
+
+        assertEquals(12, tree.getExternalNodeCount());
+        assertEquals(10, tree.getInternalNodeCount());
+        assertEquals(3, tree.getRoot().getChildCount());
+    }
+
+    @Test
+    void nextTree_rootedYule_returnsBinaryTree() {
+        var generator = new RandomTreeGenerator(12, RandomTreeGenerator.Model.YULE, true, new MersenneTwisterFast(3));
+
+        var tree = generator.nextTree();
+
+        assertEquals(12, tree.getExternalNodeCount());
+        assertEquals(11, tree.getInternalNodeCount());
+        assertEquals(2, tree.getRoot().getChildCount());
+    }
+
+    @Test
+    void sample_differentThreadCounts_returnsSameDistribution() throws TreeCmpException {
+        var sampler = new MetricDistributionSampler(RFMetric::new);
+        sampler.setSampleCount(2500);
+        sampler.setSeed(7);
+
+        sampler.setThreadCount(1);
+        var d1 = sampler.sample(15);
+        sampler.setThreadCount(4);
+        var d2 = sampler.sample(15);
+
+        assertEquals(15, d1.getLeafNum());
+        assertEquals(d1.getAvg(), d2.getAvg());
+        assertEquals(d1.getStd(), d2.getStd());
+        assertEquals(d1.get50Quantile(), d2.get50Quantile());
+    }
+
+    @Test
+    void sample_rfCluster_valuesWithinRange() throws TreeCmpException {
+        var sampler = new MetricDistributionSampler(RFClusterMetric::new);
+        sampler.setSampleCount(500);
+        sampler.setModel(RandomTreeGenerator.Model.YULE);
+
+        var holder = sampler.sample(5, 8);
+
+        assertEquals(5, holder.getMinLeafNum(0));
+        assertEquals(8, holder.getMaxLeafNum(0));
+        for (int n = 5; n <= 8; n++) {
+            var d = holder.getDistribution(n);
+            assertTrue(d.getMin() >= 0.0);
+            assertTrue(d.getMax() <= 2 * (n - 2));
+            assertTrue(d.get02Quantile() <= d.get97Quantile());
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package treecmp.statdata;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricSummaryTest {
+
+    private static double[][] randomVectors(int n, long seed) {
+        var random = new Random(seed);
+        double[][] vectors = new double[n][];
+        for (int i = 0; i < n; i++) {
+            double x = random.nextGaussian();
+            vectors[i] = new double[]{x, 2 * x + random.nextGaussian(), Math.exp(x), random.nextInt(5)};
+        }
+        return vectors;
+    }
+
+    private static double pearson(double[][] vectors, int a, int b) {
+        int n = vectors.length;
+        double ma = 0, mb = 0;
+        for (double[] v : vectors) {
+            ma += v[a] / n;
+            mb += v[b] / n;
+        }
+        double sab = 0, saa = 0, sbb = 0;
+        for (double[] v : vectors) {
+            sab += (v[a] - ma) * (v[b] - mb);
+            saa += (v[a] - ma) * (v[a] - ma);
+            sbb += (v[b] - mb) * (v[b] - mb);
+        }
+        return sab / Math.sqrt(saa * sbb);
+    }
+
+    @Test
+    void getPearson_equalsTwoPassComputation() {
+        var vectors = randomVectors(1000, 1);
+        var summary = new MetricSummary(4);
+
+        for (double[] v : vectors) {
+            summary.add(v);
+        }
+
+        for (int a = 0; a < 4; a++) {
+            for (int b = 0; b < 4; b++) {
+                assertEquals(pearson(vectors, a, b), summary.getPearson(a, b), 1e-9);
+            }
+        }
+    }
+
+    @Test
+    void merge_equalsSingleAccumulator() {
+        var vectors = randomVectors(3000, 2);
+        var single = new MetricSummary(4);
+        var parts = new MetricSummary[3];
+        for (int p = 0; p < 3; p++) {
+            parts[p] = new MetricSummary(4, QuantileSketch.DEFAULT_K, 10000, new Random(10 + p));
+        }
+
+        for (int i = 0; i < vectors.length; i++) {
+            single.add(vectors[i]);
+            parts[i % 3].add(vectors[i]);
+        }
+        var merged = new MetricSummary(4);
+        for (var p : parts) {
+            merged.merge(p);
+        }
+
+        assertEquals(3000, merged.getCount());
+        for (int m = 0; m < 4; m++) {
+            assertEquals(single.getDistribution(m).getMean(), merged.getDistribution(m).getMean(), 1e-9);
+            assertEquals(single.getDistribution(m).getStd(), merged.getDistribution(m).getStd(), 1e-9);
+            assertEquals(single.getDistribution(m).getMax(), merged.getDistribution(m).getMax());
+        }
+        assertEquals(single.getPearson(0, 1), merged.getPearson(0, 1), 1e-9);
+        assertEquals(single.getPearson(1, 3), merged.getPearson(1, 3), 1e-9);
+    }
+
+    @Test
+    void getSpearman_monotoneTransformation_returnsOne() {
+        var summary = new MetricSummary(4);
+
+        for (double[] v : randomVectors(500, 3)) {
+            summary.add(v);
+        }
+
+        assertEquals(1.0, summary.getSpearman(0, 2), 1e-12);
+        assertTrue(summary.getPearson(0, 2) < 0.9);
+    }
+
+    @Test
+    void getSpearman_sampled_approximatesExactValue() {
+        var vectors = randomVectors(20000, 4);
+        var exact = new MetricSummary(4, QuantileSketch.DEFAULT_K, 20000, new Random(5));
+        var sampled = new MetricSummary(4, QuantileSketch.DEFAULT_K, 2000, new Random(6));
+
+        for (double[] v : vectors) {
+            exact.add(v);
+            sampled.add(v);
+        }
+
+        assertEquals(exact.getSpearman(0, 1), sampled.getSpearman(0, 1), 0.03);
+        assertEquals(exact.getSpearman(1, 3), sampled.getSpearman(1, 3), 0.05);
+    }
+
+    @Test
+    void getSpearman_ties_useAverageRanks() {
+        var summary = new MetricSummary(2);
+
+        summary.add(new double[]{1, 1});
+        summary.add(new double[]{1, 2});
+        summary.add(new double[]{2, 3});
+
+        // ranks (1.5, 1.5, 3) and (1, 2, 3)
+        assertEquals(Math.sqrt(0.75), summary.getSpearman(0, 1), 1e-12);
+    }
+
+    @Test
+    void add_nan_leftOutOfCorrelations() {
+        var summary = new MetricSummary(2);
+
+        summary.add(new double[]{1, 2});
+        summary.add(new double[]{2, Double.NaN});
+        summary.add(new double[]{3, 4});
+
+        assertEquals(2, summary.getCount());
+        assertEquals(3, summary.getDistribution(0).getCount());
+        assertEquals(2, summary.getDistribution(1).getCount());
+        assertEquals(1.0, summary.getPearson(0, 1), 1e-12);
+    }
+
+    @Test
+    void getPearson_constantMetric_returnsNaN() {
+        var summary = new MetricSummary(2);
+
+        summary.add(new double[]{1, 5});
+        summary.add(new double[]{2, 5});
+
+        assertTrue(Double.isNaN(summary.getPearson(0, 1)));
+        assertEquals(1.0, summary.getPearson(0, 0), 1e-12);
+    }
+}
@@ -0,0 +1,58 @@
+package treecmp.statdata;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QuantileSketchTest {
+
+    @Test
+    void getQuantile_fewValues_returnsExactQuantiles() {
+        var sketch = new QuantileSketch(16);
+        for (int i = 10; i >= 1; i--) {
+            sketch.add(i);
+        }
+
+        assertEquals(1.0, sketch.getQuantile(0.0));
+        assertEquals(5.0, sketch.getQuantile(0.5));
+        assertEquals(10.0, sketch.getQuantile(1.0));
+    }
+
+    @Test
+    void getQuantile_manyValues_withinRankError() {
+        var sketch = new QuantileSketch();
+        var random = new Random(1);
+        int n = 200000;
+        for (int i = 0; i < n; i++) {
+            sketch.add(random.nextInt(n));
+        }
+
+        assertEquals(n, sketch.getCount());
+        for (double p : MetricDistribution.QUANTILE_PROBS) {
+            assertEquals(p * n, sketch.getQuantile(p), 0.02 * n);
+        }
+    }
+
+    @Test
+    void merge_twoSketches_equalsSingleSketchApproximately() {
+        var s1 = new QuantileSketch();
+        var s2 = new QuantileSketch();
+        for (int i = 0; i < 50000; i++) {
+            s1.add(i);
+            s2.add(50000 + i);
+        }
+
+        s1.merge(s2);
+
+        assertEquals(100000, s1.getCount());
+        assertEquals(50000.0, s1.getQuantile(0.5), 2000.0);
+        assertEquals(0.0, s1.getQuantile(0.0), 2000.0);
+    }
+
+    @Test
+    void getQuantile_emptySketch_returnsNaN() {
+        assertTrue(Double.isNaN(new QuantileSketch().getQuantile(0.5)));
+    }
+}
@@ -0,0 +1,76 @@
+package treecmp.statdata;
+
+import org.junit.jupiter.api.Test;
+import treecmp.common.CompactTree;
+import treecmp.common.RandomTreeGenerator;
+import treecmp.metrics.util.TestTreeFactory;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TreeShapeStatisticsTest {
+
+    @Test
+    void compute_balancedFourLeavesTree_returnsAllIndices() {
+        var stats = new TreeShapeStatistics();
+
+        var values = stats.compute(TestTreeFactory.fourLeavesTree1());
+
+        assertArrayEquals(new double[]{8, 0, 2, 2, 2.0, 2.0, 2}, values, 1e-12);
+    }
+
+    @Test
+    void compute_caterpillarFourLeavesTree_returnsAllIndices() {
+        var stats = new TreeShapeStatistics();
+
+        var values = stats.compute(TestTreeFactory.fourLeavesRootedWeightedTree2());
+
+        assertArrayEquals(new double[]{9, 3, 4, 1, 1.5, 1.75, 3}, values, 1e-12);
+    }
+
+    @Test
+    void compute_selectedIndices_returnsValuesInGivenOrder() {
+        var stats = new TreeShapeStatistics(TreeShapeStatistics.Index.HEIGHT, TreeShapeStatistics.Index.SACKIN);
+
+        var values = stats.compute(TestTreeFactory.fourLeavesRootedWeightedTree2());
+
+        assertArrayEquals(new double[]{3, 9}, values);
+    }
+
+    @Test
+    void getDepthProfile_caterpillar_returnsLeavesPerDepth() {
+        var stats = new TreeShapeStatistics();
+
+        var profile = stats.getDepthProfile(new CompactTree(TestTreeFactory.fourLeavesRootedWeightedTree2()));
+
+        assertArrayEquals(new int[]{0, 1, 1, 2}, profile);
+    }
+
+    @Test
+    void computeAll_withReference_returnsZScores() {
+        var stats = new TreeShapeStatistics(TreeShapeStatistics.Index.SACKIN);
+        var reference = new MetircDistrbHolder();
+        reference.insertDistribution(new MetricDistribution(4, 6.0, 2.0, 4.0, 12.0, new double[MetricDistribution.QUANTILE_NUM]));
+        stats.setReference(TreeShapeStatistics.Index.SACKIN, reference);
+
+        var values = stats.computeAll(Arrays.asList(
+                TestTreeFactory.fourLeavesTree1(), TestTreeFactory.tenLeavesBinaryRootedTree1()).iterator(), true);
+
+        assertEquals(1.0, values[0][0]);
+        // no reference for ten leaves
+        assertEquals(stats.compute(TestTreeFactory.tenLeavesBinaryRootedTree1())[0], values[0][1]);
+    }
+
+    @Test
+    void sampleReference_yuleSackin_closeToExpectation() {
+        var reference = TreeShapeStatistics.sampleReference(TreeShapeStatistics.Index.SACKIN,
+                RandomTreeGenerator.Model.YULE, true, 20, 20, 5000, 1);
+
+        double expected = 0.0;
+        for (int k = 2; k <= 20; k++) {
+            expected += 2.0 * 20 / k;
+        }
+        assertEquals(expected, reference.getDistribution(20).getAvg(), 1.0);
+    }
+}